@@ -2,6 +2,8 @@ plugins {
 	java
 	id("org.springframework.boot") version "3.5.7"
 	id("io.spring.dependency-management") version "1.1.7"
+	// Mikrobenchmarks i src/jmh/java, körs med ./gradlew jmh
+	id("me.champeau.jmh") version "0.7.2"
 }
 
 group = "se.brankoov"
@@ -22,12 +24,20 @@ dependencies {
 	implementation("org.springframework.boot:spring-boot-starter-security")
 	implementation("org.springframework.boot:spring-boot-starter-validation")
 	implementation("org.springframework.boot:spring-boot-starter-web")
+	implementation("org.springframework.boot:spring-boot-starter-actuator")
+	// Prometheus-endpoint och tracing (spans per optimeringssteg, exporteras via OTLP)
+	runtimeOnly("io.micrometer:micrometer-registry-prometheus")
+	implementation("io.micrometer:micrometer-tracing-bridge-otel")
+	runtimeOnly("io.opentelemetry:opentelemetry-exporter-otlp")
 	testImplementation("org.springframework.boot:spring-boot-starter-test")
 	testImplementation("org.springframework.security:spring-security-test")
 	testRuntimeOnly("org.junit.platform:junit-platform-launcher")
 	implementation ("org.springframework.boot:spring-boot-starter-webflux")
 	implementation("org.springframework.boot:spring-boot-starter-data-jpa")
-	runtimeOnly("org.postgresql:postgresql")
+	implementation("org.flywaydb:flyway-core")
+	implementation("org.flywaydb:flyway-database-postgresql")
+	// implementation (inte runtimeOnly) eftersom UserCacheSync använder PGConnection för LISTEN
+	implementation("org.postgresql:postgresql")
 	// JWT (JSON Web Token) support
 	implementation("io.jsonwebtoken:jjwt-api:0.11.5")
 	runtimeOnly("io.jsonwebtoken:jjwt-impl:0.11.5")
@@ -39,6 +49,74 @@ dependencies {
 
 }
 
+// Lasttest i src/loadtest/java: en falsk ORS-server och en lastdrivare, fristående från Spring
+val loadtest: SourceSet by sourceSets.creating
+
+dependencies {
+	"loadtestImplementation"("com.fasterxml.jackson.core:jackson-databind")
+}
+
+// ./gradlew fakeOrs --args="--port=8090 --error-rate=0.01", starta sedan backend med ORS_API_URL=http://localhost:8090
+tasks.register<JavaExec>("fakeOrs") {
+	group = "loadtest"
+	description = "Runs a local stand-in for the ORS endpoints"
+	classpath = loadtest.runtimeClasspath
+	mainClass = "se.brankoov.routing.loadtest.FakeOrsServer"
+}
+
+// ./gradlew loadTest --args="--target=http://localhost:8080 --users=20 --duration=2m"
+tasks.register<JavaExec>("loadTest") {
+	group = "loadtest"
+	description = "Replays planner traffic against a running backend and reports latency percentiles"
+	classpath = loadtest.runtimeClasspath
+	mainClass = "se.brankoov.routing.loadtest.LoadDriver"
+}
+
 tasks.withType<Test> {
 	useJUnitPlatform()
+	// ./gradlew solverCorpusTest -Psolver.baseline.update skriver en ny baslinje för SolverQualityRegressionTest
+	if (project.hasProperty("solver.baseline.update")) {
+		systemProperty("solver.baseline.update", "true")
+	}
+}
+
+// Lösarkorpusen mäter tid och körs därför i en egen JVM – i samma JVM som resten av testerna
+// har JIT:en redan kompilerat lösaren efter deras profiler, och tiderna hoppar med testordningen
+val solverCorpusTest = tasks.register<Test>("solverCorpusTest") {
+	group = "verification"
+	description = "Runs SolverQualityRegressionTest in a JVM of its own"
+	testClassesDirs = sourceSets.test.get().output.classesDirs
+	classpath = sourceSets.test.get().runtimeClasspath
+	filter { includeTestsMatching("*SolverQualityRegressionTest") }
+}
+
+tasks.test {
+	filter { excludeTestsMatching("*SolverQualityRegressionTest") }
+}
+
+tasks.check {
+	dependsOn(solverCorpusTest)
+}
+
+dependencies {
+	jmh("org.springframework:spring-test")
+	jmh("org.mockito:mockito-core")
+}
+
+jmh {
+	jmhVersion = "1.37"
+	fork = 1
+	warmupIterations = 3
+	iterations = 5
+	// Resultat i build/results/jmh/results.json, så körningar kan jämföras över tid
+	resultFormat = "JSON"
+	// Allokering per operation (gc.alloc.rate.norm) bredvid genomströmningen
+	profilers = listOf("gc")
+	// Begränsa till en benchmark: ./gradlew jmh -Pjmh.includes=JwtFilterBenchmark
+	project.findProperty("jmh.includes")?.let { includes = listOf(it.toString()) }
+	// Skriv över @Param, t.ex. -Pjmh.params=stops=1000
+	project.findProperty("jmh.params")?.let {
+		val (name, values) = it.toString().split("=", limit = 2)
+		benchmarkParameters.put(name, objects.listProperty(String::class.java).value(values.split(",")))
+	}
 }
\ No newline at end of file
@@ -55,6 +55,24 @@ export interface SavedRoute {
   }[];
 }
 
+// Lätt variant för listor – stopp och geometri hämtas via getRouteDetail
+export interface RouteSummary {
+  id: number;
+  name: string;
+  description?: string;
+  startAddress?: string;
+  endAddress?: string;
+  stopCount: number;
+  totalDuration?: number;
+  averageStopDuration?: number;
+  createdAt: string;
+}
+
+export interface RouteSummaryPage {
+  items: RouteSummary[];
+  nextCursor: string | null;
+}
+
 export interface User {
   id: number;
   username: string;
@@ -155,7 +173,7 @@ export async function saveRoute(data: SaveRouteRequest): Promise<SavedRoute> {
   return response.json() as Promise<SavedRoute>;
 }
 
-export async function getSavedRoutes(): Promise<SavedRoute[]> {
+export async function getSavedRoutes(): Promise<RouteSummary[]> {
   const response = await fetch(`${API_BASE_URL}/api/routes`, {
     method: 'GET',
     headers: getAuthHeaders(),
@@ -171,13 +189,48 @@ export async function getSavedRoutes(): Promise<SavedRoute[]> {
     throw new Error(`Failed to fetch routes. Status: ${response.status}`);
   }
 
-  const routes = await response.json() as SavedRoute[];
+  const routes = await response.json() as RouteSummary[];
   
   return routes.sort((a, b) => {
       return b.id - a.id; 
   });
 }
 
+export async function getRouteSummaries(cursor?: string | null, limit = 20): Promise<RouteSummaryPage> {
+  const params = new URLSearchParams({ limit: String(limit) });
+  if (cursor) params.set("cursor", cursor);
+
+  const response = await fetch(`${API_BASE_URL}/api/routes/summary?${params}`, {
+    method: 'GET',
+    headers: getAuthHeaders(),
+  });
+
+  if (response.status === 403) {
+    localStorage.removeItem("jwt_token");
+    window.location.reload();
+    throw new Error("Session expired");
+  }
+
+  if (!response.ok) {
+    throw new Error(`Failed to fetch routes. Status: ${response.status}`);
+  }
+
+  return response.json() as Promise<RouteSummaryPage>;
+}
+
+export async function getRouteDetail(id: number): Promise<SavedRoute> {
+  const response = await fetch(`${API_BASE_URL}/api/routes/${id}`, {
+    method: 'GET',
+    headers: getAuthHeaders(),
+  });
+
+  if (!response.ok) {
+    throw new Error(`Failed to fetch route. Status: ${response.status}`);
+  }
+
+  return response.json() as Promise<SavedRoute>;
+}
+
 export async function deleteRoute(id: number): Promise<void> {
   const response = await fetch(`${API_BASE_URL}/api/routes/${id}`, {
     method: 'DELETE',
@@ -213,7 +266,7 @@ export const toggleUserBan = async (userId: number): Promise<string> => {
   return await response.text();
 };
 
-export const getUserRoutesAdmin = async (username: string): Promise<SavedRoute[]> => {
+export const getUserRoutesAdmin = async (username: string): Promise<RouteSummary[]> => {
   const token = localStorage.getItem("jwt_token");
   const response = await fetch(`${API_BASE_URL}/api/admin/users/${username}/routes`, {
     headers: {
@@ -239,4 +292,25 @@ export async function assignRouteToUser(routeId: number, username: string): Prom
   if (!response.ok) {
     throw new Error("Kunde inte tilldela rutten.");
   }
-}
\ No newline at end of file
+}
+export interface DispatchResult {
+  routeId: number;
+  username: string;
+  status: "ASSIGNED" | "ROUTE_NOT_FOUND" | "USER_NOT_FOUND";
+  newRouteId: number | null;
+}
+
+// Tilldelar många rutter på en gång (en transaktion på servern)
+export async function dispatchRoutes(assignments: { routeId: number; username: string }[]): Promise<DispatchResult[]> {
+  const response = await fetch(`${API_BASE_URL}/api/admin/routes/dispatch`, {
+    method: 'POST',
+    headers: getAuthHeaders(),
+    body: JSON.stringify({ assignments }),
+  });
+
+  if (!response.ok) {
+    throw new Error("Kunde inte tilldela rutterna.");
+  }
+
+  return response.json() as Promise<DispatchResult[]>;
+}
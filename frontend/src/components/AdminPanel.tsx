@@ -3,8 +3,10 @@ import {
   getAllUsers,
   toggleUserBan,
   getUserRoutesAdmin,
+  getRouteDetail,
   User,
   SavedRoute,
+  RouteSummary,
   formatDuration,
 } from "../api/routeClient";
 
@@ -20,7 +22,7 @@ export default function AdminPanel({ onEditRoute, isDarkMode }: AdminPanelProps)
 
   // Modaler
   const [selectedUser, setSelectedUser] = useState<User | null>(null);
-  const [userRoutes, setUserRoutes] = useState<SavedRoute[]>([]);
+  const [userRoutes, setUserRoutes] = useState<RouteSummary[]>([]);
   const [loadingRoutes, setLoadingRoutes] = useState(false);
   const [userToConfirmBan, setUserToConfirmBan] = useState<User | null>(null);
 
@@ -399,7 +401,7 @@ export default function AdminPanel({ onEditRoute, isDarkMode }: AdminPanelProps)
                                 borderRadius: "6px",
                               }}
                             >
-                              📍 {r.stops?.length || 0} stopp
+                              📍 {r.stopCount} stopp
                             </span>
                             <span
                               style={{
@@ -414,9 +416,11 @@ export default function AdminPanel({ onEditRoute, isDarkMode }: AdminPanelProps)
                         </div>
 
                         <button
-                          onClick={() => {
+                          onClick={async () => {
+                            // Listan har inga stopp eller geometri, hämta hela rutten först
+                            const route = await getRouteDetail(r.id);
                             setSelectedUser(null);
-                            onEditRoute(r);
+                            onEditRoute(route);
                           }}
                           className="px-4 py-2 rounded-lg font-bold transition-all text-sm"
                           style={{
@@ -1,5 +1,11 @@
 import { useEffect, useState } from "react";
-import { getSavedRoutes, deleteRoute, type SavedRoute } from "../api/routeClient";
+import {
+  getRouteSummaries,
+  getRouteDetail,
+  deleteRoute,
+  type RouteSummary,
+  type SavedRoute,
+} from "../api/routeClient";
 
 type Props = {
   onEdit: (route: SavedRoute) => void;
@@ -8,8 +14,10 @@ type Props = {
 };
 
 export function SavedRoutesList({ onEdit, onStartDrive, isDarkMode }: Props) {
-  const [routes, setRoutes] = useState<SavedRoute[]>([]);
+  const [routes, setRoutes] = useState<RouteSummary[]>([]);
+  const [nextCursor, setNextCursor] = useState<string | null>(null);
   const [loading, setLoading] = useState(true);
+  const [loadingMore, setLoadingMore] = useState(false);
   const [error, setError] = useState<string | null>(null);
 
   useEffect(() => {
@@ -19,9 +27,10 @@ export function SavedRoutesList({ onEdit, onStartDrive, isDarkMode }: Props) {
   async function fetchRoutes() {
     try {
       setLoading(true);
-      // Nu finns denna funktion i routeClient.ts!
-      const data = await getSavedRoutes();
-      setRoutes(data);
+      // Bara sammanfattningar – stopp och geometri hämtas när rutten öppnas
+      const page = await getRouteSummaries();
+      setRoutes(page.items);
+      setNextCursor(page.nextCursor);
     } catch (err) {
       console.error(err);
       setError("Kunde inte hämta sparade rutter.");
@@ -30,6 +39,29 @@ export function SavedRoutesList({ onEdit, onStartDrive, isDarkMode }: Props) {
     }
   }
 
+  async function fetchMore() {
+    if (!nextCursor) return;
+    try {
+      setLoadingMore(true);
+      const page = await getRouteSummaries(nextCursor);
+      setRoutes((prev) => [...prev, ...page.items]);
+      setNextCursor(page.nextCursor);
+    } catch (err) {
+      console.error(err);
+      alert("Kunde inte hämta fler rutter");
+    } finally {
+      setLoadingMore(false);
+    }
+  }
+
+  const openRoute = async (id: number, action: (route: SavedRoute) => void) => {
+    try {
+      action(await getRouteDetail(id));
+    } catch (err) {
+      alert("Kunde inte öppna rutt");
+    }
+  };
+
   const handleDelete = async (id: number) => {
     if (!confirm("Är du säker på att du vill ta bort denna rutt?")) return;
     try {
@@ -56,6 +88,7 @@ export function SavedRoutesList({ onEdit, onStartDrive, isDarkMode }: Props) {
   };
 
   return (
+    <>
     <ul style={{ listStyle: "none", padding: 0 }}>
       {routes.map((route) => (
         <li
@@ -72,12 +105,12 @@ export function SavedRoutesList({ onEdit, onStartDrive, isDarkMode }: Props) {
           <div style={{fontSize: '0.9rem', color: isDarkMode ? '#aaa' : '#666', marginBottom: '1rem'}}>
              <p style={{margin: '4px 0'}}>🏁 Start: {route.startAddress}</p>
              <p style={{margin: '4px 0'}}>🛑 Slut: {route.endAddress}</p>
-             <p style={{margin: '4px 0'}}>📦 Stopp: {route.stops.length} st</p>
+             <p style={{margin: '4px 0'}}>📦 Stopp: {route.stopCount} st</p>
           </div>
 
           <div style={{ display: "flex", gap: "0.5rem", marginTop: "0.5rem" }}>
             <button 
-                onClick={() => onStartDrive(route)} 
+                onClick={() => openRoute(route.id, onStartDrive)} 
                 style={{
                     padding: '8px 16px', 
                     background: '#2196f3', 
@@ -91,7 +124,7 @@ export function SavedRoutesList({ onEdit, onStartDrive, isDarkMode }: Props) {
                 Starta
             </button>
             <button 
-                onClick={() => onEdit(route)}
+                onClick={() => openRoute(route.id, onEdit)}
                 style={{
                     padding: '8px 16px', 
                     background: isDarkMode ? '#333' : '#e0e0e0', 
@@ -121,5 +154,23 @@ export function SavedRoutesList({ onEdit, onStartDrive, isDarkMode }: Props) {
         </li>
       ))}
     </ul>
+    {nextCursor && (
+      <button
+          onClick={fetchMore}
+          disabled={loadingMore}
+          style={{
+              width: '100%',
+              padding: '10px',
+              background: isDarkMode ? '#333' : '#e0e0e0',
+              color: isDarkMode ? 'white' : 'black',
+              border: 'none',
+              borderRadius: '6px',
+              cursor: 'pointer'
+          }}
+      >
+          {loadingMore ? "Laddar..." : "Visa fler"}
+      </button>
+    )}
+    </>
   );
-}
\ No newline at end of file
+}
@@ -0,0 +1,69 @@
+package se.brankoov.routing.domain.route;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import se.brankoov.routing.api.route.StopResponse;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lösarens faser på syntetiska Stockholmsinstanser (se SyntheticInstance), samma frö varje körning.
+ *
+ * - nearestNeighbour:   startlösningen
+ * - simulatedAnnealing: en omstart, från närmaste granne-lösningen (optimize() kör 50 sådana)
+ * - distanceInKm:       haversine mellan alla stopp i följd
+ *
+ * 2-opt ligger i TwoOptBenchmark eftersom den inte klarar 1000 stopp inom rimlig tid.
+ * Allokering per operation syns som gc.alloc.rate.norm (gc-profilern är påslagen i build.gradle.kts).
+ *
+ * ./gradlew jmh -Pjmh.includes=SolverBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class SolverBenchmark {
+
+    @Param({"10", "50", "200", "1000"})
+    public int stops;
+
+    private SyntheticInstance instance;
+    private List<StopResponse> nearestNeighbourRoute;
+    private Random random;
+
+    @Setup
+    public void setUp() {
+        instance = SyntheticInstance.stockholm(stops, 42);
+        random = new Random(42);
+        nearestNeighbourRoute = TspSolver.solveTspNearestNeighbour(instance.stops, instance.durations);
+    }
+
+    @Benchmark
+    public List<StopResponse> nearestNeighbour() {
+        return TspSolver.solveTspNearestNeighbour(instance.stops, instance.durations);
+    }
+
+    @Benchmark
+    public List<StopResponse> simulatedAnnealing() {
+        return TspSolver.solveSimulatedAnnealing(new ArrayList<>(nearestNeighbourRoute), instance.durations, instance.stops, random);
+    }
+
+    @Benchmark
+    public double distanceInKm() {
+        double[] lats = instance.lats;
+        double[] lons = instance.lons;
+        double total = 0;
+        for (int i = 1; i < lats.length; i++) {
+            total += DistanceCalculator.distanceInKm(lats[i - 1], lons[i - 1], lats[i], lons[i]);
+        }
+        return total;
+    }
+}
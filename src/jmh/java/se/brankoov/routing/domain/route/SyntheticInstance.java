@@ -0,0 +1,70 @@
+package se.brankoov.routing.domain.route;
+
+import se.brankoov.routing.api.route.StopResponse;
+import se.brankoov.routing.domain.geocode.ServiceArea;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Slumpad men reproducerbar ruttinstans i Storstockholm, i samma form som optimize() får från ORS:
+ * matrisindex 0 = start, 1..n = stoppen, n+1 = slut (start och slut är samma depå).
+ *
+ * Körtiderna är asymmetriska som riktiga ORS-svar: fågelvägen gånger en vägfaktor, en hastighet
+ * som beror på avståndet (stadstrafik kort, led/motorväg långt) och ±15 % brus per riktning
+ * för enkelriktat, svängförbud och liknande.
+ */
+final class SyntheticInstance {
+
+    private static final double DEPOT_LAT = 59.3000;
+    private static final double DEPOT_LON = 18.0500;
+    private static final double ROAD_FACTOR = 1.35;
+    private static final double STOP_OVERHEAD_SECONDS = 60;
+
+    final List<StopResponse> stops;
+    final double[][] durations;
+    final double[] lats;
+    final double[] lons;
+
+    private SyntheticInstance(List<StopResponse> stops, double[][] durations, double[] lats, double[] lons) {
+        this.stops = stops;
+        this.durations = durations;
+        this.lats = lats;
+        this.lons = lons;
+    }
+
+    static SyntheticInstance stockholm(int stopCount, long seed) {
+        Random random = new Random(seed);
+        int size = stopCount + 2;
+        double[] lats = new double[size];
+        double[] lons = new double[size];
+        lats[0] = lats[size - 1] = DEPOT_LAT;
+        lons[0] = lons[size - 1] = DEPOT_LON;
+
+        List<StopResponse> stops = new ArrayList<>(stopCount);
+        for (int i = 1; i <= stopCount; i++) {
+            // Tätast i innerstaden, glesare ut mot kranskommunerna
+            lats[i] = clamp(ServiceArea.FOCUS_LAT + random.nextGaussian() * 0.08, ServiceArea.MIN_LAT, ServiceArea.MAX_LAT);
+            lons[i] = clamp(ServiceArea.FOCUS_LON + random.nextGaussian() * 0.16, ServiceArea.MIN_LON, ServiceArea.MAX_LON);
+            stops.add(new StopResponse("s" + i, "Stopp " + i, "Testgatan " + i + ", Stockholm",
+                    lats[i], lons[i], 0, null));
+        }
+
+        double[][] durations = new double[size][size];
+        for (int i = 0; i < size; i++) {
+            for (int j = 0; j < size; j++) {
+                if (i == j) continue;
+                double km = DistanceCalculator.distanceInKm(lats[i], lons[i], lats[j], lons[j]) * ROAD_FACTOR;
+                double kmh = km < 3 ? 25 : km < 15 ? 40 : 60;
+                double noise = 1 + 0.15 * (random.nextDouble() * 2 - 1);
+                durations[i][j] = Math.round(STOP_OVERHEAD_SECONDS + km / kmh * 3600 * noise);
+            }
+        }
+        return new SyntheticInstance(List.copyOf(stops), durations, lats, lons);
+    }
+
+    private static double clamp(double value, double min, double max) {
+        return Math.max(min, Math.min(max, value));
+    }
+}
@@ -0,0 +1,44 @@
+package se.brankoov.routing.domain.route;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import se.brankoov.routing.api.route.StopResponse;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 2-opt från närmaste granne-lösningen, på samma instanser som SolverBenchmark.
+ *
+ * 1000 stopp är inte med som standard: varje segmentkostnad slår upp stoppen med indexOf,
+ * så en enda körning tar minuter. Kör den explicit när 2-opt har gjorts om:
+ * ./gradlew jmh -Pjmh.includes=TwoOptBenchmark -Pjmh.params=stops=1000
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class TwoOptBenchmark {
+
+    @Param({"10", "50", "200"})
+    public int stops;
+
+    private SyntheticInstance instance;
+    private List<StopResponse> nearestNeighbourRoute;
+
+    @Setup
+    public void setUp() {
+        instance = SyntheticInstance.stockholm(stops, 42);
+        nearestNeighbourRoute = TspSolver.solveTspNearestNeighbour(instance.stops, instance.durations);
+    }
+
+    @Benchmark
+    public List<StopResponse> twoOpt() {
+        return TspSolver.optimizeTwoOpt(nearestNeighbourRoute, instance.durations, instance.stops);
+    }
+}
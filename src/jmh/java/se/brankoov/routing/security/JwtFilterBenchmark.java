@@ -0,0 +1,95 @@
+package se.brankoov.routing.security;
+
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.io.Decoders;
+import io.jsonwebtoken.security.Keys;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.User;
+import se.brankoov.routing.domain.auth.UserEntity;
+import se.brankoov.routing.domain.auth.UserRepository;
+
+import java.time.Duration;
+import java.util.Base64;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Autentisering per anrop: samma bearer-token om och om igen, som när frontend pollar.
+ *
+ * - legacyParse:   som JwtUtil gjorde förut – nyckeln räknas ut, parsern byggs och signaturen kontrolleras varje gång
+ * - cachedExtract: JwtUtil nu (SHA-256 av tokenet + cache-uppslag)
+ * - filter:        hela JwtRequestFilter inklusive användarcachen
+ *
+ * ./gradlew jmh -Pjmh.includes=JwtFilterBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class JwtFilterBenchmark {
+
+    private static final String SECRET = "mittsuperhemliga_och_valdigt_langa_losenord_for_jwt_signering_2025";
+
+    private JwtUtil jwtUtil;
+    private JwtRequestFilter filter;
+    private String token;
+
+    @Setup
+    public void setUp() {
+        jwtUtil = new JwtUtil(SECRET, 86_400_000, 10_000, Duration.ofMinutes(10));
+        token = jwtUtil.generateToken(new User("anna", "hash", List.of(new SimpleGrantedAuthority("ROLE_USER"))));
+
+        UserEntity anna = new UserEntity("anna", "hash");
+        UserRepository userRepository = mock(UserRepository.class);
+        when(userRepository.findByUsername("anna")).thenReturn(Optional.of(anna));
+        CustomUserDetailsService userDetailsService =
+                new CustomUserDetailsService(userRepository, 10_000, Duration.ofSeconds(60));
+        filter = new JwtRequestFilter(userDetailsService, jwtUtil);
+    }
+
+    @TearDown(Level.Invocation)
+    public void clearContext() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Benchmark
+    public String legacyParse() {
+        byte[] keyBytes = Decoders.BASE64.decode(Base64.getEncoder().encodeToString(SECRET.getBytes()));
+        return Jwts.parserBuilder()
+                .setSigningKey(Keys.hmacShaKeyFor(keyBytes))
+                .build()
+                .parseClaimsJws(token)
+                .getBody()
+                .getSubject();
+    }
+
+    @Benchmark
+    public String cachedExtract() {
+        return jwtUtil.extractUsername(token);
+    }
+
+    @Benchmark
+    public int filter() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/routes/summary");
+        request.addHeader("Authorization", "Bearer " + token);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, new MockFilterChain());
+        return response.getStatus();
+    }
+}
@@ -0,0 +1,57 @@
+package se.brankoov.routing.loadtest;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Enkel --nyckel=värde-parsning för FakeOrsServer och LoadDriver.
+ */
+final class Args {
+
+    private final Map<String, String> values = new HashMap<>();
+
+    Args(String[] args) {
+        for (String arg : args) {
+            if (!arg.startsWith("--")) {
+                throw new IllegalArgumentException("Expected --key=value, got " + arg);
+            }
+            int eq = arg.indexOf('=');
+            if (eq < 0) values.put(arg.substring(2), "true");
+            else values.put(arg.substring(2, eq), arg.substring(eq + 1));
+        }
+    }
+
+    String string(String key, String fallback) {
+        return values.getOrDefault(key, fallback);
+    }
+
+    int integer(String key, int fallback) {
+        String v = values.get(key);
+        return v == null ? fallback : Integer.parseInt(v);
+    }
+
+    long longValue(String key, long fallback) {
+        String v = values.get(key);
+        return v == null ? fallback : Long.parseLong(v);
+    }
+
+    double decimal(String key, double fallback) {
+        String v = values.get(key);
+        return v == null ? fallback : Double.parseDouble(v);
+    }
+
+    // "90s", "5m" eller ISO-8601 ("PT90S")
+    Duration duration(String key, Duration fallback) {
+        String v = values.get(key);
+        if (v == null) return fallback;
+        if (v.startsWith("P") || v.startsWith("p")) return Duration.parse(v);
+        long amount = Long.parseLong(v.substring(0, v.length() - 1));
+        return switch (v.charAt(v.length() - 1)) {
+            case 's' -> Duration.ofSeconds(amount);
+            case 'm' -> Duration.ofMinutes(amount);
+            case 'h' -> Duration.ofHours(amount);
+            default -> throw new IllegalArgumentException("Bad duration for --" + key + ": " + v);
+        };
+    }
+}
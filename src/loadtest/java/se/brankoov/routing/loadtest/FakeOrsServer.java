@@ -0,0 +1,294 @@
+package se.brankoov.routing.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lokal ersättare för de ORS-endpoints som backend använder, för lasttester utan ORS-kvot och nätverk:
+ *
+ * - GET  /geocode/search             träffar nära en punkt som räknas fram ur söktexten
+ * - POST /v2/matrix/driving-car      asymmetrisk körtidsmatris (samma modell som SyntheticInstance i jmh)
+ * - POST /v2/directions/driving-car  en kodad polyline genom punkterna
+ *
+ * Svaren är deterministiska: samma anrop ger alltid samma data. Latens, jitter och fel är slumpade.
+ *
+ *   ./gradlew fakeOrs --args="--port=8090 --geocode-latency-ms=40 --matrix-latency-ms=150 --jitter-ms=30 --error-rate=0.01"
+ *   ORS_API_URL=http://localhost:8090 ./gradlew bootRun
+ */
+public final class FakeOrsServer {
+
+    private static final double FOCUS_LAT = 59.3293;
+    private static final double FOCUS_LON = 18.0686;
+    private static final double ROAD_FACTOR = 1.35;
+    private static final String[] CITIES = {"Stockholm", "Solna", "Sundbyberg", "Nacka", "Huddinge"};
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final int geocodeLatencyMs;
+    private final int matrixLatencyMs;
+    private final double matrixLatencyPerCellMs;
+    private final int directionsLatencyMs;
+    private final int jitterMs;
+    private final double errorRate;
+    private final double notFoundRate;
+
+    private final Map<String, AtomicLong> served = new HashMap<>();
+    private final AtomicLong failed = new AtomicLong();
+
+    private HttpServer server;
+    private ExecutorService executor;
+
+    FakeOrsServer(Args args) {
+        this.geocodeLatencyMs = args.integer("geocode-latency-ms", 40);
+        this.matrixLatencyMs = args.integer("matrix-latency-ms", 150);
+        this.matrixLatencyPerCellMs = args.decimal("matrix-latency-per-cell-ms", 0.05);
+        this.directionsLatencyMs = args.integer("directions-latency-ms", 120);
+        this.jitterMs = args.integer("jitter-ms", 30);
+        this.errorRate = args.decimal("error-rate", 0.0);
+        this.notFoundRate = args.decimal("not-found-rate", 0.02);
+        served.put("geocode", new AtomicLong());
+        served.put("matrix", new AtomicLong());
+        served.put("directions", new AtomicLong());
+    }
+
+    public static void main(String[] argv) throws IOException {
+        Args args = new Args(argv);
+        FakeOrsServer fake = new FakeOrsServer(args);
+        int port = fake.start(args.integer("port", 8090), args.integer("threads", 64));
+        System.out.printf("Fake ORS listening on http://localhost:%d (error rate %.1f %%)%n", port, fake.errorRate * 100);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            fake.stop();
+            System.out.printf("Served geocode=%d matrix=%d directions=%d, injected errors=%d%n",
+                    fake.served.get("geocode").get(), fake.served.get("matrix").get(),
+                    fake.served.get("directions").get(), fake.failed.get());
+        }));
+    }
+
+    int start(int port, int threads) throws IOException {
+        server = HttpServer.create(new InetSocketAddress(port), 512);
+        executor = Executors.newFixedThreadPool(threads);
+        server.setExecutor(executor);
+        server.createContext("/geocode/search", ex -> handle(ex, "geocode", this::geocode));
+        server.createContext("/v2/matrix/driving-car", ex -> handle(ex, "matrix", this::matrix));
+        server.createContext("/v2/directions/driving-car", ex -> handle(ex, "directions", this::directions));
+        server.start();
+        return server.getAddress().getPort();
+    }
+
+    void stop() {
+        if (server != null) server.stop(0);
+        if (executor != null) executor.shutdownNow();
+    }
+
+    private interface Handler {
+        Response apply(HttpExchange exchange) throws IOException;
+    }
+
+    private record Response(JsonNode body, long latencyMs) {}
+
+    private void handle(HttpExchange exchange, String name, Handler handler) throws IOException {
+        try (exchange) {
+            Response response = handler.apply(exchange);
+            sleep(response.latencyMs() + (jitterMs > 0 ? ThreadLocalRandom.current().nextInt(jitterMs + 1) : 0));
+
+            if (errorRate > 0 && ThreadLocalRandom.current().nextDouble() < errorRate) {
+                failed.incrementAndGet();
+                // Som ORS: ibland kvoten, ibland ett rent serverfel
+                int status = ThreadLocalRandom.current().nextBoolean() ? 429 : 503;
+                send(exchange, status, mapper.createObjectNode().put("error", "injected failure"));
+                return;
+            }
+            served.get(name).incrementAndGet();
+            send(exchange, 200, response.body());
+        } catch (RuntimeException e) {
+            send(exchange, 400, mapper.createObjectNode().put("error", String.valueOf(e.getMessage())));
+        }
+    }
+
+    // ===== /geocode/search =====
+
+    private Response geocode(HttpExchange exchange) {
+        Map<String, String> query = query(exchange.getRequestURI().getRawQuery());
+        String text = query.getOrDefault("text", "").trim();
+        int size = Integer.parseInt(query.getOrDefault("size", "10"));
+
+        ObjectNode body = mapper.createObjectNode();
+        ArrayNode features = body.putArray("features");
+        long hash = hash(text.toLowerCase());
+        // En liten, stabil andel adresser finns inte, så att negativ-cachen får något att göra
+        boolean notFound = text.isEmpty() || Math.floorMod(hash, 10_000) < notFoundRate * 10_000;
+        if (!notFound) {
+            double lat = FOCUS_LAT + gaussian(hash) * 0.08;
+            double lon = FOCUS_LON + gaussian(hash * 31 + 7) * 0.16;
+            int hits = Math.min(size, 1 + (int) Math.floorMod(hash >>> 8, 5L));
+            for (int i = 0; i < hits; i++) {
+                ObjectNode feature = features.addObject();
+                feature.putObject("geometry").putArray("coordinates")
+                        .add(round6(lon + i * 0.0007)).add(round6(lat - i * 0.0004));
+                feature.putObject("properties").put("label", capitalize(text) + ", " + CITIES[i] + ", Sverige");
+            }
+        }
+        return new Response(body, geocodeLatencyMs);
+    }
+
+    // ===== /v2/matrix/driving-car =====
+
+    private Response matrix(HttpExchange exchange) throws IOException {
+        JsonNode request = read(exchange);
+        JsonNode locations = request.path("locations");
+        int n = locations.size();
+        if (n < 2) throw new IllegalArgumentException("need at least 2 locations");
+
+        // Samma som ORS: sources/destinations begränsar matrisen till ett utsnitt
+        int[] sources = indices(request.path("sources"), n);
+        int[] destinations = indices(request.path("destinations"), n);
+
+        ObjectNode body = mapper.createObjectNode();
+        ArrayNode rows = body.putArray("durations");
+        for (int i : sources) {
+            ArrayNode row = rows.addArray();
+            for (int j : destinations) {
+                row.add(duration(locations.get(i), locations.get(j)));
+            }
+        }
+        long latency = matrixLatencyMs + Math.round((double) sources.length * destinations.length * matrixLatencyPerCellMs);
+        return new Response(body, latency);
+    }
+
+    private static int[] indices(JsonNode node, int n) {
+        if (!node.isArray()) {
+            int[] all = new int[n];
+            for (int i = 0; i < n; i++) all[i] = i;
+            return all;
+        }
+        int[] picked = new int[node.size()];
+        for (int i = 0; i < picked.length; i++) picked[i] = node.get(i).asInt();
+        return picked;
+    }
+
+    private static double duration(JsonNode from, JsonNode to) {
+        double lon1 = from.get(0).asDouble(), lat1 = from.get(1).asDouble();
+        double lon2 = to.get(0).asDouble(), lat2 = to.get(1).asDouble();
+        if (lon1 == lon2 && lat1 == lat2) return 0;
+        double km = haversineKm(lat1, lon1, lat2, lon2) * ROAD_FACTOR;
+        double kmh = km < 3 ? 25 : km < 15 ? 40 : 60;
+        // Brus per riktning, men samma för samma par varje gång
+        long h = hash(lat1 + "," + lon1 + ">" + lat2 + "," + lon2);
+        double noise = 1 + 0.15 * (Math.floorMod(h, 2001) / 1000.0 - 1);
+        return Math.round(60 + km / kmh * 3600 * noise);
+    }
+
+    // ===== /v2/directions/driving-car =====
+
+    private Response directions(HttpExchange exchange) throws IOException {
+        JsonNode coordinates = read(exchange).path("coordinates");
+        if (coordinates.size() < 2) throw new IllegalArgumentException("need at least 2 coordinates");
+
+        StringBuilder polyline = new StringBuilder();
+        long prevLat = 0, prevLon = 0;
+        for (JsonNode c : coordinates) {
+            long lat = Math.round(c.get(1).asDouble() * 1e5);
+            long lon = Math.round(c.get(0).asDouble() * 1e5);
+            encode(lat - prevLat, polyline);
+            encode(lon - prevLon, polyline);
+            prevLat = lat;
+            prevLon = lon;
+        }
+        ObjectNode body = mapper.createObjectNode();
+        body.putArray("routes").addObject().put("geometry", polyline.toString());
+        return new Response(body, directionsLatencyMs + coordinates.size());
+    }
+
+    // Googles polyline-format, precision 5 – samma som ORS skickar
+    private static void encode(long value, StringBuilder out) {
+        long v = value < 0 ? ~(value << 1) : value << 1;
+        while (v >= 0x20) {
+            out.append((char) ((0x20 | (v & 0x1f)) + 63));
+            v >>= 5;
+        }
+        out.append((char) (v + 63));
+    }
+
+    // ===== Hjälpmetoder =====
+
+    private JsonNode read(HttpExchange exchange) throws IOException {
+        try (InputStream in = exchange.getRequestBody()) {
+            return mapper.readTree(in);
+        }
+    }
+
+    private void send(HttpExchange exchange, int status, JsonNode body) throws IOException {
+        byte[] bytes = mapper.writeValueAsBytes(body);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static Map<String, String> query(String raw) {
+        Map<String, String> params = new HashMap<>();
+        if (raw == null) return params;
+        for (String pair : raw.split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq > 0) {
+                params.put(URLDecoder.decode(pair.substring(0, eq), StandardCharsets.UTF_8),
+                        URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8));
+            }
+        }
+        return params;
+    }
+
+    private static long hash(String s) {
+        long h = 1125899906842597L;
+        for (int i = 0; i < s.length(); i++) h = 31 * h + s.charAt(i);
+        return h ^ (h >>> 29);
+    }
+
+    // Ungefär normalfördelat tal ur en hash (summan av fyra likformiga)
+    private static double gaussian(long seed) {
+        java.util.SplittableRandom r = new java.util.SplittableRandom(seed);
+        return (r.nextDouble() + r.nextDouble() + r.nextDouble() + r.nextDouble() - 2.0) * Math.sqrt(3);
+    }
+
+    private static double haversineKm(double lat1, double lon1, double lat2, double lon2) {
+        double dLat = Math.toRadians(lat2 - lat1);
+        double dLon = Math.toRadians(lon2 - lon1);
+        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2)
+                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2)) * Math.sin(dLon / 2) * Math.sin(dLon / 2);
+        return 6371.0 * 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
+    }
+
+    private static double round6(double v) {
+        return Math.round(v * 1e6) / 1e6;
+    }
+
+    private static String capitalize(String s) {
+        return s.isEmpty() ? s : Character.toUpperCase(s.charAt(0)) + s.substring(1);
+    }
+
+    private static void sleep(long millis) {
+        if (millis <= 0) return;
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package se.brankoov.routing.loadtest;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Samlar svarstider per endpoint och skriver ut genomströmning och percentiler.
+ * Alla mätpunkter sparas (ett lasttest ger några hundra tusen), så percentilerna är exakta.
+ */
+final class LatencyRecorder {
+
+    private static final class Series {
+        private long[] micros = new long[1024];
+        private int size;
+        private int errors;
+
+        synchronized void add(long value, boolean error) {
+            if (size == micros.length) micros = Arrays.copyOf(micros, size * 2);
+            micros[size++] = value;
+            if (error) errors++;
+        }
+
+        synchronized long[] sorted() {
+            long[] copy = Arrays.copyOf(micros, size);
+            Arrays.sort(copy);
+            return copy;
+        }
+
+        synchronized int errors() {
+            return errors;
+        }
+    }
+
+    record Row(String endpoint, int count, int errors, double perSecond,
+               double p50, double p90, double p99, double max) {}
+
+    private final Map<String, Series> series = new ConcurrentHashMap<>();
+
+    void record(String endpoint, long micros, boolean error) {
+        series.computeIfAbsent(endpoint, k -> new Series()).add(micros, error);
+    }
+
+    Map<String, Row> summary(double seconds) {
+        Map<String, Row> rows = new TreeMap<>();
+        series.forEach((endpoint, s) -> {
+            long[] values = s.sorted();
+            if (values.length == 0) return;
+            rows.put(endpoint, new Row(endpoint, values.length, s.errors(), values.length / seconds,
+                    percentile(values, 0.50), percentile(values, 0.90), percentile(values, 0.99),
+                    values[values.length - 1] / 1000.0));
+        });
+        return rows;
+    }
+
+    void print(PrintStream out, double seconds) {
+        out.printf("%-32s %8s %7s %8s %9s %9s %9s %9s%n",
+                "endpoint", "count", "errors", "req/s", "p50 ms", "p90 ms", "p99 ms", "max ms");
+        for (Row r : summary(seconds).values()) {
+            out.printf("%-32s %8d %7d %8.1f %9.1f %9.1f %9.1f %9.1f%n",
+                    r.endpoint(), r.count(), r.errors(), r.perSecond(), r.p50(), r.p90(), r.p99(), r.max());
+        }
+    }
+
+    void writeCsv(Writer out, double seconds) throws IOException {
+        out.write("endpoint,count,errors,req_per_s,p50_ms,p90_ms,p99_ms,max_ms\n");
+        for (Row r : summary(seconds).values()) {
+            out.write(String.format(java.util.Locale.ROOT, "%s,%d,%d,%.2f,%.2f,%.2f,%.2f,%.2f%n",
+                    r.endpoint(), r.count(), r.errors(), r.perSecond(), r.p50(), r.p90(), r.p99(), r.max()));
+        }
+    }
+
+    // Närmaste rang, i millisekunder
+    private static double percentile(long[] sorted, double p) {
+        int index = (int) Math.ceil(p * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, index))] / 1000.0;
+    }
+}
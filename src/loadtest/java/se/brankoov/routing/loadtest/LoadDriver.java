@@ -0,0 +1,298 @@
+package se.brankoov.routing.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Spelar upp trafik som liknar riktiga planerare mot en körande backend och rapporterar
+ * genomströmning och p50/p90/p99 per endpoint.
+ *
+ * Varje virtuell planerare loggar in och växlar sedan mellan:
+ * - planering: skriver adresser tecken för tecken (autocomplete med samma 300 ms debounce som frontend),
+ *   optimerar och sparar oftast rutten
+ * - bläddring: listar sina rutter och öppnar några
+ * - omoptimering: optimerar en rutt där alla stopp redan har koordinater
+ *
+ *   ./gradlew loadTest --args="--target=http://localhost:8080 --users=20 --duration=2m --warmup=15s"
+ *
+ * Kör backend mot FakeOrsServer (ORS_API_URL), annars går kvoten åt. Rate limitern gäller även här –
+ * 429-svar räknas som fel i rapporten.
+ */
+public final class LoadDriver {
+
+    private static final String[] STREETS = {
+            "Drottninggatan", "Götgatan", "Hornsgatan", "Sveavägen", "Odengatan", "Kungsgatan", "Birger Jarlsgatan",
+            "Fleminggatan", "Sankt Eriksgatan", "Ringvägen", "Folkungagatan", "Valhallavägen", "Karlavägen",
+            "Hantverkargatan", "Västmannagatan", "Upplandsgatan", "Torsgatan", "Rörstrandsgatan", "Tegnérgatan",
+            "Skånegatan", "Bondegatan", "Nytorgsgatan", "Åsögatan", "Katarina Bangata", "Lidingövägen",
+            "Solnavägen", "Frösundaleden", "Sundbybergsvägen", "Huddingevägen", "Nynäsvägen"
+    };
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final HttpClient http = HttpClient.newBuilder()
+            .connectTimeout(Duration.ofSeconds(5))
+            .version(HttpClient.Version.HTTP_1_1)
+            .build();
+    private final LatencyRecorder recorder = new LatencyRecorder();
+
+    private final String target;
+    private final double thinkFactor;
+    private final long measureFromNanos;
+    private final long deadlineNanos;
+
+    private LoadDriver(String target, double thinkFactor, long measureFromNanos, long deadlineNanos) {
+        this.target = target.endsWith("/") ? target.substring(0, target.length() - 1) : target;
+        this.thinkFactor = thinkFactor;
+        this.measureFromNanos = measureFromNanos;
+        this.deadlineNanos = deadlineNanos;
+    }
+
+    public static void main(String[] argv) throws Exception {
+        Args args = new Args(argv);
+        int users = args.integer("users", 20);
+        Duration duration = args.duration("duration", Duration.ofMinutes(1));
+        Duration warmup = args.duration("warmup", Duration.ofSeconds(10));
+        Duration rampUp = args.duration("ramp-up", Duration.ofSeconds(5));
+        long seed = args.longValue("seed", 42);
+        String runId = args.string("run-id", Long.toString(System.currentTimeMillis() % 1_000_000, 36));
+
+        long start = System.nanoTime();
+        LoadDriver driver = new LoadDriver(args.string("target", "http://localhost:8080"),
+                args.decimal("think-factor", 1.0),
+                start + warmup.toNanos(),
+                start + warmup.toNanos() + duration.toNanos());
+
+        System.out.printf("%d planners against %s: %ds warm-up, %ds measured%n",
+                users, driver.target, warmup.toSeconds(), duration.toSeconds());
+
+        CountDownLatch done = new CountDownLatch(users);
+        for (int i = 0; i < users; i++) {
+            int n = i;
+            long delay = users > 1 ? rampUp.toMillis() * i / (users - 1) : 0;
+            Thread t = new Thread(() -> {
+                try {
+                    Thread.sleep(delay);
+                    driver.planner("load-" + runId + "-" + n, new Random(seed + n));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (Exception e) {
+                    System.err.printf("Planner %d stopped: %s%n", n, e);
+                } finally {
+                    done.countDown();
+                }
+            }, "planner-" + n);
+            t.setDaemon(true);
+            t.start();
+        }
+        done.await();
+
+        double seconds = duration.toMillis() / 1000.0;
+        System.out.println();
+        driver.recorder.print(System.out, seconds);
+
+        String report = args.string("report", null);
+        if (report != null) {
+            Path path = Path.of(report);
+            if (path.getParent() != null) Files.createDirectories(path.getParent());
+            try (Writer out = Files.newBufferedWriter(path)) {
+                driver.recorder.writeCsv(out, seconds);
+            }
+            System.out.println("Report written to " + path.toAbsolutePath());
+        }
+    }
+
+    // ===== En virtuell planerare =====
+
+    private void planner(String username, Random random) throws Exception {
+        String token = login(username);
+        List<Long> savedIds = new ArrayList<>();
+
+        while (System.nanoTime() < deadlineNanos) {
+            double pick = random.nextDouble();
+            if (pick < 0.5) {
+                plan(token, random, savedIds);
+            } else if (pick < 0.8) {
+                browse(token, random, savedIds);
+            } else {
+                reoptimize(token, random);
+            }
+            think(random, 1000, 4000);
+        }
+    }
+
+    private String login(String username) throws Exception {
+        ObjectNode credentials = MAPPER.createObjectNode().put("username", username).put("password", "loadtest");
+        // Finns användaren redan (omkörning med samma run-id) svarar register 400 – det är ok
+        send("POST /api/auth/register", "POST", "/api/auth/register", null, credentials);
+        JsonNode login = send("POST /api/auth/login", "POST", "/api/auth/login", null, credentials);
+        if (login == null || !login.hasNonNull("token")) {
+            throw new IllegalStateException("Login failed for " + username);
+        }
+        return login.get("token").asText();
+    }
+
+    private void plan(String token, Random random, List<Long> savedIds) throws Exception {
+        String startAddress = address(random);
+        String endAddress = random.nextDouble() < 0.7 ? startAddress : address(random);
+        type(startAddress, random);
+
+        int stopCount = 5 + random.nextInt(21);
+        ArrayNode stops = MAPPER.createArrayNode();
+        for (int i = 0; i < stopCount; i++) {
+            String address = address(random);
+            // Ungefär var tredje adress skrivs in för hand, resten klistras in eller väljs direkt
+            JsonNode chosen = random.nextDouble() < 0.35 ? type(address, random) : null;
+            stops.add(stop(i, address, chosen));
+        }
+
+        JsonNode optimized = optimize(token, startAddress, endAddress, stops);
+        if (optimized == null || random.nextDouble() >= 0.6) return;
+        think(random, 2000, 6000);
+
+        ObjectNode save = MAPPER.createObjectNode()
+                .put("name", "Lasttest " + startAddress)
+                .put("description", stopCount + " stopp")
+                .put("startAddress", startAddress)
+                .put("endAddress", endAddress)
+                .put("geometry", optimized.path("geometry").asText(null))
+                .put("totalDuration", optimized.path("totalDuration").asLong())
+                .put("averageStopDuration", 5);
+        save.set("stops", optimized.path("orderedStops"));
+        JsonNode saved = send("POST /api/routes/save", "POST", "/api/routes/save", token, save);
+        if (saved != null && saved.hasNonNull("id")) {
+            savedIds.add(saved.get("id").asLong());
+        }
+    }
+
+    private void browse(String token, Random random, List<Long> savedIds) throws Exception {
+        JsonNode page = send("GET /api/routes/summary", "GET", "/api/routes/summary?limit=20", token, null);
+        List<Long> ids = new ArrayList<>(savedIds);
+        if (page != null) {
+            page.path("items").forEach(item -> ids.add(item.path("id").asLong()));
+        }
+        int opens = ids.isEmpty() ? 0 : 1 + random.nextInt(2);
+        for (int i = 0; i < opens; i++) {
+            think(random, 500, 2500);
+            send("GET /api/routes/{id}", "GET", "/api/routes/" + ids.get(random.nextInt(ids.size())), token, null);
+        }
+    }
+
+    private void reoptimize(String token, Random random) throws Exception {
+        String startAddress = address(random);
+        ArrayNode stops = MAPPER.createArrayNode();
+        int stopCount = 5 + random.nextInt(21);
+        for (int i = 0; i < stopCount; i++) {
+            ObjectNode located = MAPPER.createObjectNode()
+                    .put("lat", 59.33 + random.nextGaussian() * 0.05)
+                    .put("lng", 18.07 + random.nextGaussian() * 0.1);
+            stops.add(stop(i, address(random), located));
+        }
+        optimize(token, startAddress, startAddress, stops);
+    }
+
+    /**
+     * Skriver en adress som en användare: 80-400 ms mellan tangenterna och ett anrop när det varit
+     * tyst i 300 ms (frontendens debounce) eller när adressen är klar. Returnerar första förslaget.
+     */
+    private JsonNode type(String address, Random random) throws Exception {
+        JsonNode suggestions = null;
+        for (int len = 1; len <= address.length(); len++) {
+            long pause = 80 + random.nextInt(320);
+            boolean fires = len >= 3 && (pause > 300 || len == address.length());
+            if (fires) {
+                String q = URLEncoder.encode(address.substring(0, len), StandardCharsets.UTF_8);
+                suggestions = send("GET /api/geocode/suggest", "GET", "/api/geocode/suggest?q=" + q, null, null);
+            }
+            sleepScaled(pause);
+        }
+        return suggestions != null && suggestions.size() > 0 ? suggestions.get(0) : null;
+    }
+
+    private JsonNode optimize(String token, String start, String end, ArrayNode stops) throws Exception {
+        ObjectNode request = MAPPER.createObjectNode()
+                .put("startAddress", start)
+                .put("endAddress", end)
+                .put("optimize", true);
+        request.set("stops", stops);
+        return send("POST /api/routes/optimize", "POST", "/api/routes/optimize", token, request);
+    }
+
+    private static ObjectNode stop(int index, String address, JsonNode located) {
+        ObjectNode stop = MAPPER.createObjectNode()
+                .put("id", "stop-" + index)
+                .put("label", "Stopp " + (index + 1))
+                .put("address", address);
+        if (located != null && located.has("lat")) {
+            stop.put("latitude", located.get("lat").asDouble());
+            stop.put("longitude", located.get("lng").asDouble());
+        }
+        return stop;
+    }
+
+    private static String address(Random random) {
+        return STREETS[random.nextInt(STREETS.length)] + " " + (1 + random.nextInt(120));
+    }
+
+    // ===== HTTP och mätning =====
+
+    private JsonNode send(String endpoint, String method, String path, String token, JsonNode body) throws Exception {
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(target + path))
+                .timeout(Duration.ofSeconds(60))
+                .header("Accept", "application/json");
+        if (token != null) request.header("Authorization", "Bearer " + token);
+        if (body != null) {
+            request.header("Content-Type", "application/json")
+                    .method(method, HttpRequest.BodyPublishers.ofByteArray(MAPPER.writeValueAsBytes(body)));
+        } else {
+            request.method(method, HttpRequest.BodyPublishers.noBody());
+        }
+
+        long start = System.nanoTime();
+        try {
+            HttpResponse<byte[]> response = http.send(request.build(), HttpResponse.BodyHandlers.ofByteArray());
+            long end = System.nanoTime();
+            boolean error = response.statusCode() >= 400;
+            measure(endpoint, start, end, error);
+            if (error || response.body().length == 0) return null;
+            return MAPPER.readTree(response.body());
+        } catch (IOException e) {
+            measure(endpoint, start, System.nanoTime(), true);
+            return null;
+        }
+    }
+
+    private void measure(String endpoint, long start, long end, boolean error) {
+        // Uppvärmningen och anrop som blir klara efter deadline räknas inte
+        if (start >= measureFromNanos && end <= deadlineNanos) {
+            recorder.record(endpoint, (end - start) / 1000, error);
+        }
+    }
+
+    private void think(Random random, int minMillis, int maxMillis) throws InterruptedException {
+        sleepScaled(minMillis + random.nextInt(maxMillis - minMillis));
+    }
+
+    private void sleepScaled(long millis) throws InterruptedException {
+        long scaled = Math.round(millis * thinkFactor);
+        if (scaled > 0) Thread.sleep(scaled);
+    }
+}
@@ -2,8 +2,10 @@ package se.brankoov.routing;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableScheduling
 public class RoutingBackendApplication {
 
 	public static void main(String[] args) {
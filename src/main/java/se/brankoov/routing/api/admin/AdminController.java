@@ -1,13 +1,29 @@
 package se.brankoov.routing.api.admin;
 
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.validation.Valid;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import se.brankoov.routing.domain.auth.UserEntity;
 import se.brankoov.routing.domain.auth.UserRepository;
+import se.brankoov.routing.domain.geocode.GeocodingService;
+import se.brankoov.routing.domain.route.DispatchPlanningService;
+import se.brankoov.routing.domain.route.RouteDispatchService;
 import se.brankoov.routing.domain.route.RouteOptimizationService; // <--- NY IMPORT
-import se.brankoov.routing.domain.route.entity.RouteEntity;
+import se.brankoov.routing.domain.route.RouteTransferService;
+import se.brankoov.routing.infra.jfr.FlightRecording;
+import se.brankoov.routing.security.UserCacheSync;
 import se.brankoov.routing.domain.route.entity.RouteRepository;
+import se.brankoov.routing.domain.route.entity.RouteSummary;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
 import java.util.List;
 
 @RestController
@@ -17,17 +33,35 @@ public class AdminController {
     private final UserRepository userRepository;
     private final RouteRepository routeRepository;
     private final RouteOptimizationService routeOptimizationService; // <--- NYTT FÄLT
+    private final GeocodingService geocodingService;
+    private final RouteDispatchService routeDispatchService;
+    private final RouteTransferService routeTransferService;
+    private final UserCacheSync userCacheSync;
+    private final FlightRecording flightRecording;
+    private final DispatchPlanningService dispatchPlanningService;
 
     // Uppdaterad konstruktor som tar in service
     public AdminController(UserRepository userRepository,
                            RouteRepository routeRepository,
-                           RouteOptimizationService routeOptimizationService) {
+                           RouteOptimizationService routeOptimizationService,
+                           GeocodingService geocodingService,
+                           RouteDispatchService routeDispatchService,
+                           RouteTransferService routeTransferService,
+                           UserCacheSync userCacheSync,
+                           FlightRecording flightRecording,
+                           DispatchPlanningService dispatchPlanningService) {
         this.userRepository = userRepository;
         this.routeRepository = routeRepository;
         this.routeOptimizationService = routeOptimizationService;
+        this.geocodingService = geocodingService;
+        this.routeDispatchService = routeDispatchService;
+        this.routeTransferService = routeTransferService;
+        this.userCacheSync = userCacheSync;
+        this.flightRecording = flightRecording;
+        this.dispatchPlanningService = dispatchPlanningService;
     }
 
-    // 1. Hämta alla användare
+    // 1. Hämta alla användare (findAll är readOnly, går till läsreplikan om den finns)
     @GetMapping("/users")
     public List<UserEntity> getAllUsers() {
         return userRepository.findAll();
@@ -40,6 +74,8 @@ public class AdminController {
             boolean newState = !user.isEnabled();
             user.setEnabled(newState);
             userRepository.save(user);
+            // Gäller direkt, även på andra instanser – inte först när användarcachen går ut
+            userCacheSync.evict(user.getUsername());
             String status = newState ? "aktiv" : "bannad";
             return ResponseEntity.ok("Användare är nu " + status);
         }).orElse(ResponseEntity.notFound().build());
@@ -47,8 +83,8 @@ public class AdminController {
 
     // 3. Se användares rutter
     @GetMapping("/users/{username}/routes")
-    public List<RouteEntity> getUserRoutes(@PathVariable String username) {
-        return routeRepository.findByOwnerUsername(username);
+    public List<RouteSummary> getUserRoutes(@PathVariable String username) {
+        return routeRepository.findAllSummariesByOwner(username);
     }
 
     // 4. NYTT: Tilldela rutt (Dispatch)
@@ -57,4 +93,69 @@ public class AdminController {
         routeOptimizationService.assignRouteToUser(routeId, username);
         return ResponseEntity.ok().build();
     }
+
+    // 4b. Tilldela många rutter på en gång, t.ex. morgonens utskick. Ett resultat per par.
+    @PostMapping("/routes/dispatch")
+    public List<DispatchResult> dispatchRoutes(@Valid @RequestBody DispatchRequest request) {
+        return routeDispatchService.dispatch(request.assignments());
+    }
+
+    // 4b2. Dela en stor stopplista på flera förare (och spara en rutt per förare om save = true)
+    @PostMapping("/dispatch/plan")
+    public ResponseEntity<DispatchPlanResponse> planDispatch(@Valid @RequestBody DispatchPlanRequest request) {
+        try {
+            return ResponseEntity.ok(dispatchPlanningService.plan(request));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    // 4c. Exportera rutter (alla, eller en ägares). Strömmas direkt till klienten.
+    @GetMapping("/routes/export")
+    public ResponseEntity<StreamingResponseBody> exportRoutes(
+            @RequestParam(defaultValue = "ndjson") String format,
+            @RequestParam(required = false) String owner
+    ) {
+        boolean csv = "csv".equalsIgnoreCase(format);
+        StreamingResponseBody body = out -> {
+            if (csv) routeTransferService.exportCsv(owner, out);
+            else routeTransferService.exportNdjson(owner, out);
+        };
+        return ResponseEntity.ok()
+                .contentType(csv ? new MediaType("text", "csv") : MediaType.APPLICATION_NDJSON)
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        "attachment; filename=\"routes." + (csv ? "csv" : "ndjson") + "\"")
+                .body(body);
+    }
+
+    // 4d. Importera rutter i NDJSON-format (samma som exporten). Läses som en ström, inte som en stor body.
+    @PostMapping(value = "/routes/import", consumes = MediaType.APPLICATION_NDJSON_VALUE)
+    public RouteTransferService.ImportResult importRoutes(HttpServletRequest request) throws IOException {
+        return routeTransferService.importNdjson(request.getInputStream());
+    }
+
+    // 5. Träffstatistik för geokodnings-cachen
+    @GetMapping("/geocode/stats")
+    public GeocodingService.CacheStats geocodeCacheStats() {
+        return geocodingService.cacheStats();
+    }
+
+    // 6. Dumpa JFR-inspelningen (öppnas i JDK Mission Control). Filen tas bort när den skickats.
+    @GetMapping("/jfr/dump")
+    public ResponseEntity<StreamingResponseBody> dumpFlightRecording() throws IOException {
+        Path file = flightRecording.dump();
+        StreamingResponseBody body = out -> {
+            try {
+                Files.copy(file, out);
+            } finally {
+                Files.deleteIfExists(file);
+            }
+        };
+        String name = "routing-" + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss")) + ".jfr";
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                .contentLength(Files.size(file))
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + name + "\"")
+                .body(body);
+    }
 }
\ No newline at end of file
@@ -0,0 +1,34 @@
+package se.brankoov.routing.api.admin;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.PositiveOrZero;
+import jakarta.validation.constraints.Size;
+import se.brankoov.routing.api.route.StopRequest;
+
+import java.util.List;
+
+// En stopplista som ska delas på flera förare. Gränserna gäller per rutt, null/0 = ingen gräns.
+public record DispatchPlanRequest(
+        @NotBlank(message = "startAddress must not be blank")
+        String startAddress,
+
+        @NotBlank(message = "endAddress must not be blank")
+        String endAddress,
+
+        @NotEmpty(message = "stops must not be empty")
+        @Size(max = 10000, message = "At most 10000 stops per plan")
+        @Valid List<StopRequest> stops,
+
+        @NotEmpty(message = "drivers must not be empty")
+        @Size(max = 500, message = "At most 500 drivers per plan")
+        List<@NotBlank String> drivers,
+
+        @PositiveOrZero Integer maxStops,
+        @PositiveOrZero Integer maxDurationMinutes,
+        @PositiveOrZero Integer averageStopDuration, // minuter per stopp, som i SaveRouteRequest
+
+        boolean save,  // true = en sparad rutt per förare med stopp, som direkt syns i förarens lista
+        String name
+) {}
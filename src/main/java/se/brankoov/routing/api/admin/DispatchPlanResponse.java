@@ -0,0 +1,20 @@
+package se.brankoov.routing.api.admin;
+
+import se.brankoov.routing.api.route.StopResponse;
+
+import java.util.List;
+
+// Tider är uppskattningar från fågelvägen (se DispatchPlanner), ORS-tiden räknas när rutten optimeras
+public record DispatchPlanResponse(
+        List<DriverRoute> routes,
+        List<StopResponse> unassigned,   // över gränserna, eller inte geokodbara (utan koordinater)
+        long totalSeconds,
+        long longestRouteSeconds
+) {
+    public record DriverRoute(
+            String driver,
+            List<StopResponse> stops,
+            long estimatedSeconds,
+            Long routeId   // null om planen inte sparades
+    ) {}
+}
@@ -0,0 +1,20 @@
+package se.brankoov.routing.api.admin;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+
+import java.util.List;
+
+public record DispatchRequest(
+        @NotEmpty(message = "Assignments cannot be empty")
+        @Size(max = 1000, message = "At most 1000 assignments per request")
+        @Valid List<Assignment> assignments
+) {
+    public record Assignment(
+            @NotNull Long routeId,
+            @NotBlank String username
+    ) {}
+}
@@ -0,0 +1,11 @@
+package se.brankoov.routing.api.admin;
+
+// Ett resultat per par i DispatchRequest, i samma ordning
+public record DispatchResult(
+        Long routeId,
+        String username,
+        Status status,
+        Long newRouteId   // null om inget skapades
+) {
+    public enum Status { ASSIGNED, ROUTE_NOT_FOUND, USER_NOT_FOUND }
+}
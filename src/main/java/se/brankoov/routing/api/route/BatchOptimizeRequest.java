@@ -0,0 +1,14 @@
+package se.brankoov.routing.api.route;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+
+import java.util.List;
+
+public record BatchOptimizeRequest(
+        @NotEmpty(message = "routes must not be empty")
+        @Size(max = 100, message = "at most 100 routes per batch")
+        @Valid
+        List<RouteOptimizationRequest> routes
+) {}
@@ -0,0 +1,16 @@
+package se.brankoov.routing.api.route;
+
+import java.util.List;
+
+// Ett resultat per rutt i samma ordning som i requesten. En rutt som misslyckas har route = null och ett felmeddelande.
+public record BatchOptimizeResponse(
+        List<Item> results,
+        int succeeded,
+        int failed
+) {
+    public record Item(
+            int index,
+            RouteOptimizationResponse route,
+            String error
+    ) {}
+}
@@ -5,10 +5,13 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.web.bind.annotation.*;
+import se.brankoov.routing.domain.route.BatchOptimizationService;
+import se.brankoov.routing.domain.route.RouteEditService;
 import se.brankoov.routing.domain.route.RouteOptimizationService;
-import se.brankoov.routing.domain.route.entity.RouteEntity;
 import se.brankoov.routing.domain.route.entity.RouteRepository;
+import se.brankoov.routing.domain.route.entity.RouteSummary;
 
 import java.util.List;
 
@@ -20,11 +23,17 @@ public class RouteController {
 
     private final RouteOptimizationService routeService;
     private final RouteRepository routeRepository;
+    private final BatchOptimizationService batchService;
+    private final RouteEditService routeEditService;
 
     // Vi behåller Repository här för att delete-metoden behöver den just nu
-    public RouteController(RouteOptimizationService routeService, RouteRepository routeRepository) {
+    public RouteController(RouteOptimizationService routeService, RouteRepository routeRepository,
+                           BatchOptimizationService batchService,
+                           RouteEditService routeEditService) {
         this.routeService = routeService;
         this.routeRepository = routeRepository;
+        this.batchService = batchService;
+        this.routeEditService = routeEditService;
     }
 
     @PostMapping("/optimize")
@@ -40,21 +49,71 @@ public class RouteController {
                 .body(response);
     }
 
+    // Många rutter på en gång (t.ex. morgonens utskick). Svarar 200 även om enskilda rutter misslyckas.
+    @PostMapping("/optimize/batch")
+    public ResponseEntity<BatchOptimizeResponse> optimizeBatch(
+            @Valid @RequestBody BatchOptimizeRequest request
+    ) {
+        log.info("Received batch optimize request with {} routes", request.routes().size());
+
+        return ResponseEntity.ok(batchService.optimize(request.routes()));
+    }
+
     @PostMapping("/save")
-    public ResponseEntity<RouteEntity> save(@Valid @RequestBody SaveRouteRequest request) {
+    public ResponseEntity<RouteDetailResponse> save(@Valid @RequestBody SaveRouteRequest request) {
         log.info("Saving route: {}", request.name());
 
-        RouteEntity saved = routeService.saveRoute(request);
-
-        return ResponseEntity.ok(saved);
+        try {
+            return ResponseEntity.ok(routeService.saveRoute(request));
+        } catch (ObjectOptimisticLockingFailureException e) {
+            // Någon annan sparade rutten samtidigt – klienten får läsa om den och försöka igen
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        }
     }
 
+    // Alla rutter som sammanfattningar (utan stopp och geometri). /summary pagineras, /{id} ger hela rutten.
     @GetMapping
-    public ResponseEntity<List<RouteEntity>> getMyRoutes() {
+    public ResponseEntity<List<RouteSummary>> getMyRoutes() {
         // HÄR ÄR ÄNDRINGEN: Vi hämtar bara den inloggade användarens rutter via servicen
         return ResponseEntity.ok(routeService.getMyRoutes());
     }
 
+    @GetMapping("/summary")
+    public ResponseEntity<RouteSummaryPage> getMyRouteSummaries(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int limit
+    ) {
+        try {
+            return ResponseEntity.ok(routeService.getMyRouteSummaries(cursor, limit));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    @GetMapping("/{id}")
+    public ResponseEntity<RouteDetailResponse> getRoute(@PathVariable Long id) {
+        return routeService.getRouteDetail(id)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    // Lägg till / ta bort stopp i en sparad rutt utan att optimera om hela (t.ex. en sen order)
+    @PatchMapping("/{id}/stops")
+    public ResponseEntity<RouteDetailResponse> editStops(
+            @PathVariable Long id,
+            @Valid @RequestBody RouteStopEditRequest request
+    ) {
+        try {
+            return routeEditService.editStops(id, request)
+                    .map(ResponseEntity::ok)
+                    .orElse(ResponseEntity.notFound().build());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        } catch (ObjectOptimisticLockingFailureException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        }
+    }
+
     @DeleteMapping("/{id}")
     public ResponseEntity<Void> deleteRoute(@PathVariable Long id) {
         log.info("Deleting route with id: {}", id);
@@ -0,0 +1,19 @@
+package se.brankoov.routing.api.route;
+
+import java.time.Instant;
+import java.util.List;
+
+// Samma form som SavedRoute i frontend, så att "Redigera" och "Starta" kan använda den direkt
+public record RouteDetailResponse(
+        Long id,
+        String name,
+        String description,
+        String startAddress,
+        String endAddress,
+        Instant createdAt,
+        String geometry,
+        Long totalDuration,
+        Integer averageStopDuration,
+        String ownerUsername,
+        List<SavedStopResponse> stops
+) {}
@@ -0,0 +1,19 @@
+package se.brankoov.routing.api.route;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.PositiveOrZero;
+import jakarta.validation.constraints.Size;
+
+import java.util.List;
+
+// Ändringar i en sparad rutt utan att optimera om den. Övriga stopp behåller sin ordning.
+public record RouteStopEditRequest(
+        @Size(max = 50, message = "At most 50 new stops per edit")
+        @Valid List<StopRequest> add,
+
+        @Size(max = 500, message = "At most 500 removals per edit")
+        List<Long> remove,              // id:n från SavedStopResponse
+
+        @PositiveOrZero Integer keepFirst,  // så många stopp från början (redan körda) rörs inte
+        Boolean refreshGeometry             // null = true; false lämnar den gamla linjen
+) {}
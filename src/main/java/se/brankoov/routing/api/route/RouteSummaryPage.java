@@ -0,0 +1,11 @@
+package se.brankoov.routing.api.route;
+
+import se.brankoov.routing.domain.route.entity.RouteSummary;
+
+import java.util.List;
+
+// nextCursor är null när det inte finns fler sidor
+public record RouteSummaryPage(
+        List<RouteSummary> items,
+        String nextCursor
+) {}
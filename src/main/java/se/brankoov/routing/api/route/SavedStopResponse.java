@@ -0,0 +1,11 @@
+package se.brankoov.routing.api.route;
+
+public record SavedStopResponse(
+        Long id,
+        String label,
+        String address,
+        Double latitude,
+        Double longitude,
+        int orderIndex,
+        String comment
+) {}
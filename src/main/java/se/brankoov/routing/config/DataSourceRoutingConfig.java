@@ -0,0 +1,82 @@
+package se.brankoov.routing.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * Läs/skriv-uppdelning på datasource-nivå. Aktiveras bara när app.datasource.replica.url är satt,
+ * annars används Spring Boots vanliga datasource mot primären.
+ *
+ * - spring.datasource.*            primären (skrivningar, och läsningar när replikan ligger efter)
+ * - app.datasource.replica.*       replikan (@Transactional(readOnly = true))
+ * Varsin Hikari-pool, storlek via spring.datasource.hikari.* respektive app.datasource.replica.hikari.*
+ */
+@Configuration
+@ConditionalOnProperty(name = "app.datasource.replica.url")
+public class DataSourceRoutingConfig {
+
+    @Bean
+    @Primary
+    @ConfigurationProperties("spring.datasource")
+    public DataSourceProperties primaryDataSourceProperties() {
+        return new DataSourceProperties();
+    }
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties primaryDataSourceProperties) {
+        return primaryDataSourceProperties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+    }
+
+    @Bean
+    @ConfigurationProperties("app.datasource.replica")
+    public DataSourceProperties replicaDataSourceProperties() {
+        return new DataSourceProperties();
+    }
+
+    @Bean
+    @ConfigurationProperties("app.datasource.replica.hikari")
+    public HikariDataSource replicaDataSource(
+            @Qualifier("replicaDataSourceProperties") DataSourceProperties replicaDataSourceProperties) {
+        HikariDataSource ds = replicaDataSourceProperties.initializeDataSourceBuilder()
+                .type(HikariDataSource.class).build();
+        ds.setReadOnly(true);
+        return ds;
+    }
+
+    @Bean
+    public ReplicaLagMonitor replicaLagMonitor(
+            @Qualifier("replicaDataSource") DataSource replicaDataSource,
+            @Value("${app.datasource.replica.max-lag:PT5S}") Duration maxLag) {
+        ReplicaLagMonitor monitor = new ReplicaLagMonitor(replicaDataSource, maxLag);
+        monitor.check(); // Vet vi direkt vid start om replikan går att använda
+        return monitor;
+    }
+
+    // Det är den här som JPA, Flyway och JdbcTemplate får
+    @Bean
+    @Primary
+    public DataSource dataSource(@Qualifier("primaryDataSource") DataSource primaryDataSource,
+                                 @Qualifier("replicaDataSource") DataSource replicaDataSource,
+                                 ReplicaLagMonitor replicaLagMonitor) {
+        ReadWriteRoutingDataSource routing = new ReadWriteRoutingDataSource(replicaLagMonitor);
+        routing.setTargetDataSources(Map.of(
+                ReadWriteRoutingDataSource.Target.PRIMARY, primaryDataSource,
+                ReadWriteRoutingDataSource.Target.REPLICA, replicaDataSource));
+        routing.setDefaultTargetDataSource(primaryDataSource);
+        routing.afterPropertiesSet();
+        return new LazyConnectionDataSourceProxy(routing);
+    }
+}
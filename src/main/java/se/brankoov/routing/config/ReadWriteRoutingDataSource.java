@@ -0,0 +1,28 @@
+package se.brankoov.routing.config;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Skickar @Transactional(readOnly = true) till replikan och allt annat till primären.
+ * Ligger bakom en LazyConnectionDataSourceProxy (se DataSourceRoutingConfig), så anslutningen
+ * hämtas först vid första SQL-satsen – då är readOnly-flaggan för transaktionen satt.
+ */
+public class ReadWriteRoutingDataSource extends AbstractRoutingDataSource {
+
+    public enum Target { PRIMARY, REPLICA }
+
+    private final ReplicaLagMonitor lagMonitor;
+
+    public ReadWriteRoutingDataSource(ReplicaLagMonitor lagMonitor) {
+        this.lagMonitor = lagMonitor;
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (TransactionSynchronizationManager.isCurrentTransactionReadOnly() && lagMonitor.isReplicaUsable()) {
+            return Target.REPLICA;
+        }
+        return Target.PRIMARY;
+    }
+}
@@ -0,0 +1,71 @@
+package se.brankoov.routing.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+
+/**
+ * Kollar regelbundet hur långt replikan ligger efter primären.
+ * Är den för långt efter, eller går inte att nå, går läsningar till primären tills den har kommit ikapp.
+ */
+public class ReplicaLagMonitor {
+
+    private static final Logger log = LoggerFactory.getLogger(ReplicaLagMonitor.class);
+
+    // 0 om replikan har spelat upp allt den tagit emot, annars tiden sedan senaste uppspelade transaktion.
+    // (Bara replay-tiden vore fel på en lugn primär där inget skrivs.)
+    private static final String LAG_SQL = """
+            select case
+                when not pg_is_in_recovery() then 0
+                when pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() then 0
+                else coalesce(extract(epoch from now() - pg_last_xact_replay_timestamp()), 0)
+            end
+            """;
+
+    private final JdbcTemplate replica;
+    private final Duration maxLag;
+
+    private volatile boolean usable = false;
+    private volatile double lastLagSeconds = -1;
+
+    public ReplicaLagMonitor(DataSource replicaDataSource, Duration maxLag) {
+        this.replica = new JdbcTemplate(replicaDataSource);
+        this.replica.setQueryTimeout(2);
+        this.maxLag = maxLag;
+    }
+
+    public boolean isReplicaUsable() {
+        return usable;
+    }
+
+    public double getLastLagSeconds() {
+        return lastLagSeconds;
+    }
+
+    @Scheduled(fixedDelayString = "${app.datasource.replica.lag-check-interval:PT5S}")
+    public void check() {
+        boolean nowUsable;
+        try {
+            Double lag = replica.queryForObject(LAG_SQL, Double.class);
+            lastLagSeconds = lag == null ? 0 : lag;
+            nowUsable = lastLagSeconds * 1000 <= maxLag.toMillis();
+        } catch (Exception e) {
+            lastLagSeconds = -1;
+            nowUsable = false;
+            if (usable) log.warn("Replica lag check failed: {}", e.getMessage());
+        }
+
+        if (nowUsable != usable) {
+            if (nowUsable) {
+                log.info("Read replica in use (lag {} s)", lastLagSeconds);
+            } else {
+                log.warn("Read replica disabled, lag {} s exceeds {} – reading from primary", lastLagSeconds, maxLag);
+            }
+        }
+        usable = nowUsable;
+    }
+}
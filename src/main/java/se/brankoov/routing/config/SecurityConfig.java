@@ -1,5 +1,7 @@
 package se.brankoov.routing.config;
 
+import jakarta.servlet.DispatcherType;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.authentication.AuthenticationManager;
@@ -13,6 +15,7 @@ import org.springframework.web.cors.CorsConfiguration;
 import org.springframework.web.cors.CorsConfigurationSource;
 import org.springframework.web.cors.UrlBasedCorsConfigurationSource;
 import se.brankoov.routing.security.JwtRequestFilter;
+import se.brankoov.routing.security.RateLimitingFilter;
 
 import java.util.List;
 
@@ -20,10 +23,11 @@ import java.util.List;
 public class SecurityConfig {
 
     private final JwtRequestFilter jwtRequestFilter;
+    private final RateLimitingFilter rateLimitingFilter;
 
-    // Fixad konstruktor: Tar inte längre emot RateLimitingFilter
-    public SecurityConfig(JwtRequestFilter jwtRequestFilter) {
+    public SecurityConfig(JwtRequestFilter jwtRequestFilter, RateLimitingFilter rateLimitingFilter) {
         this.jwtRequestFilter = jwtRequestFilter;
+        this.rateLimitingFilter = rateLimitingFilter;
     }
 
     @Bean
@@ -31,11 +35,15 @@ public class SecurityConfig {
         http
                 .cors(cors -> cors.configurationSource(corsConfigurationSource()))
                 .csrf(csrf -> csrf.disable())
-                // Här fanns RateLimitingFilter tidigare – nu är det borta.
                 .authorizeHttpRequests(auth -> auth
+                        // 0. Avslutet av strömmade svar (t.ex. ruttexport) – själva anropet är redan kontrollerat
+                        .dispatcherTypeMatchers(DispatcherType.ASYNC).permitAll()
+
                         // 1. Öppna endpoints
                         .requestMatchers("/api/auth/**", "/api/health").permitAll()
                         .requestMatchers("/api/geocode/**").permitAll()
+                        // Actuator ligger på management-porten, som bara nås internt
+                        .requestMatchers("/actuator/health/**", "/actuator/prometheus").permitAll()
 
                         // 2. ADMIN-endpoints
                         .requestMatchers("/api/admin/**").hasRole("ADMIN")
@@ -46,11 +54,21 @@ public class SecurityConfig {
                         // 4. Allt annat
                         .anyRequest().authenticated()
                 )
-                .addFilterBefore(jwtRequestFilter, UsernamePasswordAuthenticationFilter.class);
+                .addFilterBefore(jwtRequestFilter, UsernamePasswordAuthenticationFilter.class)
+                // Efter JWT-filtret så att gränsen gäller per inloggad användare och inte bara per IP
+                .addFilterAfter(rateLimitingFilter, JwtRequestFilter.class);
 
         return http.build();
     }
 
+    // Filtret ska bara köras i säkerhetskedjan, inte registreras en gång till som vanligt servlet-filter
+    @Bean
+    public FilterRegistrationBean<RateLimitingFilter> rateLimitingFilterRegistration() {
+        FilterRegistrationBean<RateLimitingFilter> registration = new FilterRegistrationBean<>(rateLimitingFilter);
+        registration.setEnabled(false);
+        return registration;
+    }
+
     @Bean
     public CorsConfigurationSource corsConfigurationSource() {
         CorsConfiguration config = new CorsConfiguration();
@@ -59,7 +77,7 @@ public class SecurityConfig {
                 "https://routing-app.vercel.app",
                 "https://routing-app-green.vercel.app"
         ));
-        config.setAllowedMethods(List.of("GET", "POST", "PUT", "DELETE", "OPTIONS"));
+        config.setAllowedMethods(List.of("GET", "POST", "PUT", "PATCH", "DELETE", "OPTIONS"));
         config.setAllowedHeaders(List.of("Content-Type", "Authorization"));
         config.setAllowCredentials(true);
 
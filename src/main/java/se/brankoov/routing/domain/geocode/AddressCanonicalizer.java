@@ -0,0 +1,104 @@
+package se.brankoov.routing.domain.geocode;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Gör om en svensk adress till en kanonisk cache-nyckel.
+ * "Drottninggatan 5, 111 51 Stockholm", "drottninggatan 5" och "Drottningg. 5"
+ * blir alla "drottninggatan 5".
+ */
+public final class AddressCanonicalizer {
+
+    // Postnummer: "111 51", "11151" eller "SE-111 51"
+    private static final Pattern POSTAL_CODE = Pattern.compile("\\b(?:se-?)?\\d{3}\\s?\\d{2}\\b");
+    private static final Pattern PUNCTUATION = Pattern.compile("[,;:()\"'/\\\\]+");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+    // "5a", "5 a" och "5 A" ska bli samma sak
+    private static final Pattern HOUSE_LETTER = Pattern.compile("\\b(\\d+)\\s+([a-zåäö])\\b");
+
+    // Hela ord som förkortas
+    private static final Map<String, String> WORD_ABBREVIATIONS = Map.ofEntries(
+            Map.entry("g.", "gatan"),
+            Map.entry("gat.", "gatan"),
+            Map.entry("v.", "vägen"),
+            Map.entry("vg.", "vägen"),
+            Map.entry("pl.", "plan"),
+            Map.entry("gr.", "gränd"),
+            Map.entry("st.", "sankt"),
+            Map.entry("n.", "norra"),
+            Map.entry("s.", "södra"),
+            Map.entry("ö.", "östra"),
+            Map.entry("lgh", "lägenhet"),
+            Map.entry("lgh.", "lägenhet")
+    );
+
+    // Sammansatta gatunamn: "drottningg." -> "drottninggatan".
+    // Längsta förkortningen först, annars matchar "g." innan "vg.".
+    private static final String[][] SUFFIX_ABBREVIATIONS = {
+            {"gat.", "gatan"},
+            {"vg.", "vägen"},
+            {"pl.", "plan"},
+            {"gr.", "gränd"},
+            {"g.", "gatan"},
+            {"v.", "vägen"}
+    };
+
+    // Kolon-förkortningar måste tas innan skiljetecknen rensas bort
+    private static final Pattern SANKT = Pattern.compile("\\bs:t\\b");
+    private static final Pattern VASTRA = Pattern.compile("\\bv:a\\b");
+
+    // Ord som inte påverkar var adressen ligger inom vårt serviceområde
+    private static final Set<String> NOISE_TOKENS = Set.of(
+            "stockholm", "sverige", "sweden", "se"
+    );
+
+    private AddressCanonicalizer() {
+        // utility class, no instances
+    }
+
+    public static String canonicalize(String address) {
+        if (address == null) return "";
+
+        String s = Normalizer.normalize(address, Normalizer.Form.NFC)
+                .toLowerCase(Locale.ROOT)
+                .trim();
+
+        s = SANKT.matcher(s).replaceAll("sankt");
+        s = VASTRA.matcher(s).replaceAll("västra");
+        s = POSTAL_CODE.matcher(s).replaceAll(" ");
+        s = PUNCTUATION.matcher(s).replaceAll(" ");
+        s = WHITESPACE.matcher(s).replaceAll(" ").trim();
+
+        List<String> tokens = new ArrayList<>();
+        for (String raw : s.split(" ")) {
+            if (raw.isEmpty()) continue;
+            String token = expand(raw);
+            // Punkter som blev kvar efter förkortningarna ("5." -> "5")
+            token = token.replace(".", "");
+            if (token.isEmpty() || NOISE_TOKENS.contains(token)) continue;
+            tokens.add(token);
+        }
+
+        String joined = String.join(" ", tokens);
+        return HOUSE_LETTER.matcher(joined).replaceAll("$1$2");
+    }
+
+    private static String expand(String token) {
+        String whole = WORD_ABBREVIATIONS.get(token);
+        if (whole != null) return whole;
+
+        for (String[] e : SUFFIX_ABBREVIATIONS) {
+            String abbr = e[0];
+            if (token.length() > abbr.length() + 2 && token.endsWith(abbr)) {
+                return token.substring(0, token.length() - abbr.length()) + e[1];
+            }
+        }
+        return token;
+    }
+}
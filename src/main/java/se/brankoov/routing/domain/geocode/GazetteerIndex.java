@@ -0,0 +1,189 @@
+package se.brankoov.routing.domain.geocode;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Kompakt, oföränderligt adressindex i minnet för serviceområdet.
+ *
+ * Varje adress lagras som ett index i ett antal parallella arrayer (gatu-id, husnummer,
+ * ort-id, postnummer, lat, lon) istället för ett objekt per adress. Gatu- och ortnamn
+ * lagras en gång. Textindexet går från kanoniskt gatunamn till adresserna på gatan,
+ * och träffarna sorteras på avstånd till ServiceArea:s fokuspunkt, precis som ORS gör.
+ */
+public final class GazetteerIndex {
+
+    public static final GazetteerIndex EMPTY = new Builder().build();
+
+    private static final Pattern HOUSE_NUMBER = Pattern.compile("\\d+[a-zåäö]?");
+    private static final int MAX_RESULTS = 10;
+
+    private final String[] streetNames;   // visningsnamn, t.ex. "Drottninggatan"
+    private final String[] cityNames;     // visningsnamn, t.ex. "Solna"
+    private final String[] cityKeys;      // kanoniska ortnamn ("" för Stockholm)
+
+    private final int[] streetIds;
+    private final String[] numbers;       // kanoniskt husnummer, t.ex. "5a"
+    private final int[] cityIds;
+    private final String[] postcodes;
+    private final float[] lats;
+    private final float[] lons;
+
+    // kanoniskt gatunamn -> adress-index, sorterade på avstånd till fokuspunkten
+    private final Map<String, int[]> byStreet;
+
+    private GazetteerIndex(Builder b) {
+        int n = b.lats.size();
+        this.streetNames = b.streetNames.toArray(String[]::new);
+        this.cityNames = b.cityNames.toArray(String[]::new);
+        this.cityKeys = b.cityKeys.toArray(String[]::new);
+        this.streetIds = b.streetIds.stream().mapToInt(Integer::intValue).toArray();
+        this.numbers = b.numbers.toArray(String[]::new);
+        this.cityIds = b.cityIds.stream().mapToInt(Integer::intValue).toArray();
+        this.postcodes = b.postcodes.toArray(String[]::new);
+        this.lats = new float[n];
+        this.lons = new float[n];
+        for (int i = 0; i < n; i++) {
+            lats[i] = b.lats.get(i);
+            lons[i] = b.lons.get(i);
+        }
+
+        Map<String, List<Integer>> grouped = new HashMap<>();
+        for (int i = 0; i < n; i++) {
+            grouped.computeIfAbsent(b.streetKeys.get(streetIds[i]), k -> new ArrayList<>()).add(i);
+        }
+        this.byStreet = new HashMap<>(grouped.size() * 2);
+        grouped.forEach((street, ids) -> byStreet.put(street, ids.stream()
+                .sorted((x, y) -> Double.compare(distanceToFocus(x), distanceToFocus(y)))
+                .mapToInt(Integer::intValue)
+                .toArray()));
+    }
+
+    public int size() {
+        return lats.length;
+    }
+
+    /**
+     * Slår upp en kanonisk nyckel ("drottninggatan 5" eller "storgatan 1 tumba"). Bara adresser med
+     * exakt samma husnummer räknas som träff – en gata utan nummer, eller ett nummer vi inte har,
+     * ger tom lista. Tom lista betyder att vi inte vet – då får cachen och ORS ta över.
+     */
+    public List<GeocodingService.LatLngLabel> lookup(String canonicalKey) {
+        if (canonicalKey == null || canonicalKey.isBlank() || lats.length == 0) return List.of();
+
+        // Dela upp i gata / husnummer / ort
+        String[] tokens = canonicalKey.split(" ");
+        int numberPos = -1;
+        for (int i = 0; i < tokens.length; i++) {
+            if (HOUSE_NUMBER.matcher(tokens[i]).matches()) {
+                numberPos = i;
+                break;
+            }
+        }
+        if (numberPos <= 0) return List.of();
+
+        String street = String.join(" ", Arrays.copyOfRange(tokens, 0, numberPos));
+        String number = tokens[numberPos];
+        String city = String.join(" ", Arrays.copyOfRange(tokens, numberPos + 1, tokens.length));
+
+        int[] candidates = byStreet.get(street);
+        if (candidates == null) return List.of();
+
+        List<GeocodingService.LatLngLabel> results = new ArrayList<>();
+        for (int id : candidates) {
+            if (!numbers[id].equals(number)) continue;
+            if (!city.isEmpty() && !cityKeys[cityIds[id]].equals(city)) continue;
+            results.add(new GeocodingService.LatLngLabel(label(id), lats[id], lons[id]));
+            if (results.size() == MAX_RESULTS) break;
+        }
+        return results;
+    }
+
+    private String label(int id) {
+        StringBuilder sb = new StringBuilder(streetNames[streetIds[id]]).append(' ').append(numbers[id].toUpperCase(Locale.ROOT));
+        String postcode = postcodes[id];
+        String cityName = cityNames[cityIds[id]];
+        if (postcode != null || !cityName.isEmpty()) sb.append(',');
+        if (postcode != null) sb.append(' ').append(postcode);
+        if (!cityName.isEmpty()) sb.append(' ').append(cityName);
+        return sb.toString();
+    }
+
+    private double distanceToFocus(int id) {
+        double dLat = lats[id] - ServiceArea.FOCUS_LAT;
+        // Longitudgrader är kortare på våra breddgrader (cos 59° ≈ 0.5)
+        double dLon = (lons[id] - ServiceArea.FOCUS_LON) * 0.5;
+        return dLat * dLat + dLon * dLon;
+    }
+
+    public static final class Builder {
+
+        private final List<String> streetNames = new ArrayList<>();
+        private final List<String> streetKeys = new ArrayList<>();
+        private final Map<String, Integer> streetIdByKey = new HashMap<>();
+        private final List<String> cityNames = new ArrayList<>();
+        private final List<String> cityKeys = new ArrayList<>();
+        private final Map<String, Integer> cityIdByKey = new HashMap<>();
+
+        private final List<Integer> streetIds = new ArrayList<>();
+        private final List<String> numbers = new ArrayList<>();
+        private final List<Integer> cityIds = new ArrayList<>();
+        private final List<String> postcodes = new ArrayList<>();
+        private final List<Float> lats = new ArrayList<>();
+        private final List<Float> lons = new ArrayList<>();
+        private final Map<String, String> numberPool = new HashMap<>();
+        private final Map<String, String> postcodePool = new HashMap<>();
+
+        /**
+         * Lägger till en adress. Adresser utanför serviceområdet eller utan gata/nummer hoppas över.
+         * @return true om adressen lades till
+         */
+        public boolean add(String street, String number, String city, String postcode, double lat, double lon) {
+            if (street == null || street.isBlank() || number == null || number.isBlank()) return false;
+            if (!ServiceArea.contains(lat, lon)) return false;
+
+            String streetKey = AddressCanonicalizer.canonicalize(street);
+            String numberKey = AddressCanonicalizer.canonicalize(number).replace(" ", "");
+            if (streetKey.isEmpty() || !HOUSE_NUMBER.matcher(numberKey).matches()) return false;
+
+            int streetId = streetIdByKey.computeIfAbsent(streetKey, k -> {
+                streetNames.add(street.trim());
+                streetKeys.add(k);
+                return streetNames.size() - 1;
+            });
+
+            String cityName = city == null ? "" : city.trim();
+            String cityKey = AddressCanonicalizer.canonicalize(cityName);
+            int cityId = cityIdByKey.computeIfAbsent(cityKey, k -> {
+                cityNames.add(cityName);
+                cityKeys.add(k);
+                return cityNames.size() - 1;
+            });
+
+            streetIds.add(streetId);
+            numbers.add(numberPool.computeIfAbsent(numberKey, k -> k));
+            cityIds.add(cityId);
+            postcodes.add(formatPostcode(postcode));
+            lats.add((float) lat);
+            lons.add((float) lon);
+            return true;
+        }
+
+        public GazetteerIndex build() {
+            return new GazetteerIndex(this);
+        }
+
+        // "11151" -> "111 51", så som svenska postnummer skrivs
+        private String formatPostcode(String postcode) {
+            if (postcode == null) return null;
+            String digits = postcode.replaceAll("\\D", "");
+            if (digits.length() != 5) return null;
+            return postcodePool.computeIfAbsent(digits, d -> d.substring(0, 3) + " " + d.substring(3));
+        }
+    }
+}
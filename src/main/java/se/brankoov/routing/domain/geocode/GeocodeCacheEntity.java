@@ -4,6 +4,8 @@ import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.Id;
 import jakarta.persistence.Table;
+import org.hibernate.annotations.ColumnDefault;
+
 import java.time.Instant;
 
 @Entity
@@ -11,11 +13,30 @@ import java.time.Instant;
 public class GeocodeCacheEntity {
 
     @Id
-    private String query; // Söksträngen (alltid lowercase och trimmad)
+    private String query; // Kanonisk söksträng (se AddressCanonicalizer)
+
+    // Träffarna i binärformat (se GeocodeResultCodec). Mappas till bytea i Postgres.
+    private byte[] payload;
 
-    @Column(columnDefinition = "TEXT") // För att få plats med lång JSON
+    // Gamla poster från innan payload fanns. Läses fortfarande, men skrivs inte längre.
+    @Column(columnDefinition = "TEXT")
     private String jsonResponse;
 
+    // Originaltexten som skickades till ORS, behövs när posten ska förnyas
+    private String sourceText;
+
+    // true = ORS svarade men hittade ingenting. Har kortare TTL än vanliga träffar.
+    @Column(nullable = false)
+    @ColumnDefault("false")
+    private boolean negative;
+
+    // Ackumuleras i minnet och skrivs ner av GeocodeCacheMaintenanceJob
+    @Column(nullable = false)
+    @ColumnDefault("0")
+    private long hitCount;
+
+    private Instant lastHitAt;
+
     private Instant updatedAt = Instant.now();
 
     public GeocodeCacheEntity() {}
@@ -25,11 +46,26 @@ public class GeocodeCacheEntity {
         this.jsonResponse = jsonResponse;
     }
 
+    public GeocodeCacheEntity(String query, byte[] payload) {
+        this.query = query;
+        this.payload = payload;
+    }
+
     // Getters & Setters
     public String getQuery() { return query; }
     public void setQuery(String query) { this.query = query; }
+    public byte[] getPayload() { return payload; }
+    public void setPayload(byte[] payload) { this.payload = payload; }
     public String getJsonResponse() { return jsonResponse; }
     public void setJsonResponse(String jsonResponse) { this.jsonResponse = jsonResponse; }
+    public String getSourceText() { return sourceText; }
+    public void setSourceText(String sourceText) { this.sourceText = sourceText; }
+    public boolean isNegative() { return negative; }
+    public void setNegative(boolean negative) { this.negative = negative; }
+    public long getHitCount() { return hitCount; }
+    public void setHitCount(long hitCount) { this.hitCount = hitCount; }
+    public Instant getLastHitAt() { return lastHitAt; }
+    public void setLastHitAt(Instant lastHitAt) { this.lastHitAt = lastHitAt; }
     public Instant getUpdatedAt() { return updatedAt; }
     public void setUpdatedAt(Instant updatedAt) { this.updatedAt = updatedAt; }
-}
\ No newline at end of file
+}
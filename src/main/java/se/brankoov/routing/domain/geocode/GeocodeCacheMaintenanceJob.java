@@ -0,0 +1,136 @@
+package se.brankoov.routing.domain.geocode;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Håller geocode_cache i schack:
+ * 1. skriver ner träffräknare,
+ * 2. förnyar populära poster innan de går ut (refresh-ahead),
+ * 3. tar bort utgångna negativa och kalla poster,
+ * 4. kapar tabellen till max-rows genom att ta bort de kallaste raderna,
+ * 5. bygger om NegativeQueryFilter så att utgångna negativa nycklar släpps igen.
+ *
+ * Dessutom halveras alla träffräknare en gång i veckan (decayHitCounts), så att refresh-ahead,
+ * uppvärmningen och kapningen går efter vad som efterfrågas nu och inte för ett år sedan.
+ */
+@Component
+public class GeocodeCacheMaintenanceJob {
+
+    private static final Logger log = LoggerFactory.getLogger(GeocodeCacheMaintenanceJob.class);
+
+    private static final int DELETE_BATCH = 1000;
+
+    private final GeocodeCacheRepository cacheRepository;
+    private final GeocodingService geocodingService;
+
+    @Value("${geocode.cache.ttl:90d}")
+    private Duration ttl;
+
+    @Value("${geocode.cache.negative-ttl:24h}")
+    private Duration negativeTtl;
+
+    // Hur långt innan utgång en populär post förnyas
+    @Value("${geocode.cache.refresh-ahead:14d}")
+    private Duration refreshAhead;
+
+    @Value("${geocode.cache.refresh-min-hits:5}")
+    private long refreshMinHits;
+
+    // Max antal ORS-anrop per körning, så vi inte bränner kvoten
+    @Value("${geocode.cache.refresh-batch-size:100}")
+    private int refreshBatchSize;
+
+    @Value("${geocode.cache.max-rows:200000}")
+    private long maxRows;
+
+    public GeocodeCacheMaintenanceJob(GeocodeCacheRepository cacheRepository, GeocodingService geocodingService) {
+        this.cacheRepository = cacheRepository;
+        this.geocodingService = geocodingService;
+    }
+
+    @Scheduled(initialDelayString = "${geocode.cache.maintenance-initial-delay:PT5M}",
+            fixedDelayString = "${geocode.cache.maintenance-interval:PT1H}")
+    public void runMaintenance() {
+        try {
+            geocodingService.flushHitCounts();
+            refreshPopularEntries();
+            evictExpired();
+            evictBeyondCap();
+            geocodingService.rebuildNegativeFilter();
+        } catch (Exception e) {
+            log.error("Geocode cache maintenance failed", e);
+        }
+    }
+
+    @Scheduled(cron = "${geocode.cache.hit-decay-cron:0 30 3 * * MON}")
+    public void decayHitCounts() {
+        try {
+            int decayed = cacheRepository.halveHitCounts();
+            log.info("Halved hit counts on {} geocode cache entries", decayed);
+        } catch (Exception e) {
+            log.error("Geocode hit count decay failed", e);
+        }
+    }
+
+    void refreshPopularEntries() {
+        Instant refreshBefore = Instant.now().minus(ttl).plus(refreshAhead);
+        List<GeocodeCacheEntity> candidates = cacheRepository.findRefreshCandidates(
+                refreshBefore, refreshMinHits, PageRequest.of(0, refreshBatchSize));
+
+        int refreshed = 0;
+        for (GeocodeCacheEntity entry : candidates) {
+            if (geocodingService.refresh(entry)) refreshed++;
+        }
+        if (!candidates.isEmpty()) {
+            log.info("Refreshed {}/{} popular geocode cache entries", refreshed, candidates.size());
+        }
+    }
+
+    void evictExpired() {
+        int negatives = cacheRepository.deleteExpiredNegatives(Instant.now().minus(negativeTtl));
+
+        Instant cutoff = Instant.now().minus(ttl);
+        int cold = 0;
+        List<String> keys;
+        do {
+            keys = cacheRepository.findExpiredColdKeys(cutoff, PageRequest.of(0, DELETE_BATCH));
+            delete(keys);
+            cold += keys.size();
+        } while (keys.size() == DELETE_BATCH);
+
+        if (negatives + cold > 0) {
+            log.info("Evicted {} expired negative and {} expired cold geocode cache entries", negatives, cold);
+        }
+    }
+
+    void evictBeyondCap() {
+        long overflow = cacheRepository.count() - maxRows;
+        long evicted = 0;
+        while (overflow > 0) {
+            int batch = (int) Math.min(overflow, DELETE_BATCH);
+            List<String> keys = cacheRepository.findColdestKeys(PageRequest.of(0, batch));
+            if (keys.isEmpty()) break;
+            delete(keys);
+            overflow -= keys.size();
+            evicted += keys.size();
+        }
+        if (evicted > 0) {
+            log.info("Evicted {} cold geocode cache entries to stay under {} rows", evicted, maxRows);
+        }
+    }
+
+    private void delete(List<String> keys) {
+        if (keys.isEmpty()) return;
+        cacheRepository.deleteAllByIdInBatch(keys);
+        geocodingService.onEvicted(keys);
+    }
+}
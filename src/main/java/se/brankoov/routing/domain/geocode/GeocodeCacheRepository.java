@@ -1,7 +1,75 @@
 package se.brankoov.routing.domain.geocode;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.List;
 
 public interface GeocodeCacheRepository extends JpaRepository<GeocodeCacheEntity, String> {
-    // Vi behöver inga extra metoder, findById(query) räcker!
-}
\ No newline at end of file
+
+    // Läsningarna nedan (och findById) är readOnly och går till läsreplikan om en sådan finns
+
+    // Bara nycklarna med riktiga träffar, för att bygga fuzzy-indexet vid uppstart
+    @Transactional(readOnly = true)
+    @Query("select g.query from GeocodeCacheEntity g where g.negative = false")
+    List<String> findAllKeys();
+
+    // Negativa poster som fortfarande gäller, för att bygga NegativeQueryFilter
+    @Transactional(readOnly = true)
+    @Query("select g.query from GeocodeCacheEntity g where g.negative = true and g.updatedAt >= :since")
+    List<String> findNegativeKeysSince(@Param("since") Instant since);
+
+    // De N mest träffade posterna i en enda fråga, för uppvärmning av GeocodeHotCache
+    @Transactional(readOnly = true)
+    @Query("select g from GeocodeCacheEntity g where g.negative = false order by g.hitCount desc")
+    List<GeocodeCacheEntity> findHottest(Pageable page);
+
+    @Transactional
+    @Modifying
+    @Query("update GeocodeCacheEntity g set g.hitCount = g.hitCount + :hits, g.lastHitAt = :now where g.query = :query")
+    int addHits(@Param("query") String query, @Param("hits") long hits, @Param("now") Instant now);
+
+    // Åldrar populariteten: en post som inte efterfrågas längre tappar hälften av sina träffar per varv
+    @Transactional
+    @Modifying
+    @Query("update GeocodeCacheEntity g set g.hitCount = g.hitCount / 2 where g.hitCount > 0")
+    int halveHitCounts();
+
+    // Ny payload och ny TTL för en befintlig post. Rör inte hitCount/lastHitAt, så en förnyad post
+    // behåller sin popularitet (och hamnar inte först i kö för findColdestKeys).
+    @Transactional
+    @Modifying
+    @Query("update GeocodeCacheEntity g set g.payload = :payload, g.jsonResponse = null, " +
+            "g.sourceText = :sourceText, g.negative = :negative, g.updatedAt = :now where g.query = :query")
+    int updatePayload(@Param("query") String query, @Param("payload") byte[] payload,
+                      @Param("sourceText") String sourceText, @Param("negative") boolean negative,
+                      @Param("now") Instant now);
+
+    // Populära poster som snart går ut – förnyas i förväg
+    @Query("select g from GeocodeCacheEntity g " +
+            "where g.negative = false and g.updatedAt < :refreshBefore and g.hitCount >= :minHits " +
+            "order by g.hitCount desc")
+    List<GeocodeCacheEntity> findRefreshCandidates(@Param("refreshBefore") Instant refreshBefore,
+                                                   @Param("minHits") long minHits,
+                                                   Pageable page);
+
+    @Transactional
+    @Modifying
+    @Query("delete from GeocodeCacheEntity g where g.negative = true and g.updatedAt < :cutoff")
+    int deleteExpiredNegatives(@Param("cutoff") Instant cutoff);
+
+    // Utgångna poster som ingen har frågat efter sedan de gick ut
+    @Query("select g.query from GeocodeCacheEntity g " +
+            "where g.negative = false and g.updatedAt < :cutoff " +
+            "and (g.lastHitAt is null or g.lastHitAt < :cutoff)")
+    List<String> findExpiredColdKeys(@Param("cutoff") Instant cutoff, Pageable page);
+
+    // Kallaste först: aldrig träffade, sedan äldst senaste träff
+    @Query("select g.query from GeocodeCacheEntity g order by g.lastHitAt asc nulls first, g.updatedAt asc")
+    List<String> findColdestKeys(Pageable page);
+}
@@ -0,0 +1,50 @@
+package se.brankoov.routing.domain.geocode;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * De mest använda geokodningsträffarna, redan avkodade, i minnet.
+ * Fylls i ett svep vid uppstart (se GeocodingService.warmUp) och sedan vid varje DB-träff.
+ */
+@Component
+public class GeocodeHotCache {
+
+    public record Entry(List<GeocodingService.LatLngLabel> results, Instant updatedAt) {}
+
+    private final Cache<String, Entry> cache;
+    private final int maxSize;
+
+    public GeocodeHotCache(@Value("${geocode.cache.hot-size:10000}") int maxSize) {
+        this.maxSize = maxSize;
+        this.cache = CacheBuilder.newBuilder()
+                .maximumSize(maxSize)
+                .build();
+    }
+
+    public Entry get(String key) {
+        return cache.getIfPresent(key);
+    }
+
+    public void put(String key, List<GeocodingService.LatLngLabel> results, Instant updatedAt) {
+        cache.put(key, new Entry(List.copyOf(results), updatedAt));
+    }
+
+    public void invalidate(Collection<String> keys) {
+        cache.invalidateAll(keys);
+    }
+
+    public int maxSize() {
+        return maxSize;
+    }
+
+    public long size() {
+        return cache.size();
+    }
+}
@@ -0,0 +1,117 @@
+package se.brankoov.routing.domain.geocode;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Trigram-index över de kanoniska nycklar som finns i geocode_cache.
+ * Används när det inte finns någon exakt träff, t.ex. "drotninggatan 5" (stavfel)
+ * som ska kunna återanvända cachen för "drottninggatan 5".
+ */
+@Component
+public class GeocodeKeyIndex {
+
+    private static final Pattern NUMBERS = Pattern.compile("\\d+[a-zåäö]?");
+
+    // trigram -> alla nycklar som innehåller det
+    private final Map<String, Set<String>> postings = new ConcurrentHashMap<>();
+    private final Set<String> keys = ConcurrentHashMap.newKeySet();
+
+    private final double minSimilarity;
+
+    public GeocodeKeyIndex(@Value("${geocode.fuzzy.min-similarity:0.8}") double minSimilarity) {
+        this.minSimilarity = minSimilarity;
+    }
+
+    public void add(String key) {
+        if (key == null || key.isBlank() || !keys.add(key)) return;
+        for (String t : trigrams(key)) {
+            postings.computeIfAbsent(t, k -> ConcurrentHashMap.newKeySet()).add(key);
+        }
+    }
+
+    public void remove(String key) {
+        if (key == null || !keys.remove(key)) return;
+        for (String t : trigrams(key)) {
+            Set<String> set = postings.get(t);
+            if (set != null) {
+                set.remove(key);
+                if (set.isEmpty()) postings.remove(t, set);
+            }
+        }
+    }
+
+    public boolean contains(String key) {
+        return keys.contains(key);
+    }
+
+    public int size() {
+        return keys.size();
+    }
+
+    /**
+     * Hittar den mest lika nyckeln (Jaccard-likhet på trigram) över tröskeln.
+     * Husnummer måste vara exakt lika – "storgatan 5" får aldrig matcha "storgatan 6".
+     */
+    public Optional<String> findClosest(String key) {
+        if (key == null || key.isBlank() || keys.isEmpty()) return Optional.empty();
+
+        Set<String> queryTrigrams = trigrams(key);
+        Map<String, Integer> shared = new HashMap<>();
+        for (String t : queryTrigrams) {
+            Set<String> candidates = postings.get(t);
+            if (candidates == null) continue;
+            for (String c : candidates) {
+                shared.merge(c, 1, Integer::sum);
+            }
+        }
+
+        List<String> queryNumbers = numbers(key);
+        // Jaccard >= s kräver minst s * |query| gemensamma trigram, så vi slipper räkna på resten
+        int minShared = (int) Math.ceil(minSimilarity * queryTrigrams.size());
+        String best = null;
+        double bestScore = minSimilarity;
+
+        for (Map.Entry<String, Integer> e : shared.entrySet()) {
+            int intersection = e.getValue();
+            if (intersection < minShared) continue;
+
+            String candidate = e.getKey();
+            int candidateSize = trigrams(candidate).size();
+            double score = (double) intersection / (queryTrigrams.size() + candidateSize - intersection);
+
+            if (score >= bestScore && queryNumbers.equals(numbers(candidate))) {
+                bestScore = score;
+                best = candidate;
+            }
+        }
+        return Optional.ofNullable(best);
+    }
+
+    static Set<String> trigrams(String key) {
+        String padded = "  " + key + " ";
+        Set<String> result = new HashSet<>();
+        for (int i = 0; i + 3 <= padded.length(); i++) {
+            result.add(padded.substring(i, i + 3));
+        }
+        return result;
+    }
+
+    private static List<String> numbers(String key) {
+        Matcher m = NUMBERS.matcher(key);
+        List<String> result = new ArrayList<>();
+        while (m.find()) result.add(m.group());
+        return result;
+    }
+}
@@ -0,0 +1,46 @@
+package se.brankoov.routing.domain.geocode;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.stereotype.Component;
+
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Exponerar GeocodingService:s träffräknare som mätvärden, så att träff/miss per cache-nivå
+ * syns i /actuator/prometheus bredvid tiderna för routing.stage{stage=geocode}.
+ * Räknarna läses bara när registret skrapas – inget extra arbete per uppslag.
+ */
+@Component
+public class GeocodeMetrics implements MeterBinder {
+
+    private final GeocodingService geocodingService;
+    private final GeocodeHotCache hotCache;
+
+    public GeocodeMetrics(GeocodingService geocodingService, GeocodeHotCache hotCache) {
+        this.geocodingService = geocodingService;
+        this.hotCache = hotCache;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        lookups(registry, "gazetteer", s -> s.gazetteerHits());
+        lookups(registry, "exact", s -> s.exactHits());
+        lookups(registry, "fuzzy", s -> s.fuzzyHits());
+        lookups(registry, "negative", s -> s.negativeHits());
+        lookups(registry, "miss", s -> s.misses());
+
+        Gauge.builder("geocode.hot_cache.size", hotCache, GeocodeHotCache::size)
+                .description("Entries in the in-memory geocode cache")
+                .register(registry);
+    }
+
+    private void lookups(MeterRegistry registry, String result, ToDoubleFunction<GeocodingService.CacheStats> count) {
+        FunctionCounter.builder("geocode.lookups", geocodingService, g -> count.applyAsDouble(g.cacheStats()))
+                .tag("result", result)
+                .description("Geocode lookups by the cache level that answered them (miss = ORS)")
+                .register(registry);
+    }
+}
@@ -0,0 +1,66 @@
+package se.brankoov.routing.domain.geocode;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Kompakt binärformat för geokodningsträffar i geocode_cache.payload.
+ *
+ * Format (version 1):
+ *   byte    version
+ *   short   antal träffar
+ *   per träff: int lat*1e6, int lng*1e6, UTF-8 label (DataOutput.writeUTF)
+ *
+ * Mikrograder ger ca 0.1 m upplösning, vilket räcker gott. En typisk träff tar
+ * ca 50 byte mot ca 80 byte som JSON, och avkodningen behöver ingen Jackson.
+ */
+public final class GeocodeResultCodec {
+
+    private static final byte VERSION = 1;
+    private static final double SCALE = 1_000_000.0;
+
+    private GeocodeResultCodec() {
+        // utility class, no instances
+    }
+
+    public static byte[] encode(List<GeocodingService.LatLngLabel> results) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(16 + results.size() * 64);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(VERSION);
+            out.writeShort(results.size());
+            for (GeocodingService.LatLngLabel r : results) {
+                out.writeInt((int) Math.round(r.lat() * SCALE));
+                out.writeInt((int) Math.round(r.lng() * SCALE));
+                out.writeUTF(r.label());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    public static List<GeocodingService.LatLngLabel> decode(byte[] payload) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload))) {
+            byte version = in.readByte();
+            if (version != VERSION) {
+                throw new IllegalArgumentException("Unknown geocode payload version: " + version);
+            }
+            int count = in.readUnsignedShort();
+            List<GeocodingService.LatLngLabel> results = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                double lat = in.readInt() / SCALE;
+                double lng = in.readInt() / SCALE;
+                results.add(new GeocodingService.LatLngLabel(in.readUTF(), lat, lng));
+            }
+            return results;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
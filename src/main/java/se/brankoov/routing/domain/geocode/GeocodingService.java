@@ -5,11 +5,19 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.function.client.WebClient;
 import reactor.core.publisher.Mono;
 
+import java.time.Duration;
+import java.time.Instant;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 @Service
 public class GeocodingService {
@@ -19,26 +27,95 @@ public class GeocodingService {
     private final WebClient orsWebClient;
     private final GeocodeCacheRepository cacheRepository; // <--- NYTT
     private final ObjectMapper objectMapper;              // <--- NYTT (För JSON)
+    private final GeocodeKeyIndex keyIndex;
+    private final NegativeQueryFilter negativeFilter;
+    private final OfflineGazetteer gazetteer;
+    private final GeocodeHotCache hotCache;
 
-    // --- KONFIGURATION FÖR STOCKHOLM ---
-    private static final String FOCUS_LAT = "59.3293";
-    private static final String FOCUS_LON = "18.0686";
-    private static final String MIN_LON = "17.50";
-    private static final String MIN_LAT = "59.00";
-    private static final String MAX_LON = "18.60";
-    private static final String MAX_LAT = "59.60";
-    // -----------------------------------
+    // Räknare så att vi kan se hur bra cachen faktiskt träffar
+    private final AtomicLong gazetteerHits = new AtomicLong();
+    private final AtomicLong exactHits = new AtomicLong();
+    private final AtomicLong canonicalizedHits = new AtomicLong();
+    private final AtomicLong fuzzyHits = new AtomicLong();
+    private final AtomicLong negativeHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    // Träffar som ännu inte skrivits till databasen (nyckel -> antal). merge och remove är atomära
+    // per nyckel, så en träff hamnar antingen i den här flushen eller i nästa – aldrig ingenstans.
+    private final Map<String, Long> pendingHits = new ConcurrentHashMap<>();
+
+    // Hur länge en träff respektive ett "hittades inte" litas på
+    @Value("${geocode.cache.ttl:90d}")
+    private Duration ttl = Duration.ofDays(90);
+
+    @Value("${geocode.cache.negative-ttl:24h}")
+    private Duration negativeTtl = Duration.ofHours(24);
 
     public record LatLng(double lat, double lng) {}
     public record LatLngLabel(String label, double lat, double lng) {}
 
+    /**
+     * canonicalizedHits = exakta träffar som den gamla trim+lowercase-nyckeln hade missat.
+     */
+    public record CacheStats(long gazetteerHits, long exactHits, long canonicalizedHits, long fuzzyHits,
+                             long negativeHits, long misses, double hitRate) {}
+
     // Uppdaterad konstruktor
     public GeocodingService(@Qualifier("orsWebClient") WebClient orsWebClient,
                             GeocodeCacheRepository cacheRepository,
-                            ObjectMapper objectMapper) {
+                            ObjectMapper objectMapper,
+                            GeocodeKeyIndex keyIndex,
+                            NegativeQueryFilter negativeFilter,
+                            OfflineGazetteer gazetteer,
+                            GeocodeHotCache hotCache) {
         this.orsWebClient = orsWebClient;
         this.cacheRepository = cacheRepository;
         this.objectMapper = objectMapper;
+        this.keyIndex = keyIndex;
+        this.negativeFilter = negativeFilter;
+        this.gazetteer = gazetteer;
+        this.hotCache = hotCache;
+    }
+
+    /**
+     * Bygger trigram-indexet och negativ-filtret från det som redan finns i databasen,
+     * och värmer upp minnescachen så att första anropen efter en deploy inte går mot DB.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadKeyIndex() {
+        cacheRepository.findAllKeys().forEach(keyIndex::add);
+        log.info("Geocode key index loaded with {} keys", keyIndex.size());
+        rebuildNegativeFilter();
+        warmUp();
+    }
+
+    public void warmUp() {
+        long start = System.nanoTime();
+        List<GeocodeCacheEntity> hottest = cacheRepository.findHottest(PageRequest.of(0, hotCache.maxSize()));
+        for (GeocodeCacheEntity entry : hottest) {
+            List<LatLngLabel> results = parse(entry);
+            if (!results.isEmpty()) {
+                hotCache.put(entry.getQuery(), results, entry.getUpdatedAt());
+            }
+        }
+        log.info("Geocode hot cache warmed with {} entries in {} ms",
+                hotCache.size(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * Negativa poster som gått ut ska inte längre stoppas, så filtret byggs om från scratch.
+     */
+    public void rebuildNegativeFilter() {
+        negativeFilter.rebuild(cacheRepository.findNegativeKeysSince(Instant.now().minus(negativeTtl)));
+        log.info("Negative geocode filter rebuilt with ~{} keys", negativeFilter.approximateSize());
+    }
+
+    public CacheStats cacheStats() {
+        long hits = gazetteerHits.get() + exactHits.get() + fuzzyHits.get() + negativeHits.get();
+        long total = hits + misses.get();
+        double hitRate = total == 0 ? 0.0 : (double) hits / total;
+        return new CacheStats(gazetteerHits.get(), exactHits.get(), canonicalizedHits.get(), fuzzyHits.get(),
+                negativeHits.get(), misses.get(), hitRate);
     }
 
     /**
@@ -62,68 +139,216 @@ public class GeocodingService {
         if (query == null || query.isBlank()) return List.of();
 
         String normalizedKey = normalize(query);
+        Instant now = Instant.now();
+
+        // 0. Offline-registret för Stockholm – inget nätverk alls
+        List<LatLngLabel> offline = gazetteer.lookup(normalizedKey);
+        if (!offline.isEmpty()) {
+            gazetteerHits.incrementAndGet();
+            return offline;
+        }
+
+        // 0b. Redan avkodad i minnet?
+        GeocodeHotCache.Entry hot = hotCache.get(normalizedKey);
+        if (hot != null && hot.updatedAt() != null && hot.updatedAt().isAfter(now.minus(ttl))) {
+            exactHits.incrementAndGet();
+            recordHit(normalizedKey);
+            return hot.results();
+        }
+
+        // 0c. Känt skräp – svara direkt utan databasen. Nycklar med en riktig träff i cachen går förbi,
+        //     så en falsk positiv i filtret kan aldrig stoppa en adress vi redan vet finns.
+        if (!keyIndex.contains(normalizedKey) && negativeFilter.mightBeUnresolvable(normalizedKey)) {
+            negativeHits.incrementAndGet();
+            recordHit(normalizedKey);
+            return List.of();
+        }
 
-        // 1. KOLLA DATABASEN
+        // 1. KOLLA DATABASEN (exakt nyckel)
+        List<LatLngLabel> stale = null;
         Optional<GeocodeCacheEntity> cached = cacheRepository.findById(normalizedKey);
         if (cached.isPresent()) {
-            try {
-                // Omvandla JSON-strängen tillbaka till en Java-lista
-                List<LatLngLabel> cachedResults = objectMapper.readValue(
-                        cached.get().getJsonResponse(),
-                        new TypeReference<List<LatLngLabel>>() {}
-                );
-
-                // FIX: Om cachen returnerar en tom lista, lita inte på den.
-                // Det kan ha varit ett tillfälligt API-fel när den sparades.
-                if (cachedResults != null && !cachedResults.isEmpty()) {
-                    return cachedResults;
-                } else {
-                    log.info("Cached result for '{}' was empty. Retrying API to fix it.", normalizedKey);
+            GeocodeCacheEntity entry = cached.get();
+            if (entry.isNegative()) {
+                // ORS har redan sagt att adressen inte finns – fråga inte igen förrän negativ-TTL gått ut
+                if (isFresh(entry, negativeTtl, now)) {
+                    negativeHits.incrementAndGet();
+                    recordHit(normalizedKey);
+                    negativeFilter.confirm(normalizedKey);
+                    return List.of();
                 }
+            } else {
+                List<LatLngLabel> cachedResults = parse(entry);
+                if (!cachedResults.isEmpty()) {
+                    if (isFresh(entry, ttl, now)) {
+                        exactHits.incrementAndGet();
+                        if (!normalizedKey.equals(query.trim().toLowerCase(Locale.ROOT))) {
+                            canonicalizedHits.incrementAndGet();
+                        }
+                        recordHit(normalizedKey);
+                        hotCache.put(normalizedKey, cachedResults, entry.getUpdatedAt());
+                        return cachedResults;
+                    }
+                    // Utgången post: hämta nytt, men använd den gamla om ORS inte svarar
+                    stale = cachedResults;
+                }
+            }
+        }
 
-            } catch (Exception e) {
-                log.error("Failed to parse cached JSON for key: {}", normalizedKey, e);
-                // Om datan är trasig, fortsätt och hämta nytt från API
+        // 1b. Ingen exakt träff – testa närmaste nyckel i trigram-indexet
+        if (stale == null) {
+            Optional<String> closest = keyIndex.findClosest(normalizedKey);
+            if (closest.isPresent()) {
+                Optional<List<LatLngLabel>> fuzzy = readFresh(closest.get(), now);
+                if (fuzzy.isPresent()) {
+                    log.debug("Fuzzy geocode cache hit '{}' -> '{}'", normalizedKey, closest.get());
+                    fuzzyHits.incrementAndGet();
+                    recordHit(closest.get());
+                    return fuzzy.get();
+                }
             }
         }
+        misses.incrementAndGet();
 
-        // 2. ANROPA API (Körs nu även om cachen fanns men var tom)
+        // 2. ANROPA API
         List<LatLngLabel> freshResults = callOrsApi(query);
+        if (freshResults == null) {
+            // API-fel: cacha inte (annars sparar vi ett avbrott som "finns inte")
+            return stale != null ? stale : List.of();
+        }
+        if (freshResults.isEmpty() && stale != null) {
+            return stale;
+        }
 
-        // 3. SPARA TILL DATABASEN
+        // 3. SPARA TILL DATABASEN (tomt svar sparas som negativ post)
+        store(normalizedKey, query, freshResults);
+        return freshResults;
+    }
+
+    /**
+     * Hämtar om en populär post innan den går ut. Används av GeocodeCacheMaintenanceJob.
+     * Returnerar false om ORS inte gav något – då behåller vi den gamla datan.
+     */
+    public boolean refresh(GeocodeCacheEntity entry) {
+        String text = entry.getSourceText() != null ? entry.getSourceText() : entry.getQuery();
+        List<LatLngLabel> freshResults = callOrsApi(text);
+        if (freshResults == null || freshResults.isEmpty()) {
+            return false;
+        }
+        store(entry.getQuery(), text, freshResults);
+        return true;
+    }
+
+    /**
+     * Skriver ner ackumulerade träffar (en UPDATE per nyckel istället för en per anrop).
+     */
+    public void flushHitCounts() {
+        Instant now = Instant.now();
+        for (String key : pendingHits.keySet()) {
+            Long hits = pendingHits.remove(key);
+            if (hits != null) {
+                cacheRepository.addHits(key, hits, now);
+            }
+        }
+    }
+
+    public void onEvicted(Collection<String> keys) {
+        keys.forEach(keyIndex::remove);
+        hotCache.invalidate(keys);
+    }
+
+    private void recordHit(String key) {
+        pendingHits.merge(key, 1L, Long::sum);
+    }
+
+    private void store(String key, String sourceText, List<LatLngLabel> results) {
         try {
-            // Gör om listan till en JSON-sträng
-            String json = objectMapper.writeValueAsString(freshResults);
+            byte[] payload = GeocodeResultCodec.encode(results);
+            Instant now = Instant.now();
 
-            // Spara (överskriver om den fanns men var trasig/tom)
-            cacheRepository.save(new GeocodeCacheEntity(normalizedKey, json));
+            // Finns posten redan uppdateras den på plats, så att träffräknaren följer med
+            if (cacheRepository.updatePayload(key, payload, sourceText, results.isEmpty(), now) == 0) {
+                GeocodeCacheEntity entity = new GeocodeCacheEntity(key, payload);
+                entity.setSourceText(sourceText);
+                entity.setNegative(results.isEmpty());
+                entity.setUpdatedAt(now);
+                cacheRepository.save(entity);
+            }
+            if (results.isEmpty()) {
+                negativeFilter.confirm(key);
+            } else {
+                keyIndex.add(key);
+                hotCache.put(key, results, now);
+            }
 
         } catch (Exception e) {
             log.error("Failed to cache geocoding result", e);
         }
+    }
 
-        return freshResults;
+    private static boolean isFresh(GeocodeCacheEntity entry, Duration maxAge, Instant now) {
+        return entry.getUpdatedAt() != null && entry.getUpdatedAt().isAfter(now.minus(maxAge));
+    }
+
+    /**
+     * Läser en färsk, icke-tom cache-post.
+     */
+    private Optional<List<LatLngLabel>> readFresh(String key, Instant now) {
+        Optional<GeocodeCacheEntity> cached = cacheRepository.findById(key);
+        if (cached.isEmpty() || cached.get().isNegative() || !isFresh(cached.get(), ttl, now)) {
+            return Optional.empty();
+        }
+        List<LatLngLabel> results = parse(cached.get());
+        return results.isEmpty() ? Optional.empty() : Optional.of(results);
+    }
+
+    private List<LatLngLabel> parse(GeocodeCacheEntity entry) {
+        try {
+            if (entry.getPayload() != null) {
+                return GeocodeResultCodec.decode(entry.getPayload());
+            }
+            if (entry.getJsonResponse() == null) {
+                return List.of();
+            }
+            // Gammal post: omvandla JSON-strängen tillbaka till en Java-lista
+            List<LatLngLabel> results = objectMapper.readValue(
+                    entry.getJsonResponse(),
+                    new TypeReference<List<LatLngLabel>>() {}
+            );
+            return results != null ? results : List.of();
+        } catch (Exception e) {
+            // Om datan är trasig räknas den som miss och hämtas nytt från API
+            log.error("Failed to parse cached result for key: {}", entry.getQuery(), e);
+            return List.of();
+        }
     }
 
-    // Flyttade ut själva API-anropet hit för renare kod
+    // Flyttade ut själva API-anropet hit för renare kod.
+    // Returnerar null om anropet misslyckades.
     private List<LatLngLabel> callOrsApi(String query) {
         OrsGeocodeResponse res = orsWebClient.get()
                 .uri(uri -> uri.path("/geocode/search")
                         .queryParam("text", query)
                         .queryParam("size", 10)
-                        .queryParam("boundary.rect.min_lon", MIN_LON)
-                        .queryParam("boundary.rect.min_lat", MIN_LAT)
-                        .queryParam("boundary.rect.max_lon", MAX_LON)
-                        .queryParam("boundary.rect.max_lat", MAX_LAT)
-                        .queryParam("focus.point.lat", FOCUS_LAT)
-                        .queryParam("focus.point.lon", FOCUS_LON)
+                        // Begränsa till Stockholm (se ServiceArea)
+                        .queryParam("boundary.rect.min_lon", ServiceArea.MIN_LON)
+                        .queryParam("boundary.rect.min_lat", ServiceArea.MIN_LAT)
+                        .queryParam("boundary.rect.max_lon", ServiceArea.MAX_LON)
+                        .queryParam("boundary.rect.max_lat", ServiceArea.MAX_LAT)
+                        .queryParam("focus.point.lat", ServiceArea.FOCUS_LAT)
+                        .queryParam("focus.point.lon", ServiceArea.FOCUS_LON)
                         .build())
                 .retrieve()
                 .bodyToMono(OrsGeocodeResponse.class)
-                .onErrorResume(e -> Mono.empty())
+                .onErrorResume(e -> {
+                    log.warn("ORS geocode failed for '{}': {}", query, e.getMessage());
+                    return Mono.empty();
+                })
                 .block();
 
-        if (res == null || res.features == null) return List.of();
+        // null = vi fick inget svar alls, tom lista = ORS hittade ingenting
+        if (res == null) return null;
+        if (res.features == null) return List.of();
 
         return Arrays.stream(res.features)
                 .filter(f -> f.geometry != null
@@ -141,7 +366,9 @@ public class GeocodingService {
     }
 
     private String normalize(String query) {
-        return query.trim().toLowerCase(Locale.ROOT);
+        String key = AddressCanonicalizer.canonicalize(query);
+        // T.ex. bara "Stockholm" blir tomt efter kanoniseringen
+        return key.isEmpty() ? query.trim().toLowerCase(Locale.ROOT) : key;
     }
 
     // ===== DTOs =====
@@ -0,0 +1,222 @@
+package se.brankoov.routing.domain.geocode;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Första nivån i geokodningen: ett adressregister för Stockholm i minnet, utan nätverk.
+ *
+ * Läser en öppen adressfil (t.ex. OpenAddresses-export) vid uppstart:
+ * - CSV med kolumnerna LON, LAT, NUMBER, STREET, CITY, POSTCODE (övriga ignoreras)
+ * - GeoJSON, antingen en FeatureCollection eller en Feature per rad,
+ *   med properties number/street/city/postcode och en Point-geometri.
+ * Filer som slutar på .gz packas upp i farten.
+ *
+ * Är geocode.gazetteer.path tom används bara ORS, precis som förut.
+ */
+@Component
+public class OfflineGazetteer {
+
+    private static final Logger log = LoggerFactory.getLogger(OfflineGazetteer.class);
+
+    private final String path;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private volatile GazetteerIndex index = GazetteerIndex.EMPTY;
+
+    public OfflineGazetteer(@Value("${geocode.gazetteer.path:}") String path) {
+        this.path = path;
+    }
+
+    public List<GeocodingService.LatLngLabel> lookup(String canonicalKey) {
+        return index.lookup(canonicalKey);
+    }
+
+    public int size() {
+        return index.size();
+    }
+
+    /**
+     * Laddas i en egen tråd så att appen inte väntar på en stor fil vid start.
+     * Tills den är klar går allt till ORS som vanligt.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadInBackground() {
+        if (path == null || path.isBlank()) {
+            log.info("No gazetteer configured (geocode.gazetteer.path), using ORS only");
+            return;
+        }
+        Thread loader = new Thread(() -> {
+            try {
+                load(Path.of(path));
+            } catch (Exception e) {
+                log.error("Failed to load gazetteer from {}", path, e);
+            }
+        }, "gazetteer-loader");
+        loader.setDaemon(true);
+        loader.start();
+    }
+
+    public void load(Path file) throws IOException {
+        long start = System.nanoTime();
+        GazetteerIndex.Builder builder = new GazetteerIndex.Builder();
+        String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+
+        int[] counts;
+        try (InputStream in = open(file, name)) {
+            counts = name.contains(".csv") ? importCsv(in, builder) : importGeoJson(in, builder);
+        }
+
+        this.index = builder.build();
+        log.info("Gazetteer loaded: {} of {} addresses inside service area in {} ms",
+                counts[1], counts[0], (System.nanoTime() - start) / 1_000_000);
+    }
+
+    private static InputStream open(Path file, String name) throws IOException {
+        InputStream in = Files.newInputStream(file);
+        return name.endsWith(".gz") ? new GZIPInputStream(in, 1 << 16) : in;
+    }
+
+    // ===== CSV =====
+
+    static int[] importCsv(InputStream in, GazetteerIndex.Builder builder) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        String headerLine = reader.readLine();
+        if (headerLine == null) return new int[]{0, 0};
+
+        Map<String, Integer> col = new HashMap<>();
+        List<String> header = splitCsv(headerLine);
+        for (int i = 0; i < header.size(); i++) {
+            col.put(header.get(i).trim().toUpperCase(Locale.ROOT), i);
+        }
+        Integer lon = col.get("LON"), lat = col.get("LAT"), number = col.get("NUMBER"), street = col.get("STREET");
+        if (lon == null || lat == null || number == null || street == null) {
+            throw new IOException("Gazetteer CSV must have LON, LAT, NUMBER and STREET columns");
+        }
+        Integer city = col.get("CITY"), postcode = col.get("POSTCODE");
+
+        int read = 0, added = 0;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.isBlank()) continue;
+            read++;
+            List<String> f = splitCsv(line);
+            try {
+                if (builder.add(get(f, street), get(f, number), get(f, city), get(f, postcode),
+                        Double.parseDouble(get(f, lat)), Double.parseDouble(get(f, lon)))) {
+                    added++;
+                }
+            } catch (NumberFormatException | NullPointerException e) {
+                // Trasig rad – hoppa över
+            }
+        }
+        return new int[]{read, added};
+    }
+
+    private static String get(List<String> fields, Integer index) {
+        return index == null || index >= fields.size() ? null : fields.get(index);
+    }
+
+    // Enkel CSV-delning som klarar citattecken ("Storgatan, norra")
+    static List<String> splitCsv(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder cur = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    cur.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    cur.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(cur.toString());
+                cur.setLength(0);
+            } else {
+                cur.append(c);
+            }
+        }
+        fields.add(cur.toString());
+        return fields;
+    }
+
+    // ===== GeoJSON =====
+
+    int[] importGeoJson(InputStream in, GazetteerIndex.Builder builder) throws IOException {
+        int[] counts = {0, 0};
+        try (JsonParser parser = objectMapper.getFactory().createParser(in)) {
+            // Strömmar en feature i taget så att hela filen aldrig ligger i minnet.
+            // Toppnivån är antingen en FeatureCollection eller en Feature per rad.
+            JsonToken token;
+            while ((token = parser.nextToken()) != null) {
+                if (token != JsonToken.START_OBJECT) continue;
+
+                JsonNode geometry = null;
+                JsonNode properties = null;
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String field = parser.currentName();
+                    JsonToken value = parser.nextToken();
+                    if ("features".equals(field) && value == JsonToken.START_ARRAY) {
+                        while (parser.nextToken() == JsonToken.START_OBJECT) {
+                            JsonNode feature = objectMapper.readTree(parser);
+                            addFeature(feature.path("geometry"), feature.path("properties"), builder, counts);
+                        }
+                    } else if ("geometry".equals(field) && value == JsonToken.START_OBJECT) {
+                        geometry = objectMapper.readTree(parser);
+                    } else if ("properties".equals(field) && value == JsonToken.START_OBJECT) {
+                        properties = objectMapper.readTree(parser);
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+                if (geometry != null && properties != null) {
+                    addFeature(geometry, properties, builder, counts);
+                }
+            }
+        }
+        return counts;
+    }
+
+    private static void addFeature(JsonNode geometry, JsonNode props, GazetteerIndex.Builder builder, int[] counts) {
+        counts[0]++;
+        JsonNode coords = geometry.path("coordinates");
+        if (!coords.isArray() || coords.size() < 2) return;
+        if (builder.add(text(props, "street"), text(props, "number"), text(props, "city"), text(props, "postcode"),
+                coords.get(1).asDouble(), coords.get(0).asDouble())) {
+            counts[1]++;
+        }
+    }
+
+    private static String text(JsonNode props, String field) {
+        JsonNode value = props.get(field);
+        return value == null || value.isNull() ? null : value.asText();
+    }
+}
@@ -0,0 +1,22 @@
+package se.brankoov.routing.domain.geocode;
+
+/**
+ * Området vi kör i (Storstockholm). Används både mot ORS och för offline-gazetteern.
+ */
+public final class ServiceArea {
+
+    public static final double FOCUS_LAT = 59.3293;
+    public static final double FOCUS_LON = 18.0686;
+    public static final double MIN_LON = 17.50;
+    public static final double MIN_LAT = 59.00;
+    public static final double MAX_LON = 18.60;
+    public static final double MAX_LAT = 59.60;
+
+    private ServiceArea() {
+        // constants only
+    }
+
+    public static boolean contains(double lat, double lon) {
+        return lat >= MIN_LAT && lat <= MAX_LAT && lon >= MIN_LON && lon <= MAX_LON;
+    }
+}
@@ -0,0 +1,171 @@
+package se.brankoov.routing.domain.route;
+
+import com.google.common.hash.HashCode;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import se.brankoov.routing.api.route.BatchOptimizeResponse;
+import se.brankoov.routing.api.route.RouteOptimizationRequest;
+import se.brankoov.routing.api.route.RouteOptimizationResponse;
+import se.brankoov.routing.infra.ors.OrsMatrixService;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+/**
+ * Optimerar många rutter i ett anrop (morgonens utskick), med gemensamt matrisarbete.
+ *
+ * 1. Geokoda alla rutter parallellt. Rutter med ett färdigt svar i OptimizeResultCache är klara direkt.
+ * 2. Slå ihop de övriga rutternas platser (depåer och kunder delas ofta) till en gemensam lista.
+ * 3. Hämta en gemensam matris i block om tile-size × tile-size, men bara de block som någon rutt använder.
+ *    Blocken hämtas ett i taget för att inte slå i ORS gräns för samtidiga anrop.
+ * 4. Skär ut varje rutts delmatris och lös alla rutter parallellt, en per kärna.
+ *
+ * Rutter över gränsen för stora rutter (RouteOptimizationService.isLarge) tar inte del av den gemensamma
+ * matrisen utan löses var för sig med solveLarge, som bara hämtar blocken längs diagonalen.
+ *
+ * Ett fel (geokodning, ett matrisblock, lösaren) drabbar bara de rutter det gäller.
+ */
+@Service
+public class BatchOptimizationService {
+
+    private static final Logger log = LoggerFactory.getLogger(BatchOptimizationService.class);
+
+    private final RouteOptimizationService routeService;
+    private final OrsMatrixService orsMatrixService;
+    private final OptimizeResultCache resultCache;
+    private final int tileSize;
+    private final ExecutorService workers;
+
+    public BatchOptimizationService(RouteOptimizationService routeService,
+                                    OrsMatrixService orsMatrixService,
+                                    OptimizeResultCache resultCache,
+                                    @Value("${routing.batch.tile-size:50}") int tileSize,
+                                    @Value("${routing.batch.threads:0}") int threads) {
+        this.routeService = routeService;
+        this.orsMatrixService = orsMatrixService;
+        this.resultCache = resultCache;
+        this.tileSize = tileSize;
+
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        AtomicInteger counter = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(poolSize, r -> {
+            Thread t = new Thread(r, "batch-optimize-" + counter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    @PreDestroy
+    void shutdown() {
+        workers.shutdownNow();
+    }
+
+    public BatchOptimizeResponse optimize(List<RouteOptimizationRequest> requests) {
+        long start = System.nanoTime();
+        int n = requests.size();
+        RouteOptimizationResponse[] responses = new RouteOptimizationResponse[n];
+        String[] errors = new String[n];
+
+        // 1. Geokoda (mest cacheträffar, men en miss går till ORS – därför parallellt)
+        List<Future<RouteOptimizationService.GeocodedRoute>> geocoding = requests.stream()
+                .map(request -> workers.submit(() -> routeService.geocode(request)))
+                .toList();
+
+        RouteOptimizationService.GeocodedRoute[] routes = new RouteOptimizationService.GeocodedRoute[n];
+        HashCode[] keys = new HashCode[n];
+        List<Integer> pending = new ArrayList<>();
+        int cachedCount = 0;
+        for (int i = 0; i < n; i++) {
+            try {
+                routes[i] = geocoding.get(i).get();
+            } catch (Exception e) {
+                errors[i] = failure(i, e);
+                continue;
+            }
+            keys[i] = routeService.cacheKey(routes[i], requests.get(i).optimize());
+            OptimizeResultCache.Result cached = resultCache.getIfPresent(keys[i]);
+            if (cached != null) {
+                responses[i] = routeService.toResponse(routes[i], cached);
+                cachedCount++;
+            } else {
+                pending.add(i);
+            }
+        }
+
+        // 2. Gemensam platslista. Samma koordinat (t.ex. depån) får samma index i alla rutter.
+        Map<List<Double>, Integer> indexByLocation = new HashMap<>();
+        List<List<Double>> locations = new ArrayList<>();
+        Map<Integer, int[]> routeLocations = new HashMap<>();
+        for (int i : pending) {
+            if (routeService.isLarge(routes[i], requests.get(i).optimize())) continue;
+            routeLocations.put(i, routes[i].locations().stream()
+                    .mapToInt(location -> indexByLocation.computeIfAbsent(location, l -> {
+                        locations.add(l);
+                        return locations.size() - 1;
+                    }))
+                    .toArray());
+        }
+
+        // 3. Hämta de block som behövs
+        TiledMatrix matrix = new TiledMatrix(locations.size(), tileSize);
+        List<int[]> tiles = matrix.neededTiles(List.copyOf(routeLocations.values()));
+        for (int[] tile : tiles) {
+            try {
+                matrix.fetch(tile[0], tile[1], locations, orsMatrixService);
+            } catch (Exception e) {
+                // Blocket förblir tomt; rutterna som behöver det får ett fel i steg 4
+                log.warn("Batch matrix tile ({},{}) failed: {}", tile[0], tile[1], e.getMessage());
+            }
+        }
+        log.debug("Batch matrix: {} locations, {} of {} tiles needed",
+                locations.size(), tiles.size(), matrix.blocks() * matrix.blocks());
+
+        // 4. Lös parallellt. Identiska rutter i samma batch löses bara en gång (resultCache.get).
+        Map<Integer, Future<OptimizeResultCache.Result>> solving = new HashMap<>();
+        for (int i : pending) {
+            RouteOptimizationService.GeocodedRoute route = routes[i];
+            int[] routeIndex = routeLocations.get(i);
+            boolean optimize = requests.get(i).optimize();
+            HashCode key = keys[i];
+            solving.put(i, workers.submit(() -> resultCache.get(key, () -> routeIndex == null
+                    ? routeService.solveLarge(route)
+                    : routeService.solve(route, matrix.submatrix(routeIndex), optimize))));
+        }
+        for (int i : pending) {
+            try {
+                responses[i] = routeService.toResponse(routes[i], solving.get(i).get());
+            } catch (Exception e) {
+                errors[i] = failure(i, e);
+            }
+        }
+
+        List<BatchOptimizeResponse.Item> items = IntStream.range(0, n)
+                .mapToObj(i -> new BatchOptimizeResponse.Item(i, responses[i], errors[i]))
+                .toList();
+        int failed = (int) items.stream().filter(item -> item.error() != null).count();
+
+        log.info("Batch optimized {} routes ({} cached, {} failed, {} matrix tiles) in {} ms",
+                n, cachedCount, failed, tiles.size(), (System.nanoTime() - start) / 1_000_000);
+        return new BatchOptimizeResponse(items, n - failed, failed);
+    }
+
+    private static String failure(int index, Exception e) {
+        Throwable cause = e instanceof ExecutionException && e.getCause() != null ? e.getCause() : e;
+        if (e instanceof InterruptedException) {
+            Thread.currentThread().interrupt();
+        }
+        log.warn("Batch route {} failed: {}", index, cause.getMessage());
+        return cause.getMessage() != null ? cause.getMessage() : cause.getClass().getSimpleName();
+    }
+}
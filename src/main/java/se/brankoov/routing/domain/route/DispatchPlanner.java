@@ -0,0 +1,364 @@
+package se.brankoov.routing.domain.route;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+
+/**
+ * Delar en stopplista på flera förare (kapacitetsbegränsat VRP), "cluster first, route second":
+ *
+ * 1. Sweep: stoppen sorteras på vinkel runt startdepån och delas i lika stora sektorer, en per förare.
+ * 2. Varje sektor får en rutt (närmaste granne + 2-opt), alla sektorer parallellt.
+ * 3. Relocate mellan rutter: ett stopp flyttas till bästa platsen i en närliggande rutt om summan av
+ *    kvadrerade ruttider minskar. Kvadraten gör att kortare totaltid och jämnare rutter båda lönar sig,
+ *    och tid över maxgränsen straffas extra hårt.
+ * 4. Rutter som fortfarande är för långa lämnar ifrån sig stopp tills de håller gränsen.
+ *
+ * Restider uppskattas från fågelvägen × omvägsfaktor / hastighet, så att tusentals stopp går att planera
+ * på några sekunder utan en ORS-matris på miljontals celler. Fågelvägen räknas i en plan projektion runt
+ * startdepån (några promille fel på en mils avstånd jämfört med DistanceCalculator, men utan trigonometri
+ * i de inre looparna). Rutterna arbetar med index i int-arrayer istället för TspSolvers listor,
+ * där varje uppslag är en indexOf.
+ *
+ * Index: 0 = start, 1..n = stopp, n + 1 = slut – samma som i matriserna i TspSolver.
+ */
+final class DispatchPlanner {
+
+    /**
+     * Begränsningar per rutt.
+     *
+     * @param maxStops    högst så många stopp per rutt, 0 = ingen gräns
+     * @param maxSeconds  högst så lång rutt (körning + stopptid), 0 = ingen gräns
+     * @param stopSeconds tid vid varje stopp (averageStopDuration)
+     */
+    record Limits(int maxStops, long maxSeconds, int stopSeconds) {}
+
+    /**
+     * @param routes     stoppindex (1..n) i besöksordning, en rutt per förare (kan vara tom)
+     * @param seconds    uppskattad tid per rutt, körning + stopptid
+     * @param unassigned stopp som inte fick plats inom begränsningarna
+     */
+    record Plan(int[][] routes, long[] seconds, int[] unassigned) {}
+
+    // Faktor på kvadrerad övertid, så att en rutt över gränsen är dyrare än nästan vilken omväg som helst
+    private static final double OVERTIME_PENALTY = 100;
+    private static final int RELOCATE_PASSES = 8;
+    private static final int NEIGHBOUR_ROUTES = 4;
+    private static final double EPSILON = 1e-6;
+
+    private static final double KM_PER_DEGREE = 111.195;
+
+    // Plan projektion i km, räknas en gång
+    private final double[] xs;
+    private final double[] ys;
+    private final int n;
+    private final int end;
+    private final double secondsPerKm;
+    private final Limits limits;
+
+    DispatchPlanner(double[] lats, double[] lons, double speedKmh, double detourFactor, Limits limits) {
+        if (lats.length != lons.length || lats.length < 2) {
+            throw new IllegalArgumentException("Need start, end and the same number of lats and lons");
+        }
+        this.n = lats.length - 2;
+        this.end = n + 1;
+        this.secondsPerKm = detourFactor * 3600 / speedKmh;
+        this.limits = limits;
+
+        double cosLat = Math.cos(Math.toRadians(lats[0]));
+        this.xs = new double[lats.length];
+        this.ys = new double[lats.length];
+        for (int i = 0; i < lats.length; i++) {
+            xs[i] = (lons[i] - lons[0]) * cosLat * KM_PER_DEGREE;
+            ys[i] = (lats[i] - lats[0]) * KM_PER_DEGREE;
+        }
+    }
+
+    double travel(int from, int to) {
+        double dx = xs[to] - xs[from], dy = ys[to] - ys[from];
+        return Math.sqrt(dx * dx + dy * dy) * secondsPerKm;
+    }
+
+    Plan plan(int vehicles, Executor executor) {
+        if (vehicles < 1) throw new IllegalArgumentException("Need at least one vehicle");
+
+        // Stopp som inte ens hinns med som enda stopp i en rutt kan aldrig planeras
+        List<Integer> unassigned = new ArrayList<>();
+        List<Integer> candidates = new ArrayList<>();
+        for (int s = 1; s <= n; s++) {
+            if (limits.maxSeconds() > 0 && travel(0, s) + limits.stopSeconds() + travel(s, end) > limits.maxSeconds()) {
+                unassigned.add(s);
+            } else {
+                candidates.add(s);
+            }
+        }
+
+        // Fler stopp än det finns platser: de som ligger längst bort får vänta
+        if (limits.maxStops() > 0 && candidates.size() > (long) vehicles * limits.maxStops()) {
+            candidates.sort(Comparator.comparingDouble((Integer s) -> travel(0, s)));
+            int capacity = vehicles * limits.maxStops();
+            unassigned.addAll(candidates.subList(capacity, candidates.size()));
+            candidates = new ArrayList<>(candidates.subList(0, capacity));
+        }
+
+        // 1-2. Sweep och en rutt per sektor
+        List<Route> routes = sweep(candidates, vehicles);
+        runAll(routes, Route::build, executor);
+
+        // 3. Flytta stopp mellan rutter, putsa de rutter som ändrats
+        for (int pass = 0; pass < RELOCATE_PASSES; pass++) {
+            List<Route> changed = relocatePass(routes);
+            if (changed.isEmpty()) break;
+            runAll(changed, Route::twoOpt, executor);
+        }
+
+        // 4. Håll maxtiden
+        if (limits.maxSeconds() > 0) {
+            for (Route route : routes) {
+                while (route.size > 0 && route.seconds() > limits.maxSeconds()) {
+                    unassigned.add(route.removeCheapest());
+                }
+            }
+        }
+
+        return new Plan(
+                routes.stream().map(r -> Arrays.copyOf(r.stops, r.size)).toArray(int[][]::new),
+                routes.stream().mapToLong(r -> Math.round(r.seconds())).toArray(),
+                unassigned.stream().sorted().mapToInt(Integer::intValue).toArray());
+    }
+
+    // Sorterar på vinkel runt start och börjar svepet i den största luckan, så att ingen sektor delas i två
+    private List<Route> sweep(List<Integer> stops, int vehicles) {
+        double[] angle = new double[n + 2];
+        for (int s : stops) {
+            angle[s] = Math.atan2(ys[s], xs[s]);
+        }
+        List<Integer> sorted = new ArrayList<>(stops);
+        sorted.sort(Comparator.comparingDouble(s -> angle[s]));
+
+        int first = 0;
+        double largestGap = -1;
+        for (int i = 0; i < sorted.size(); i++) {
+            double from = angle[sorted.get(i)];
+            double to = angle[sorted.get((i + 1) % sorted.size())];
+            double gap = i + 1 < sorted.size() ? to - from : to + 2 * Math.PI - from;
+            if (gap > largestGap) {
+                largestGap = gap;
+                first = (i + 1) % sorted.size();
+            }
+        }
+
+        List<Route> routes = new ArrayList<>(vehicles);
+        int pos = 0;
+        for (int v = 0; v < vehicles; v++) {
+            int remaining = sorted.size() - pos;
+            int size = (remaining + (vehicles - v) - 1) / (vehicles - v);
+            if (limits.maxStops() > 0) size = Math.min(size, limits.maxStops());
+            Route route = new Route();
+            for (int i = 0; i < size; i++) {
+                route.insert(route.size, sorted.get((first + pos + i) % sorted.size()));
+            }
+            pos += size;
+            routes.add(route);
+        }
+        return routes;
+    }
+
+    private List<Route> relocatePass(List<Route> routes) {
+        double[][] centroids = routes.stream().map(Route::centroid).toArray(double[][]::new);
+        List<Route> changed = new ArrayList<>();
+
+        for (int r = 0; r < routes.size(); r++) {
+            Route from = routes.get(r);
+            List<Route> neighbours = nearestRoutes(routes, centroids, r);
+
+            int pos = 0;
+            while (pos < from.size) {
+                int stop = from.stops[pos];
+                double fromAfter = from.seconds() + from.removalDelta(pos) - limits.stopSeconds();
+
+                Route bestRoute = null;
+                int bestPos = -1;
+                double bestGain = EPSILON;
+                for (Route to : neighbours) {
+                    if (limits.maxStops() > 0 && to.size >= limits.maxStops()) continue;
+                    double before = cost(from.seconds()) + cost(to.seconds());
+                    for (int ins = 0; ins <= to.size; ins++) {
+                        double toAfter = to.seconds() + to.insertionDelta(ins, stop) + limits.stopSeconds();
+                        double gain = before - cost(fromAfter) - cost(toAfter);
+                        if (gain > bestGain) {
+                            bestGain = gain;
+                            bestRoute = to;
+                            bestPos = ins;
+                        }
+                    }
+                }
+
+                if (bestRoute == null) {
+                    pos++;
+                    continue;
+                }
+                from.remove(pos);
+                bestRoute.insert(bestPos, stop);
+                if (!changed.contains(from)) changed.add(from);
+                if (!changed.contains(bestRoute)) changed.add(bestRoute);
+            }
+        }
+        return changed;
+    }
+
+    // De närmaste rutterna räknat från tyngdpunkten. Tomma rutter är alltid med, de kan ta vad som helst.
+    private List<Route> nearestRoutes(List<Route> routes, double[][] centroids, int self) {
+        List<Route> empty = new ArrayList<>();
+        List<Integer> others = new ArrayList<>();
+        for (int i = 0; i < routes.size(); i++) {
+            if (i == self) continue;
+            if (centroids[i] == null) empty.add(routes.get(i));
+            else if (centroids[self] != null) others.add(i);
+        }
+        others.sort(Comparator.comparingDouble(i -> Math.hypot(
+                centroids[i][0] - centroids[self][0], centroids[i][1] - centroids[self][1])));
+
+        List<Route> result = new ArrayList<>(empty);
+        others.stream().limit(NEIGHBOUR_ROUTES).forEach(i -> result.add(routes.get(i)));
+        return result;
+    }
+
+    private double cost(double seconds) {
+        double overtime = limits.maxSeconds() > 0 ? Math.max(0, seconds - limits.maxSeconds()) : 0;
+        return seconds * seconds + OVERTIME_PENALTY * overtime * overtime;
+    }
+
+    private static void runAll(List<Route> routes, Consumer<Route> work, Executor executor) {
+        CompletableFuture.allOf(routes.stream()
+                        .map(route -> CompletableFuture.runAsync(() -> work.accept(route), executor))
+                        .toArray(CompletableFuture[]::new))
+                .join();
+    }
+
+    /** En rutt start -> stops[0..size) -> slut, med körtiden uppdaterad vid varje ändring. */
+    private final class Route {
+        int[] stops = new int[16];
+        int size;
+        double travel = travel(0, end);
+
+        double seconds() {
+            return travel + (double) size * limits.stopSeconds();
+        }
+
+        // Punkten före/efter position pos, där -1 är start och size är slut
+        int at(int pos) {
+            if (pos < 0) return 0;
+            if (pos >= size) return end;
+            return stops[pos];
+        }
+
+        double removalDelta(int pos) {
+            int prev = at(pos - 1), stop = stops[pos], next = at(pos + 1);
+            return travel(prev, next) - travel(prev, stop) - travel(stop, next);
+        }
+
+        double insertionDelta(int pos, int stop) {
+            int prev = at(pos - 1), next = at(pos);
+            return travel(prev, stop) + travel(stop, next) - travel(prev, next);
+        }
+
+        void insert(int pos, int stop) {
+            travel += insertionDelta(pos, stop);
+            if (size == stops.length) stops = Arrays.copyOf(stops, size * 2);
+            System.arraycopy(stops, pos, stops, pos + 1, size - pos);
+            stops[pos] = stop;
+            size++;
+        }
+
+        int remove(int pos) {
+            travel += removalDelta(pos);
+            int stop = stops[pos];
+            System.arraycopy(stops, pos + 1, stops, pos, size - pos - 1);
+            size--;
+            return stop;
+        }
+
+        // Stoppet vars borttagning sparar mest körtid
+        int removeCheapest() {
+            int best = IntStream.range(0, size)
+                    .boxed()
+                    .min(Comparator.comparingDouble(this::removalDelta))
+                    .orElseThrow();
+            return remove(best);
+        }
+
+        double[] centroid() {
+            if (size == 0) return null;
+            double x = 0, y = 0;
+            for (int i = 0; i < size; i++) {
+                x += xs[stops[i]];
+                y += ys[stops[i]];
+            }
+            return new double[]{x / size, y / size};
+        }
+
+        // Närmaste granne från start, sedan 2-opt
+        void build() {
+            int[] remaining = Arrays.copyOf(stops, size);
+            int count = size;
+            int current = 0;
+            for (int i = 0; i < size; i++) {
+                int best = 0;
+                double bestTime = Double.MAX_VALUE;
+                for (int j = 0; j < count; j++) {
+                    double t = travel(current, remaining[j]);
+                    if (t < bestTime) {
+                        bestTime = t;
+                        best = j;
+                    }
+                }
+                current = remaining[best];
+                stops[i] = current;
+                remaining[best] = remaining[--count];
+            }
+            recompute();
+            twoOpt();
+        }
+
+        // Vänder delsträckan i..k om det kortar rutten. Restiderna är symmetriska, så bara ändarna räknas.
+        void twoOpt() {
+            boolean improved = true;
+            while (improved) {
+                improved = false;
+                for (int i = 0; i < size - 1; i++) {
+                    for (int k = i + 1; k < size; k++) {
+                        int a = at(i - 1), b = stops[i], c = stops[k], d = at(k + 1);
+                        double delta = travel(a, c) + travel(b, d) - travel(a, b) - travel(c, d);
+                        if (delta < -EPSILON) {
+                            reverse(i, k);
+                            travel += delta;
+                            improved = true;
+                        }
+                    }
+                }
+            }
+        }
+
+        private void reverse(int i, int k) {
+            while (i < k) {
+                int tmp = stops[i];
+                stops[i++] = stops[k];
+                stops[k--] = tmp;
+            }
+        }
+
+        private void recompute() {
+            double total = 0;
+            for (int i = 0; i <= size; i++) {
+                total += travel(at(i - 1), at(i));
+            }
+            travel = total;
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package se.brankoov.routing.domain.route;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import se.brankoov.routing.api.admin.DispatchPlanRequest;
+import se.brankoov.routing.api.admin.DispatchPlanResponse;
+import se.brankoov.routing.api.route.RouteOptimizationRequest;
+import se.brankoov.routing.api.route.StopResponse;
+import se.brankoov.routing.domain.auth.UserEntity;
+import se.brankoov.routing.domain.auth.UserRepository;
+import se.brankoov.routing.domain.route.entity.RouteEntity;
+import se.brankoov.routing.domain.route.entity.RouteRepository;
+import se.brankoov.routing.domain.route.entity.RouteStopEntity;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Delar en stor kundlista på flera förare istället för att admin gör det för hand och sedan
+ * tilldelar rutt för rutt. Själva uppdelningen görs av DispatchPlanner.
+ *
+ * Med save = true sparas en rutt per förare (utan geometri), som föraren sedan öppnar och optimerar med ORS.
+ * Stopp som inte går att geokoda planeras inte utan kommer tillbaka bland unassigned.
+ */
+@Service
+public class DispatchPlanningService {
+
+    private static final Logger log = LoggerFactory.getLogger(DispatchPlanningService.class);
+
+    private final RouteOptimizationService routeService;
+    private final UserRepository userRepository;
+    private final RouteRepository routeRepository;
+    private final double speedKmh;
+    private final double detourFactor;
+    private final ExecutorService workers;
+
+    public DispatchPlanningService(RouteOptimizationService routeService,
+                                   UserRepository userRepository,
+                                   RouteRepository routeRepository,
+                                   @Value("${routing.dispatch.speed-kmh:30}") double speedKmh,
+                                   @Value("${routing.dispatch.detour-factor:1.3}") double detourFactor,
+                                   @Value("${routing.dispatch.threads:0}") int threads) {
+        this.routeService = routeService;
+        this.userRepository = userRepository;
+        this.routeRepository = routeRepository;
+        this.speedKmh = speedKmh;
+        this.detourFactor = detourFactor;
+
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        AtomicInteger counter = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(poolSize, r -> {
+            Thread t = new Thread(r, "dispatch-plan-" + counter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    @PreDestroy
+    void shutdown() {
+        workers.shutdownNow();
+    }
+
+    public DispatchPlanResponse plan(DispatchPlanRequest request) {
+        long start = System.nanoTime();
+
+        // Förarna måste finnas innan vi lägger tid på geokodning
+        List<UserEntity> drivers = request.drivers().stream()
+                .map(name -> userRepository.findByUsername(name)
+                        .orElseThrow(() -> new IllegalArgumentException("Driver not found: " + name)))
+                .toList();
+
+        // Stoppen slås upp parallellt (se RouteOptimizationService.geocodeStops)
+        RouteOptimizationService.GeocodedRoute route = routeService.geocodeAllowingMisses(new RouteOptimizationRequest(
+                request.startAddress(), request.endAddress(), request.stops(), true));
+        List<StopResponse> stops = new ArrayList<>(route.stops().size());
+        List<StopResponse> notGeocoded = new ArrayList<>();
+        for (StopResponse s : route.stops()) {
+            (s.latitude() == null || s.longitude() == null ? notGeocoded : stops).add(s);
+        }
+
+        int n = stops.size();
+        double[] lats = new double[n + 2];
+        double[] lons = new double[n + 2];
+        lats[0] = route.start().lat();
+        lons[0] = route.start().lng();
+        for (int i = 0; i < n; i++) {
+            lats[i + 1] = stops.get(i).latitude();
+            lons[i + 1] = stops.get(i).longitude();
+        }
+        lats[n + 1] = route.end().lat();
+        lons[n + 1] = route.end().lng();
+
+        int stopMinutes = orZero(request.averageStopDuration());
+        DispatchPlanner.Limits limits = new DispatchPlanner.Limits(
+                orZero(request.maxStops()), orZero(request.maxDurationMinutes()) * 60L, stopMinutes * 60);
+        DispatchPlanner.Plan plan = new DispatchPlanner(lats, lons, speedKmh, detourFactor, limits)
+                .plan(drivers.size(), workers);
+
+        String name = request.name() == null || request.name().isBlank()
+                ? "Utskick " + LocalDate.now()
+                : request.name();
+
+        List<DispatchPlanResponse.DriverRoute> routes = new ArrayList<>(drivers.size());
+        List<RouteEntity> toSave = new ArrayList<>();
+        for (int v = 0; v < drivers.size(); v++) {
+            List<StopResponse> ordered = ordered(stops, plan.routes()[v]);
+            routes.add(new DispatchPlanResponse.DriverRoute(
+                    drivers.get(v).getUsername(), ordered, plan.seconds()[v], null));
+
+            if (request.save() && !ordered.isEmpty()) {
+                toSave.add(toEntity(request, name, drivers.get(v), ordered, plan.seconds()[v], stopMinutes));
+            }
+        }
+
+        // saveAll är en egen transaktion, så geokodning och planering håller ingen databasanslutning
+        if (!toSave.isEmpty()) {
+            routeRepository.saveAll(toSave);
+            int saved = 0;
+            for (int v = 0; v < routes.size(); v++) {
+                DispatchPlanResponse.DriverRoute r = routes.get(v);
+                if (r.stops().isEmpty()) continue;
+                routes.set(v, new DispatchPlanResponse.DriverRoute(r.driver(), r.stops(), r.estimatedSeconds(),
+                        toSave.get(saved++).getId()));
+            }
+        }
+
+        List<StopResponse> unassigned = new ArrayList<>(notGeocoded);
+        Arrays.stream(plan.unassigned()).forEach(i -> unassigned.add(stops.get(i - 1)));
+        long total = Arrays.stream(plan.seconds()).sum();
+        long longest = Arrays.stream(plan.seconds()).max().orElse(0);
+
+        log.info("Planned {} stops on {} drivers ({} unassigned, {} not geocoded, {} saved) in {} ms",
+                n, drivers.size(), unassigned.size(), notGeocoded.size(), toSave.size(),
+                (System.nanoTime() - start) / 1_000_000);
+        return new DispatchPlanResponse(routes, unassigned, total, longest);
+    }
+
+    // Index 1..n från planeraren till stopp med nytt ordningsnummer
+    private static List<StopResponse> ordered(List<StopResponse> stops, int[] route) {
+        List<StopResponse> result = new ArrayList<>(route.length);
+        for (int i = 0; i < route.length; i++) {
+            StopResponse s = stops.get(route[i] - 1);
+            result.add(new StopResponse(s.id(), s.label(), s.address(), s.latitude(), s.longitude(), i, s.comment()));
+        }
+        return result;
+    }
+
+    private static RouteEntity toEntity(DispatchPlanRequest request, String name, UserEntity driver,
+                                        List<StopResponse> stops, long seconds, int stopMinutes) {
+        RouteEntity entity = new RouteEntity(name + " (" + driver.getUsername() + ")", null,
+                request.startAddress(), request.endAddress(), null, seconds, stopMinutes);
+        entity.setOwner(driver);
+        for (StopResponse s : stops) {
+            RouteStopEntity stop = new RouteStopEntity(s.label(), s.address(), s.latitude(), s.longitude(), s.order());
+            stop.setComment(s.comment());
+            entity.addStop(stop);
+        }
+        return entity;
+    }
+
+    private static int orZero(Integer value) {
+        return value == null ? 0 : value;
+    }
+}
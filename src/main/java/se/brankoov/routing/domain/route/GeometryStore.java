@@ -0,0 +1,92 @@
+package se.brankoov.routing.domain.route;
+
+import org.springframework.stereotype.Component;
+import se.brankoov.routing.domain.route.entity.RouteGeometryEntity;
+import se.brankoov.routing.domain.route.entity.RouteGeometryRepository;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Lagrar ruttgeometrier innehållsadresserat i route_geometries.
+ * intern() ger en referens till raden för en viss geometri och skapar den bara om den saknas.
+ */
+@Component
+public class GeometryStore {
+
+    private final RouteGeometryRepository geometryRepository;
+
+    public GeometryStore(RouteGeometryRepository geometryRepository) {
+        this.geometryRepository = geometryRepository;
+    }
+
+    /**
+     * Måste anropas inom en transaktion. Returnerar null för tom geometri.
+     * current är ruttens nuvarande geometri – är innehållet samma görs ingen skrivning alls.
+     */
+    public RouteGeometryEntity intern(String geometry, RouteGeometryEntity current) {
+        if (geometry == null || geometry.isBlank()) return null;
+
+        String hash = hash(geometry);
+        if (current != null && hash.equals(current.getHash())) return current;
+
+        byte[] raw = geometry.getBytes(StandardCharsets.UTF_8);
+        byte[] data = deflate(raw);
+        // Städjobbet kan ta en gammal oanvänd rad mellan insert och lås – då läggs den in igen
+        do {
+            geometryRepository.insertIfAbsent(hash, data, raw.length);
+        } while (geometryRepository.lockForReference(hash).isEmpty());
+        return geometryRepository.getReferenceById(hash);
+    }
+
+    public static String hash(String geometry) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(geometry.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    static byte[] deflate(byte[] raw) {
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        try {
+            deflater.setInput(raw);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, raw.length / 2));
+            byte[] buf = new byte[8192];
+            while (!deflater.finished()) {
+                out.write(buf, 0, deflater.deflate(buf));
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    public static String inflate(byte[] data, int rawLength) {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(data);
+            byte[] raw = new byte[rawLength];
+            int n = 0;
+            while (n < rawLength && !inflater.finished()) {
+                int read = inflater.inflate(raw, n, rawLength - n);
+                if (read == 0 && (inflater.needsInput() || inflater.needsDictionary())) break;
+                n += read;
+            }
+            if (n != rawLength) throw new IllegalStateException("Corrupt route geometry");
+            return new String(raw, StandardCharsets.UTF_8);
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("Corrupt route geometry", e);
+        } finally {
+            inflater.end();
+        }
+    }
+}
@@ -0,0 +1,210 @@
+package se.brankoov.routing.domain.route;
+
+import se.brankoov.routing.api.route.StopResponse;
+import se.brankoov.routing.domain.geocode.GeocodingService;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Uppdelad lösning för en enda rutt med väldigt många stopp (t.ex. en bulkimport).
+ *
+ * 1. Stoppen ordnas längs en Hilbertkurva, så att stopp som ligger nära varandra på kartan
+ *    också hamnar nära varandra i listan. Kurvan klipps där den passerar närmast depån.
+ * 2. Listan [start, stopp..., slut] delas i fönster om windowSize platser. Första och sista platsen
+ *    i varje fönster ligger fast, resten löses med TspSolver – alla fönster parallellt på fork-join-poolen.
+ * 3. Skarvarna repareras med 2-opt över ett fönster som går ett halvt fönster åt varje håll.
+ *
+ * Bara block (w, w), (w, w + 1) och (w + 1, w) i matrisen behövs, så både ORS-anrop och lösartid växer
+ * linjärt med antalet stopp istället för kvadratiskt. Index i matrisen är position längs kurvan:
+ * 0 = start, 1..n = stoppen i kurvordning, n + 1 = slut.
+ */
+final class LargeRouteSolver {
+
+    // 2^16 × 2^16 rutor över stoppens omslutande rektangel, under en meter i Stockholm
+    private static final int HILBERT_ORDER = 16;
+
+    private LargeRouteSolver() {
+        // utility class, no instances
+    }
+
+    /** Stoppen i kurvordning, vänd och roterad så att start- och slutbenen blir så korta som möjligt. */
+    static List<StopResponse> curveOrder(GeocodingService.LatLng start, List<StopResponse> stops, GeocodingService.LatLng end) {
+        int n = stops.size();
+        if (n < 3) return new ArrayList<>(stops);
+
+        double minLat = Double.MAX_VALUE, maxLat = -Double.MAX_VALUE, minLon = Double.MAX_VALUE, maxLon = -Double.MAX_VALUE;
+        for (StopResponse s : stops) {
+            minLat = Math.min(minLat, s.latitude());
+            maxLat = Math.max(maxLat, s.latitude());
+            minLon = Math.min(minLon, s.longitude());
+            maxLon = Math.max(maxLon, s.longitude());
+        }
+        int side = 1 << HILBERT_ORDER;
+        double latScale = (side - 1) / Math.max(maxLat - minLat, 1e-9);
+        double lonScale = (side - 1) / Math.max(maxLon - minLon, 1e-9);
+
+        long[] keys = new long[n];
+        for (int i = 0; i < n; i++) {
+            int x = (int) ((stops.get(i).longitude() - minLon) * lonScale);
+            int y = (int) ((stops.get(i).latitude() - minLat) * latScale);
+            keys[i] = hilbertIndex(x, y, side);
+        }
+        List<StopResponse> curve = IntStream.range(0, n).boxed()
+                .sorted(Comparator.comparingLong(i -> keys[i]))
+                .map(stops::get)
+                .toList();
+
+        // Kurvan som en cykel: klipp mellan k - 1 och k, gå framåt (start -> k ... k - 1 -> slut) eller bakåt
+        int bestCut = 0;
+        boolean bestReversed = false;
+        double bestCost = Double.MAX_VALUE;
+        for (int k = 0; k < n; k++) {
+            StopResponse prev = curve.get((k + n - 1) % n), next = curve.get(k);
+            double closing = km(prev, next);
+            double forward = km(start, next) + km(end, prev) - closing;
+            double backward = km(start, prev) + km(end, next) - closing;
+            if (forward < bestCost) {
+                bestCost = forward;
+                bestCut = k;
+                bestReversed = false;
+            }
+            if (backward < bestCost) {
+                bestCost = backward;
+                bestCut = k;
+                bestReversed = true;
+            }
+        }
+
+        List<StopResponse> ordered = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            int index = bestReversed ? bestCut - 1 - i : bestCut + i;
+            ordered.add(curve.get(Math.floorMod(index, n)));
+        }
+        return ordered;
+    }
+
+    /** Blocken som fönstren och skarvarna behöver: diagonalen och grannarna till den. */
+    static List<int[]> bandTiles(TiledMatrix matrix) {
+        List<int[]> tiles = new ArrayList<>();
+        for (int w = 0; w < matrix.blocks(); w++) {
+            tiles.add(new int[]{w, w});
+            if (w + 1 < matrix.blocks()) {
+                tiles.add(new int[]{w, w + 1});
+                tiles.add(new int[]{w + 1, w});
+            }
+        }
+        return tiles;
+    }
+
+    /**
+     * @param curve  stoppen i kurvordning (från curveOrder)
+     * @param matrix matrisen över [start, curve..., slut] med minst bandTiles hämtade, blockstorlek = fönsterstorlek
+     * @return matrisindex i besöksordning, från 0 (start) till n + 1 (slut)
+     */
+    static int[] solve(List<StopResponse> curve, TiledMatrix matrix, SolverSettings settings) {
+        int size = matrix.size();
+        int[] tour = IntStream.range(0, size).toArray();
+        int window = matrix.blockLength(0);
+
+        // Fönstren: [blockStart, blockStart + blockLength), ändarna ligger fast
+        IntStream.range(0, matrix.blocks()).parallel().forEach(w -> {
+            int from = matrix.blockStart(w);
+            optimizeSegment(tour, from, from + matrix.blockLength(w) - 1, curve, matrix, settings, true);
+        });
+
+        // Skarvarna: ett halvt fönster åt varje håll. Intilliggande skarvar delar bara en fast ändpunkt.
+        IntStream.range(1, matrix.blocks()).parallel().forEach(w -> {
+            int seam = matrix.blockStart(w);
+            optimizeSegment(tour, seam - window / 2, Math.min(seam + window / 2, size - 1), curve, matrix, settings, false);
+        });
+        return tour;
+    }
+
+    /** Total tid för en tur från solve(). Alla ben ligger inom ett fönster eller över en skarv. */
+    static long totalSeconds(int[] tour, TiledMatrix matrix) {
+        double total = 0;
+        for (int i = 0; i + 1 < tour.length; i++) {
+            double leg = matrix.get(tour[i], tour[i + 1]);
+            if (Double.isNaN(leg)) {
+                throw new IllegalStateException("Missing travel time between " + tour[i] + " and " + tour[i + 1]);
+            }
+            if (Double.isInfinite(leg)) {
+                throw new IllegalStateException("No drivable route between " + tour[i] + " and " + tour[i + 1]);
+            }
+            total += leg;
+        }
+        return Math.round(total);
+    }
+
+    // Löser om tour[first + 1 .. last - 1] med tour[first] och tour[last] som fasta ändar
+    private static void optimizeSegment(int[] tour, int first, int last, List<StopResponse> curve, TiledMatrix matrix,
+                                        SolverSettings settings, boolean full) {
+        int inner = last - first - 1;
+        if (inner < 2) return;
+
+        // Lokal matris i TspSolvers format: [första, stoppen, sista]
+        double[][] local = new double[inner + 2][inner + 2];
+        for (int i = 0; i < inner + 2; i++) {
+            for (int j = 0; j < inner + 2; j++) {
+                local[i][j] = matrix.get(tour[first + i], tour[first + j]);
+            }
+        }
+        List<StopResponse> stops = new ArrayList<>(inner);
+        for (int i = 1; i <= inner; i++) {
+            stops.add(curve.get(tour[first + i] - 1));
+        }
+
+        List<StopResponse> ordered = stops;
+        if (full) {
+            ordered = TspSolver.solveTspNearestNeighbour(stops, local);
+            ordered = TspSolver.optimizeTwoOpt(ordered, local, stops);
+            ordered = TspSolver.anneal(ordered, local, stops, settings);
+        } else {
+            ordered = TspSolver.optimizeTwoOpt(ordered, local, stops);
+        }
+
+        // Tillbaka till matrisindex. Lösaren flyttar runt samma objekt, så identitet räcker.
+        int[] original = new int[inner];
+        System.arraycopy(tour, first + 1, original, 0, inner);
+        for (int i = 0; i < inner; i++) {
+            StopResponse s = ordered.get(i);
+            for (int j = 0; j < inner; j++) {
+                if (stops.get(j) == s) {
+                    tour[first + 1 + i] = original[j];
+                    break;
+                }
+            }
+        }
+    }
+
+    // Hilbertindex för (x, y) i ett rutnät med sidan side (en tvåpotens)
+    static long hilbertIndex(int x, int y, int side) {
+        long d = 0;
+        for (int s = side / 2; s > 0; s /= 2) {
+            int rx = (x & s) > 0 ? 1 : 0;
+            int ry = (y & s) > 0 ? 1 : 0;
+            d += (long) s * s * ((3 * rx) ^ ry);
+            if (ry == 0) {
+                if (rx == 1) {
+                    x = side - 1 - x;
+                    y = side - 1 - y;
+                }
+                int t = x;
+                x = y;
+                y = t;
+            }
+        }
+        return d;
+    }
+
+    private static double km(StopResponse a, StopResponse b) {
+        return DistanceCalculator.distanceInKm(a.latitude(), a.longitude(), b.latitude(), b.longitude());
+    }
+
+    private static double km(GeocodingService.LatLng a, StopResponse b) {
+        return DistanceCalculator.distanceInKm(a.lat(), a.lng(), b.latitude(), b.longitude());
+    }
+}
@@ -0,0 +1,103 @@
+package se.brankoov.routing.domain.route;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.util.concurrent.ExecutionError;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.GuavaCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import se.brankoov.routing.api.route.StopResponse;
+import se.brankoov.routing.domain.geocode.GeocodingService;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Resultatet av optimize() för samma start, slut, stoppkoordinater, optimize-flagga och lösarinställningar.
+ * Omladdning av sidan, dubbelklick och att öppna en rutt igen ger då svar direkt,
+ * utan ORS-matris, lösare och directions.
+ *
+ * Nyckeln bygger bara på koordinaterna, inte på etiketter och kommentarer. Därför sparas ordningen som
+ * index i stopplistan, och svaret byggs om från den aktuella requesten.
+ * Samtidiga anrop med samma nyckel väntar på en och samma beräkning (Cache.get med loader).
+ * Träffar och missar syns som cache.gets{cache=optimize.results}.
+ */
+@Component
+public class OptimizeResultCache {
+
+    /**
+     * @param order index i stopplistan (efter geokodning) i besöksordning
+     */
+    public record Result(int[] order, String geometry, long totalSeconds) {}
+
+    // Byts om nyckelns innehåll eller lösarens beteende ändras, så att gamla poster inte återanvänds
+    private static final int KEY_VERSION = 1;
+
+    private final Cache<HashCode, Result> cache;
+
+    public OptimizeResultCache(@Value("${routing.result-cache.max-size:1000}") long maxSize,
+                               @Value("${routing.result-cache.ttl:10m}") Duration ttl,
+                               MeterRegistry meterRegistry) {
+        this.cache = CacheBuilder.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        GuavaCacheMetrics.monitor(meterRegistry, cache, "optimize.results");
+    }
+
+    public static HashCode key(GeocodingService.LatLng start, GeocodingService.LatLng end, List<StopResponse> stops,
+                               boolean optimize, SolverSettings settings) {
+        Hasher h = Hashing.sha256().newHasher()
+                .putInt(KEY_VERSION)
+                .putBoolean(optimize)
+                .putInt(settings.restarts())
+                .putBoolean(settings.seed() != null)
+                .putLong(settings.seed() == null ? 0 : settings.seed())
+                .putDouble(start.lat()).putDouble(start.lng())
+                .putDouble(end.lat()).putDouble(end.lng())
+                .putInt(stops.size());
+        // Ordningen räknas: utan optimering är den själva svaret, och med optimering påverkar den startlösningen
+        for (StopResponse s : stops) {
+            h.putDouble(s.latitude()).putDouble(s.longitude());
+        }
+        return h.hash();
+    }
+
+    /**
+     * Cachat resultat, eller compute() om det saknas. Ett resultat utan geometri (directions misslyckades)
+     * lämnas till anroparen men sparas inte, så att nästa anrop försöker igen.
+     */
+    public Result get(HashCode key, Callable<Result> compute) {
+        try {
+            Result result = cache.get(key, compute);
+            if (result.geometry() == null) {
+                cache.invalidate(key);
+            }
+            return result;
+        } catch (ExecutionException | UncheckedExecutionException | ExecutionError e) {
+            if (e.getCause() instanceof RuntimeException re) throw re;
+            if (e.getCause() instanceof Error err) throw err;
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    public Result getIfPresent(HashCode key) {
+        return cache.getIfPresent(key);
+    }
+
+    public long size() {
+        return cache.size();
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+}
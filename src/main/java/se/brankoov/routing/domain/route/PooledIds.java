@@ -0,0 +1,42 @@
+package se.brankoov.routing.domain.route;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+
+/**
+ * Id:n ur samma sekvenser som JPA använder, för SQL som skapar rader utan att gå via Hibernate.
+ *
+ * Sekvenserna stegar allocationSize (50) åt gången och Hibernate använder "pooled"-optimeraren:
+ * värdet V som nextval ger är toppen av blocket V - 49 .. V. Vi gör likadant, så ett block som
+ * hämtats här delas aldrig ut av Hibernate och tvärtom – och ett nextval räcker till 50 rader.
+ */
+final class PooledIds {
+
+    static final int ALLOCATION_SIZE = 50;
+
+    private PooledIds() {
+        // utility class, no instances
+    }
+
+    /** count nya id:n från sekvensen, med ett nextval per påbörjat block. */
+    static long[] next(JdbcTemplate jdbcTemplate, String sequence, int count) {
+        if (count == 0) return new long[0];
+        int blocks = (count + ALLOCATION_SIZE - 1) / ALLOCATION_SIZE;
+        List<Long> tops = jdbcTemplate.queryForList(
+                "select nextval(?::regclass) from generate_series(1, ?)", Long.class, sequence, blocks);
+        return expand(tops.stream().mapToLong(Long::longValue).toArray(), count);
+    }
+
+    /** Blocktoppar från nextval -> de första count id:na i blocken, i ordning. */
+    static long[] expand(long[] blockTops, int count) {
+        if ((long) blockTops.length * ALLOCATION_SIZE < count) {
+            throw new IllegalArgumentException(count + " ids do not fit in " + blockTops.length + " blocks");
+        }
+        long[] ids = new long[count];
+        for (int i = 0; i < count; i++) {
+            ids[i] = blockTops[i / ALLOCATION_SIZE] - ALLOCATION_SIZE + 1 + i % ALLOCATION_SIZE;
+        }
+        return ids;
+    }
+}
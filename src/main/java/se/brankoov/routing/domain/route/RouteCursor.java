@@ -0,0 +1,30 @@
+package se.brankoov.routing.domain.route;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * Position i listan över sparade rutter: (createdAt, id) för sista raden på föregående sida.
+ * Skickas till klienten som en opak base64-sträng. Instant.toString behåller mikrosekunderna
+ * från Postgres, annars skulle likhetsjämförelsen i keyset-frågan missa rader.
+ */
+public record RouteCursor(Instant createdAt, Long id) {
+
+    public String encode() {
+        String raw = createdAt + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static RouteCursor decode(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int sep = raw.indexOf('|');
+            if (sep < 0) throw new IllegalArgumentException("Invalid cursor");
+            return new RouteCursor(Instant.parse(raw.substring(0, sep)), Long.parseLong(raw.substring(sep + 1)));
+        } catch (DateTimeParseException | NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid cursor", e);
+        }
+    }
+}
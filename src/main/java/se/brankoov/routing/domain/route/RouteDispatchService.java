@@ -0,0 +1,146 @@
+package se.brankoov.routing.domain.route;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import se.brankoov.routing.api.admin.DispatchRequest;
+import se.brankoov.routing.api.admin.DispatchResult;
+
+import java.sql.Array;
+import java.sql.PreparedStatement;
+import java.util.List;
+
+/**
+ * Tilldelar många rutter till många förare på en gång.
+ *
+ * Samma sak som assignRouteToUser, men alla kopior (rutter och stopp) skapas av en enda
+ * SQL-sats med INSERT ... SELECT istället för att varje rutt laddas och sparas via JPA.
+ * Paren skickas in som arrayer och packas upp med unnest.
+ * Kopiorna delar originalets geometri-rad (geometry_hash), bara referensen kopieras.
+ */
+@Service
+public class RouteDispatchService {
+
+    private static final Logger log = LoggerFactory.getLogger(RouteDispatchService.class);
+
+    // Antal stopp som ska kopieras, så att vi vet hur många id:n som behövs. Övre gräns: par med
+    // okänd förare räknas också.
+    private static final String STOP_COUNT_SQL = """
+            select count(*) from unnest(?::bigint[]) as t(route_id)
+            join route_stops s on s.route_id = t.route_id
+            """;
+
+    // Id:n kommer från PooledIds (hela block ur routes_seq/route_stops_seq, samma som Hibernate)
+    // och plockas ur arrayerna med radnumret. Har någon hunnit lägga till stopp sedan de räknades
+    // tas resten med nextval – toppen av ett eget block, som Hibernate aldrig delar ut.
+    private static final String DISPATCH_SQL = """
+            with input as (
+                select * from unnest(?::int[], ?::bigint[], ?::text[]) as t(idx, route_id, username)
+            ),
+            route_ids as (
+                select ?::bigint[] as ids
+            ),
+            stop_ids as (
+                select ?::bigint[] as ids
+            ),
+            valid as materialized (
+                select p.idx, p.source_id, p.user_id, (select ids[p.k::int] from route_ids) as new_id
+                from (
+                    select i.idx, r.id as source_id, u.id as user_id, row_number() over (order by i.idx) as k
+                    from input i
+                    join routes r on r.id = i.route_id
+                    join users u on u.username = i.username
+                ) p
+            ),
+            new_routes as (
+                insert into routes (id, name, description, start_address, end_address, geometry_hash, geometry,
+                                    total_duration, average_stop_duration, user_id, created_at)
+                select v.new_id, r.name || ' (Tilldelad)', r.description, r.start_address, r.end_address,
+                       r.geometry_hash, r.geometry,
+                       r.total_duration, r.average_stop_duration, v.user_id, now()
+                from valid v
+                join routes r on r.id = v.source_id
+            ),
+            new_stops as (
+                insert into route_stops (id, label, address, latitude, longitude, stop_order, comment, route_id)
+                select coalesce((select ids[c.k::int] from stop_ids), nextval('route_stops_seq')),
+                       c.label, c.address, c.latitude, c.longitude, c.stop_order, c.comment, c.new_id
+                from (
+                    select s.label, s.address, s.latitude, s.longitude, s.stop_order, s.comment, v.new_id,
+                           row_number() over (order by v.idx, s.stop_order, s.id) as k
+                    from valid v
+                    join route_stops s on s.route_id = v.source_id
+                ) c
+            )
+            select i.idx, r.id is not null as route_found, u.id is not null as user_found, v.new_id
+            from input i
+            left join routes r on r.id = i.route_id
+            left join users u on u.username = i.username
+            left join valid v on v.idx = i.idx
+            order by i.idx
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public RouteDispatchService(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Transactional
+    public List<DispatchResult> dispatch(List<DispatchRequest.Assignment> assignments) {
+        int n = assignments.size();
+        Integer[] indexes = new Integer[n];
+        Long[] routeIds = new Long[n];
+        String[] usernames = new String[n];
+        for (int i = 0; i < n; i++) {
+            indexes[i] = i;
+            routeIds[i] = assignments.get(i).routeId();
+            usernames[i] = assignments.get(i).username();
+        }
+
+        // Ett nextval per 50 rader istället för ett per rad
+        Long stopCount = jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(STOP_COUNT_SQL);
+            ps.setArray(1, con.createArrayOf("bigint", routeIds));
+            return ps;
+        }, rs -> rs.next() ? rs.getLong(1) : 0L);
+        Long[] newRouteIds = boxed(PooledIds.next(jdbcTemplate, "routes_seq", n));
+        Long[] newStopIds = boxed(PooledIds.next(jdbcTemplate, "route_stops_seq", Math.toIntExact(stopCount)));
+
+        List<DispatchResult> results = jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(DISPATCH_SQL);
+            Array idx = con.createArrayOf("integer", indexes);
+            Array routes = con.createArrayOf("bigint", routeIds);
+            Array users = con.createArrayOf("text", usernames);
+            ps.setArray(1, idx);
+            ps.setArray(2, routes);
+            ps.setArray(3, users);
+            ps.setArray(4, con.createArrayOf("bigint", newRouteIds));
+            ps.setArray(5, con.createArrayOf("bigint", newStopIds));
+            return ps;
+        }, (rs, rowNum) -> {
+            DispatchRequest.Assignment a = assignments.get(rs.getInt("idx"));
+            long newId = rs.getLong("new_id");
+            boolean created = !rs.wasNull();
+
+            DispatchResult.Status status;
+            if (created) status = DispatchResult.Status.ASSIGNED;
+            else if (!rs.getBoolean("route_found")) status = DispatchResult.Status.ROUTE_NOT_FOUND;
+            else status = DispatchResult.Status.USER_NOT_FOUND;
+
+            return new DispatchResult(a.routeId(), a.username(), status, created ? newId : null);
+        });
+
+        long assigned = results.stream().filter(r -> r.status() == DispatchResult.Status.ASSIGNED).count();
+        log.info("Dispatched {}/{} routes", assigned, n);
+        return results;
+    }
+
+    private static Long[] boxed(long[] ids) {
+        Long[] boxed = new Long[ids.length];
+        for (int i = 0; i < ids.length; i++) boxed[i] = ids[i];
+        return boxed;
+    }
+}
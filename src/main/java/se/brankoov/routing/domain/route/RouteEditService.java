@@ -0,0 +1,326 @@
+package se.brankoov.routing.domain.route;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.LockModeType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import se.brankoov.routing.api.route.RouteDetailResponse;
+import se.brankoov.routing.api.route.RouteOptimizationRequest;
+import se.brankoov.routing.api.route.RouteStopEditRequest;
+import se.brankoov.routing.api.route.StopRequest;
+import se.brankoov.routing.api.route.StopResponse;
+import se.brankoov.routing.domain.route.entity.RouteEntity;
+import se.brankoov.routing.domain.route.entity.RouteRepository;
+import se.brankoov.routing.domain.route.entity.RouteStopEntity;
+import se.brankoov.routing.infra.ors.OrsDirectionsService;
+import se.brankoov.routing.infra.ors.OrsMatrixService;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.IntStream;
+
+/**
+ * Lägger till och tar bort stopp i en sparad rutt utan att köra hela optimize() igen.
+ *
+ * 1. Borttagna stopp plockas bort, resten behåller sin ordning.
+ * 2. Nya stopp geokodas (om de saknar koordinater) och bara deras rad och kolumn i matrisen hämtas.
+ * 3. Varje nytt stopp sätts in där det kostar minst. Befintliga ben uppskattas från fågelvägen,
+ *    skalad med den uppmätta hastigheten från de nya stoppens rader.
+ * 4. Runt varje ändring körs 2-opt i ett litet fönster med riktiga tider från ORS, resten av rutten rörs inte.
+ * 5. Sparas via RouteStopMerger, så att bara ändrade rader skrivs.
+ *
+ * Matrisarbetet blir några små anrop istället för (n + 2)² celler, och förarens ordning ändras bara lokalt.
+ *
+ * Geokodning och ORS-anrop görs utanför transaktioner. Rutten läses i en kort läsning och skrivs i en
+ * kort skrivning som bara går igenom om ingen annan har sparat rutten under tiden (@Version).
+ */
+@Service
+public class RouteEditService {
+
+    private static final Logger log = LoggerFactory.getLogger(RouteEditService.class);
+
+    // Ett reparationsfönster ska rymmas i ett matrisanrop (OrsMatrixService.MAX_CELLS)
+    private static final int MAX_WINDOW = 48;
+    // 30 km/h inklusive omvägar, om inget nytt stopp finns att mäta hastigheten på
+    private static final double DEFAULT_SECONDS_PER_KM = 156;
+
+    private final RouteRepository routeRepository;
+    private final RouteOptimizationService routeService;
+    private final OrsMatrixService orsMatrixService;
+    private final OrsDirectionsService orsDirectionsService;
+    private final GeometryStore geometryStore;
+    private final EntityManager entityManager;
+    private final TransactionTemplate readTransaction;
+    private final TransactionTemplate writeTransaction;
+    private final int repairRadius;
+
+    public RouteEditService(RouteRepository routeRepository,
+                            RouteOptimizationService routeService,
+                            OrsMatrixService orsMatrixService,
+                            OrsDirectionsService orsDirectionsService,
+                            GeometryStore geometryStore,
+                            EntityManager entityManager,
+                            PlatformTransactionManager transactionManager,
+                            @Value("${routing.edit.repair-radius:4}") int repairRadius) {
+        this.routeRepository = routeRepository;
+        this.routeService = routeService;
+        this.orsMatrixService = orsMatrixService;
+        this.orsDirectionsService = orsDirectionsService;
+        this.geometryStore = geometryStore;
+        this.entityManager = entityManager;
+        this.readTransaction = new TransactionTemplate(transactionManager);
+        this.readTransaction.setReadOnly(true);
+        this.writeTransaction = new TransactionTemplate(transactionManager);
+        this.repairRadius = repairRadius;
+    }
+
+    /**
+     * @return rutten efter ändringen, eller tom om den inte finns eller tillhör någon annan
+     * @throws IllegalArgumentException om ett stopp som ska tas bort inte finns i rutten
+     * @throws ObjectOptimisticLockingFailureException om rutten ändrades av någon annan under tiden
+     */
+    public Optional<RouteDetailResponse> editStops(Long routeId, RouteStopEditRequest request) {
+        long startNanos = System.nanoTime();
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        boolean isAdmin = auth.getAuthorities().stream()
+                .anyMatch(a -> "ROLE_ADMIN".equals(a.getAuthority()));
+
+        // Läses med stopp, ägare och geometri; används bara som utgångsläge när transaktionen är slut
+        Optional<RouteEntity> found = readTransaction.execute(status -> routeRepository.findDetailById(routeId))
+                .filter(route -> isAdmin || route.getOwner().getUsername().equals(auth.getName()));
+        if (found.isEmpty()) return Optional.empty();
+        RouteEntity route = found.get();
+
+        // 1. Nuvarande ordning utan de borttagna stoppen
+        List<RouteStopEntity> current = route.getStops().stream()
+                .sorted(Comparator.comparingInt(RouteStopEntity::getOrderIndex))
+                .toList();
+        Set<Long> remove = request.remove() == null ? Set.of() : new HashSet<>(request.remove());
+        Set<Long> known = new HashSet<>();
+        current.forEach(s -> known.add(s.getId()));
+        for (Long id : remove) {
+            if (!known.contains(id)) {
+                throw new IllegalArgumentException("Stop " + id + " is not part of route " + routeId);
+            }
+        }
+
+        List<StopResponse> kept = new ArrayList<>();
+        // Matrisindex (1..m) för stopp som fått en ny granne, där rutten ska repareras
+        Set<Integer> touched = new HashSet<>();
+        int keepFirst = 0;
+        boolean removedSinceLastKept = false;
+        for (int i = 0; i < current.size(); i++) {
+            RouteStopEntity s = current.get(i);
+            if (remove.contains(s.getId())) {
+                removedSinceLastKept = true;
+                continue;
+            }
+            kept.add(new StopResponse(String.valueOf(s.getId()), s.getLabel(), s.getAddress(),
+                    s.getLatitude(), s.getLongitude(), kept.size(), s.getComment()));
+            if (removedSinceLastKept) touched.add(kept.size());
+            removedSinceLastKept = false;
+            if (request.keepFirst() != null && i < request.keepFirst()) keepFirst = kept.size();
+        }
+        if (removedSinceLastKept && !kept.isEmpty()) touched.add(kept.size());
+
+        // 2. Depåer och nya stopp. Depåerna ligger nästan alltid i geokodnings-cachen.
+        List<StopRequest> toAdd = request.add() == null ? List.of() : request.add();
+        RouteOptimizationService.GeocodedRoute geocoded = routeService.geocode(new RouteOptimizationRequest(
+                route.getStartAddress(), route.getEndAddress(), toAdd, false));
+        List<StopResponse> added = geocoded.stops();
+
+        // Platser: 0 = start, 1..m = kvarvarande stopp, m + 1 = slut, m + 2.. = nya stopp
+        int m = kept.size(), k = added.size(), end = m + 1;
+        List<StopResponse> all = new ArrayList<>(kept);
+        all.addAll(added);
+        List<List<Double>> locations = new RouteOptimizationService.GeocodedRoute(geocoded.start(), kept, geocoded.end())
+                .locations();
+        added.forEach(s -> locations.add(List.of(s.longitude(), s.latitude())));
+        int size = locations.size();
+
+        // 3. Nya stoppens rader och kolumner, i så stora bitar som ryms i ett anrop
+        double[][] fromNew = new double[k][];
+        double[][] toNew = new double[k][size];
+        int matrixCalls = 0;
+        List<Integer> everyone = IntStream.range(0, size).boxed().toList();
+        int chunk = Math.max(1, OrsMatrixService.MAX_CELLS / size);
+        for (int first = 0; first < k; first += chunk) {
+            List<Integer> sources = IntStream.range(first, Math.min(k, first + chunk)).map(i -> m + 2 + i).boxed().toList();
+            double[][] rows = orsMatrixService.getDurations(locations, sources, everyone);
+            double[][] columns = orsMatrixService.getDurations(locations, everyone, sources);
+            matrixCalls += 2;
+            for (int i = 0; i < sources.size(); i++) {
+                fromNew[first + i] = rows[i];
+                for (int j = 0; j < size; j++) {
+                    toNew[first + i][j] = columns[j][i];
+                }
+            }
+        }
+
+        double secondsPerKm = measuredSecondsPerKm(locations, fromNew, m);
+        RouteEditor.Durations estimated = (from, to) -> {
+            if (from >= m + 2) return fromNew[from - m - 2][to];
+            if (to >= m + 2) return toNew[to - m - 2][from];
+            return km(locations.get(from), locations.get(to)) * secondsPerKm;
+        };
+
+        // Uppskattad förändring av körtiden, uppdateras för varje steg nedan
+        double delta = (pathKm(locations.subList(0, end + 1))
+                - pathKm(originalPath(current, locations.get(0), locations.get(end)))) * secondsPerKm;
+
+        // 4. Billigaste insättning, ett nytt stopp i taget
+        List<Integer> order = new ArrayList<>(IntStream.rangeClosed(1, m).boxed().toList());
+        for (int i = 0; i < k; i++) {
+            int stop = m + 2 + i;
+            RouteEditor.Insertion insertion = RouteEditor.cheapestInsertion(order, 0, end, stop, keepFirst, estimated);
+            order.add(insertion.position(), stop);
+            delta += insertion.delta();
+            touched.add(stop);
+        }
+
+        // 5. Lokal reparation med riktiga tider runt varje ändring
+        List<Integer> changedPositions = new ArrayList<>();
+        for (int p = 0; p < order.size(); p++) {
+            if (touched.contains(order.get(p))) changedPositions.add(p);
+        }
+        List<int[]> windows = RouteEditor.repairWindows(changedPositions, order.size(), repairRadius, keepFirst, MAX_WINDOW);
+        for (int[] window : windows) {
+            delta += repair(order, window[0], window[1], end, all, locations);
+            matrixCalls++;
+        }
+
+        if (Double.isInfinite(delta)) {
+            throw new IllegalStateException("No drivable route through the edited stops");
+        }
+
+        // 6. Den nya ordningen och geometrin, fortfarande utan transaktion
+        List<StopResponse> finalStops = new ArrayList<>(order.size());
+        for (int p = 0; p < order.size(); p++) {
+            StopResponse s = all.get(stopIndex(order.get(p), m));
+            finalStops.add(new StopResponse(s.id(), s.label(), s.address(), s.latitude(), s.longitude(), p, s.comment()));
+        }
+        String geometry = null;
+        if (request.refreshGeometry() == null || request.refreshGeometry()) {
+            List<List<Double>> path = new ArrayList<>();
+            path.add(locations.get(0));
+            finalStops.forEach(s -> path.add(List.of(s.longitude(), s.latitude())));
+            path.add(locations.get(end));
+            geometry = orsDirectionsService.getRouteGeometry(path);
+        }
+
+        // 7. Kort skrivning mot samma version som lästes. Versionen räknas upp även när bara stoppen
+        //    ändras, så en samtidig ändring som hinner före ger ett konflikt-fel istället för att skrivas över.
+        double change = delta;
+        String newGeometry = geometry;
+        RouteStopMerger.Result[] merge = new RouteStopMerger.Result[1];
+        RouteDetailResponse saved = writeTransaction.execute(status -> {
+            RouteEntity fresh = routeRepository.findDetailById(routeId)
+                    .filter(r -> Objects.equals(r.getVersion(), route.getVersion()))
+                    .orElseThrow(() -> new ObjectOptimisticLockingFailureException(RouteEntity.class, routeId));
+
+            merge[0] = RouteStopMerger.merge(fresh, finalStops);
+            if (fresh.getTotalDuration() != null) {
+                fresh.setTotalDuration(Math.max(0, Math.round(fresh.getTotalDuration() + change)));
+            }
+            if (newGeometry != null) {
+                fresh.setGeometryBlob(geometryStore.intern(newGeometry, fresh.getGeometryBlob()));
+            }
+            entityManager.lock(fresh, LockModeType.OPTIMISTIC_FORCE_INCREMENT);
+            routeRepository.saveAndFlush(fresh);
+            return RouteOptimizationService.toDetail(fresh);
+        });
+
+        log.info("Edited route {}: +{} -{} stops, {} repair windows, {} matrix calls, {} stop writes in {} ms",
+                routeId, k, remove.size(), windows.size(), matrixCalls, merge[0].writes(),
+                (System.nanoTime() - startNanos) / 1_000_000);
+        return Optional.of(saved);
+    }
+
+    // 2-opt på order[from..to] med grannarna utanför som fasta ändar. Returnerar hur mycket tiden ändrades.
+    private double repair(List<Integer> order, int from, int to, int end, List<StopResponse> all,
+                          List<List<Double>> locations) {
+        int m = end - 1;
+        List<Integer> indices = new ArrayList<>();
+        indices.add(from == 0 ? 0 : order.get(from - 1));
+        indices.addAll(order.subList(from, to + 1));
+        indices.add(to == order.size() - 1 ? end : order.get(to + 1));
+
+        double[][] local = orsMatrixService.getDurations(indices.stream().map(locations::get).toList());
+        List<StopResponse> stops = order.subList(from, to + 1).stream()
+                .map(i -> all.get(stopIndex(i, m)))
+                .toList();
+        List<StopResponse> improved = TspSolver.optimizeTwoOpt(stops, local, stops);
+
+        double before = 0, after = 0;
+        for (int i = 0; i + 1 < local.length; i++) {
+            before += local[i][i + 1];
+        }
+        int prev = 0;
+        for (StopResponse s : improved) {
+            int current = stops.indexOf(s) + 1;
+            after += local[prev][current];
+            prev = current;
+        }
+        after += local[prev][local.length - 1];
+        if (after >= before) return 0;
+
+        List<Integer> original = List.copyOf(order.subList(from, to + 1));
+        for (int i = 0; i < improved.size(); i++) {
+            order.set(from + i, original.get(stops.indexOf(improved.get(i))));
+        }
+        return after - before;
+    }
+
+    // Matrisindex -> index i listan kept + added
+    private static int stopIndex(int matrixIndex, int m) {
+        return matrixIndex <= m ? matrixIndex - 1 : matrixIndex - 2;
+    }
+
+    // Hastigheten mätt på de nya stoppens rader mot de befintliga platserna
+    private static double measuredSecondsPerKm(List<List<Double>> locations, double[][] fromNew, int m) {
+        List<double[]> pairs = new ArrayList<>();
+        for (int i = 0; i < fromNew.length; i++) {
+            for (int j = 0; j <= m + 1; j++) {
+                pairs.add(new double[]{fromNew[i][j], km(locations.get(m + 2 + i), locations.get(j))});
+            }
+        }
+        return RouteEditor.secondsPerKm(
+                pairs.stream().mapToDouble(p -> p[0]).toArray(),
+                pairs.stream().mapToDouble(p -> p[1]).toArray(),
+                DEFAULT_SECONDS_PER_KM);
+    }
+
+    // Rutten före ändringen: start, alla stopp (även borttagna), slut
+    private static List<List<Double>> originalPath(List<RouteStopEntity> current, List<Double> start, List<Double> end) {
+        List<List<Double>> path = new ArrayList<>(current.size() + 2);
+        path.add(start);
+        current.forEach(s -> path.add(List.of(s.getLongitude(), s.getLatitude())));
+        path.add(end);
+        return path;
+    }
+
+    private static double pathKm(List<List<Double>> path) {
+        double km = 0;
+        for (int i = 0; i + 1 < path.size(); i++) {
+            km += km(path.get(i), path.get(i + 1));
+        }
+        return km;
+    }
+
+    // [longitud, latitud] som i ORS-anropen
+    private static double km(List<Double> a, List<Double> b) {
+        return DistanceCalculator.distanceInKm(a.get(1), a.get(0), b.get(1), b.get(0));
+    }
+}
@@ -0,0 +1,87 @@
+package se.brankoov.routing.domain.route;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Beräkningarna bakom RouteEditService: billigaste insättning och vilka delar av rutten som ska repareras.
+ * Allt arbetar med matrisindex och en tidsfunktion, så att det går att testa utan ORS.
+ */
+final class RouteEditor {
+
+    /** Tid från plats from till plats to, i sekunder. */
+    @FunctionalInterface
+    interface Durations {
+        double between(int from, int to);
+    }
+
+    /**
+     * @param position stoppet sätts in före order[position] (position == order.size() betyder sist)
+     * @param delta    hur mycket längre rutten blir
+     */
+    record Insertion(int position, double delta) {}
+
+    private RouteEditor() {
+        // utility class, no instances
+    }
+
+    /** Billigaste platsen för stop i order, men aldrig före minPosition (stopp som redan är körda). */
+    static Insertion cheapestInsertion(List<Integer> order, int start, int end, int stop, int minPosition, Durations d) {
+        Insertion best = null;
+        for (int p = Math.min(minPosition, order.size()); p <= order.size(); p++) {
+            int prev = p == 0 ? start : order.get(p - 1);
+            int next = p == order.size() ? end : order.get(p);
+            double delta = d.between(prev, stop) + d.between(stop, next) - d.between(prev, next);
+            if (best == null || delta < best.delta()) {
+                best = new Insertion(p, delta);
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Fönster [från, till] (positioner i rutten) runt de ändrade positionerna, radius åt varje håll.
+     * Fönster som överlappar eller ligger kant i kant slås ihop så länge de blir högst maxLength långa,
+     * och inget fönster börjar före minPosition.
+     */
+    static List<int[]> repairWindows(List<Integer> changedPositions, int size, int radius, int minPosition, int maxLength) {
+        List<int[]> windows = new ArrayList<>();
+        if (radius <= 0 || size == 0) return windows;
+
+        int[] sorted = changedPositions.stream().mapToInt(Integer::intValue).sorted().toArray();
+        for (int p : sorted) {
+            int from = Math.max(minPosition, p - radius);
+            int to = Math.min(size - 1, p + radius);
+            if (from >= to) continue;
+
+            int[] last = windows.isEmpty() ? null : windows.get(windows.size() - 1);
+            if (last == null || from > last[1] + 1) {
+                windows.add(new int[]{from, to});
+            } else if (to - last[0] + 1 <= maxLength) {
+                last[1] = Math.max(last[1], to);
+            } else if (last[1] + 1 < to) {
+                // För långt för ett fönster: fortsätt i ett nytt direkt efter
+                windows.add(new int[]{last[1] + 1, to});
+            }
+        }
+        return windows;
+    }
+
+    /**
+     * Sekunder per km fågelväg, som median över uppmätta par. Används för att uppskatta de ben i rutten
+     * som vi inte har hämtat från ORS. Par som ligger nästan på varandra ger ingen vettig kvot och hoppas över.
+     */
+    static double secondsPerKm(double[] seconds, double[] km, double fallback) {
+        double[] ratios = new double[seconds.length];
+        int count = 0;
+        for (int i = 0; i < seconds.length; i++) {
+            if (km[i] > 0.2 && seconds[i] > 0 && Double.isFinite(seconds[i])) {
+                ratios[count++] = seconds[i] / km[i];
+            }
+        }
+        if (count == 0) return fallback;
+        Arrays.sort(ratios, 0, count);
+        return ratios[count / 2];
+    }
+}
@@ -0,0 +1,30 @@
+package se.brankoov.routing.domain.route;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * En rutt i exportformatet (en JSON-rad per rutt i NDJSON). Samma format läses vid import.
+ * Inga databas-id:n – rutten får nya id:n i målmiljön och kopplas till ägaren via användarnamnet.
+ */
+public record RouteExportRecord(
+        String ownerUsername,
+        String name,
+        String description,
+        String startAddress,
+        String endAddress,
+        String geometry,
+        Long totalDuration,
+        Integer averageStopDuration,
+        Instant createdAt,
+        List<Stop> stops
+) {
+    public record Stop(
+            String label,
+            String address,
+            Double latitude,
+            Double longitude,
+            int orderIndex,
+            String comment
+    ) {}
+}
@@ -0,0 +1,80 @@
+package se.brankoov.routing.domain.route;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import se.brankoov.routing.domain.route.entity.LegacyGeometryRow;
+import se.brankoov.routing.domain.route.entity.RouteGeometryEntity;
+import se.brankoov.routing.domain.route.entity.RouteRepository;
+
+import java.util.List;
+
+/**
+ * Flyttar geometrin för rutter från innan route_geometries fanns (routes.geometry, okomprimerad text)
+ * till route_geometries, komprimerad och hashad som allt annat via GeometryStore.
+ *
+ * Körs i block om batch-size rutter, ett block per transaktion, så att tabellen aldrig låses länge.
+ * Flytten är idempotent – flera instanser kan köra samtidigt. När inget finns kvar slutar jobbet.
+ */
+@Component
+public class RouteGeometryBackfillJob {
+
+    private static final Logger log = LoggerFactory.getLogger(RouteGeometryBackfillJob.class);
+
+    private final RouteRepository routeRepository;
+    private final GeometryStore geometryStore;
+    private final TransactionTemplate transactionTemplate;
+    private final int batchSize;
+
+    private volatile boolean done;
+
+    public RouteGeometryBackfillJob(RouteRepository routeRepository,
+                                    GeometryStore geometryStore,
+                                    PlatformTransactionManager transactionManager,
+                                    @Value("${routing.geometry.backfill-batch-size:500}") int batchSize) {
+        this.routeRepository = routeRepository;
+        this.geometryStore = geometryStore;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.batchSize = batchSize;
+    }
+
+    @Scheduled(initialDelayString = "${routing.geometry.backfill-initial-delay:PT2M}",
+            fixedDelayString = "${routing.geometry.backfill-interval:PT6H}")
+    public void backfill() {
+        if (done) return;
+        try {
+            long moved = 0;
+            long afterId = 0;
+            while (true) {
+                List<LegacyGeometryRow> batch = routeRepository.findLegacyGeometries(afterId, PageRequest.of(0, batchSize));
+                if (batch.isEmpty()) break;
+
+                Integer count = transactionTemplate.execute(status -> moveBatch(batch));
+                moved += count != null ? count : 0;
+                afterId = batch.get(batch.size() - 1).id();
+            }
+            if (moved > 0) {
+                log.info("Moved {} legacy route geometries to route_geometries", moved);
+            }
+            done = true;
+        } catch (Exception e) {
+            log.error("Route geometry backfill failed, retrying next run", e);
+        }
+    }
+
+    private int moveBatch(List<LegacyGeometryRow> batch) {
+        int moved = 0;
+        for (LegacyGeometryRow row : batch) {
+            RouteGeometryEntity blob = geometryStore.intern(row.geometry(), null);
+            // Tom geometri finns inget att flytta för – den läses fortfarande som förut
+            if (blob == null) continue;
+            moved += routeRepository.moveLegacyGeometry(row.id(), blob.getHash());
+        }
+        return moved;
+    }
+}
@@ -0,0 +1,46 @@
+package se.brankoov.routing.domain.route;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import se.brankoov.routing.domain.route.entity.RouteGeometryRepository;
+
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Tar bort rader i route_geometries som ingen rutt använder längre.
+ *
+ * En geometri kan delas av många rutter (kopior vid tilldelning, omsparningar), så den kan inte
+ * tas bort tillsammans med rutten. Istället städas oanvända rader bort här. En sparning som pågår
+ * låser sin rad (GeometryStore.intern), och rader yngre än grace-perioden lämnas kvar.
+ */
+@Component
+public class RouteGeometryCleanupJob {
+
+    private static final Logger log = LoggerFactory.getLogger(RouteGeometryCleanupJob.class);
+
+    private final RouteGeometryRepository geometryRepository;
+    private final Duration grace;
+
+    public RouteGeometryCleanupJob(RouteGeometryRepository geometryRepository,
+                                   @Value("${routing.geometry.cleanup-grace:PT1H}") Duration grace) {
+        this.geometryRepository = geometryRepository;
+        this.grace = grace;
+    }
+
+    @Scheduled(initialDelayString = "${routing.geometry.cleanup-initial-delay:PT10M}",
+            fixedDelayString = "${routing.geometry.cleanup-interval:PT6H}")
+    public void deleteUnreferenced() {
+        try {
+            int deleted = geometryRepository.deleteUnreferenced(Instant.now().minus(grace));
+            if (deleted > 0) {
+                log.info("Deleted {} unreferenced route geometries", deleted);
+            }
+        } catch (Exception e) {
+            log.error("Route geometry cleanup failed", e);
+        }
+    }
+}
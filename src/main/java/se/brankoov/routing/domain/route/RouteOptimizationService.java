@@ -1,11 +1,23 @@
 package se.brankoov.routing.domain.route;
 
+import com.google.common.hash.HashCode;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import se.brankoov.routing.api.route.RouteDetailResponse;
 import se.brankoov.routing.api.route.RouteOptimizationRequest;
 import se.brankoov.routing.api.route.RouteOptimizationResponse;
+import se.brankoov.routing.api.route.RouteSummaryPage;
 import se.brankoov.routing.api.route.SaveRouteRequest;
+import se.brankoov.routing.api.route.SavedStopResponse;
 import se.brankoov.routing.api.route.StopResponse;
 import se.brankoov.routing.domain.auth.UserEntity;
 import se.brankoov.routing.domain.auth.UserRepository;
@@ -13,17 +25,34 @@ import se.brankoov.routing.domain.geocode.GeocodingService;
 import se.brankoov.routing.domain.route.entity.RouteEntity;
 import se.brankoov.routing.domain.route.entity.RouteRepository;
 import se.brankoov.routing.domain.route.entity.RouteStopEntity;
+import se.brankoov.routing.domain.route.entity.RouteSummary;
 import se.brankoov.routing.infra.ors.OrsDirectionsService;
 import se.brankoov.routing.infra.ors.OrsMatrixService;
 
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
 import java.util.stream.IntStream;
 
 @Service
 public class RouteOptimizationService {
 
-    private static final double END_WEIGHT = 0.1;
+    private static final Logger log = LoggerFactory.getLogger(RouteOptimizationService.class);
+
+    private static final int MAX_PAGE_SIZE = 100;
+
+    // Största rutt vars hela matris ryms i ett ORS-anrop: (n + 2)² <= MAX_CELLS ger n = 57.
+    // Fler stopp än så löses i fönster (se LargeRouteSolver).
+    static final int LARGE_THRESHOLD = (int) Math.sqrt(OrsMatrixService.MAX_CELLS) - 2;
 
     private final RoutingEngine routingEngine;
     private final GeocodingService geocodingService;
@@ -31,266 +60,267 @@ public class RouteOptimizationService {
     private final UserRepository userRepository;
     private final OrsMatrixService orsMatrixService;
     private final OrsDirectionsService orsDirectionsService;
+    private final GeometryStore geometryStore;
+    private final ObservationRegistry observationRegistry;
+    private final SolverSettings solverSettings;
+    private final int windowSize;
+    private final OptimizeResultCache resultCache;
+    // Delas av alla som geokodar stopp (optimize, batch, utskick), så att ORS aldrig får fler samtidiga anrop än så
+    private final ExecutorService geocodeWorkers;
 
     public RouteOptimizationService(RoutingEngine routingEngine,
                                     GeocodingService geocodingService,
                                     RouteRepository routeRepository,
                                     UserRepository userRepository,
                                     OrsMatrixService orsMatrixService,
-                                    OrsDirectionsService orsDirectionsService) {
+                                    OrsDirectionsService orsDirectionsService,
+                                    GeometryStore geometryStore,
+                                    ObservationRegistry observationRegistry,
+                                    @Value("${routing.solver.restarts:50}") int restarts,
+                                    @Value("${routing.solver.seed:#{null}}") Long seed,
+                                    @Value("${routing.solver.window-size:48}") int windowSize,
+                                    @Value("${geocode.threads:8}") int geocodeThreads,
+                                    OptimizeResultCache resultCache) {
         this.routingEngine = routingEngine;
         this.geocodingService = geocodingService;
         this.routeRepository = routeRepository;
         this.userRepository = userRepository;
         this.orsMatrixService = orsMatrixService;
         this.orsDirectionsService = orsDirectionsService;
+        this.geometryStore = geometryStore;
+        this.observationRegistry = observationRegistry;
+        this.solverSettings = new SolverSettings(restarts, seed);
+        this.windowSize = windowSize;
+        this.resultCache = resultCache;
+
+        AtomicInteger counter = new AtomicInteger();
+        this.geocodeWorkers = Executors.newFixedThreadPool(Math.max(1, geocodeThreads), r -> {
+            Thread t = new Thread(r, "geocode-" + counter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
     }
 
-    public RouteOptimizationResponse optimize(RouteOptimizationRequest request) {
-        // 1. Geokoda Start
-        GeocodingService.LatLng startPos = geocodingService
-                .geocodeFirst(request.startAddress())
-                .orElseThrow(() -> new RuntimeException("Could not geocode start address"));
+    @PreDestroy
+    void shutdown() {
+        geocodeWorkers.shutdownNow();
+    }
 
-        // 2. Geokoda Stopp
-        List<StopResponse> stopsWithCoords = request.stops().stream().map(s -> {
-            Double lat = s.latitude();
-            Double lng = s.longitude();
-            if (lat == null || lng == null) {
-                var maybe = geocodingService.geocodeFirst(s.address());
-                if (maybe.isPresent()) {
-                    lat = maybe.get().lat();
-                    lng = maybe.get().lng();
-                }
-            }
-            // --- HÄR KOPIERAR VI KOMMENTAREN ---
-            return new StopResponse(s.id(), s.label(), s.address(), lat, lng, 0, s.comment());
-        }).toList();
-
-        // 3. Geokoda Slut
-        GeocodingService.LatLng endPos = geocodingService
-                .geocodeFirst(request.endAddress())
-                .orElseThrow(() -> new RuntimeException("Could not geocode end address"));
-
-
-        // 4. Bygg Matrix Request
-        List<List<Double>> matrixRequestCoords = new ArrayList<>();
-        matrixRequestCoords.add(List.of(startPos.lng(), startPos.lat()));
-        for (StopResponse s : stopsWithCoords) {
-            if (s.longitude() != null && s.latitude() != null) {
-                matrixRequestCoords.add(List.of(s.longitude(), s.latitude()));
-            } else {
-                throw new RuntimeException("Failed to geocode stop: " + s.address());
+    /**
+     * Kör ett steg i optimeringen som en observation: ger timern routing.stage{stage=...}
+     * (syns i /actuator/prometheus) och ett eget span i tracen för anropet.
+     */
+    private <T> T stage(String name, Supplier<T> body) {
+        return Observation.createNotStarted("routing.stage", observationRegistry)
+                .lowCardinalityKeyValue("stage", name)
+                .observe(body);
+    }
+
+    /** Start, stopp och slut med koordinater, efter geokodning. */
+    record GeocodedRoute(GeocodingService.LatLng start, List<StopResponse> stops, GeocodingService.LatLng end) {
+
+        // Matrisens ordning: start, stoppen, slut – [longitud, latitud] som ORS vill ha
+        List<List<Double>> locations() {
+            List<List<Double>> locations = new ArrayList<>(stops.size() + 2);
+            locations.add(List.of(start.lng(), start.lat()));
+            for (StopResponse s : stops) {
+                locations.add(List.of(s.longitude(), s.latitude()));
             }
+            locations.add(List.of(end.lng(), end.lat()));
+            return locations;
         }
-        matrixRequestCoords.add(List.of(endPos.lng(), endPos.lat()));
+    }
 
-        // 5. Hämta Matris
-        double[][] durations = orsMatrixService.getDurations(matrixRequestCoords);
-        System.out.println("✅ ORS Matrix svarade! Storlek: " + durations.length + "x" + durations[0].length);
+    public RouteOptimizationResponse optimize(RouteOptimizationRequest request) {
+        GeocodedRoute route = geocode(request);
 
-        // 6. Bestäm ordning
-        List<StopResponse> finalRouteOrder;
+        // 4-8. Samma koordinater och inställningar som nyligen ger samma svar direkt (se OptimizeResultCache)
+        OptimizeResultCache.Result result = resultCache.get(cacheKey(route, request.optimize()),
+                () -> isLarge(route, request.optimize())
+                        ? solveLarge(route)
+                        : solve(route, fetchDurations(route), request.optimize()));
 
-        if (request.optimize()) {
-            System.out.println("Startar optimering...");
-            List<StopResponse> bestRouteSoFar = solveTspNearestNeighbour(stopsWithCoords, durations);
-            bestRouteSoFar = optimizeTwoOpt(bestRouteSoFar, durations, stopsWithCoords);
-
-            double minDuration = calculateTotalCost(bestRouteSoFar, durations, stopsWithCoords);
-            int ITERATIONS = 50;
-            System.out.println("Kör " + ITERATIONS + " iterationer av Simulated Annealing...");
-
-            for (int i = 0; i < ITERATIONS; i++) {
-                List<StopResponse> candidate = solveSimulatedAnnealing(new ArrayList<>(bestRouteSoFar), durations, stopsWithCoords);
-                double cost = calculateTotalCost(candidate, durations, stopsWithCoords);
-                if (cost < minDuration) {
-                    minDuration = cost;
-                    bestRouteSoFar = new ArrayList<>(candidate);
-                }
-            }
-            finalRouteOrder = bestRouteSoFar;
-        } else {
-            System.out.println("Hoppar över optimering. Använder originalordning.");
-            finalRouteOrder = new ArrayList<>(stopsWithCoords);
-        }
+        return toResponse(route, result);
+    }
 
-        // 7. Hämta Geometri
-        List<List<Double>> finalPath = new ArrayList<>();
-        finalPath.add(List.of(startPos.lng(), startPos.lat()));
-        for (StopResponse s : finalRouteOrder) {
-            finalPath.add(List.of(s.longitude(), s.latitude()));
+    // 1-3. Geokoda start, stopp och slut (träff/miss per cache-nivå: geocode.lookups)
+    GeocodedRoute geocode(RouteOptimizationRequest request) {
+        GeocodedRoute route = geocodeAllowingMisses(request);
+
+        for (StopResponse s : route.stops()) {
+            if (s.longitude() == null || s.latitude() == null) {
+                throw new RuntimeException("Failed to geocode stop: " + s.address());
+            }
         }
-        finalPath.add(List.of(endPos.lng(), endPos.lat()));
+        return route;
+    }
 
-        String geometry = orsDirectionsService.getRouteGeometry(finalPath);
+    /** Som geocode, men stopp som inte gick att geokoda får null som koordinater istället för ett fel. */
+    GeocodedRoute geocodeAllowingMisses(RouteOptimizationRequest request) {
+        return stage("geocode", () -> new GeocodedRoute(
+                geocodingService.geocodeFirst(request.startAddress())
+                        .orElseThrow(() -> new RuntimeException("Could not geocode start address")),
+                geocodeStops(request),
+                geocodingService.geocodeFirst(request.endAddress())
+                        .orElseThrow(() -> new RuntimeException("Could not geocode end address"))));
+    }
 
-        // 8. Räkna ut total tid
-        long totalSeconds = calculateTotalDuration(finalRouteOrder, durations, stopsWithCoords);
+    HashCode cacheKey(GeocodedRoute route, boolean optimize) {
+        return OptimizeResultCache.key(route.start(), route.end(), route.stops(), optimize, solverSettings);
+    }
 
-        // 9. Returnera (Uppdatera ordningsnummer index och behåll kommentar)
-        List<StopResponse> finalResult = IntStream.range(0, finalRouteOrder.size())
+    // 9. Bygg svaret från requestens egna stopp (uppdatera ordningsnummer och behåll kommentar)
+    RouteOptimizationResponse toResponse(GeocodedRoute route, OptimizeResultCache.Result result) {
+        int[] order = result.order();
+        List<StopResponse> finalResult = IntStream.range(0, order.length)
                 .mapToObj(i -> {
-                    var s = finalRouteOrder.get(i);
+                    var s = route.stops().get(order[i]);
                     // --- HÄR MÅSTE KOMMENTAREN MED OCKSÅ ---
                     return new StopResponse(s.id(), s.label(), s.address(), s.latitude(), s.longitude(), i, s.comment());
                 })
                 .toList();
 
-        return new RouteOptimizationResponse(finalResult, finalResult.size(), geometry, totalSeconds);
+        return new RouteOptimizationResponse(finalResult, finalResult.size(), result.geometry(), result.totalSeconds());
     }
 
-    private long calculateTotalDuration(List<StopResponse> route, double[][] durations, List<StopResponse> originalStops) {
-        return (long) calculateTotalCost(route, durations, originalStops);
+    // 4-5. Bygg matrix-request och hämta matrisen
+    private double[][] fetchDurations(GeocodedRoute route) {
+        List<List<Double>> locations = route.locations();
+        double[][] durations = stage("matrix", () -> orsMatrixService.getDurations(locations));
+        log.debug("ORS matrix {}x{}", durations.length, durations[0].length);
+        return durations;
     }
 
-    private double calculateTotalCost(List<StopResponse> route, double[][] durations, List<StopResponse> originalStops) {
-        double totalTime = 0;
-        int endIndex = durations.length - 1;
-        int prevMatrixIndex = 0;
+    /**
+     * 6-8. Ordning, geometri och total tid för en geokodad rutt med färdig matris
+     * (från ORS direkt, eller utskuren ur en delad matris i BatchOptimizationService).
+     */
+    OptimizeResultCache.Result solve(GeocodedRoute route, double[][] durations, boolean optimize) {
+        List<StopResponse> stopsWithCoords = route.stops();
 
-        for (StopResponse stop : route) {
-            int currentMatrixIndex = originalStops.indexOf(stop) + 1;
-            totalTime += durations[prevMatrixIndex][currentMatrixIndex];
-            prevMatrixIndex = currentMatrixIndex;
-        }
-        totalTime += durations[prevMatrixIndex][endIndex];
-        return totalTime;
-    }
-
-    private List<StopResponse> solveTspNearestNeighbour(List<StopResponse> stops, double[][] durations) {
-        List<StopResponse> remaining = new ArrayList<>(stops);
-        List<StopResponse> ordered = new ArrayList<>();
-        int endIndex = durations.length - 1;
-        int currentIndex = 0;
+        // 6. Bestäm ordning
+        List<StopResponse> finalRouteOrder;
 
-        while (!remaining.isEmpty()) {
-            int bestStopIndex = -1;
-            double bestScore = Double.MAX_VALUE;
+        if (optimize) {
+            List<StopResponse> nearest = stage("solve.nearest-neighbour",
+                    () -> TspSolver.solveTspNearestNeighbour(stopsWithCoords, durations));
+            List<StopResponse> twoOpt = stage("solve.two-opt",
+                    () -> TspSolver.optimizeTwoOpt(nearest, durations, stopsWithCoords));
 
-            for (int i = 0; i < remaining.size(); i++) {
-                StopResponse candidate = remaining.get(i);
-                int matrixIndex = stops.indexOf(candidate) + 1;
+            finalRouteOrder = stage("solve.annealing",
+                    () -> TspSolver.anneal(twoOpt, durations, stopsWithCoords, solverSettings));
+            log.debug("Optimized {} stops ({} annealing restarts)", stopsWithCoords.size(), solverSettings.restarts());
+        } else {
+            log.debug("Optimization skipped, keeping original order of {} stops", stopsWithCoords.size());
+            finalRouteOrder = new ArrayList<>(stopsWithCoords);
+        }
 
-                double timeToCandidate = durations[currentIndex][matrixIndex];
-                double timeToFinish = durations[matrixIndex][endIndex] * END_WEIGHT;
+        // 8. Räkna ut total tid. Oändligt = lösaren hittade ingen ordning utan ett ben som ORS inte kan köra.
+        double totalCost = TspSolver.calculateTotalCost(finalRouteOrder, durations, stopsWithCoords);
+        if (Double.isInfinite(totalCost)) {
+            throw new IllegalStateException("No drivable route through all stops");
+        }
+        long totalSeconds = (long) totalCost;
 
-                double score = timeToCandidate + timeToFinish;
+        return finish(route, finalRouteOrder, totalSeconds);
+    }
 
-                if (score < bestScore) {
-                    bestScore = score;
-                    bestStopIndex = i;
-                }
-            }
-            StopResponse next = remaining.remove(bestStopIndex);
-            ordered.add(next);
-            currentIndex = stops.indexOf(next) + 1;
-        }
-        return ordered;
+    // Hela matrisen ryms inte i ett ORS-anrop
+    boolean isLarge(GeocodedRoute route, boolean optimize) {
+        return optimize && route.stops().size() > LARGE_THRESHOLD;
     }
 
-    private List<StopResponse> optimizeTwoOpt(List<StopResponse> route, double[][] durations, List<StopResponse> originalStops) {
-        List<StopResponse> improvedRoute = new ArrayList<>(route);
-        boolean improvement = true;
-        int loopCount = 0;
-
-        while (improvement && loopCount < 50) {
-            improvement = false;
-            loopCount++;
-            for (int i = 0; i < improvedRoute.size() - 1; i++) {
-                for (int k = i + 1; k < improvedRoute.size(); k++) {
-                    double currentDist = calculateSegmentCost(improvedRoute, durations, originalStops, i, k);
-                    List<StopResponse> newRoute = twoOptSwap(improvedRoute, i, k);
-                    double newDist = calculateSegmentCost(newRoute, durations, originalStops, i, k);
-
-                    if (newDist < currentDist) {
-                        improvedRoute = newRoute;
-                        improvement = true;
-                    }
-                }
+    /**
+     * 4-8 för stora rutter: stoppen i Hilbertordning, bara matrisblocken längs diagonalen hämtas
+     * (ett anrop per block, i tur och ordning) och fönstren löses parallellt.
+     */
+    OptimizeResultCache.Result solveLarge(GeocodedRoute route) {
+        List<StopResponse> curve = LargeRouteSolver.curveOrder(route.start(), route.stops(), route.end());
+        List<List<Double>> locations = new GeocodedRoute(route.start(), curve, route.end()).locations();
+        TiledMatrix matrix = new TiledMatrix(locations.size(), windowSize);
+
+        List<int[]> tiles = LargeRouteSolver.bandTiles(matrix);
+        stage("matrix", () -> {
+            for (int[] tile : tiles) {
+                matrix.fetch(tile[0], tile[1], locations, orsMatrixService);
             }
-        }
-        return improvedRoute;
-    }
+            return tiles.size();
+        });
 
-    private List<StopResponse> twoOptSwap(List<StopResponse> route, int i, int k) {
-        List<StopResponse> newRoute = new ArrayList<>();
-        for (int c = 0; c <= i - 1; c++) newRoute.add(route.get(c));
-        for (int c = k; c >= i; c--) newRoute.add(route.get(c));
-        for (int c = k + 1; c < route.size(); c++) newRoute.add(route.get(c));
-        return newRoute;
-    }
+        int[] tour = stage("solve.large", () -> LargeRouteSolver.solve(curve, matrix, solverSettings));
+        log.debug("Optimized {} stops in {} windows ({} matrix tiles)", curve.size(), matrix.blocks(), tiles.size());
 
-    private double calculateSegmentCost(List<StopResponse> route, double[][] durations, List<StopResponse> originalStops, int i, int k) {
-        int prevMatrixIndex = (i == 0) ? 0 : originalStops.indexOf(route.get(i - 1)) + 1;
-        double cost = 0;
-        for (int c = i; c <= k; c++) {
-            int currentMatrixIndex = originalStops.indexOf(route.get(c)) + 1;
-            cost += durations[prevMatrixIndex][currentMatrixIndex];
-            prevMatrixIndex = currentMatrixIndex;
+        List<StopResponse> finalRouteOrder = new ArrayList<>(curve.size());
+        for (int i = 1; i < tour.length - 1; i++) {
+            finalRouteOrder.add(curve.get(tour[i] - 1));
         }
-        int nextMatrixIndex = (k + 1 < route.size())
-                ? originalStops.indexOf(route.get(k + 1)) + 1
-                : durations.length - 1;
-        cost += durations[prevMatrixIndex][nextMatrixIndex];
-        return cost;
+        return finish(route, finalRouteOrder, LargeRouteSolver.totalSeconds(tour, matrix));
     }
 
-    private List<StopResponse> solveSimulatedAnnealing(List<StopResponse> currentRoute, double[][] durations, List<StopResponse> originalStops) {
-        if (currentRoute.size() < 2) {
-            return currentRoute;
-        }
+    // 7. Geometri, och ordningen som index i den geokodade stopplistan
+    private OptimizeResultCache.Result finish(GeocodedRoute route, List<StopResponse> finalRouteOrder, long totalSeconds) {
+        GeocodingService.LatLng startPos = route.start();
+        GeocodingService.LatLng endPos = route.end();
+        List<StopResponse> stopsWithCoords = route.stops();
 
-        List<StopResponse> bestRoute = new ArrayList<>(currentRoute);
-        List<StopResponse> currentSolution = new ArrayList<>(currentRoute);
-
-        double currentCost = calculateTotalCost(currentSolution, durations, originalStops);
-        double bestCost = currentCost;
-
-        double temperature = 5000.0;
-        double coolingRate = 0.98;
-        double absoluteTemperature = 0.1;
+        List<List<Double>> finalPath = new ArrayList<>();
+        finalPath.add(List.of(startPos.lng(), startPos.lat()));
+        for (StopResponse s : finalRouteOrder) {
+            finalPath.add(List.of(s.longitude(), s.latitude()));
+        }
+        finalPath.add(List.of(endPos.lng(), endPos.lat()));
 
-        while (temperature > absoluteTemperature) {
-            int n = currentSolution.size();
-            int i = (int) (Math.random() * n);
-            int k = (int) (Math.random() * n);
+        String geometry = stage("directions", () -> orsDirectionsService.getRouteGeometry(finalPath));
 
-            if (i >= k) {
-                int temp = i; i = k; k = temp;
-            }
+        // Lösaren flyttar runt samma objekt, så identitet räcker för att hitta tillbaka till index
+        Map<StopResponse, Integer> index = new IdentityHashMap<>();
+        for (int i = 0; i < stopsWithCoords.size(); i++) {
+            index.put(stopsWithCoords.get(i), i);
+        }
+        int[] order = finalRouteOrder.stream().mapToInt(index::get).toArray();
+        return new OptimizeResultCache.Result(order, geometry, totalSeconds);
+    }
 
-            if (i == k) {
-                temperature *= coolingRate;
-                continue;
-            }
+    // Stopp utan koordinater slås upp parallellt på geocodeWorkers. Ett fel för ett stopp ger bara null för det.
+    private List<StopResponse> geocodeStops(RouteOptimizationRequest request) {
+        List<Future<Optional<GeocodingService.LatLng>>> lookups = request.stops().stream()
+                .map(s -> s.latitude() == null || s.longitude() == null
+                        ? geocodeWorkers.submit(() -> geocodingService.geocodeFirst(s.address()))
+                        : null)
+                .toList();
 
-            List<StopResponse> newSolution = twoOptSwap(currentSolution, i, k);
-            double newCost = calculateTotalCost(newSolution, durations, originalStops);
-
-            if (newCost < currentCost) {
-                currentSolution = newSolution;
-                currentCost = newCost;
-
-                if (currentCost < bestCost) {
-                    bestRoute = new ArrayList<>(currentSolution);
-                    bestCost = currentCost;
-                }
-            } else {
-                double acceptanceProbability = Math.exp((currentCost - newCost) / temperature);
-                if (Math.random() < acceptanceProbability) {
-                    currentSolution = newSolution;
-                    currentCost = newCost;
-                }
+        List<StopResponse> stops = new ArrayList<>(lookups.size());
+        for (int i = 0; i < lookups.size(); i++) {
+            var s = request.stops().get(i);
+            Double lat = s.latitude();
+            Double lng = s.longitude();
+            if (lookups.get(i) != null) {
+                Optional<GeocodingService.LatLng> maybe = awaitLookup(lookups.get(i), s.address());
+                lat = maybe.map(GeocodingService.LatLng::lat).orElse(null);
+                lng = maybe.map(GeocodingService.LatLng::lng).orElse(null);
             }
-            temperature *= coolingRate;
+            // --- HÄR KOPIERAR VI KOMMENTAREN ---
+            stops.add(new StopResponse(s.id(), s.label(), s.address(), lat, lng, 0, s.comment()));
         }
+        return stops;
+    }
 
-        return bestRoute;
+    private static Optional<GeocodingService.LatLng> awaitLookup(Future<Optional<GeocodingService.LatLng>> lookup,
+                                                                 String address) {
+        try {
+            return lookup.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while geocoding", e);
+        } catch (ExecutionException e) {
+            log.warn("Geocoding failed for '{}': {}", address, e.getCause().getMessage());
+            return Optional.empty();
+        }
     }
 
+    // Svaret byggs inom transaktionen, geometri och stopp laddas inte efteråt (open-in-view är av)
     @Transactional
-    public RouteEntity saveRoute(SaveRouteRequest request) {
+    public RouteDetailResponse saveRoute(SaveRouteRequest request) {
         String username = SecurityContextHolder.getContext().getAuthentication().getName();
         UserEntity currentUser = userRepository.findByUsername(username)
                 .orElseThrow(() -> new RuntimeException("User not found"));
@@ -317,29 +347,75 @@ public class RouteOptimizationService {
         route.setDescription(request.description());
         route.setStartAddress(request.startAddress());
         route.setEndAddress(request.endAddress());
-        route.setGeometry(request.geometry());
+        // Oförändrad geometri ger ingen skrivning, ny geometri lagras en gång per innehåll
+        route.setGeometryBlob(geometryStore.intern(request.geometry(), route.getGeometryBlob()));
         route.setTotalDuration(request.totalDuration());
         route.setAverageStopDuration(request.averageStopDuration());
 
-        route.getStops().clear();
-        if (request.stops() != null) {
-            request.stops().forEach(s -> {
-                RouteStopEntity stopEntity = new RouteStopEntity(
-                        s.label(), s.address(), s.latitude(), s.longitude(), s.order()
-                );
-                // --- HÄR SPARAR VI KOMMENTAREN TILL DATABASEN ---
-                stopEntity.setComment(s.comment());
+        // Bara ändrade stopp skrivs – oförändrade rader rörs inte (se RouteStopMerger)
+        RouteStopMerger.Result merge = RouteStopMerger.merge(route, request.stops());
+        log.debug("Saved route stops: {} inserted, {} updated, {} deleted, {} unchanged",
+                merge.inserted(), merge.updated(), merge.deleted(), merge.unchanged());
 
-                route.addStop(stopEntity);
-            });
-        }
+        // Flush här så att persist-steget mäter själva SQL-skrivningarna, inte bara save()
+        return toDetail(stage("persist", () -> routeRepository.saveAndFlush(route)));
+    }
 
-        return routeRepository.save(route);
+    // Sammanfattningar i en enda fråga. Stopp och geometri hämtas per rutt via getRouteDetail.
+    @Transactional(readOnly = true)
+    public List<RouteSummary> getMyRoutes() {
+        String username = SecurityContextHolder.getContext().getAuthentication().getName();
+        return routeRepository.findAllSummariesByOwner(username);
     }
 
-    public List<RouteEntity> getMyRoutes() {
+    /**
+     * En sida sammanfattningar för den inloggade användaren, nyast först.
+     * Hämtar limit + 1 rader för att veta om det finns en nästa sida utan en extra count-fråga.
+     */
+    @Transactional(readOnly = true)
+    public RouteSummaryPage getMyRouteSummaries(String cursor, int limit) {
         String username = SecurityContextHolder.getContext().getAuthentication().getName();
-        return routeRepository.findAllByOwnerUsername(username);
+        int size = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        PageRequest page = PageRequest.of(0, size + 1);
+
+        List<RouteSummary> rows;
+        if (cursor == null || cursor.isBlank()) {
+            rows = routeRepository.findSummariesByOwner(username, page);
+        } else {
+            RouteCursor after = RouteCursor.decode(cursor);
+            rows = routeRepository.findSummariesByOwnerAfter(username, after.createdAt(), after.id(), page);
+        }
+
+        if (rows.size() <= size) {
+            return new RouteSummaryPage(rows, null);
+        }
+        List<RouteSummary> items = rows.subList(0, size);
+        RouteSummary last = items.get(size - 1);
+        return new RouteSummaryPage(List.copyOf(items), new RouteCursor(last.createdAt(), last.id()).encode());
+    }
+
+    // Hela rutten med stopp och geometri. Tom om den inte finns eller tillhör någon annan (och man inte är admin).
+    @Transactional(readOnly = true)
+    public Optional<RouteDetailResponse> getRouteDetail(Long id) {
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        boolean isAdmin = auth.getAuthorities().stream()
+                .anyMatch(a -> "ROLE_ADMIN".equals(a.getAuthority()));
+
+        return routeRepository.findDetailById(id)
+                .filter(route -> isAdmin || route.getOwner().getUsername().equals(auth.getName()))
+                .map(RouteOptimizationService::toDetail);
+    }
+
+    static RouteDetailResponse toDetail(RouteEntity route) {
+        List<SavedStopResponse> stops = route.getStops().stream()
+                .sorted(Comparator.comparingInt(RouteStopEntity::getOrderIndex))
+                .map(s -> new SavedStopResponse(s.getId(), s.getLabel(), s.getAddress(),
+                        s.getLatitude(), s.getLongitude(), s.getOrderIndex(), s.getComment()))
+                .toList();
+
+        return new RouteDetailResponse(route.getId(), route.getName(), route.getDescription(),
+                route.getStartAddress(), route.getEndAddress(), route.getCreatedAt(), route.getGeometry(),
+                route.getTotalDuration(), route.getAverageStopDuration(), route.getOwner().getUsername(), stops);
     }
 
     // --- NY METOD: DISPATCH / TILLDELA RUTT ---
@@ -360,7 +436,12 @@ public class RouteOptimizationService {
         newRoute.setDescription(originalRoute.getDescription());
         newRoute.setStartAddress(originalRoute.getStartAddress());
         newRoute.setEndAddress(originalRoute.getEndAddress());
-        newRoute.setGeometry(originalRoute.getGeometry());
+        // Kopian pekar på samma geometri-rad istället för att duplicera texten
+        if (originalRoute.getGeometryBlob() != null) {
+            newRoute.setGeometryBlob(originalRoute.getGeometryBlob());
+        } else {
+            newRoute.setGeometryBlob(geometryStore.intern(originalRoute.getLegacyGeometry(), null));
+        }
         newRoute.setTotalDuration(originalRoute.getTotalDuration());
         newRoute.setAverageStopDuration(originalRoute.getAverageStopDuration());
 
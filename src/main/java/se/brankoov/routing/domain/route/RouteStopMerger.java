@@ -0,0 +1,104 @@
+package se.brankoov.routing.domain.route;
+
+import se.brankoov.routing.api.route.StopResponse;
+import se.brankoov.routing.domain.route.entity.RouteEntity;
+import se.brankoov.routing.domain.route.entity.RouteStopEntity;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Uppdaterar en rutts stopp mot en ny lista istället för att rensa och lägga in allt igen.
+ *
+ * Stopp matchas på adress + koordinater (frontend skickar inga databas-id:n).
+ * Matchade rader behåller sitt id och ändras bara om ordning, etikett eller kommentar skiljer,
+ * så Hibernates dirty checking skriver bara de rader som faktiskt ändrats.
+ * Nya stopp läggs till, och stopp som inte finns kvar tas bort (orphanRemoval).
+ */
+public final class RouteStopMerger {
+
+    public record Result(int inserted, int updated, int deleted, int unchanged) {
+        public int writes() {
+            return inserted + updated + deleted;
+        }
+    }
+
+    private RouteStopMerger() {}
+
+    public static Result merge(RouteEntity route, List<StopResponse> incoming) {
+        // Befintliga stopp grupperade på nyckel. Samma adress kan förekomma flera gånger.
+        Map<String, Deque<RouteStopEntity>> existing = new HashMap<>();
+        for (RouteStopEntity stop : route.getStops()) {
+            existing.computeIfAbsent(key(stop.getAddress(), stop.getLatitude(), stop.getLongitude()),
+                    k -> new ArrayDeque<>()).add(stop);
+        }
+
+        int inserted = 0, updated = 0, unchanged = 0;
+        List<RouteStopEntity> added = new ArrayList<>();
+
+        if (incoming != null) {
+            for (StopResponse s : incoming) {
+                Deque<RouteStopEntity> candidates = existing.get(key(s.address(), s.latitude(), s.longitude()));
+                RouteStopEntity match = candidates == null ? null : candidates.poll();
+
+                if (match == null) {
+                    RouteStopEntity stopEntity = new RouteStopEntity(
+                            s.label(), s.address(), s.latitude(), s.longitude(), s.order()
+                    );
+                    stopEntity.setComment(s.comment());
+                    added.add(stopEntity);
+                    inserted++;
+                } else if (apply(match, s)) {
+                    updated++;
+                } else {
+                    unchanged++;
+                }
+            }
+        }
+
+        // Det som blev kvar finns inte i den nya listan
+        int deleted = 0;
+        for (Deque<RouteStopEntity> leftovers : existing.values()) {
+            for (RouteStopEntity stop : leftovers) {
+                route.getStops().remove(stop);
+                stop.setRoute(null);
+                deleted++;
+            }
+        }
+        added.forEach(route::addStop);
+
+        return new Result(inserted, updated, deleted, unchanged);
+    }
+
+    // Sätter bara fält som skiljer sig, returnerar true om något ändrades
+    private static boolean apply(RouteStopEntity stop, StopResponse s) {
+        boolean changed = false;
+        if (stop.getOrderIndex() != s.order()) {
+            stop.setOrderIndex(s.order());
+            changed = true;
+        }
+        if (!Objects.equals(stop.getLabel(), s.label())) {
+            stop.setLabel(s.label());
+            changed = true;
+        }
+        if (!Objects.equals(stop.getComment(), s.comment())) {
+            stop.setComment(s.comment());
+            changed = true;
+        }
+        return changed;
+    }
+
+    // Koordinaterna avrundas till ~10 cm så att flyttalsbrus från JSON inte ger falska skillnader
+    static String key(String address, Double lat, Double lng) {
+        return (address == null ? "" : address.trim()) + "|" + round(lat) + "|" + round(lng);
+    }
+
+    private static String round(Double value) {
+        return value == null ? "" : Long.toString(Math.round(value * 1_000_000));
+    }
+}
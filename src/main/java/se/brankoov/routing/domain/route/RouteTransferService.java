@@ -0,0 +1,261 @@
+package se.brankoov.routing.domain.route;
+
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import se.brankoov.routing.domain.auth.UserEntity;
+import se.brankoov.routing.domain.auth.UserRepository;
+import se.brankoov.routing.domain.route.entity.RouteEntity;
+import se.brankoov.routing.domain.route.entity.RouteRepository;
+import se.brankoov.routing.domain.route.entity.RouteStopEntity;
+import se.brankoov.routing.domain.route.entity.RouteStopRow;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+/**
+ * Export och import av många rutter åt gången, t.ex. för att flytta data mellan miljöer.
+ *
+ * Exporten läser rutterna med en databas-cursor och skriver dem direkt till svaret,
+ * ett block om CHUNK_SIZE åt gången (stopp hämtas per block, persistence context töms efter varje block).
+ * Importen läser NDJSON rad för rad och sparar varje block i en egen transaktion med batchade INSERTs.
+ * Minnesåtgången beror alltså på blockstorleken, inte på antalet rutter.
+ */
+@Service
+public class RouteTransferService {
+
+    private static final Logger log = LoggerFactory.getLogger(RouteTransferService.class);
+
+    private static final int CHUNK_SIZE = 500;
+    private static final int MAX_REPORTED_ERRORS = 100;
+
+    public record ImportResult(int imported, int skipped, List<String> errors) {}
+
+    private final RouteRepository routeRepository;
+    private final UserRepository userRepository;
+    private final GeometryStore geometryStore;
+    private final EntityManager entityManager;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate transactionTemplate;
+
+    public RouteTransferService(RouteRepository routeRepository,
+                                UserRepository userRepository,
+                                GeometryStore geometryStore,
+                                EntityManager entityManager,
+                                ObjectMapper objectMapper,
+                                PlatformTransactionManager transactionManager) {
+        this.routeRepository = routeRepository;
+        this.userRepository = userRepository;
+        this.geometryStore = geometryStore;
+        this.entityManager = entityManager;
+        this.objectMapper = objectMapper;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    // ===== EXPORT =====
+
+    /** En JSON-rad per rutt, med stopp och geometri. owner = null ger alla rutter. */
+    @Transactional(readOnly = true)
+    public long exportNdjson(String owner, OutputStream out) throws IOException {
+        OutputStream buffered = new BufferedOutputStream(out, 1 << 16);
+        long[] count = {0};
+        forEachChunk(owner, chunk -> {
+            for (RouteExportRecord record : chunk) {
+                buffered.write(objectMapper.writeValueAsBytes(record));
+                buffered.write('\n');
+                count[0]++;
+            }
+            buffered.flush();
+        });
+        buffered.flush();
+        return count[0];
+    }
+
+    /** En rad per stopp med ruttens fält upprepade (utan geometri), för kalkylark. */
+    @Transactional(readOnly = true)
+    public long exportCsv(String owner, OutputStream out) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        writer.write("route_no,owner,name,start_address,end_address,total_duration,created_at," +
+                "stop_order,label,address,latitude,longitude,comment\n");
+        long[] count = {0};
+        forEachChunk(owner, chunk -> {
+            for (RouteExportRecord r : chunk) {
+                long routeNo = ++count[0];
+                for (RouteExportRecord.Stop s : r.stops()) {
+                    writer.write(csv(routeNo, r.ownerUsername(), r.name(), r.startAddress(), r.endAddress(),
+                            r.totalDuration(), r.createdAt(), s.orderIndex(), s.label(), s.address(),
+                            s.latitude(), s.longitude(), s.comment()));
+                }
+            }
+            writer.flush();
+        });
+        writer.flush();
+        return count[0];
+    }
+
+    private interface ChunkWriter {
+        void write(List<RouteExportRecord> chunk) throws IOException;
+    }
+
+    private void forEachChunk(String owner, ChunkWriter writer) throws IOException {
+        try (Stream<RouteEntity> routes = routeRepository.streamForExport(owner)) {
+            Iterator<RouteEntity> it = routes.iterator();
+            List<RouteEntity> chunk = new ArrayList<>(CHUNK_SIZE);
+            while (it.hasNext()) {
+                chunk.add(it.next());
+                if (chunk.size() == CHUNK_SIZE || !it.hasNext()) {
+                    writer.write(toRecords(chunk));
+                    chunk.clear();
+                    // Släpp det vi redan skrivit så att minnet inte växer med antalet rutter
+                    entityManager.clear();
+                }
+            }
+        }
+    }
+
+    private List<RouteExportRecord> toRecords(List<RouteEntity> chunk) {
+        Map<Long, List<RouteExportRecord.Stop>> stopsByRoute = new HashMap<>();
+        List<Long> ids = chunk.stream().map(RouteEntity::getId).toList();
+        for (RouteStopRow row : routeRepository.findStopRows(ids)) {
+            stopsByRoute.computeIfAbsent(row.routeId(), k -> new ArrayList<>())
+                    .add(new RouteExportRecord.Stop(row.label(), row.address(), row.latitude(),
+                            row.longitude(), row.orderIndex(), row.comment()));
+        }
+
+        List<RouteExportRecord> records = new ArrayList<>(chunk.size());
+        for (RouteEntity r : chunk) {
+            records.add(new RouteExportRecord(r.getOwner().getUsername(), r.getName(), r.getDescription(),
+                    r.getStartAddress(), r.getEndAddress(), r.getGeometry(), r.getTotalDuration(),
+                    r.getAverageStopDuration(), r.getCreatedAt(),
+                    stopsByRoute.getOrDefault(r.getId(), List.of())));
+        }
+        return records;
+    }
+
+    private static String csv(Object... values) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) sb.append(',');
+            Object v = values[i];
+            if (v == null) continue;
+            String s = v.toString();
+            if (s.indexOf(',') >= 0 || s.indexOf('"') >= 0 || s.indexOf('\n') >= 0) {
+                sb.append('"').append(s.replace("\"", "\"\"")).append('"');
+            } else {
+                sb.append(s);
+            }
+        }
+        return sb.append('\n').toString();
+    }
+
+    // ===== IMPORT =====
+
+    /**
+     * Läser NDJSON (samma format som exportNdjson) och sparar i block om CHUNK_SIZE.
+     * Varje block är en egen transaktion, så ett fel stoppar bara det blocket.
+     * Rutter vars ägare inte finns i den här miljön hoppas över.
+     */
+    public ImportResult importNdjson(InputStream in) throws IOException {
+        int imported = 0, skipped = 0;
+        List<String> errors = new ArrayList<>();
+        Map<String, Optional<Long>> userIds = new HashMap<>();
+
+        try (MappingIterator<RouteExportRecord> records =
+                     objectMapper.readerFor(RouteExportRecord.class).readValues(in)) {
+            List<RouteExportRecord> chunk = new ArrayList<>(CHUNK_SIZE);
+            long line = 0;
+            while (records.hasNextValue()) {
+                line++;
+                RouteExportRecord record = records.nextValue();
+                Optional<Long> ownerId = userIds.computeIfAbsent(record.ownerUsername(),
+                        u -> u == null ? Optional.empty() : userRepository.findByUsername(u).map(UserEntity::getId));
+                if (ownerId.isEmpty()) {
+                    skipped++;
+                    addError(errors, "Line " + line + ": unknown owner " + record.ownerUsername());
+                    continue;
+                }
+
+                chunk.add(record);
+                if (chunk.size() == CHUNK_SIZE) {
+                    int saved = saveChunk(chunk, userIds, line, errors);
+                    imported += saved;
+                    skipped += chunk.size() - saved;
+                    chunk.clear();
+                }
+            }
+            if (!chunk.isEmpty()) {
+                int saved = saveChunk(chunk, userIds, line, errors);
+                imported += saved;
+                skipped += chunk.size() - saved;
+            }
+        }
+
+        log.info("Route import finished: {} imported, {} skipped", imported, skipped);
+        return new ImportResult(imported, skipped, errors);
+    }
+
+    private int saveChunk(List<RouteExportRecord> chunk, Map<String, Optional<Long>> userIds,
+                          long lastLine, List<String> errors) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                for (RouteExportRecord record : chunk) {
+                    entityManager.persist(toEntity(record, userIds.get(record.ownerUsername()).get()));
+                }
+                // Skriv blocket (batchade INSERTs) och släpp entiteterna
+                entityManager.flush();
+                entityManager.clear();
+            });
+            return chunk.size();
+        } catch (RuntimeException e) {
+            log.warn("Route import chunk ending at line {} failed", lastLine, e);
+            addError(errors, "Lines up to " + lastLine + ": chunk of " + chunk.size() + " failed: " + e.getMessage());
+            return 0;
+        }
+    }
+
+    private RouteEntity toEntity(RouteExportRecord record, Long ownerId) {
+        RouteEntity route = new RouteEntity();
+        route.setOwner(entityManager.getReference(UserEntity.class, ownerId));
+        route.setName(record.name());
+        route.setDescription(record.description());
+        route.setStartAddress(record.startAddress());
+        route.setEndAddress(record.endAddress());
+        route.setGeometryBlob(geometryStore.intern(record.geometry(), null));
+        route.setTotalDuration(record.totalDuration());
+        route.setAverageStopDuration(record.averageStopDuration());
+        if (record.createdAt() != null) {
+            route.setCreatedAt(record.createdAt());
+        }
+        if (record.stops() != null) {
+            for (RouteExportRecord.Stop s : record.stops()) {
+                RouteStopEntity stop = new RouteStopEntity(s.label(), s.address(), s.latitude(), s.longitude(), s.orderIndex());
+                stop.setComment(s.comment());
+                route.addStop(stop);
+            }
+        }
+        return route;
+    }
+
+    private static void addError(List<String> errors, String message) {
+        if (errors.size() < MAX_REPORTED_ERRORS) errors.add(message);
+    }
+}
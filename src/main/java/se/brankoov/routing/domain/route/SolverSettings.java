@@ -0,0 +1,24 @@
+package se.brankoov.routing.domain.route;
+
+import java.util.Random;
+
+/**
+ * Inställningar för simulated annealing-steget.
+ *
+ * @param restarts antal omstarter, var och en från den bästa lösningen hittills
+ * @param seed     fast frö ger samma rutt för samma indata (tester, benchmarks), null = slumpat varje gång
+ */
+public record SolverSettings(int restarts, Long seed) {
+
+    public static final SolverSettings DEFAULT = new SolverSettings(50, null);
+
+    public SolverSettings {
+        if (restarts < 0) {
+            throw new IllegalArgumentException("restarts must be >= 0");
+        }
+    }
+
+    public Random random() {
+        return seed == null ? new Random() : new Random(seed);
+    }
+}
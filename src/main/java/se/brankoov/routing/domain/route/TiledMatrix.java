@@ -0,0 +1,132 @@
+package se.brankoov.routing.domain.route;
+
+import se.brankoov.routing.infra.ors.OrsMatrixService;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * En stor tidsmatris över många platser, lagrad som block (tiles) om tileSize × tileSize.
+ *
+ * Bara de block som någon rutt behöver hämtas: en rutt som bara använder plats 0-40 och 120-130
+ * behöver blocken (0,0), (0,2), (2,0) och (2,2) – inte hela matrisen. Saknade block ger NaN.
+ */
+final class TiledMatrix {
+
+    private final int size;
+    private final int tileSize;
+    private final int blocks;
+    private final double[][][] tiles;
+
+    TiledMatrix(int size, int tileSize) {
+        if (tileSize < 1) throw new IllegalArgumentException("tileSize must be positive");
+        this.size = size;
+        this.tileSize = tileSize;
+        this.blocks = (size + tileSize - 1) / tileSize;
+        this.tiles = new double[blocks * blocks][][];
+    }
+
+    int size() {
+        return size;
+    }
+
+    int blocks() {
+        return blocks;
+    }
+
+    int block(int location) {
+        return location / tileSize;
+    }
+
+    // Första platsen i blocket och antal platser i det (sista blocket kan vara mindre)
+    int blockStart(int block) {
+        return block * tileSize;
+    }
+
+    int blockLength(int block) {
+        return Math.min(tileSize, size - block * tileSize);
+    }
+
+    /** Blockpar [från, till] som behövs för att skära ut matrisen för varje rutt, i radordning. */
+    List<int[]> neededTiles(List<int[]> routes) {
+        boolean[][] needed = new boolean[blocks][blocks];
+        for (int[] route : routes) {
+            boolean[] used = new boolean[blocks];
+            for (int location : route) {
+                used[block(location)] = true;
+            }
+            for (int a = 0; a < blocks; a++) {
+                if (!used[a]) continue;
+                for (int b = 0; b < blocks; b++) {
+                    if (used[b]) needed[a][b] = true;
+                }
+            }
+        }
+
+        List<int[]> pairs = new ArrayList<>();
+        for (int a = 0; a < blocks; a++) {
+            for (int b = 0; b < blocks; b++) {
+                if (needed[a][b]) pairs.add(new int[]{a, b});
+            }
+        }
+        return pairs;
+    }
+
+    void put(int fromBlock, int toBlock, double[][] tile) {
+        if (tile.length != blockLength(fromBlock) || tile[0].length != blockLength(toBlock)) {
+            throw new IllegalArgumentException("Tile (" + fromBlock + "," + toBlock + ") has wrong dimensions");
+        }
+        tiles[fromBlock * blocks + toBlock] = tile;
+    }
+
+    /**
+     * Hämtar ett block från ORS: platserna i blocket "från" som sources, platserna i blocket "till" som destinations.
+     * Högst tileSize × tileSize celler per anrop.
+     */
+    void fetch(int fromBlock, int toBlock, List<List<Double>> locations, OrsMatrixService orsMatrixService) {
+        int fromStart = blockStart(fromBlock), fromLength = blockLength(fromBlock);
+        int toStart = blockStart(toBlock), toLength = blockLength(toBlock);
+        if (fromBlock == toBlock && fromLength == 1) {
+            // ORS vill ha minst två platser, och tiden till sig själv är ändå noll
+            put(fromBlock, toBlock, new double[][]{{0}});
+            return;
+        }
+
+        List<List<Double>> tileLocations = new ArrayList<>(locations.subList(fromStart, fromStart + fromLength));
+        List<Integer> sources = IntStream.range(0, fromLength).boxed().toList();
+        List<Integer> destinations;
+        if (fromBlock == toBlock) {
+            destinations = sources;
+        } else {
+            tileLocations.addAll(locations.subList(toStart, toStart + toLength));
+            destinations = IntStream.range(fromLength, fromLength + toLength).boxed().toList();
+        }
+        put(fromBlock, toBlock, orsMatrixService.getDurations(tileLocations, sources, destinations));
+    }
+
+    double get(int from, int to) {
+        double[][] tile = tiles[block(from) * blocks + block(to)];
+        if (tile == null) return Double.NaN;
+        return tile[from % tileSize][to % tileSize];
+    }
+
+    /**
+     * Delmatrisen för en rutt: svar[i][j] = tiden från locations[i] till locations[j].
+     * Kastar om ett block saknas (NaN). Par utan väg är +oändligt (se OrsMatrixService) och får lösaren avgöra.
+     */
+    double[][] submatrix(int[] locations) {
+        int n = locations.length;
+        double[][] result = new double[n][n];
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < n; j++) {
+                double value = get(locations[i], locations[j]);
+                if (Double.isNaN(value)) {
+                    throw new IllegalStateException("Missing travel time between stop " + i + " and " + j);
+                }
+                result[i][j] = value;
+            }
+        }
+        return result;
+    }
+}
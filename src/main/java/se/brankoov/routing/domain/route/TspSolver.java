@@ -0,0 +1,216 @@
+package se.brankoov.routing.domain.route;
+
+import se.brankoov.routing.api.route.StopResponse;
+import se.brankoov.routing.infra.jfr.SolverPhaseEvent;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Lösarens faser (närmaste granne, 2-opt, simulated annealing), utbrutna ur RouteOptimizationService
+ * så att de kan köras och mätas utan Spring (se src/jmh/java).
+ *
+ * Matrisens index 0 är start, 1..n är stoppen i originalStops ordning och sista index är slut.
+ */
+public final class TspSolver {
+
+    private static final double END_WEIGHT = 0.1;
+
+    private TspSolver() {
+        // utility class, no instances
+    }
+
+    public static long calculateTotalDuration(List<StopResponse> route, double[][] durations, List<StopResponse> originalStops) {
+        return (long) calculateTotalCost(route, durations, originalStops);
+    }
+
+    public static double calculateTotalCost(List<StopResponse> route, double[][] durations, List<StopResponse> originalStops) {
+        double totalTime = 0;
+        int endIndex = durations.length - 1;
+        int prevMatrixIndex = 0;
+
+        for (StopResponse stop : route) {
+            int currentMatrixIndex = originalStops.indexOf(stop) + 1;
+            totalTime += durations[prevMatrixIndex][currentMatrixIndex];
+            prevMatrixIndex = currentMatrixIndex;
+        }
+        totalTime += durations[prevMatrixIndex][endIndex];
+        return totalTime;
+    }
+
+    public static List<StopResponse> solveTspNearestNeighbour(List<StopResponse> stops, double[][] durations) {
+        SolverPhaseEvent event = new SolverPhaseEvent();
+        event.begin();
+        List<StopResponse> remaining = new ArrayList<>(stops);
+        List<StopResponse> ordered = new ArrayList<>();
+        int endIndex = durations.length - 1;
+        int currentIndex = 0;
+
+        while (!remaining.isEmpty()) {
+            int bestStopIndex = -1;
+            double bestScore = Double.MAX_VALUE;
+
+            for (int i = 0; i < remaining.size(); i++) {
+                StopResponse candidate = remaining.get(i);
+                int matrixIndex = stops.indexOf(candidate) + 1;
+
+                double timeToCandidate = durations[currentIndex][matrixIndex];
+                double timeToFinish = durations[matrixIndex][endIndex] * END_WEIGHT;
+
+                double score = timeToCandidate + timeToFinish;
+
+                if (score < bestScore) {
+                    bestScore = score;
+                    bestStopIndex = i;
+                }
+            }
+            StopResponse next = remaining.remove(bestStopIndex);
+            ordered.add(next);
+            currentIndex = stops.indexOf(next) + 1;
+        }
+        event.end();
+        if (event.shouldCommit()) {
+            event.record("nearest-neighbour", stops.size(), stops.size(),
+                    calculateTotalCost(stops, durations, stops), calculateTotalCost(ordered, durations, stops));
+        }
+        return ordered;
+    }
+
+    public static List<StopResponse> optimizeTwoOpt(List<StopResponse> route, double[][] durations, List<StopResponse> originalStops) {
+        SolverPhaseEvent event = new SolverPhaseEvent();
+        event.begin();
+        List<StopResponse> improvedRoute = new ArrayList<>(route);
+        boolean improvement = true;
+        int loopCount = 0;
+
+        while (improvement && loopCount < 50) {
+            improvement = false;
+            loopCount++;
+            for (int i = 0; i < improvedRoute.size() - 1; i++) {
+                for (int k = i + 1; k < improvedRoute.size(); k++) {
+                    double currentDist = calculateSegmentCost(improvedRoute, durations, originalStops, i, k);
+                    List<StopResponse> newRoute = twoOptSwap(improvedRoute, i, k);
+                    double newDist = calculateSegmentCost(newRoute, durations, originalStops, i, k);
+
+                    if (newDist < currentDist) {
+                        improvedRoute = newRoute;
+                        improvement = true;
+                    }
+                }
+            }
+        }
+        event.end();
+        if (event.shouldCommit()) {
+            event.record("two-opt", route.size(), loopCount,
+                    calculateTotalCost(route, durations, originalStops), calculateTotalCost(improvedRoute, durations, originalStops));
+        }
+        return improvedRoute;
+    }
+
+    private static List<StopResponse> twoOptSwap(List<StopResponse> route, int i, int k) {
+        List<StopResponse> newRoute = new ArrayList<>();
+        for (int c = 0; c <= i - 1; c++) newRoute.add(route.get(c));
+        for (int c = k; c >= i; c--) newRoute.add(route.get(c));
+        for (int c = k + 1; c < route.size(); c++) newRoute.add(route.get(c));
+        return newRoute;
+    }
+
+    private static double calculateSegmentCost(List<StopResponse> route, double[][] durations, List<StopResponse> originalStops, int i, int k) {
+        int prevMatrixIndex = (i == 0) ? 0 : originalStops.indexOf(route.get(i - 1)) + 1;
+        double cost = 0;
+        for (int c = i; c <= k; c++) {
+            int currentMatrixIndex = originalStops.indexOf(route.get(c)) + 1;
+            cost += durations[prevMatrixIndex][currentMatrixIndex];
+            prevMatrixIndex = currentMatrixIndex;
+        }
+        int nextMatrixIndex = (k + 1 < route.size())
+                ? originalStops.indexOf(route.get(k + 1)) + 1
+                : durations.length - 1;
+        cost += durations[prevMatrixIndex][nextMatrixIndex];
+        return cost;
+    }
+
+    /**
+     * Omstarter av simulated annealing, var och en från den bästa lösningen hittills.
+     * Med samma frö i settings blir resultatet detsamma varje gång.
+     */
+    public static List<StopResponse> anneal(List<StopResponse> route, double[][] durations, List<StopResponse> originalStops,
+                                            SolverSettings settings) {
+        Random random = settings.random();
+        List<StopResponse> bestRouteSoFar = route;
+        double minDuration = calculateTotalCost(bestRouteSoFar, durations, originalStops);
+        for (int i = 0; i < settings.restarts(); i++) {
+            List<StopResponse> candidate = solveSimulatedAnnealing(new ArrayList<>(bestRouteSoFar), durations, originalStops, random);
+            double cost = calculateTotalCost(candidate, durations, originalStops);
+            if (cost < minDuration) {
+                minDuration = cost;
+                bestRouteSoFar = new ArrayList<>(candidate);
+            }
+        }
+        return bestRouteSoFar;
+    }
+
+    public static List<StopResponse> solveSimulatedAnnealing(List<StopResponse> currentRoute, double[][] durations, List<StopResponse> originalStops,
+                                                             Random random) {
+        if (currentRoute.size() < 2) {
+            return currentRoute;
+        }
+
+        SolverPhaseEvent event = new SolverPhaseEvent();
+        event.begin();
+        List<StopResponse> bestRoute = new ArrayList<>(currentRoute);
+        List<StopResponse> currentSolution = new ArrayList<>(currentRoute);
+
+        double currentCost = calculateTotalCost(currentSolution, durations, originalStops);
+        double startCost = currentCost;
+        double bestCost = currentCost;
+        int iterations = 0;
+
+        double temperature = 5000.0;
+        double coolingRate = 0.98;
+        double absoluteTemperature = 0.1;
+
+        while (temperature > absoluteTemperature) {
+            iterations++;
+            int n = currentSolution.size();
+            int i = random.nextInt(n);
+            int k = random.nextInt(n);
+
+            if (i >= k) {
+                int temp = i; i = k; k = temp;
+            }
+
+            if (i == k) {
+                temperature *= coolingRate;
+                continue;
+            }
+
+            List<StopResponse> newSolution = twoOptSwap(currentSolution, i, k);
+            double newCost = calculateTotalCost(newSolution, durations, originalStops);
+
+            if (newCost < currentCost) {
+                currentSolution = newSolution;
+                currentCost = newCost;
+
+                if (currentCost < bestCost) {
+                    bestRoute = new ArrayList<>(currentSolution);
+                    bestCost = currentCost;
+                }
+            } else {
+                double acceptanceProbability = Math.exp((currentCost - newCost) / temperature);
+                if (random.nextDouble() < acceptanceProbability) {
+                    currentSolution = newSolution;
+                    currentCost = newCost;
+                }
+            }
+            temperature *= coolingRate;
+        }
+
+        event.end();
+        if (event.shouldCommit()) {
+            event.record("annealing", currentRoute.size(), iterations, startCost, bestCost);
+        }
+        return bestRoute;
+    }
+}
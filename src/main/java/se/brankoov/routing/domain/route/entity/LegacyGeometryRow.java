@@ -0,0 +1,7 @@
+package se.brankoov.routing.domain.route.entity;
+
+// En rutt med geometrin kvar i routes.geometry (se RouteGeometryBackfillJob)
+public record LegacyGeometryRow(
+        Long id,
+        String geometry
+) {}
@@ -1,5 +1,6 @@
 package se.brankoov.routing.domain.route.entity;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import se.brankoov.routing.domain.auth.UserEntity;
 
@@ -11,17 +12,32 @@ import java.util.List;
 @Table(name = "routes")
 public class RouteEntity {
 
+    // Sekvens med pooled-allokering (50 id:n per anrop) så att Hibernate kan batcha INSERTs.
+    // IDENTITY kräver en rundresa per rad för att få tillbaka id:t.
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "routes_seq")
+    @SequenceGenerator(name = "routes_seq", sequenceName = "routes_seq", allocationSize = 50)
     private Long id;
 
+    // Optimistisk låsning: en skrivning mot en äldre version ger ObjectOptimisticLockingFailureException
+    @Version
+    private Long version;
+
     private String name;
     private String description;
     private String startAddress;
     private String endAddress;
 
-    @Column(columnDefinition = "TEXT")
-    private String geometry;
+    // Geometrin ligger i route_geometries och delas mellan kopior (se GeometryStore)
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "geometry_hash")
+    @JsonIgnore
+    private RouteGeometryEntity geometryBlob;
+
+    // Gamla rutter från innan route_geometries fanns. Läses fortfarande, töms när rutten sparas om.
+    @Column(name = "geometry", columnDefinition = "TEXT")
+    @JsonIgnore
+    private String legacyGeometry;
 
     private Long totalDuration;
     private Integer averageStopDuration;
@@ -43,7 +59,7 @@ public class RouteEntity {
         this.description = description;
         this.startAddress = startAddress;
         this.endAddress = endAddress;
-        this.geometry = geometry;
+        this.legacyGeometry = geometry;
         this.totalDuration = totalDuration;
         this.averageStopDuration = averageStopDuration; // <--- NYTT
     }
@@ -55,6 +71,7 @@ public class RouteEntity {
 
     // Getters & Setters
     public Long getId() { return id; }
+    public Long getVersion() { return version; }
     public String getName() { return name; }
     public void setName(String name) { this.name = name; }
     public String getDescription() { return description; }
@@ -63,13 +80,21 @@ public class RouteEntity {
     public void setStartAddress(String startAddress) { this.startAddress = startAddress; }
     public String getEndAddress() { return endAddress; }
     public void setEndAddress(String endAddress) { this.endAddress = endAddress; }
-    public String getGeometry() { return geometry; }
-    public void setGeometry(String geometry) { this.geometry = geometry; }
+    public String getGeometry() {
+        return geometryBlob != null ? geometryBlob.getGeometry() : legacyGeometry;
+    }
+    public RouteGeometryEntity getGeometryBlob() { return geometryBlob; }
+    public void setGeometryBlob(RouteGeometryEntity geometryBlob) {
+        this.geometryBlob = geometryBlob;
+        this.legacyGeometry = null;
+    }
+    public String getLegacyGeometry() { return legacyGeometry; }
     public Long getTotalDuration() { return totalDuration; }
     public void setTotalDuration(Long totalDuration) { this.totalDuration = totalDuration; }
     public UserEntity getOwner() { return owner; }
     public void setOwner(UserEntity owner) { this.owner = owner; }
     public Instant getCreatedAt() { return createdAt; }
+    public void setCreatedAt(Instant createdAt) { this.createdAt = createdAt; }
     public List<RouteStopEntity> getStops() { return stops; }
     public Integer getAverageStopDuration() { return averageStopDuration; }
     public void setAverageStopDuration(Integer averageStopDuration) { this.averageStopDuration = averageStopDuration; }
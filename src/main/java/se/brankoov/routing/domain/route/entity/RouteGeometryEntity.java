@@ -0,0 +1,52 @@
+package se.brankoov.routing.domain.route.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import jakarta.persistence.Transient;
+import org.hibernate.annotations.Immutable;
+import se.brankoov.routing.domain.route.GeometryStore;
+
+import java.time.Instant;
+
+/**
+ * En ruttgeometri (ORS-kodad polyline), lagrad en gång per innehåll.
+ * Nyckeln är SHA-256 av texten, så kopior och omsparningar av samma rutt delar rad.
+ * Raderna ändras aldrig efter att de skapats.
+ */
+@Entity
+@Immutable
+@Table(name = "route_geometries")
+public class RouteGeometryEntity {
+
+    @Id
+    @Column(length = 64)
+    private String hash;
+
+    // Deflate-komprimerad UTF-8 (bytea)
+    @Column(nullable = false)
+    private byte[] data;
+
+    private int rawLength;
+
+    private Instant createdAt = Instant.now();
+
+    // Uppackad text, så att samma instans inte packas upp flera gånger
+    @Transient
+    private String geometry;
+
+    protected RouteGeometryEntity() {}
+
+    public String getHash() { return hash; }
+    public int getRawLength() { return rawLength; }
+    public int getStoredLength() { return data.length; }
+    public Instant getCreatedAt() { return createdAt; }
+
+    public String getGeometry() {
+        if (geometry == null) {
+            geometry = GeometryStore.inflate(data, rawLength);
+        }
+        return geometry;
+    }
+}
@@ -0,0 +1,38 @@
+package se.brankoov.routing.domain.route.entity;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.Optional;
+
+public interface RouteGeometryRepository extends JpaRepository<RouteGeometryEntity, String> {
+
+    // Finns hashen redan görs ingenting – två samtidiga sparningar av samma geometri krockar inte.
+    @Modifying
+    @Query(value = "insert into route_geometries (hash, data, raw_length, created_at) " +
+            "values (:hash, :data, :rawLength, now()) " +
+            "on conflict do nothing",
+            nativeQuery = true)
+    int insertIfAbsent(@Param("hash") String hash, @Param("data") byte[] data, @Param("rawLength") int rawLength);
+
+    // Samma lås som främmande nyckeln i routes tar. Hålls till transaktionen är klar, så att
+    // deleteUnreferenced hoppar över raden. Tom om raden hann städas bort efter insertIfAbsent.
+    @Query(value = "select hash from route_geometries where hash = :hash for key share", nativeQuery = true)
+    Optional<String> lockForReference(@Param("hash") String hash);
+
+    // Geometrier som ingen rutt pekar på längre (rutten borttagen eller sparad med ny geometri).
+    // Raderna delas mellan rutter, så de kan inte tas bort med ON DELETE CASCADE från routes.
+    // Rader som en pågående sparning har låst (lockForReference) hoppas över till nästa körning.
+    @Transactional
+    @Modifying
+    @Query(value = "delete from route_geometries where hash in (" +
+            "select g.hash from route_geometries g where g.created_at < :before " +
+            "and not exists (select 1 from routes r where r.geometry_hash = g.hash) " +
+            "for update skip locked)",
+            nativeQuery = true)
+    int deleteUnreferenced(@Param("before") Instant before);
+}
@@ -1,12 +1,95 @@
 package se.brankoov.routing.domain.route.entity;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
+import jakarta.persistence.QueryHint;
+
+import java.time.Instant;
 import java.util.List;
+import java.util.Collection;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.HibernateHints.HINT_READ_ONLY;
 
 // JpaRepository ger oss automatiskt metoder som .save(), .findAll(), .findById()
+// Listfrågorna är readOnly och går därför till läsreplikan om en sådan finns (se DataSourceRoutingConfig)
 public interface RouteRepository extends JpaRepository<RouteEntity, Long> {
-    List<RouteEntity> findAllByOwnerUsername(String username);
 
-    List<RouteEntity> findByOwnerUsername(String username);
+    // Alla en ägares rutter som sammanfattningar (utan stopp och geometri), nyast först
+    @Transactional(readOnly = true)
+    @Query("select new se.brankoov.routing.domain.route.entity.RouteSummary(" +
+            "r.id, r.name, r.description, r.startAddress, r.endAddress, size(r.stops), " +
+            "r.totalDuration, r.averageStopDuration, r.createdAt) " +
+            "from RouteEntity r where r.owner.username = :username " +
+            "order by r.createdAt desc, r.id desc")
+    List<RouteSummary> findAllSummariesByOwner(@Param("username") String username);
+
+    // Första sidan av sammanfattningar, nyast först
+    @Query("select new se.brankoov.routing.domain.route.entity.RouteSummary(" +
+            "r.id, r.name, r.description, r.startAddress, r.endAddress, size(r.stops), " +
+            "r.totalDuration, r.averageStopDuration, r.createdAt) " +
+            "from RouteEntity r where r.owner.username = :username " +
+            "order by r.createdAt desc, r.id desc")
+    List<RouteSummary> findSummariesByOwner(@Param("username") String username, Pageable page);
+
+    // Nästa sida: allt som ligger efter (createdAt, id) i sorteringen (keyset istället för offset)
+    @Query("select new se.brankoov.routing.domain.route.entity.RouteSummary(" +
+            "r.id, r.name, r.description, r.startAddress, r.endAddress, size(r.stops), " +
+            "r.totalDuration, r.averageStopDuration, r.createdAt) " +
+            "from RouteEntity r where r.owner.username = :username " +
+            "and (r.createdAt < :createdAt or (r.createdAt = :createdAt and r.id < :id)) " +
+            "order by r.createdAt desc, r.id desc")
+    List<RouteSummary> findSummariesByOwnerAfter(@Param("username") String username,
+                                                 @Param("createdAt") Instant createdAt,
+                                                 @Param("id") Long id,
+                                                 Pageable page);
+
+    // Hela rutten med stopp, ägare och geometri i en enda fråga
+    @Query("select distinct r from RouteEntity r " +
+            "join fetch r.owner " +
+            "left join fetch r.stops " +
+            "left join fetch r.geometryBlob " +
+            "where r.id = :id")
+    Optional<RouteEntity> findDetailById(@Param("id") Long id);
+
+    // Alla rutter (eller en ägares) för export. Läses med en databas-cursor i block om 500 rader,
+    // så hela tabellen ligger aldrig i minnet. Måste köras inom en transaktion och stängas.
+    @QueryHints({
+            @QueryHint(name = HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HINT_READ_ONLY, value = "true")
+    })
+    @Query("select r from RouteEntity r " +
+            "join fetch r.owner o " +
+            "left join fetch r.geometryBlob " +
+            "where (:owner is null or o.username = :owner) " +
+            "order by r.id")
+    Stream<RouteEntity> streamForExport(@Param("owner") String owner);
+
+    // Stoppen för ett block rutter i en enda fråga
+    @Query("select new se.brankoov.routing.domain.route.entity.RouteStopRow(" +
+            "s.route.id, s.label, s.address, s.latitude, s.longitude, s.orderIndex, s.comment) " +
+            "from RouteStopEntity s where s.route.id in :routeIds " +
+            "order by s.route.id, s.orderIndex")
+    List<RouteStopRow> findStopRows(@Param("routeIds") Collection<Long> routeIds);
+
+    // Gamla rutter som fortfarande har geometrin som text i routes.geometry, i id-ordning
+    @Query("select new se.brankoov.routing.domain.route.entity.LegacyGeometryRow(r.id, r.legacyGeometry) " +
+            "from RouteEntity r where r.legacyGeometry is not null and r.id > :afterId order by r.id")
+    List<LegacyGeometryRow> findLegacyGeometries(@Param("afterId") Long afterId, Pageable page);
+
+    // Flyttar över utan att röra version – en användare som redigerar rutten samtidigt får ingen konflikt.
+    // Har rutten hunnit sparas om har den redan ny geometri och lämnas som den är.
+    @Modifying
+    @Query(value = "update routes set geometry_hash = :hash, geometry = null " +
+            "where id = :id and geometry is not null",
+            nativeQuery = true)
+    int moveLegacyGeometry(@Param("id") Long id, @Param("hash") String hash);
 }
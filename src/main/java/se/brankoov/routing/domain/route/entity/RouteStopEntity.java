@@ -8,7 +8,8 @@ import jakarta.persistence.*;
 public class RouteStopEntity {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "route_stops_seq")
+    @SequenceGenerator(name = "route_stops_seq", sequenceName = "route_stops_seq", allocationSize = 50)
     private Long id;
 
     private String label;    // T.ex. "Stop 1"
@@ -41,10 +42,12 @@ public class RouteStopEntity {
     // Getters & Setters
     public Long getId() { return id; }
     public String getLabel() { return label; }
+    public void setLabel(String label) { this.label = label; }
     public String getAddress() { return address; }
     public Double getLatitude() { return latitude; }
     public Double getLongitude() { return longitude; }
     public int getOrderIndex() { return orderIndex; }
+    public void setOrderIndex(int orderIndex) { this.orderIndex = orderIndex; }
     public String getComment() { return comment; }
     public void setComment(String comment) { this.comment = comment; }
 
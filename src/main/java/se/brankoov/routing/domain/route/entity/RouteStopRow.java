@@ -0,0 +1,12 @@
+package se.brankoov.routing.domain.route.entity;
+
+// Ett stopp som platta kolumner (select new ...), för export utan att ladda entiteter
+public record RouteStopRow(
+        Long routeId,
+        String label,
+        String address,
+        Double latitude,
+        Double longitude,
+        int orderIndex,
+        String comment
+) {}
@@ -0,0 +1,19 @@
+package se.brankoov.routing.domain.route.entity;
+
+import java.time.Instant;
+
+/**
+ * Lätt vy av en sparad rutt för listor. Fylls direkt från JPQL (select new ...),
+ * så varken stopp, geometri eller ägare laddas.
+ */
+public record RouteSummary(
+        Long id,
+        String name,
+        String description,
+        String startAddress,
+        String endAddress,
+        Integer stopCount,
+        Long totalDuration,
+        Integer averageStopDuration,
+        Instant createdAt
+) {}
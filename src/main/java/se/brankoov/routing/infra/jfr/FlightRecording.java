@@ -0,0 +1,104 @@
+package se.brankoov.routing.infra.jfr;
+
+import jakarta.annotation.PreDestroy;
+import jdk.jfr.Configuration;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Recording;
+import jdk.jfr.RecordingState;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * Alltid påslagen JFR-inspelning i en ringbuffert på disk (begränsad av max-age och max-size).
+ * Med inställningen "default" är overheaden runt 1 %, så den kan köras i produktion.
+ * En dump innehåller GC, CPU, låsning m.m. tillsammans med SolverPhaseEvent och OrsCallEvent,
+ * så långsamma anrop kan jämföras med vad JVM:en gjorde samtidigt.
+ */
+@Component
+public class FlightRecording {
+
+    private static final Logger log = LoggerFactory.getLogger(FlightRecording.class);
+
+    private final boolean enabled;
+    private final String settings;
+    private final Duration maxAge;
+    private final DataSize maxSize;
+
+    private volatile Recording recording;
+
+    public FlightRecording(@Value("${jfr.recording.enabled:true}") boolean enabled,
+                           @Value("${jfr.recording.settings:default}") String settings,
+                           @Value("${jfr.recording.max-age:30m}") Duration maxAge,
+                           @Value("${jfr.recording.max-size:200MB}") DataSize maxSize) {
+        this.enabled = enabled;
+        this.settings = settings;
+        this.maxAge = maxAge;
+        this.maxSize = maxSize;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!enabled) {
+            log.info("Continuous JFR recording disabled (jfr.recording.enabled=false)");
+            return;
+        }
+        if (!FlightRecorder.isAvailable()) {
+            log.warn("JFR is not available in this JVM, no continuous recording");
+            return;
+        }
+        try {
+            Recording r = new Recording(Configuration.getConfiguration(settings));
+            r.setName("routing");
+            r.setToDisk(true);
+            r.setMaxAge(maxAge);
+            r.setMaxSize(maxSize.toBytes());
+            r.enable(SolverPhaseEvent.class);
+            r.enable(OrsCallEvent.class);
+            r.start();
+            this.recording = r;
+            log.info("Continuous JFR recording started ({} settings, max {} / {})", settings, maxAge, maxSize);
+        } catch (Exception e) {
+            log.error("Could not start JFR recording with settings '{}'", settings, e);
+        }
+    }
+
+    /**
+     * Skriver det som finns i bufferten just nu till en temporär fil. Anroparen tar bort filen.
+     * Utan egen inspelning tas en snapshot av allt JVM:en spelar in (t.ex. -XX:StartFlightRecording).
+     */
+    public Path dump() throws IOException {
+        Path file = Files.createTempFile("routing-", ".jfr");
+        try {
+            Recording r = recording;
+            if (r != null && r.getState() == RecordingState.RUNNING) {
+                r.dump(file);
+            } else {
+                try (Recording snapshot = FlightRecorder.getFlightRecorder().takeSnapshot()) {
+                    snapshot.dump(file);
+                }
+            }
+            return file;
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(file);
+            throw e;
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        Recording r = recording;
+        if (r != null) {
+            r.close();
+        }
+    }
+}
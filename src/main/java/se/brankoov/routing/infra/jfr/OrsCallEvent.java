@@ -0,0 +1,46 @@
+package se.brankoov.routing.infra.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Ett anrop till OpenRouteService. Varaktigheten är latensen fram till svarshuvudena.
+ * Skapas av OrsCallRecorder för alla anrop via orsWebClient (matris, directions, geokodning).
+ */
+@Name("se.brankoov.routing.OrsCall")
+@Label("ORS Call")
+@Category({"Routing", "ORS"})
+@Description("HTTP call to OpenRouteService")
+@StackTrace(false)
+public class OrsCallEvent extends Event {
+
+    @Label("Endpoint")
+    String endpoint;
+
+    @Label("Method")
+    String method;
+
+    @Label("Status")
+    @Description("HTTP status, 0 if the call failed before a response")
+    int status;
+
+    @Label("Request Size")
+    @DataAmount
+    long requestBytes;
+
+    @Label("Response Size")
+    @DataAmount
+    @Description("Content-Length of the response, -1 if unknown")
+    long responseBytes = -1;
+
+    public void setEndpoint(String endpoint) { this.endpoint = endpoint; }
+    public void setMethod(String method) { this.method = method; }
+    public void setStatus(int status) { this.status = status; }
+    public void setRequestBytes(long requestBytes) { this.requestBytes = requestBytes; }
+    public void setResponseBytes(long responseBytes) { this.responseBytes = responseBytes; }
+}
@@ -0,0 +1,49 @@
+package se.brankoov.routing.infra.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * En fas i TSP-lösaren (närmaste granne, 2-opt eller en omstart av simulated annealing).
+ * Eventets egen varaktighet är fasens körtid. Kostnader är körtid i sekunder enligt ORS-matrisen.
+ *
+ * Användning: begin(), kör fasen, end(), och bara om shouldCommit() räknas kostnaderna ut
+ * och record(...) anropas – så kostar eventet nästan ingenting när det inte spelas in.
+ */
+@Name("se.brankoov.routing.SolverPhase")
+@Label("Solver Phase")
+@Category({"Routing", "Solver"})
+@Description("One phase of the route optimizer")
+@StackTrace(false)
+public class SolverPhaseEvent extends Event {
+
+    @Label("Phase")
+    String phase;
+
+    @Label("Stops")
+    int stops;
+
+    @Label("Iterations")
+    int iterations;
+
+    @Label("Cost Before")
+    @Description("Route duration in seconds before the phase")
+    double costBefore;
+
+    @Label("Cost After")
+    @Description("Route duration in seconds after the phase")
+    double costAfter;
+
+    public void record(String phase, int stops, int iterations, double costBefore, double costAfter) {
+        this.phase = phase;
+        this.stops = stops;
+        this.iterations = iterations;
+        this.costBefore = costBefore;
+        this.costAfter = costAfter;
+        commit();
+    }
+}
@@ -0,0 +1,58 @@
+package se.brankoov.routing.infra.ors;
+
+import org.reactivestreams.Publisher;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.client.reactive.ClientHttpRequestDecorator;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
+import org.springframework.web.reactive.function.client.ExchangeFunction;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import se.brankoov.routing.infra.jfr.OrsCallEvent;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Skapar ett OrsCallEvent (JFR) för varje anrop genom orsWebClient.
+ * Är eventet inte aktiverat i någon inspelning går anropet rakt igenom utan extra arbete.
+ */
+class OrsCallRecorder implements ExchangeFilterFunction {
+
+    @Override
+    public Mono<ClientResponse> filter(ClientRequest request, ExchangeFunction next) {
+        if (!new OrsCallEvent().isEnabled()) {
+            return next.exchange(request);
+        }
+
+        // Räkna bytes i request-bodyn medan den skrivs, istället för att serialisera den en gång till
+        AtomicLong sent = new AtomicLong();
+        ClientRequest counted = ClientRequest.from(request)
+                .body((message, context) -> request.body().insert(new ClientHttpRequestDecorator(message) {
+                    @Override
+                    public Mono<Void> writeWith(Publisher<? extends DataBuffer> body) {
+                        return super.writeWith(Flux.from(body).doOnNext(b -> sent.addAndGet(b.readableByteCount())));
+                    }
+                }, context))
+                .build();
+
+        return Mono.defer(() -> {
+            OrsCallEvent event = new OrsCallEvent();
+            event.begin();
+            return next.exchange(counted)
+                    .doOnNext(response -> {
+                        event.setStatus(response.statusCode().value());
+                        event.setResponseBytes(response.headers().contentLength().orElse(-1));
+                    })
+                    .doFinally(signal -> {
+                        event.end();
+                        if (event.shouldCommit()) {
+                            event.setEndpoint(request.url().getPath());
+                            event.setMethod(request.method().name());
+                            event.setRequestBytes(sent.get());
+                            event.commit();
+                        }
+                    });
+        });
+    }
+}
@@ -20,6 +20,8 @@ public class OrsConfig {
         return builder
                 .baseUrl(baseUrl)
                 .defaultHeader(HttpHeaders.AUTHORIZATION, apiKey)
+                // JFR-event per anrop (endpoint, storlek, latens), se OrsCallEvent
+                .filter(new OrsCallRecorder())
                 .build();
     }
 }
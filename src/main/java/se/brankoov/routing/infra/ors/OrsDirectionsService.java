@@ -1,23 +1,47 @@
 package se.brankoov.routing.infra.ors;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.function.client.WebClient;
 
+import java.util.ArrayList;
 import java.util.List;
 
 @Service
 public class OrsDirectionsService {
 
+    private static final Logger log = LoggerFactory.getLogger(OrsDirectionsService.class);
+
+    // ORS publika API: högst 50 punkter per directions-anrop
+    public static final int MAX_WAYPOINTS = 50;
+
     private final WebClient orsWebClient;
 
     public OrsDirectionsService(@Qualifier("orsWebClient") WebClient orsWebClient) {
         this.orsWebClient = orsWebClient;
     }
 
+    /**
+     * Kodad geometri för hela sträckan. Fler punkter än MAX_WAYPOINTS hämtas i delar som
+     * överlappar med en punkt och fogas ihop. null om någon del saknas.
+     */
     public String getRouteGeometry(List<List<Double>> coordinates) {
         if (coordinates == null || coordinates.size() < 2) return null;
+        if (coordinates.size() <= MAX_WAYPOINTS) return fetch(coordinates);
+
+        List<String> parts = new ArrayList<>();
+        for (int first = 0; first < coordinates.size() - 1; first += MAX_WAYPOINTS - 1) {
+            String part = fetch(coordinates.subList(first, Math.min(coordinates.size(), first + MAX_WAYPOINTS)));
+            if (part == null) return null;
+            parts.add(part);
+        }
+        log.debug("Directions for {} waypoints in {} calls", coordinates.size(), parts.size());
+        return Polyline.join(parts);
+    }
 
+    private String fetch(List<List<Double>> coordinates) {
         DirectionsRequest body = new DirectionsRequest(coordinates);
 
         try {
@@ -32,7 +56,7 @@ public class OrsDirectionsService {
                 return res.routes.get(0).geometry; // Den kodade strängen
             }
         } catch (Exception e) {
-            System.err.println("Failed to get directions geometry: " + e.getMessage());
+            log.warn("Failed to get directions geometry: {}", e.getMessage());
         }
         return null;
     }
@@ -41,4 +65,4 @@ public class OrsDirectionsService {
     record DirectionsRequest(List<List<Double>> coordinates) {}
     record DirectionsResponse(List<Route> routes) {}
     record Route(String geometry) {}
-}
\ No newline at end of file
+}
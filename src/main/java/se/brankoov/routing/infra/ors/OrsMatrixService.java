@@ -1,5 +1,8 @@
 package se.brankoov.routing.infra.ors;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.function.client.WebClient;
@@ -10,6 +13,11 @@ import java.util.List;
 @Service
 public class OrsMatrixService {
 
+    private static final Logger log = LoggerFactory.getLogger(OrsMatrixService.class);
+
+    // ORS publika API: högst 3 500 celler (källor × mål) per matrisanrop
+    public static final int MAX_CELLS = 3500;
+
     private final WebClient orsWebClient;
 
     public OrsMatrixService(@Qualifier("orsWebClient") WebClient orsWebClient) {
@@ -20,41 +28,70 @@ public class OrsMatrixService {
      * Hämtar en matris med körtider (i sekunder) mellan alla punkter.
      * @param locations En lista med koordinater [longitud, latitud] OBS: ORS vill ha Longitud FÖRST!
      * @return En 2D-array där duration[0][1] är tiden från punkt 0 till punkt 1.
+     *         Double.POSITIVE_INFINITY där ORS inte hittade någon väg.
      */
     public double[][] getDurations(List<List<Double>> locations) {
         if (locations == null || locations.size() < 2) {
             return new double[0][0];
         }
+        return fetch(new MatrixRequest(locations, List.of("duration"), null, null));
+    }
 
-        MatrixRequest requestBody = new MatrixRequest(locations, List.of("duration"));
+    /**
+     * Ett utsnitt av matrisen: svar[i][j] är tiden från locations[sources[i]] till locations[destinations[j]].
+     * Används för att dela upp stora matriser i block som ryms inom ORS gräns för antal celler.
+     */
+    public double[][] getDurations(List<List<Double>> locations, List<Integer> sources, List<Integer> destinations) {
+        if (sources.isEmpty() || destinations.isEmpty()) {
+            return new double[0][0];
+        }
+        return fetch(new MatrixRequest(locations, List.of("duration"), sources, destinations));
+    }
 
+    private double[][] fetch(MatrixRequest requestBody) {
         MatrixResponse response = orsWebClient.post()
                 .uri("/v2/matrix/driving-car")
                 .bodyValue(requestBody)
                 .retrieve()
                 .bodyToMono(MatrixResponse.class)
                 .block();
-        System.out.println("✅ ORS Matrix svarade! Fick en tabell med storlek: "
-                + response.durations().length + "x" + response.durations()[0].length);
 
         if (response == null || response.durations() == null) {
             throw new RuntimeException("Failed to fetch matrix from ORS");
         }
+        // Tid och status per anrop finns i http.client.requests{uri=/v2/matrix/driving-car}
+        log.debug("ORS matrix returned {}x{}", response.durations().length,
+                response.durations().length == 0 ? 0 : response.durations()[0].length);
 
-        return response.durations();
+        return toSeconds(response.durations());
+    }
+
+    // ORS svarar null där det inte finns någon väg. Som double skulle det bli 0.0, en gratis kant för lösaren.
+    static double[][] toSeconds(Double[][] durations) {
+        double[][] seconds = new double[durations.length][];
+        for (int i = 0; i < durations.length; i++) {
+            seconds[i] = new double[durations[i].length];
+            for (int j = 0; j < durations[i].length; j++) {
+                seconds[i][j] = durations[i][j] == null ? Double.POSITIVE_INFINITY : durations[i][j];
+            }
+        }
+        return seconds;
     }
 
     // --- DTOs för JSON-kommunikation ---
 
-    // Request: Vad vi skickar till ORS
+    // Request: Vad vi skickar till ORS. Utan sources/destinations blir det hela matrisen.
+    @JsonInclude(JsonInclude.Include.NON_NULL)
     public record MatrixRequest(
             List<List<Double>> locations, // [[lon, lat], [lon, lat]...]
-            List<String> metrics          // ["duration"]
+            List<String> metrics,         // ["duration"]
+            List<Integer> sources,        // index i locations, null = alla
+            List<Integer> destinations    // index i locations, null = alla
     ) {}
 
     // Response: Vad vi får tillbaka
     public record MatrixResponse(
-            double[][] durations // Tider i sekunder. durations[frånIndex][tillIndex]
+            Double[][] durations // Tider i sekunder, null = ingen väg. durations[frånIndex][tillIndex]
             // Vi struntar i "distances" just nu, tid är viktigast för optimering
     ) {}
 }
\ No newline at end of file
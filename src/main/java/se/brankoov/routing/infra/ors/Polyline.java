@@ -0,0 +1,78 @@
+package se.brankoov.routing.infra.ors;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Googles polyline-format med fem decimaler, som ORS ger geometrin i (utan höjd).
+ * Behövs för att foga ihop geometrin från flera directions-anrop till en sträcka.
+ */
+final class Polyline {
+
+    private Polyline() {
+        // utility class, no instances
+    }
+
+    /** Punkterna som [latitud, longitud] i heltal (grader × 100 000), i polylinens ordning. */
+    static List<long[]> decode(String encoded) {
+        List<long[]> points = new ArrayList<>();
+        int[] pos = {0};
+        long lat = 0, lng = 0;
+        while (pos[0] < encoded.length()) {
+            lat += next(encoded, pos);
+            lng += next(encoded, pos);
+            points.add(new long[]{lat, lng});
+        }
+        return points;
+    }
+
+    static String encode(List<long[]> points) {
+        StringBuilder out = new StringBuilder();
+        long lat = 0, lng = 0;
+        for (long[] p : points) {
+            append(out, p[0] - lat);
+            append(out, p[1] - lng);
+            lat = p[0];
+            lng = p[1];
+        }
+        return out.toString();
+    }
+
+    /** Delarna efter varandra. Varje del börjar där förra slutade, så den punkten tas bara med en gång. */
+    static String join(List<String> parts) {
+        List<long[]> points = new ArrayList<>();
+        for (String part : parts) {
+            List<long[]> decoded = decode(part);
+            if (!points.isEmpty() && !decoded.isEmpty()) {
+                long[] last = points.get(points.size() - 1);
+                long[] first = decoded.get(0);
+                if (last[0] == first[0] && last[1] == first[1]) {
+                    decoded = decoded.subList(1, decoded.size());
+                }
+            }
+            points.addAll(decoded);
+        }
+        return encode(points);
+    }
+
+    private static long next(String encoded, int[] pos) {
+        long result = 0;
+        int shift = 0;
+        int b;
+        do {
+            b = encoded.charAt(pos[0]++) - 63;
+            result |= (long) (b & 0x1f) << shift;
+            shift += 5;
+        } while (b >= 0x20);
+        return (result & 1) != 0 ? ~(result >> 1) : result >> 1;
+    }
+
+    private static void append(StringBuilder out, long value) {
+        long v = value < 0 ? ~(value << 1) : value << 1;
+        while (v >= 0x20) {
+            out.append((char) ((0x20 | (v & 0x1f)) + 63));
+            v >>= 5;
+        }
+        out.append((char) (v + 63));
+    }
+}
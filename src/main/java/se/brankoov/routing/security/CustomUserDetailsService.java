@@ -1,5 +1,9 @@
 package se.brankoov.routing.security;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.authority.SimpleGrantedAuthority; // <--- VIKTIG IMPORT
 import org.springframework.security.core.userdetails.User;
 import org.springframework.security.core.userdetails.UserDetails;
@@ -9,15 +13,47 @@ import org.springframework.stereotype.Service;
 import se.brankoov.routing.domain.auth.UserEntity;
 import se.brankoov.routing.domain.auth.UserRepository;
 
+import java.time.Duration;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
 
 @Service
 public class CustomUserDetailsService implements UserDetailsService {
 
     private final UserRepository userRepository;
 
-    public CustomUserDetailsService(UserRepository userRepository) {
+    // Användare som nyss autentiserats, så att JwtRequestFilter inte frågar databasen vid varje anrop.
+    // Kort TTL som skyddsnät – bannlysning tar bort posten direkt (se UserCacheSync).
+    private final Cache<String, UserDetails> userCache;
+
+    public CustomUserDetailsService(UserRepository userRepository,
+                                    @Value("${security.user-cache.max-size:10000}") long maxSize,
+                                    @Value("${security.user-cache.ttl:60s}") Duration ttl) {
         this.userRepository = userRepository;
+        this.userCache = CacheBuilder.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .build();
+    }
+
+    /**
+     * Som loadUserByUsername men från cachen. Okända användare cachas inte.
+     */
+    public UserDetails loadCachedUser(String username) throws UsernameNotFoundException {
+        try {
+            return userCache.get(username, () -> loadUserByUsername(username));
+        } catch (UncheckedExecutionException | ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) throw cause;
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    public void evict(String username) {
+        userCache.invalidate(username);
+    }
+
+    public long cachedUsers() {
+        return userCache.size();
     }
 
     @Override
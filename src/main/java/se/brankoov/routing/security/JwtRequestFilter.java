@@ -1,9 +1,12 @@
 package se.brankoov.routing.security;
 
+import com.google.common.util.concurrent.RateLimiter;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
@@ -16,6 +19,12 @@ import java.io.IOException;
 @Component
 public class JwtRequestFilter extends OncePerRequestFilter {
 
+    private static final Logger log = LoggerFactory.getLogger(JwtRequestFilter.class);
+
+    // Filtret körs för varje anrop, så varningar om trasiga tokens loggas högst en gång per sekund.
+    // Resten hamnar på debug.
+    private static final RateLimiter WARN_SAMPLER = RateLimiter.create(1.0);
+
     private final CustomUserDetailsService userDetailsService;
     private final JwtUtil jwtUtil;
 
@@ -33,32 +42,30 @@ public class JwtRequestFilter extends OncePerRequestFilter {
         String username = null;
         String jwt = null;
 
-        System.out.println("--- JwtRequestFilter Start ---");
-        System.out.println("Request URL: " + request.getRequestURI());
-
         // 1. Hämta token från headern
         if (authorizationHeader != null && authorizationHeader.startsWith("Bearer ")) {
             jwt = authorizationHeader.substring(7);
-            System.out.println("Token hittad i header (första 10 tecken): " + (jwt.length() > 10 ? jwt.substring(0, 10) + "..." : jwt));
             try {
                 username = jwtUtil.extractUsername(jwt);
-                System.out.println("Lyckades extrahera användarnamn: " + username);
             } catch (Exception e) {
-                System.out.println("❌ JWT Token invalid/expired: " + e.getMessage());
-                // e.printStackTrace(); // Avkommentera om du vill se hela felet
+                if (WARN_SAMPLER.tryAcquire()) {
+                    log.warn("Invalid or expired JWT on {}: {}", request.getRequestURI(), e.getMessage());
+                } else {
+                    log.debug("Invalid or expired JWT on {}: {}", request.getRequestURI(), e.getMessage());
+                }
             }
         } else {
-            System.out.println("⚠️ Ingen 'Bearer' token hittades i Authorization-headern.");
+            log.trace("No bearer token on {}", request.getRequestURI());
         }
 
         // 2. Validera och sätt kontext
         if (username != null && SecurityContextHolder.getContext().getAuthentication() == null) {
             try {
-                UserDetails userDetails = this.userDetailsService.loadUserByUsername(username);
-                System.out.println("Användare hittad i DB: " + userDetails.getUsername() + ", Authorities: " + userDetails.getAuthorities());
+                // Från cachen – databasen tillfrågas bara första gången eller när posten tagits bort
+                UserDetails userDetails = this.userDetailsService.loadCachedUser(username);
 
                 if (!userDetails.isEnabled()) {
-                    System.out.println("⛔ Användaren är inaktiverad/bannad!");
+                    log.debug("Rejected banned user {}", username);
                     SecurityContextHolder.clearContext();
                     response.setStatus(HttpServletResponse.SC_FORBIDDEN);
                     response.getWriter().write("{\"error\":\"Du är bannad 🚫\"}");
@@ -69,14 +76,17 @@ public class JwtRequestFilter extends OncePerRequestFilter {
                         userDetails, null, userDetails.getAuthorities());
                 authToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
                 SecurityContextHolder.getContext().setAuthentication(authToken);
-                System.out.println("✅ Autentisering lyckades! Användare inloggad.");
+                log.trace("Authenticated {} on {}", username, request.getRequestURI());
 
             } catch (Exception e) {
-                System.out.println("❌ Kunde inte ladda användare från DB: " + e.getMessage());
+                if (WARN_SAMPLER.tryAcquire()) {
+                    log.warn("Could not load user {}: {}", username, e.getMessage());
+                } else {
+                    log.debug("Could not load user {}: {}", username, e.getMessage());
+                }
             }
         }
 
-        System.out.println("--- JwtRequestFilter Slut (fortsätter chain) ---");
         chain.doFilter(request, response);
     }
 }
\ No newline at end of file
@@ -1,6 +1,11 @@
 package se.brankoov.routing.security;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
 import io.jsonwebtoken.io.Decoders;
@@ -9,7 +14,9 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.userdetails.UserDetails; // <--- VIKTIG IMPORT
 import org.springframework.stereotype.Component;
 
+import java.nio.charset.StandardCharsets;
 import java.security.Key;
+import java.time.Duration;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
@@ -17,11 +24,28 @@ import java.util.Map;
 @Component
 public class JwtUtil {
 
-    @Value("${jwt.secret}")
-    private String secret;
+    private final long jwtExpiration;
 
-    @Value("${jwt.expiration}")
-    private long jwtExpiration;
+    // Räknas ut en gång istället för vid varje anrop. Parsern är trådsäker.
+    private final Key signingKey;
+    private final JwtParser parser;
+
+    // Redan verifierade tokens: SHA-256 av tokenet -> claims. Frontend skickar samma token om och om igen,
+    // så signaturkontroll och JSON-parsning behövs bara första gången. Själva tokenet sparas inte.
+    private final Cache<HashCode, Claims> verifiedTokens;
+
+    public JwtUtil(@Value("${jwt.secret}") String secret,
+                   @Value("${jwt.expiration}") long jwtExpiration,
+                   @Value("${jwt.cache.max-size:10000}") long cacheSize,
+                   @Value("${jwt.cache.max-age:10m}") Duration cacheMaxAge) {
+        this.jwtExpiration = jwtExpiration;
+        this.signingKey = Keys.hmacShaKeyFor(Decoders.BASE64.decode(encodeSecret(secret)));
+        this.parser = Jwts.parserBuilder().setSigningKey(signingKey).build();
+        this.verifiedTokens = CacheBuilder.newBuilder()
+                .maximumSize(cacheSize)
+                .expireAfterWrite(cacheMaxAge)
+                .build();
+    }
 
     // ÄNDRAD: Tar nu emot UserDetails för att kunna komma åt rollen
     public String generateToken(UserDetails userDetails) {
@@ -51,16 +75,11 @@ public class JwtUtil {
                 .setSubject(subject)
                 .setIssuedAt(new Date(System.currentTimeMillis()))
                 .setExpiration(new Date(System.currentTimeMillis() + jwtExpiration))
-                .signWith(getSigningKey(), SignatureAlgorithm.HS256)
+                .signWith(signingKey, SignatureAlgorithm.HS256)
                 .compact();
     }
 
-    private Key getSigningKey() {
-        byte[] keyBytes = Decoders.BASE64.decode(encodeSecret(secret));
-        return Keys.hmacShaKeyFor(keyBytes);
-    }
-
-    private String encodeSecret(String secret) {
+    private static String encodeSecret(String secret) {
         return java.util.Base64.getEncoder().encodeToString(secret.getBytes());
     }
 
@@ -68,11 +87,29 @@ public class JwtUtil {
         return extractAllClaims(token).getSubject();
     }
 
-    private Claims extractAllClaims(String token) {
-        return Jwts.parserBuilder()
-                .setSigningKey(getSigningKey())
-                .build()
-                .parseClaimsJws(token)
-                .getBody();
+    public long cachedTokens() {
+        return verifiedTokens.size();
+    }
+
+    /**
+     * Claims för ett giltigt token. Kastar JwtException om tokenet är ogiltigt eller har gått ut.
+     * Ogiltiga tokens cachas aldrig, och en cachad post används bara fram till tokenets egen exp.
+     */
+    public Claims extractAllClaims(String token) {
+        HashCode digest = Hashing.sha256().hashString(token, StandardCharsets.UTF_8);
+
+        Claims cached = verifiedTokens.getIfPresent(digest);
+        if (cached != null) {
+            Date expiration = cached.getExpiration();
+            if (expiration == null || expiration.getTime() > System.currentTimeMillis()) {
+                return cached;
+            }
+            // Har gått ut sedan den cachades – parsa igen så att anroparen får ExpiredJwtException
+            verifiedTokens.invalidate(digest);
+        }
+
+        Claims claims = parser.parseClaimsJws(token).getBody();
+        verifiedTokens.put(digest, claims);
+        return claims;
     }
-}
\ No newline at end of file
+}
@@ -1,79 +1,217 @@
 package se.brankoov.routing.security;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.util.concurrent.RateLimiter;
-import jakarta.servlet.*;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletInputStream;
 import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
 import jakarta.servlet.http.HttpServletResponse;
-import org.springframework.core.annotation.Order;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
 
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.ExecutionException;
 
-//@Component
-//@Order(1)
-public class RateLimitingFilter implements Filter {
+/**
+ * Begränsar anrop per användare (eller per IP för anonyma anrop, t.ex. adressförslag).
+ *
+ * Två hinkar per nyckel:
+ * - global: antal anrop per sekund, oavsett endpoint
+ * - ors:    kostnad per sekund för anrop som går mot ORS. Geokodning kostar 1, optimering kostar
+ *           efter antal stopp (se optimizeCost). En stor optimering går alltid igenom om hinken är tom,
+ *           men nästa anrop får vänta tills skulden är betald.
+ *
+ * Nya limiters startar med full hink (se newLimiter), annars skulle parallella anrop direkt efter
+ * inloggning – då nyckeln byts från ip: till user: – eller efter att nyckeln rensats få 429.
+ *
+ * Limiters ligger i en Guava-cache (segmenterade lås, max antal nycklar, tas bort efter inaktivitet),
+ * så minnet växer inte med antalet IP-adresser. Filtret ligger efter JwtRequestFilter i
+ * säkerhetskedjan (se SecurityConfig) så att inloggade användare känns igen.
+ */
+@Component
+public class RateLimitingFilter extends OncePerRequestFilter {
 
-    private final ConcurrentMap<String, RateLimiter> limiters = new ConcurrentHashMap<>();
+    // Större optimeringsanrop än så avvisas med 413 innan de läses in, så att de inte kan kringgå kostnaden
+    private static final int MAX_OPTIMIZE_BODY = 2 * 1024 * 1024;
 
-    // GLOBAL GRÄNS: 100 anrop/sekund (hanterar snabba kart-laddningar)
-    private static final double REQUESTS_PER_SECOND = 100.0;
+    private final ObjectMapper objectMapper;
+    private final double requestsPerSecond;
+    private final double orsPermitsPerSecond;
 
-    // OPTIMERINGS-GRÄNS: Höjd till 2.0 anrop/sekund (tillåter dubbelklick/omförsök)
-    private static final double OPTIMIZE_RPS = 2.0;
+    private final Cache<String, RateLimiter> globalLimiters;
+    private final Cache<String, RateLimiter> orsLimiters;
+
+    private final Counter throttledGlobal;
+    private final Counter throttledOptimize;
+    private final Counter throttledGeocode;
+
+    public RateLimitingFilter(ObjectMapper objectMapper,
+                              ObjectProvider<MeterRegistry> meterRegistryProvider,
+                              @Value("${ratelimit.requests-per-second:100}") double requestsPerSecond,
+                              @Value("${ratelimit.ors-permits-per-second:50}") double orsPermitsPerSecond,
+                              @Value("${ratelimit.max-keys:100000}") long maxKeys,
+                              @Value("${ratelimit.idle-expiry:10m}") Duration idleExpiry) {
+        // @WebMvcTest-slices har ingen MeterRegistry, då räknar vi lokalt
+        MeterRegistry meterRegistry = meterRegistryProvider.getIfAvailable(SimpleMeterRegistry::new);
+        this.objectMapper = objectMapper;
+        this.requestsPerSecond = requestsPerSecond;
+        this.orsPermitsPerSecond = orsPermitsPerSecond;
+        this.globalLimiters = newLimiterCache(maxKeys, idleExpiry);
+        this.orsLimiters = newLimiterCache(maxKeys, idleExpiry);
+
+        this.throttledGlobal = throttledCounter(meterRegistry, "global");
+        this.throttledOptimize = throttledCounter(meterRegistry, "optimize");
+        this.throttledGeocode = throttledCounter(meterRegistry, "geocode");
+        meterRegistry.gauge("ratelimit.keys", globalLimiters, Cache::size);
+    }
+
+    private static Cache<String, RateLimiter> newLimiterCache(long maxKeys, Duration idleExpiry) {
+        return CacheBuilder.newBuilder()
+                .concurrencyLevel(16)
+                .maximumSize(maxKeys)
+                .expireAfterAccess(idleExpiry)
+                .build();
+    }
+
+    private static Counter throttledCounter(MeterRegistry registry, String limit) {
+        return Counter.builder("ratelimit.throttled")
+                .description("Requests rejected with 429")
+                .tag("limit", limit)
+                .register(registry);
+    }
 
     @Override
-    public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
-            throws IOException, ServletException {
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        String path = request.getRequestURI();
+        // CORS pre-flight, inloggning och hälsokoll släpps alltid igenom
+        return "OPTIONS".equalsIgnoreCase(request.getMethod())
+                || path.startsWith("/api/auth")
+                || path.startsWith("/api/health")
+                || path.startsWith("/actuator");
+    }
 
-        HttpServletRequest httpRequest = (HttpServletRequest) request;
-        HttpServletResponse httpResponse = (HttpServletResponse) response;
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
 
-        String path = httpRequest.getRequestURI();
+        String key = clientKey(request);
 
-        // 1. VIKTIGT: Släpp alltid igenom "OPTIONS" (CORS pre-flight checks)
-        // Detta var troligen problemet! Webbläsaren kollar "får jag anropa?" och blev blockad.
-        if (httpRequest.getMethod().equalsIgnoreCase("OPTIONS")) {
-            chain.doFilter(request, response);
+        if (!limiter(globalLimiters, key, requestsPerSecond).tryAcquire()) {
+            throttledGlobal.increment();
+            send429(response, "Systemet är upptaget. För många anrop.", 1);
             return;
         }
 
-        // 2. Släpp alltid igenom Auth och Health
-        if (path.startsWith("/api/auth") || path.startsWith("/api/health")) {
-            chain.doFilter(request, response);
-            return;
+        String path = request.getRequestURI();
+        HttpServletRequest forwarded = request;
+
+        if (path.startsWith("/api/routes/optimize") && "POST".equalsIgnoreCase(request.getMethod())) {
+            CachedBodyRequest cached = CachedBodyRequest.of(request, MAX_OPTIMIZE_BODY);
+            if (cached == null) {
+                send(response, HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE, "För stort anrop.");
+                return;
+            }
+            forwarded = cached;
+            int permits = optimizeCost(countStops(cached.body()));
+            if (!limiter(orsLimiters, key, orsPermitsPerSecond).tryAcquire(permits)) {
+                throttledOptimize.increment();
+                send429(response, "Vänta lite innan du optimerar igen.", retryAfterSeconds(permits));
+                return;
+            }
+        } else if (path.startsWith("/api/geocode")) {
+            if (!limiter(orsLimiters, key, orsPermitsPerSecond).tryAcquire()) {
+                throttledGeocode.increment();
+                send429(response, "För många adressökningar, vänta lite.", 1);
+                return;
+            }
         }
 
-        String ip = getClientIP(httpRequest);
+        chain.doFilter(forwarded, response);
+    }
 
-        // 3. Global Rate Limit
-        RateLimiter globalLimiter = limiters.computeIfAbsent(ip + ":global",
-                k -> RateLimiter.create(REQUESTS_PER_SECOND)
-        );
+    /**
+     * Kostnad för en optimering med n stopp, i ORS-enheter:
+     * geokodning och vägbeskrivning växer linjärt, matrisen (n + 2)² element.
+     * 5 stopp ≈ 6, 300 stopp ≈ 480.
+     */
+    static int optimizeCost(int stops) {
+        long locations = stops + 2L;
+        long matrixUnits = (locations * locations + 499) / 500;
+        return (int) Math.max(1, Math.min(Integer.MAX_VALUE, stops + matrixUnits));
+    }
 
-        if (!globalLimiter.tryAcquire()) {
-            send429(httpResponse, "Systemet är upptaget. För många anrop.");
-            return;
+    // Antal element i alla "stops"-arrayer, även i batchanrop (routes[].stops)
+    int countStops(byte[] body) {
+        if (body == null || body.length == 0) return 0;
+        try {
+            JsonNode root = objectMapper.readTree(body);
+            int count = 0;
+            for (JsonNode stops : root.findValues("stops")) {
+                if (stops.isArray()) count += stops.size();
+            }
+            return count;
+        } catch (IOException e) {
+            return 0; // Trasig JSON – controllern svarar 400
         }
+    }
 
-        // 4. Specifik Rate Limit för optimering
-        if (path.contains("/api/routes/optimize")) {
-            RateLimiter optimizeLimiter = limiters.computeIfAbsent(ip + ":optimize",
-                    k -> RateLimiter.create(OPTIMIZE_RPS)
-            );
+    private int retryAfterSeconds(int permits) {
+        return (int) Math.max(1, Math.ceil(permits / orsPermitsPerSecond));
+    }
 
-            if (!optimizeLimiter.tryAcquire()) {
-                send429(httpResponse, "Vänta lite innan du optimerar igen.");
-                return;
-            }
+    private static RateLimiter limiter(Cache<String, RateLimiter> cache, String key, double rate) {
+        try {
+            return cache.get(key, () -> newLimiter(rate));
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
         }
+    }
 
-        chain.doFilter(request, response);
+    /**
+     * RateLimiter.create(rate) startar med tom hink, så ett andra anrop inom 1/rate sekunder avvisas.
+     * En limiter som skapas med oändlig takt och sedan sänks får istället full hink (en sekunds burst),
+     * som om nyckeln varit inaktiv en stund.
+     */
+    static RateLimiter newLimiter(double rate) {
+        RateLimiter limiter = RateLimiter.create(Double.POSITIVE_INFINITY);
+        limiter.setRate(rate);
+        return limiter;
     }
 
-    private void send429(HttpServletResponse response, String msg) throws IOException {
-        response.setStatus(429);
+    private String clientKey(HttpServletRequest request) {
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        if (auth != null && auth.isAuthenticated() && auth.getName() != null) {
+            return "user:" + auth.getName();
+        }
+        return "ip:" + getClientIP(request);
+    }
+
+    private void send429(HttpServletResponse response, String msg, int retryAfterSeconds) throws IOException {
+        response.setHeader("Retry-After", String.valueOf(retryAfterSeconds));
+        send(response, 429, msg);
+    }
+
+    private void send(HttpServletResponse response, int status, String msg) throws IOException {
+        response.setStatus(status);
         response.setContentType("application/json");
         response.setCharacterEncoding("UTF-8");
         response.getWriter().write("{\"message\": \"" + msg + "\"}");
@@ -86,4 +224,57 @@ public class RateLimitingFilter implements Filter {
         }
         return request.getRemoteAddr();
     }
-}
\ No newline at end of file
+
+    /**
+     * Läser in bodyn i förväg så att den kan räknas här och ändå läsas av controllern.
+     * Högst maxBytes läses, även när Content-Length saknas (chunked).
+     */
+    static final class CachedBodyRequest extends HttpServletRequestWrapper {
+
+        private final byte[] body;
+
+        private CachedBodyRequest(HttpServletRequest request, byte[] body) {
+            super(request);
+            this.body = body;
+        }
+
+        /** @return null om bodyn är större än maxBytes */
+        static CachedBodyRequest of(HttpServletRequest request, int maxBytes) throws IOException {
+            if (request.getContentLengthLong() > maxBytes) return null;
+            byte[] body = request.getInputStream().readNBytes(maxBytes + 1);
+            if (body.length > maxBytes) return null;
+            return new CachedBodyRequest(request, body);
+        }
+
+        byte[] body() {
+            return body;
+        }
+
+        @Override
+        public ServletInputStream getInputStream() {
+            ByteArrayInputStream in = new ByteArrayInputStream(body);
+            return new ServletInputStream() {
+                @Override public int read() { return in.read(); }
+                @Override public int read(byte[] b, int off, int len) { return in.read(b, off, len); }
+                @Override public boolean isFinished() { return in.available() == 0; }
+                @Override public boolean isReady() { return true; }
+                @Override public void setReadListener(ReadListener listener) {
+                    // Allt finns redan i minnet
+                    try {
+                        if (in.available() > 0) listener.onDataAvailable();
+                        listener.onAllDataRead();
+                    } catch (IOException e) {
+                        listener.onError(e);
+                    }
+                }
+            };
+        }
+
+        @Override
+        public BufferedReader getReader() {
+            String encoding = getCharacterEncoding();
+            return new BufferedReader(new InputStreamReader(getInputStream(),
+                    encoding != null ? Charset.forName(encoding) : StandardCharsets.UTF_8));
+        }
+    }
+}
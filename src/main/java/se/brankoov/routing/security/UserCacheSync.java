@@ -0,0 +1,110 @@
+package se.brankoov.routing.security;
+
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PreDestroy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.Statement;
+
+/**
+ * Håller användarcachen i CustomUserDetailsService i synk mellan instanser.
+ *
+ * evict() tar bort posten lokalt och skickar pg_notify på kanalen user_cache_evict.
+ * Om security.user-cache.listen.enabled=true lyssnar en egen tråd på kanalen (LISTEN) och tar bort
+ * posten även här. LISTEN kräver en direktanslutning – Supabase transaction pooler (port 6543) stöder
+ * det inte, använd då listen.url mot port 5432. Avstängt betyder att andra instanser ser ändringen
+ * först när cachens TTL gått ut.
+ */
+@Component
+public class UserCacheSync {
+
+    private static final Logger log = LoggerFactory.getLogger(UserCacheSync.class);
+
+    static final String CHANNEL = "user_cache_evict";
+
+    private final CustomUserDetailsService userDetailsService;
+    private final JdbcTemplate jdbcTemplate;
+
+    @Value("${security.user-cache.listen.enabled:false}")
+    private boolean listenEnabled;
+
+    @Value("${security.user-cache.listen.url:${spring.datasource.url}}")
+    private String listenUrl;
+
+    @Value("${spring.datasource.username:}")
+    private String dbUser;
+
+    @Value("${spring.datasource.password:}")
+    private String dbPassword;
+
+    private volatile boolean running = true;
+
+    public UserCacheSync(CustomUserDetailsService userDetailsService, JdbcTemplate jdbcTemplate) {
+        this.userDetailsService = userDetailsService;
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /** Anropas när en användare ändrats (t.ex. bannats). */
+    public void evict(String username) {
+        userDetailsService.evict(username);
+        try {
+            jdbcTemplate.queryForObject("select pg_notify(?, ?)::text", String.class, CHANNEL, username);
+        } catch (Exception e) {
+            // Lokalt är posten redan borta, andra instanser faller tillbaka på TTL
+            log.warn("Could not publish user cache eviction for {}: {}", username, e.getMessage());
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void startListening() {
+        if (!listenEnabled) {
+            log.info("User cache LISTEN disabled, other instances rely on cache TTL");
+            return;
+        }
+        Thread listener = new Thread(this::listenLoop, "user-cache-listener");
+        listener.setDaemon(true);
+        listener.start();
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+    }
+
+    private void listenLoop() {
+        while (running) {
+            try (Connection conn = DriverManager.getConnection(listenUrl, dbUser, dbPassword)) {
+                try (Statement st = conn.createStatement()) {
+                    st.execute("LISTEN " + CHANNEL);
+                }
+                log.info("Listening for user cache evictions on {}", CHANNEL);
+                PGConnection pg = conn.unwrap(PGConnection.class);
+                while (running) {
+                    PGNotification[] notifications = pg.getNotifications(10_000);
+                    if (notifications == null) continue;
+                    for (PGNotification n : notifications) {
+                        userDetailsService.evict(n.getParameter());
+                    }
+                }
+            } catch (Exception e) {
+                if (!running) return;
+                log.warn("User cache listener failed, retrying in 5 s: {}", e.getMessage());
+                try {
+                    Thread.sleep(5_000);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+}
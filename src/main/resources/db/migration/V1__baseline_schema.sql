@@ -0,0 +1,76 @@
+-- Grundschema, samma som Hibernate (ddl-auto=update) har skapat hittills.
+-- Allt är "if not exists" så att skriptet kan köras både på en tom databas
+-- och på en befintlig databas som tidigare skapats av Hibernate.
+
+create table if not exists users (
+    id          bigint generated by default as identity primary key,
+    username    varchar(255)                not null unique,
+    password    varchar(255)                not null,
+    role        varchar(255),
+    enabled     boolean                     not null,
+    created_at  timestamp(6) with time zone not null
+);
+
+create table if not exists route_geometries (
+    hash        varchar(64) primary key,
+    data        bytea                       not null,
+    raw_length  integer                     not null,
+    created_at  timestamp(6) with time zone
+);
+
+create table if not exists routes (
+    id                      bigint primary key,
+    name                    varchar(255),
+    description             varchar(255),
+    start_address           varchar(255),
+    end_address             varchar(255),
+    geometry                text,
+    geometry_hash           varchar(64) references route_geometries (hash),
+    total_duration          bigint,
+    average_stop_duration   integer,
+    user_id                 bigint references users (id),
+    created_at              timestamp(6) with time zone
+);
+
+create table if not exists route_stops (
+    id          bigint primary key,
+    label       varchar(255),
+    address     varchar(255),
+    latitude    float(53),
+    longitude   float(53),
+    stop_order  integer not null,
+    comment     varchar(100),
+    route_id    bigint references routes (id)
+);
+
+create table if not exists geocode_cache (
+    query           varchar(255) primary key,
+    payload         bytea,
+    json_response   text,
+    source_text     varchar(255),
+    negative        boolean default false not null,
+    hit_count       bigint default 0 not null,
+    last_hit_at     timestamp(6) with time zone,
+    updated_at      timestamp(6) with time zone
+);
+
+-- Kolumner som tillkommit över tid, ifall databasen är äldre än dem
+alter table routes add column if not exists geometry_hash varchar(64) references route_geometries (hash);
+alter table route_stops add column if not exists comment varchar(100);
+alter table geocode_cache add column if not exists payload bytea;
+alter table geocode_cache add column if not exists source_text varchar(255);
+alter table geocode_cache add column if not exists negative boolean default false not null;
+alter table geocode_cache add column if not exists hit_count bigint default 0 not null;
+alter table geocode_cache add column if not exists last_hit_at timestamp(6) with time zone;
+
+-- Id-sekvenser för routes och route_stops (allocationSize = 50 i entiteterna).
+-- Flyttas förbi befintliga id:n från när tabellerna gick på IDENTITY.
+create sequence if not exists routes_seq start with 1 increment by 50;
+create sequence if not exists route_stops_seq start with 1 increment by 50;
+
+select setval('routes_seq', greatest(
+        (select last_value from routes_seq),
+        (select coalesce(max(id), 0) from routes) + 50));
+select setval('route_stops_seq', greatest(
+        (select last_value from route_stops_seq),
+        (select coalesce(max(id), 0) from route_stops) + 50));
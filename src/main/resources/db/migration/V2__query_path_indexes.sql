@@ -0,0 +1,22 @@
+-- Index för frågorna i våra repositories.
+-- users.username har redan ett index via unique-villkoret i V1.
+
+-- RouteRepository.findSummariesByOwner(After): ägare + keyset-sortering (createdAt, id) desc
+create index if not exists idx_routes_user_created_id
+    on routes (user_id, created_at desc, id desc);
+
+-- Laddning av stopp per rutt (fetch join, size(r.stops), dispatch-kopiering)
+create index if not exists idx_route_stops_route_id
+    on route_stops (route_id);
+
+-- Utgångna poster och findNegativeKeysSince i GeocodeCacheMaintenanceJob
+create index if not exists idx_geocode_cache_negative_updated
+    on geocode_cache (negative, updated_at);
+
+-- findHottest / findRefreshCandidates
+create index if not exists idx_geocode_cache_hits
+    on geocode_cache (hit_count desc) where negative = false;
+
+-- findColdestKeys
+create index if not exists idx_geocode_cache_coldest
+    on geocode_cache (last_hit_at asc nulls first, updated_at asc);
@@ -0,0 +1,3 @@
+-- RouteGeometryRepository.deleteUnreferenced: "finns någon rutt som pekar på den här geometrin?"
+create index if not exists idx_routes_geometry_hash
+    on routes (geometry_hash);
@@ -0,0 +1,3 @@
+-- RouteEntity.version: optimistisk låsning så att samtidiga ändringar av en rutt inte skriver över varandra.
+-- Befintliga rutter och rader från RouteDispatchService (som inte sätter kolumnen) börjar på 0.
+alter table routes add column if not exists version bigint not null default 0;
@@ -3,10 +3,14 @@ package se.brankoov.routing.api.route;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.context.annotation.Import;
 import org.springframework.http.MediaType;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.test.web.servlet.MockMvc;
+import se.brankoov.routing.config.SecurityConfig;
+import se.brankoov.routing.domain.route.BatchOptimizationService;
+import se.brankoov.routing.domain.route.RouteEditService;
 import se.brankoov.routing.domain.route.RouteOptimizationService;
 import se.brankoov.routing.domain.route.entity.RouteRepository;
 import se.brankoov.routing.security.CustomUserDetailsService;
@@ -14,14 +18,18 @@ import se.brankoov.routing.security.JwtUtil;
 
 import java.util.List;
 
+import static org.hamcrest.Matchers.containsString;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.BDDMockito.given;
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.options;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @WebMvcTest(RouteController.class)
+@Import(SecurityConfig.class) // riktiga säkerhetskedjan, med CORS-reglerna
 @WithMockUser
 class RouteControllerTest {
 
@@ -35,6 +43,12 @@ class RouteControllerTest {
     @MockitoBean
     RouteRepository routeRepository; // <--- NYTT: Krävs för controllerns konstruktor!
 
+    @MockitoBean
+    BatchOptimizationService batchService;
+
+    @MockitoBean
+    RouteEditService routeEditService;
+
     // --- MOCKS FÖR SÄKERHET ---
     @MockitoBean
     CustomUserDetailsService userDetailsService; // <--- NYTT: Krävs för Security
@@ -45,8 +59,8 @@ class RouteControllerTest {
     @Test
     void returnsOptimizedRouteFromService() throws Exception {
         // Arrange
-        var stop1 = new StopResponse("1", "Stop 1", "Addr 1", 59.0, 18.0, 0);
-        var stop2 = new StopResponse("2", "Stop 2", "Addr 2", 59.1, 18.1, 1);
+        var stop1 = new StopResponse("1", "Stop 1", "Addr 1", 59.0, 18.0, 0, null);
+        var stop2 = new StopResponse("2", "Stop 2", "Addr 2", 59.1, 18.1, 1, null);
 
         var response = new RouteOptimizationResponse(
                 List.of(stop1, stop2),
@@ -80,4 +94,16 @@ class RouteControllerTest {
                 .andExpect(jsonPath("$.totalStops").value(2))
                 .andExpect(jsonPath("$.orderedStops[0].id").value("1"));
     }
-}
\ No newline at end of file
+
+    @Test
+    void allowsCorsPreflightForPatchingStops() throws Exception {
+        // Webbappen redigerar stopp med PATCH, som webbläsaren alltid förhandsfrågar om
+        mockMvc.perform(options("/api/routes/42/stops")
+                        .header("Origin", "http://localhost:5173")
+                        .header("Access-Control-Request-Method", "PATCH")
+                        .header("Access-Control-Request-Headers", "Content-Type, Authorization"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Access-Control-Allow-Origin", "http://localhost:5173"))
+                .andExpect(header().string("Access-Control-Allow-Methods", containsString("PATCH")));
+    }
+}
@@ -0,0 +1,103 @@
+package se.brankoov.routing.config;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ReadWriteRoutingDataSourceTest {
+
+    private final DataSource primary = mock(DataSource.class);
+    private final DataSource replica = mock(DataSource.class);
+    private final Connection primaryConnection = mock(Connection.class);
+    private final Connection replicaConnection = mock(Connection.class);
+    private final Statement primaryStatement = mock(Statement.class);
+    private final Statement replicaStatement = mock(Statement.class);
+    private final ReplicaLagMonitor lagMonitor = mock(ReplicaLagMonitor.class);
+
+    private JdbcTemplate jdbc;
+    private TransactionTemplate write;
+    private TransactionTemplate read;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        when(primary.getConnection()).thenReturn(primaryConnection);
+        when(replica.getConnection()).thenReturn(replicaConnection);
+        when(primaryConnection.createStatement()).thenReturn(primaryStatement);
+        when(replicaConnection.createStatement()).thenReturn(replicaStatement);
+        when(primaryConnection.getAutoCommit()).thenReturn(true);
+        when(replicaConnection.getAutoCommit()).thenReturn(true);
+        when(lagMonitor.isReplicaUsable()).thenReturn(true);
+
+        // Samma uppsättning som i produktion: routing bakom LazyConnectionDataSourceProxy
+        DataSource dataSource = new DataSourceRoutingConfig().dataSource(primary, replica, lagMonitor);
+        DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(dataSource);
+        jdbc = new JdbcTemplate(dataSource);
+        write = new TransactionTemplate(transactionManager);
+        read = new TransactionTemplate(transactionManager);
+        read.setReadOnly(true);
+
+        // Proxyn hämtar en anslutning vid start för att läsa standardinställningarna
+        clearInvocations(primary, replica, primaryConnection, replicaConnection);
+    }
+
+    @Test
+    void readThenWriteInTheSameRequestGoesToReplicaThenPrimary() throws Exception {
+        read.executeWithoutResult(status -> jdbc.execute("select 1"));
+        write.executeWithoutResult(status -> jdbc.update("update routes set name = 'x'"));
+
+        verify(replicaStatement).execute("select 1");
+        verify(primaryStatement).executeUpdate("update routes set name = 'x'");
+        verify(replicaStatement, never()).executeUpdate(anyString());
+        verify(primaryConnection).commit();
+    }
+
+    @Test
+    void readInsideAWriteTransactionStaysOnThePrimary() throws Exception {
+        write.executeWithoutResult(status -> {
+            read.executeWithoutResult(inner -> jdbc.execute("select 1"));
+            jdbc.update("update routes set name = 'x'");
+        });
+
+        verify(replica, never()).getConnection();
+        verify(primaryStatement).execute("select 1");
+        verify(primaryStatement).executeUpdate("update routes set name = 'x'");
+    }
+
+    @Test
+    void readsFallBackToThePrimaryWhenTheReplicaLags() throws Exception {
+        when(lagMonitor.isReplicaUsable()).thenReturn(false);
+
+        read.executeWithoutResult(status -> jdbc.execute("select 1"));
+
+        verify(replica, never()).getConnection();
+        verify(primaryStatement).execute("select 1");
+    }
+
+    @Test
+    void openInViewIsOff() throws Exception {
+        // Med open-in-view skulle första läsningen binda en replika-anslutning till hela anropet
+        Properties properties = new Properties();
+        try (InputStream in = getClass().getResourceAsStream("/application.properties")) {
+            properties.load(new InputStreamReader(in, StandardCharsets.ISO_8859_1));
+        }
+        assertEquals("false", properties.getProperty("spring.jpa.open-in-view"));
+    }
+}
@@ -0,0 +1,31 @@
+package se.brankoov.routing.domain.geocode;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class AddressCanonicalizerTest {
+
+    @Test
+    void sameAddressWrittenDifferentWaysGivesSameKey() {
+        String expected = "drottninggatan 5";
+
+        assertEquals(expected, AddressCanonicalizer.canonicalize("Drottninggatan 5, Stockholm"));
+        assertEquals(expected, AddressCanonicalizer.canonicalize("drottninggatan 5"));
+        assertEquals(expected, AddressCanonicalizer.canonicalize("Drottningg. 5"));
+        assertEquals(expected, AddressCanonicalizer.canonicalize("  Drottninggatan   5 , 111 51 STOCKHOLM "));
+    }
+
+    @Test
+    void expandsCommonSwedishAbbreviations() {
+        assertEquals("sankt eriksgatan 10", AddressCanonicalizer.canonicalize("S:t Eriksgatan 10"));
+        assertEquals("sankt eriksgatan 10", AddressCanonicalizer.canonicalize("St. Eriksgatan 10"));
+        assertEquals("kungsvägen 3 solna", AddressCanonicalizer.canonicalize("Kungsv. 3, Solna"));
+    }
+
+    @Test
+    void keepsOtherCitiesAndJoinsHouseLetter() {
+        assertEquals("hornsgatan 5a", AddressCanonicalizer.canonicalize("Hornsgatan 5 A"));
+        assertEquals("storgatan 1 tumba", AddressCanonicalizer.canonicalize("Storgatan 1, 147 30 Tumba"));
+    }
+}
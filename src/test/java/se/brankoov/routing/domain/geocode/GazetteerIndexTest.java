@@ -0,0 +1,79 @@
+package se.brankoov.routing.domain.geocode;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Locale;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GazetteerIndexTest {
+
+    private static final String CSV = """
+            LON,LAT,NUMBER,STREET,UNIT,CITY,DISTRICT,REGION,POSTCODE
+            18.0632,59.3326,5,Drottninggatan,,Stockholm,,,11151
+            18.0000,59.3600,1,Storgatan,,Solna,,,17163
+            17.8300,59.2300,1,Storgatan,,Tumba,,,14730
+            11.9700,57.7100,1,Storgatan,,Göteborg,,,41124
+            18.0500,59.3100,"12 A","Hornsgatan",,Stockholm,,,11821
+            """;
+
+    @Test
+    void importsOnlyAddressesInsideServiceArea() throws Exception {
+        GazetteerIndex.Builder builder = new GazetteerIndex.Builder();
+
+        int[] counts = OfflineGazetteer.importCsv(
+                new ByteArrayInputStream(CSV.getBytes(StandardCharsets.UTF_8)), builder);
+
+        assertArrayEquals(new int[]{5, 4}, counts); // Göteborg hoppas över
+        assertEquals(4, builder.build().size());
+    }
+
+    @Test
+    void looksUpByCanonicalKey() throws Exception {
+        GazetteerIndex.Builder builder = new GazetteerIndex.Builder();
+        OfflineGazetteer.importCsv(new ByteArrayInputStream(CSV.getBytes(StandardCharsets.UTF_8)), builder);
+        GazetteerIndex index = builder.build();
+
+        List<GeocodingService.LatLngLabel> hits = index.lookup(AddressCanonicalizer.canonicalize("Drottningg. 5, Stockholm"));
+        assertEquals(1, hits.size());
+        assertEquals("Drottninggatan 5, 111 51 Stockholm", hits.get(0).label());
+        assertEquals(59.3326, hits.get(0).lat(), 0.0001);
+
+        assertEquals(1, index.lookup("hornsgatan 12a").size());
+        assertEquals(2, index.lookup("storgatan 1").size());
+        assertEquals("Storgatan 1, 147 30 Tumba", index.lookup("storgatan 1 tumba").get(0).label());
+        assertTrue(index.lookup("okändgatan 3").isEmpty());
+    }
+
+    @Test
+    void onlyAnExactHouseNumberIsAHit() throws Exception {
+        GazetteerIndex.Builder builder = new GazetteerIndex.Builder();
+        OfflineGazetteer.importCsv(new ByteArrayInputStream(CSV.getBytes(StandardCharsets.UTF_8)), builder);
+        GazetteerIndex index = builder.build();
+
+        // Bara gatan, eller ett nummer vi inte har, ska gå vidare till cachen/ORS
+        assertTrue(index.lookup("drottninggatan").isEmpty());
+        assertTrue(index.lookup("storgatan").isEmpty());
+        assertTrue(index.lookup("drottninggatan 7").isEmpty());
+        assertTrue(index.lookup("hornsgatan 12").isEmpty());
+    }
+
+    @Test
+    void labelsDoNotDependOnTheDefaultLocale() {
+        Locale previous = Locale.getDefault();
+        Locale.setDefault(Locale.forLanguageTag("tr-TR")); // "i".toUpperCase() blir "İ" på turkiska
+        try {
+            GazetteerIndex.Builder builder = new GazetteerIndex.Builder();
+            builder.add("Sveavägen", "7i", "Stockholm", "11157", 59.34, 18.06);
+
+            assertEquals("Sveavägen 7I, 111 57 Stockholm", builder.build().lookup("sveavägen 7i").get(0).label());
+        } finally {
+            Locale.setDefault(previous);
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package se.brankoov.routing.domain.geocode;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+class GeocodeCacheMaintenanceJobTest {
+
+    @Mock
+    GeocodeCacheRepository cacheRepository;
+
+    @Mock
+    GeocodingService geocodingService;
+
+    private GeocodeCacheMaintenanceJob job;
+
+    @BeforeEach
+    void setUp() {
+        job = new GeocodeCacheMaintenanceJob(cacheRepository, geocodingService);
+        ReflectionTestUtils.setField(job, "ttl", Duration.ofDays(90));
+        ReflectionTestUtils.setField(job, "negativeTtl", Duration.ofHours(24));
+        ReflectionTestUtils.setField(job, "refreshAhead", Duration.ofDays(14));
+        ReflectionTestUtils.setField(job, "refreshMinHits", 5L);
+        ReflectionTestUtils.setField(job, "refreshBatchSize", 100);
+        ReflectionTestUtils.setField(job, "maxRows", 10L);
+    }
+
+    private static List<String> keys(String prefix, int n) {
+        return IntStream.range(0, n).mapToObj(i -> prefix + i).toList();
+    }
+
+    @Test
+    void refreshesPopularEntriesBeforeTheyExpire() {
+        GeocodeCacheEntity hot = new GeocodeCacheEntity("storgatan 1", new byte[0]);
+        given(cacheRepository.findRefreshCandidates(any(), any(Long.class), any())).willReturn(List.of(hot));
+
+        job.refreshPopularEntries();
+
+        // Förnyelse sker 14 dagar innan 90-dagars-TTL:en går ut
+        verify(cacheRepository).findRefreshCandidates(
+                argThat(before -> Math.abs(Duration.between(Instant.now().minus(Duration.ofDays(76)), before).toMinutes()) < 1),
+                any(Long.class), any());
+        verify(geocodingService).refresh(hot);
+    }
+
+    @Test
+    void expiredEntriesAreDeletedInBatchesAndLeaveTheIndex() {
+        List<String> full = keys("a", 1000);
+        List<String> rest = keys("b", 3);
+        given(cacheRepository.findExpiredColdKeys(any(), any(Pageable.class))).willReturn(full, rest);
+
+        job.evictExpired();
+
+        verify(cacheRepository).deleteExpiredNegatives(any());
+        verify(cacheRepository).deleteAllByIdInBatch(full);
+        verify(cacheRepository).deleteAllByIdInBatch(rest);
+        verify(geocodingService).onEvicted(full);
+        verify(geocodingService).onEvicted(rest);
+    }
+
+    @Test
+    void capEvictsOnlyTheOverflowColdestFirst() {
+        given(cacheRepository.count()).willReturn(13L);
+        given(cacheRepository.findColdestKeys(argThat(page -> page.getPageSize() == 3))).willReturn(keys("c", 3));
+
+        job.evictBeyondCap();
+
+        verify(cacheRepository, times(1)).deleteAllByIdInBatch(keys("c", 3));
+        verify(geocodingService).onEvicted(keys("c", 3));
+    }
+
+    @Test
+    void nothingIsEvictedUnderTheCap() {
+        given(cacheRepository.count()).willReturn(10L);
+
+        job.evictBeyondCap();
+
+        verify(cacheRepository, never()).findColdestKeys(any());
+        verify(cacheRepository, never()).deleteAllByIdInBatch(any());
+    }
+
+    @Test
+    void maintenanceFlushesHitsAndRebuildsTheNegativeFilter() {
+        given(cacheRepository.count()).willReturn(0L);
+
+        job.runMaintenance();
+
+        verify(geocodingService).flushHitCounts();
+        verify(geocodingService).rebuildNegativeFilter();
+        verify(cacheRepository, never()).halveHitCounts();
+    }
+
+    @Test
+    void hitCountsDecayOnTheirOwnSchedule() {
+        job.decayHitCounts();
+
+        verify(cacheRepository).halveHitCounts();
+    }
+}
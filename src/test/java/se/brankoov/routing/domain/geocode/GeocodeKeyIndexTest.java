@@ -0,0 +1,38 @@
+package se.brankoov.routing.domain.geocode;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GeocodeKeyIndexTest {
+
+    @Test
+    void findsKeyWithSmallTypo() {
+        GeocodeKeyIndex index = new GeocodeKeyIndex(0.8);
+        index.add("drottninggatan 5");
+        index.add("hornsgatan 12");
+
+        assertEquals(Optional.of("drottninggatan 5"), index.findClosest("drotninggatan 5"));
+    }
+
+    @Test
+    void neverMatchesAnotherHouseNumber() {
+        GeocodeKeyIndex index = new GeocodeKeyIndex(0.8);
+        index.add("drottninggatan 6");
+
+        assertTrue(index.findClosest("drottninggatan 5").isEmpty());
+    }
+
+    @Test
+    void removedKeysAreNotReturned() {
+        GeocodeKeyIndex index = new GeocodeKeyIndex(0.8);
+        index.add("drottninggatan 5");
+        index.remove("drottninggatan 5");
+
+        assertTrue(index.findClosest("drottninggatan 5").isEmpty());
+        assertEquals(0, index.size());
+    }
+}
@@ -0,0 +1,27 @@
+package se.brankoov.routing.domain.geocode;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class GeocodeMetricsTest {
+
+    @Test
+    void exposesLookupsPerCacheLevel() {
+        GeocodingService service = mock(GeocodingService.class);
+        when(service.cacheStats()).thenReturn(new GeocodingService.CacheStats(4, 3, 1, 2, 5, 7, 0.7));
+
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        new GeocodeMetrics(service, new GeocodeHotCache(100)).bindTo(registry);
+
+        assertEquals(4, registry.get("geocode.lookups").tag("result", "gazetteer").functionCounter().count());
+        assertEquals(3, registry.get("geocode.lookups").tag("result", "exact").functionCounter().count());
+        assertEquals(2, registry.get("geocode.lookups").tag("result", "fuzzy").functionCounter().count());
+        assertEquals(5, registry.get("geocode.lookups").tag("result", "negative").functionCounter().count());
+        assertEquals(7, registry.get("geocode.lookups").tag("result", "miss").functionCounter().count());
+        assertEquals(0, registry.get("geocode.hot_cache.size").gauge().value());
+    }
+}
@@ -0,0 +1,32 @@
+package se.brankoov.routing.domain.geocode;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GeocodeResultCodecTest {
+
+    @Test
+    void roundTripKeepsLabelsAndCoordinates() {
+        List<GeocodingService.LatLngLabel> results = List.of(
+                new GeocodingService.LatLngLabel("Drottninggatan 5, Stockholm", 59.332612, 18.063204),
+                new GeocodingService.LatLngLabel("Sankt Eriksgatan 10, Stockholm", 59.331, 18.031)
+        );
+
+        List<GeocodingService.LatLngLabel> decoded = GeocodeResultCodec.decode(GeocodeResultCodec.encode(results));
+
+        assertEquals(2, decoded.size());
+        assertEquals("Drottninggatan 5, Stockholm", decoded.get(0).label());
+        assertEquals(59.332612, decoded.get(0).lat(), 0.000001);
+        assertEquals(18.063204, decoded.get(0).lng(), 0.000001);
+        assertEquals("Sankt Eriksgatan 10, Stockholm", decoded.get(1).label());
+    }
+
+    @Test
+    void emptyListRoundTrips() {
+        assertTrue(GeocodeResultCodec.decode(GeocodeResultCodec.encode(List.of())).isEmpty());
+    }
+}
@@ -7,14 +7,29 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.function.client.ClientResponse;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
 
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.BDDMockito.given;
 import static org.mockito.Mockito.*;
@@ -35,7 +50,9 @@ class GeocodingServiceTest {
 
     @BeforeEach
     void setUp() {
-        geocodingService = new GeocodingService(orsWebClient, cacheRepository, objectMapper);
+        geocodingService = new GeocodingService(orsWebClient, cacheRepository, objectMapper,
+                new GeocodeKeyIndex(0.8), new NegativeQueryFilter(1000, 0.001), new OfflineGazetteer(""),
+                new GeocodeHotCache(100));
     }
 
     @Test
@@ -73,4 +90,175 @@ class GeocodingServiceTest {
         // Vi kan inte enkelt verifiera "ingen webclient" här pga WebClient-kedjan är komplex att mocka "not called",
         // men om testet passerar utan nullpointer på webclienten så vet vi att den inte anropades.
     }
-}
\ No newline at end of file
+
+    // ---- TTL och negativ cache, mot en falsk ORS ----
+
+    private static final String ONE_HIT = "{\"features\":[{\"geometry\":{\"coordinates\":[18.07,59.33]}," +
+            "\"properties\":{\"label\":\"Testgatan 1, Stockholm\"}}]}";
+    private static final String NO_HITS = "{\"features\":[]}";
+
+    private final AtomicInteger orsCalls = new AtomicInteger();
+    private final NegativeQueryFilter negativeFilter = new NegativeQueryFilter(1000, 0.001);
+
+    private GeocodingService withOrs(String body) {
+        WebClient ors = WebClient.builder()
+                .exchangeFunction(request -> {
+                    orsCalls.incrementAndGet();
+                    return Mono.just(ClientResponse.create(HttpStatus.OK)
+                            .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                            .body(body)
+                            .build());
+                })
+                .build();
+        return new GeocodingService(ors, cacheRepository, new ObjectMapper(),
+                new GeocodeKeyIndex(0.8), negativeFilter, new OfflineGazetteer(""),
+                new GeocodeHotCache(100));
+    }
+
+    private static GeocodeCacheEntity entry(String key, List<GeocodingService.LatLngLabel> results, Instant updatedAt) {
+        GeocodeCacheEntity entry = new GeocodeCacheEntity(key, GeocodeResultCodec.encode(results));
+        entry.setNegative(results.isEmpty());
+        entry.setUpdatedAt(updatedAt);
+        entry.setHitCount(42);
+        return entry;
+    }
+
+    @Test
+    void freshEntryIsServedWithoutOrs() {
+        GeocodingService service = withOrs(ONE_HIT);
+        given(cacheRepository.findById("testgatan 1")).willReturn(Optional.of(entry("testgatan 1",
+                List.of(new GeocodingService.LatLngLabel("Testgatan 1", 55.0, 13.0)), Instant.now().minus(Duration.ofDays(1)))));
+
+        assertEquals(55.0, service.geocodeMany("Testgatan 1").get(0).lat());
+        assertEquals(0, orsCalls.get());
+    }
+
+    @Test
+    void expiredEntryIsRefreshedInPlaceAndKeepsItsHitCount() {
+        GeocodingService service = withOrs(ONE_HIT);
+        given(cacheRepository.findById("testgatan 1")).willReturn(Optional.of(entry("testgatan 1",
+                List.of(new GeocodingService.LatLngLabel("Gammal", 55.0, 13.0)), Instant.now().minus(Duration.ofDays(91)))));
+        given(cacheRepository.updatePayload(eq("testgatan 1"), any(), anyString(), eq(false), any())).willReturn(1);
+
+        List<GeocodingService.LatLngLabel> results = service.geocodeMany("Testgatan 1");
+
+        assertEquals("Testgatan 1, Stockholm", results.get(0).label());
+        assertEquals(1, orsCalls.get());
+        // Uppdateras på plats – save() skulle skriva över hitCount och lastHitAt
+        verify(cacheRepository).updatePayload(eq("testgatan 1"), any(), eq("Testgatan 1"), eq(false), any());
+        verify(cacheRepository, never()).save(any());
+    }
+
+    @Test
+    void expiredEntryIsStillUsedWhenOrsFindsNothing() {
+        GeocodingService service = withOrs(NO_HITS);
+        given(cacheRepository.findById("testgatan 1")).willReturn(Optional.of(entry("testgatan 1",
+                List.of(new GeocodingService.LatLngLabel("Gammal", 55.0, 13.0)), Instant.now().minus(Duration.ofDays(91)))));
+
+        assertEquals("Gammal", service.geocodeMany("Testgatan 1").get(0).label());
+        verify(cacheRepository, never()).updatePayload(anyString(), any(), anyString(), anyBoolean(), any());
+    }
+
+    @Test
+    void notFoundIsStoredAsNegativeEntry() {
+        GeocodingService service = withOrs(NO_HITS);
+        given(cacheRepository.findById(anyString())).willReturn(Optional.empty());
+
+        assertTrue(service.geocodeMany("Finnsintegatan 99").isEmpty());
+
+        verify(cacheRepository).save(argThat(e -> e.isNegative() && e.getQuery().equals("finnsintegatan 99")));
+    }
+
+    @Test
+    void freshNegativeEntryIsNotAskedAgain() {
+        GeocodingService service = withOrs(ONE_HIT);
+        given(cacheRepository.findById("finnsintegatan 99")).willReturn(Optional.of(
+                entry("finnsintegatan 99", List.of(), Instant.now().minus(Duration.ofHours(1)))));
+
+        assertTrue(service.geocodeMany("Finnsintegatan 99").isEmpty());
+        assertEquals(0, orsCalls.get());
+    }
+
+    @Test
+    void expiredNegativeEntryIsAskedAgain() {
+        GeocodingService service = withOrs(ONE_HIT);
+        given(cacheRepository.findById("finnsintegatan 99")).willReturn(Optional.of(
+                entry("finnsintegatan 99", List.of(), Instant.now().minus(Duration.ofHours(25)))));
+        given(cacheRepository.updatePayload(anyString(), any(), anyString(), anyBoolean(), any())).willReturn(1);
+
+        assertFalse(service.geocodeMany("Finnsintegatan 99").isEmpty());
+        assertEquals(1, orsCalls.get());
+        verify(cacheRepository).updatePayload(eq("finnsintegatan 99"), any(), anyString(), eq(false), any());
+    }
+
+    @Test
+    void bloomFilterFalsePositiveDoesNotBlockAKnownAddress() {
+        GeocodingService service = withOrs(NO_HITS);
+        given(cacheRepository.findAllKeys()).willReturn(List.of("testgatan 1"));
+        service.loadKeyIndex();
+        negativeFilter.confirm("testgatan 1"); // som en falsk positiv: filtret säger "kanske", cachen vet bättre
+        given(cacheRepository.findById("testgatan 1")).willReturn(Optional.of(entry("testgatan 1",
+                List.of(new GeocodingService.LatLngLabel("Testgatan 1", 55.0, 13.0)), Instant.now())));
+
+        assertEquals("Testgatan 1", service.geocodeMany("Testgatan 1").get(0).label());
+    }
+
+    @Test
+    void knownJunkNeverReachesTheDatabase() {
+        GeocodingService service = withOrs(NO_HITS);
+        given(cacheRepository.findById(anyString())).willReturn(Optional.empty());
+
+        assertTrue(service.geocodeMany("Finnsintegatan 99").isEmpty());
+        assertTrue(service.geocodeMany("Finnsintegatan 99").isEmpty());
+
+        verify(cacheRepository, times(1)).findById("finnsintegatan 99");
+        assertEquals(1, orsCalls.get());
+    }
+
+    @Test
+    void hitsRecordedDuringAFlushAreNeverLost() throws Exception {
+        GeocodingService service = withOrs(NO_HITS);
+        given(cacheRepository.findById(anyString())).willReturn(Optional.empty());
+        service.geocodeMany("Finnsintegatan 99"); // sparas som känt skräp, därefter räknas varje anrop som träff
+
+        AtomicLong written = new AtomicLong();
+        given(cacheRepository.addHits(eq("finnsintegatan 99"), anyLong(), any())).willAnswer(inv -> {
+            written.addAndGet(inv.getArgument(1, Long.class));
+            return 1;
+        });
+
+        int threads = 4;
+        int callsPerThread = 5_000;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> callers = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                callers.add(pool.submit(() -> {
+                    for (int i = 0; i < callsPerThread; i++) service.geocodeMany("Finnsintegatan 99");
+                }));
+            }
+            // Underhållsjobbet flushar medan anropen pågår
+            while (callers.stream().anyMatch(f -> !f.isDone())) {
+                service.flushHitCounts();
+            }
+            for (Future<?> caller : callers) caller.get();
+        } finally {
+            pool.shutdownNow();
+        }
+        service.flushHitCounts();
+
+        assertEquals((long) threads * callsPerThread, written.get());
+    }
+
+    @Test
+    void rebuiltFilterIsTrustedWithoutTheDatabase() {
+        GeocodingService service = withOrs(NO_HITS);
+        given(cacheRepository.findNegativeKeysSince(any())).willReturn(List.of("finnsintegatan 99"));
+
+        service.rebuildNegativeFilter();
+
+        assertTrue(service.geocodeMany("Finnsintegatan 99").isEmpty());
+        verify(cacheRepository, never()).findById(anyString());
+        assertEquals(0, orsCalls.get());
+    }
+}
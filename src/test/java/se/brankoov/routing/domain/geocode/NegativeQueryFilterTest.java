@@ -0,0 +1,32 @@
+package se.brankoov.routing.domain.geocode;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class NegativeQueryFilterTest {
+
+    @Test
+    void knownJunkIsStoppedAfterConfirm() {
+        NegativeQueryFilter filter = new NegativeQueryFilter(1000, 0.001);
+        assertFalse(filter.mightBeUnresolvable("xqzzgatan 99"));
+
+        filter.confirm("xqzzgatan 99");
+
+        assertTrue(filter.mightBeUnresolvable("xqzzgatan 99"));
+    }
+
+    @Test
+    void rebuildReplacesOldKeys() {
+        NegativeQueryFilter filter = new NegativeQueryFilter(1000, 0.001);
+        filter.confirm("gammalt skräp 1");
+
+        filter.rebuild(List.of("nytt skräp 2"));
+
+        assertFalse(filter.mightBeUnresolvable("gammalt skräp 1"));
+        assertTrue(filter.mightBeUnresolvable("nytt skräp 2"));
+    }
+}
@@ -0,0 +1,166 @@
+package se.brankoov.routing.domain.route;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import se.brankoov.routing.api.route.BatchOptimizeResponse;
+import se.brankoov.routing.api.route.RouteOptimizationRequest;
+import se.brankoov.routing.api.route.StopRequest;
+import se.brankoov.routing.api.route.StopResponse;
+import se.brankoov.routing.domain.geocode.GeocodingService;
+import se.brankoov.routing.infra.ors.OrsMatrixService;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.lenient;
+
+@ExtendWith(MockitoExtension.class)
+class BatchOptimizationServiceTest {
+
+    private static final GeocodingService.LatLng DEPOT = new GeocodingService.LatLng(59.30, 18.00);
+
+    @Mock RouteOptimizationService routeService;
+    @Mock OrsMatrixService orsMatrixService;
+
+    private BatchOptimizationService service;
+    // Delmatrisen som varje rutt (nyckel: första stoppets id) fick av den gemensamma matrisen
+    private final Map<String, double[][]> solvedWith = new ConcurrentHashMap<>();
+    private final Set<List<Double>> fetchedLocations = ConcurrentHashMap.newKeySet();
+
+    @AfterEach
+    void tearDown() {
+        if (service != null) service.shutdown();
+    }
+
+    @Test
+    void sharedLocationsAreFetchedOnce() {
+        service = service(50);
+
+        BatchOptimizeResponse response = service.optimize(List.of(
+                request(stop("a1", 59.31, 18.01), stop("a2", 59.32, 18.02)),
+                request(stop("b1", 59.33, 18.03), stop("a1", 59.31, 18.01))));
+
+        assertEquals(2, response.succeeded());
+        // Depån och a1 finns i båda rutterna: 4 unika platser i ett enda block
+        assertEquals(4, fetchedLocations.size());
+    }
+
+    @Test
+    void eachRouteGetsItsOwnDurationsFromTheSharedMatrix() {
+        // Block om 2 platser, så rutterna skärs ut ur flera block
+        service = service(2);
+        List<List<StopRequest>> routes = List.of(
+                List.of(stop("a1", 59.31, 18.01), stop("a2", 59.32, 18.02), stop("a3", 59.33, 18.03)),
+                List.of(stop("b1", 59.34, 18.04), stop("a2", 59.32, 18.02)),
+                List.of(stop("c1", 59.35, 18.05), stop("b1", 59.34, 18.04), stop("a1", 59.31, 18.01)));
+
+        BatchOptimizeResponse response = service.optimize(routes.stream().map(this::request).toList());
+
+        assertEquals(3, response.succeeded());
+        for (List<StopRequest> stops : routes) {
+            List<List<Double>> locations = new ArrayList<>();
+            locations.add(List.of(DEPOT.lng(), DEPOT.lat()));
+            stops.forEach(s -> locations.add(List.of(s.longitude(), s.latitude())));
+            locations.add(List.of(DEPOT.lng(), DEPOT.lat()));
+
+            double[][] durations = solvedWith.get(stops.get(0).id());
+            for (int i = 0; i < locations.size(); i++) {
+                List<Double> from = locations.get(i);
+                assertArrayEquals(locations.stream().mapToDouble(to -> seconds(from, to)).toArray(),
+                        durations[i], 1e-9, "route " + stops.get(0).id() + " row " + i);
+            }
+        }
+    }
+
+    @Test
+    void oneFailingRouteDoesNotFailTheBatch() {
+        service = service(50);
+        RouteOptimizationRequest ungeocodable = new RouteOptimizationRequest("Finns inte", "Depå",
+                List.of(stop("x1", 59.31, 18.01)), true);
+        given(routeService.geocode(ungeocodable)).willThrow(new RuntimeException("Could not geocode start address"));
+
+        BatchOptimizeResponse response = service.optimize(List.of(
+                request(stop("a1", 59.31, 18.01)),
+                ungeocodable,
+                request(stop("fail", 59.36, 18.06)),
+                request(stop("b1", 59.33, 18.03))));
+
+        assertEquals(2, response.succeeded());
+        assertEquals(2, response.failed());
+        assertNotNull(response.results().get(0).route());
+        assertEquals("Could not geocode start address", response.results().get(1).error());
+        assertEquals("solver failed", response.results().get(2).error());
+        assertNull(response.results().get(3).error());
+    }
+
+    private BatchOptimizationService service(int tileSize) {
+        lenient().when(routeService.geocode(any())).thenAnswer(inv -> {
+            RouteOptimizationRequest request = inv.getArgument(0);
+            List<StopResponse> stops = request.stops().stream()
+                    .map(s -> new StopResponse(s.id(), s.label(), s.address(), s.latitude(), s.longitude(), 0, s.comment()))
+                    .toList();
+            return new RouteOptimizationService.GeocodedRoute(DEPOT, stops, DEPOT);
+        });
+        lenient().when(routeService.cacheKey(any(), anyBoolean())).thenAnswer(inv -> {
+            RouteOptimizationService.GeocodedRoute r = inv.getArgument(0);
+            return OptimizeResultCache.key(r.start(), r.end(), r.stops(), true, new SolverSettings(1, 1L));
+        });
+        lenient().when(routeService.solve(any(), any(), anyBoolean())).thenAnswer(inv -> {
+            RouteOptimizationService.GeocodedRoute r = inv.getArgument(0);
+            if (r.stops().get(0).id().equals("fail")) throw new IllegalStateException("solver failed");
+            solvedWith.put(r.stops().get(0).id(), inv.getArgument(1));
+            return new OptimizeResultCache.Result(IntStream.range(0, r.stops().size()).toArray(), "geometry", 0);
+        });
+        lenient().when(routeService.toResponse(any(), any())).thenCallRealMethod();
+        lenient().when(orsMatrixService.getDurations(anyList(), anyList(), anyList())).thenAnswer(inv -> {
+            List<List<Double>> locations = inv.getArgument(0);
+            List<Integer> sources = inv.getArgument(1), destinations = inv.getArgument(2);
+            Set<List<Double>> unique = new HashSet<>(locations);
+            fetchedLocations.addAll(unique);
+            double[][] durations = new double[sources.size()][destinations.size()];
+            for (int i = 0; i < sources.size(); i++) {
+                for (int j = 0; j < destinations.size(); j++) {
+                    durations[i][j] = seconds(locations.get(sources.get(i)), locations.get(destinations.get(j)));
+                }
+            }
+            return durations;
+        });
+        return new BatchOptimizationService(routeService, orsMatrixService,
+                new OptimizeResultCache(100, Duration.ofMinutes(10), new SimpleMeterRegistry()), tileSize, 2);
+    }
+
+    private RouteOptimizationRequest request(List<StopRequest> stops) {
+        return new RouteOptimizationRequest("Depå", "Depå", stops, true);
+    }
+
+    private RouteOptimizationRequest request(StopRequest... stops) {
+        return request(List.of(stops));
+    }
+
+    private static StopRequest stop(String id, double lat, double lng) {
+        return new StopRequest(id, id, "Gatan " + id, lat, lng, null);
+    }
+
+    // Olika åt olika håll, så att ett omkastat index syns. [longitud, latitud] som i ORS-anropen.
+    private static double seconds(List<Double> a, List<Double> b) {
+        return (b.get(1) - a.get(1)) * 10_000 + (b.get(0) - a.get(0)) * 1_000 + 5_000;
+    }
+}
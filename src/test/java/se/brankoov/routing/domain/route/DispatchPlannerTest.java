@@ -0,0 +1,71 @@
+package se.brankoov.routing.domain.route;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.Executor;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DispatchPlannerTest {
+
+    private static final Executor SAME_THREAD = Runnable::run;
+
+    // Depå vid Sergels torg, n stopp slumpade inom ca 20 km
+    private static DispatchPlanner stockholm(int n, DispatchPlanner.Limits limits) {
+        Random random = new Random(7);
+        double[] lats = new double[n + 2];
+        double[] lons = new double[n + 2];
+        lats[0] = lats[n + 1] = 59.3326;
+        lons[0] = lons[n + 1] = 18.0649;
+        for (int i = 1; i <= n; i++) {
+            lats[i] = 59.3326 + (random.nextDouble() - 0.5) * 0.4;
+            lons[i] = 18.0649 + (random.nextDouble() - 0.5) * 0.8;
+        }
+        return new DispatchPlanner(lats, lons, 30, 1.3, limits);
+    }
+
+    @Test
+    void everyStopIsPlannedExactlyOnce() {
+        DispatchPlanner.Plan plan = stockholm(500, new DispatchPlanner.Limits(0, 0, 300)).plan(8, SAME_THREAD);
+
+        Set<Integer> seen = new HashSet<>();
+        for (int[] route : plan.routes()) {
+            for (int stop : route) {
+                assertTrue(seen.add(stop), "stop " + stop + " planned twice");
+            }
+        }
+        assertEquals(0, plan.unassigned().length);
+        assertEquals(500, seen.size());
+    }
+
+    @Test
+    void routesAreBalanced() {
+        DispatchPlanner.Plan plan = stockholm(400, new DispatchPlanner.Limits(0, 0, 300)).plan(5, SAME_THREAD);
+
+        long shortest = Long.MAX_VALUE, longest = 0;
+        for (long seconds : plan.seconds()) {
+            shortest = Math.min(shortest, seconds);
+            longest = Math.max(longest, seconds);
+        }
+        assertTrue(longest < shortest * 1.25, "shortest " + shortest + " s, longest " + longest + " s");
+    }
+
+    @Test
+    void limitsAreKeptAndOverflowIsUnassigned() {
+        DispatchPlanner.Limits limits = new DispatchPlanner.Limits(40, 6 * 3600, 300);
+        DispatchPlanner.Plan plan = stockholm(300, limits).plan(4, SAME_THREAD);
+
+        int planned = 0;
+        for (int v = 0; v < plan.routes().length; v++) {
+            assertTrue(plan.routes()[v].length <= 40);
+            assertTrue(plan.seconds()[v] <= 6 * 3600);
+            planned += plan.routes()[v].length;
+        }
+        assertEquals(300, planned + plan.unassigned().length);
+        assertTrue(plan.unassigned().length >= 300 - 4 * 40);
+    }
+}
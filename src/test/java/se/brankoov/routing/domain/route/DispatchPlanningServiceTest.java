@@ -0,0 +1,84 @@
+package se.brankoov.routing.domain.route;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import se.brankoov.routing.api.admin.DispatchPlanRequest;
+import se.brankoov.routing.api.admin.DispatchPlanResponse;
+import se.brankoov.routing.api.route.StopRequest;
+import se.brankoov.routing.api.route.StopResponse;
+import se.brankoov.routing.domain.auth.UserEntity;
+import se.brankoov.routing.domain.auth.UserRepository;
+import se.brankoov.routing.domain.geocode.GeocodingService;
+import se.brankoov.routing.domain.route.entity.RouteRepository;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+class DispatchPlanningServiceTest {
+
+    private static final GeocodingService.LatLng DEPOT = new GeocodingService.LatLng(59.3326, 18.0649);
+
+    @Mock RouteOptimizationService routeService;
+    @Mock UserRepository userRepository;
+    @Mock RouteRepository routeRepository;
+
+    private DispatchPlanningService service;
+
+    @BeforeEach
+    void setUp() {
+        service = new DispatchPlanningService(routeService, userRepository, routeRepository, 30, 1.3, 1);
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.shutdown();
+    }
+
+    @Test
+    void ungeocodableStopsAreReportedAsUnassigned() {
+        given(userRepository.findByUsername("driver")).willReturn(Optional.of(new UserEntity("driver", "secret")));
+        given(routeService.geocodeAllowingMisses(any())).willReturn(new RouteOptimizationService.GeocodedRoute(DEPOT, List.of(
+                stop("1", 59.34, 18.07),
+                new StopResponse("2", "Okänd", "Finns inte 1", null, null, 0, null),
+                stop("3", 59.33, 18.05)), DEPOT));
+
+        DispatchPlanResponse response = service.plan(request(List.of("driver")));
+
+        assertEquals(List.of("2"), response.unassigned().stream().map(StopResponse::id).toList());
+        assertEquals(List.of("1", "3"), response.routes().get(0).stops().stream().map(StopResponse::id).sorted().toList());
+        verify(routeService, never()).geocode(any());
+    }
+
+    @Test
+    void unknownDriverIsRejectedBeforeGeocoding() {
+        given(userRepository.findByUsername("nobody")).willReturn(Optional.empty());
+
+        assertThrows(IllegalArgumentException.class,
+                () -> service.plan(request(List.of("nobody"))));
+        verify(routeService, never()).geocodeAllowingMisses(any());
+    }
+
+    private static DispatchPlanRequest request(List<String> drivers) {
+        List<StopRequest> stops = List.of(
+                new StopRequest("1", "A", "Gatan 1", null, null, null),
+                new StopRequest("2", "Okänd", "Finns inte 1", null, null, null),
+                new StopRequest("3", "C", "Gatan 3", null, null, null));
+        return new DispatchPlanRequest("Depå", "Depå", stops, drivers, null, null, null, false, null);
+    }
+
+    private static StopResponse stop(String id, double lat, double lng) {
+        return new StopResponse(id, "Stop " + id, "Gatan " + id, lat, lng, 0, null);
+    }
+}
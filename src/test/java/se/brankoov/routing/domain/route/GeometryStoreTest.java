@@ -0,0 +1,87 @@
+package se.brankoov.routing.domain.route;
+
+import org.junit.jupiter.api.Test;
+import se.brankoov.routing.domain.route.entity.RouteGeometryEntity;
+import se.brankoov.routing.domain.route.entity.RouteGeometryRepository;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+class GeometryStoreTest {
+
+    // Kodad polyline i samma stil som ORS returnerar
+    private static final String POLYLINE = "gfo}IqhxkB".repeat(500);
+
+    @Test
+    void deflateRoundTripsAndShrinks() {
+        byte[] raw = POLYLINE.getBytes(StandardCharsets.UTF_8);
+
+        byte[] packed = GeometryStore.deflate(raw);
+
+        assertTrue(packed.length < raw.length);
+        assertEquals(POLYLINE, GeometryStore.inflate(packed, raw.length));
+    }
+
+    @Test
+    void sameGeometryGivesSameHash() {
+        assertEquals(GeometryStore.hash(POLYLINE), GeometryStore.hash(new String(POLYLINE)));
+        assertEquals(64, GeometryStore.hash(POLYLINE).length());
+    }
+
+    @Test
+    void unchangedGeometryIsNotWrittenAgain() {
+        RouteGeometryRepository repository = mock(RouteGeometryRepository.class);
+        RouteGeometryEntity current = mock(RouteGeometryEntity.class);
+        given(current.getHash()).willReturn(GeometryStore.hash(POLYLINE));
+
+        RouteGeometryEntity result = new GeometryStore(repository).intern(POLYLINE, current);
+
+        assertSame(current, result);
+        verify(repository, never()).insertIfAbsent(anyString(), any(), anyInt());
+    }
+
+    @Test
+    void blankGeometryIsStoredAsNull() {
+        RouteGeometryRepository repository = mock(RouteGeometryRepository.class);
+
+        assertNull(new GeometryStore(repository).intern("  ", null));
+    }
+
+    @Test
+    void newGeometryIsInsertedAndLockedBeforeItIsReferenced() {
+        RouteGeometryRepository repository = mock(RouteGeometryRepository.class);
+        String hash = GeometryStore.hash(POLYLINE);
+        given(repository.lockForReference(hash)).willReturn(Optional.of(hash));
+
+        new GeometryStore(repository).intern(POLYLINE, null);
+
+        verify(repository).insertIfAbsent(anyString(), any(), anyInt());
+        verify(repository).getReferenceById(hash);
+    }
+
+    @Test
+    void rowCleanedUpBeforeTheLockIsInsertedAgain() {
+        RouteGeometryRepository repository = mock(RouteGeometryRepository.class);
+        String hash = GeometryStore.hash(POLYLINE);
+        // Städjobbet tog den gamla oanvända raden mellan insert (som inte gjorde något) och låset
+        given(repository.lockForReference(hash)).willReturn(Optional.empty(), Optional.of(hash));
+
+        new GeometryStore(repository).intern(POLYLINE, null);
+
+        verify(repository, times(2)).insertIfAbsent(anyString(), any(), anyInt());
+        verify(repository).getReferenceById(hash);
+    }
+}
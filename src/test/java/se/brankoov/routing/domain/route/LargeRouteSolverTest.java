@@ -0,0 +1,88 @@
+package se.brankoov.routing.domain.route;
+
+import org.junit.jupiter.api.Test;
+import se.brankoov.routing.api.route.StopResponse;
+import se.brankoov.routing.domain.geocode.GeocodingService;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LargeRouteSolverTest {
+
+    private static final GeocodingService.LatLng DEPOT = new GeocodingService.LatLng(59.3326, 18.0649);
+
+    @Test
+    void hilbertIndexVisitsNeighboursInOrder() {
+        // 2 × 2: (0,0) -> (0,1) -> (1,1) -> (1,0)
+        assertEquals(0, LargeRouteSolver.hilbertIndex(0, 0, 2));
+        assertEquals(1, LargeRouteSolver.hilbertIndex(0, 1, 2));
+        assertEquals(2, LargeRouteSolver.hilbertIndex(1, 1, 2));
+        assertEquals(3, LargeRouteSolver.hilbertIndex(1, 0, 2));
+    }
+
+    @Test
+    void solvesWindowsAndKeepsDepotsFixed() {
+        List<StopResponse> stops = randomStops(300);
+        List<StopResponse> curve = LargeRouteSolver.curveOrder(DEPOT, stops, DEPOT);
+        TiledMatrix matrix = bandMatrix(curve, 48);
+
+        int[] tour = LargeRouteSolver.solve(curve, matrix, new SolverSettings(5, 42L));
+
+        assertEquals(0, tour[0]);
+        assertEquals(301, tour[tour.length - 1]);
+        int[] sorted = tour.clone();
+        Arrays.sort(sorted);
+        assertArrayEquals(IntStream.range(0, 302).toArray(), sorted);
+
+        long curveSeconds = LargeRouteSolver.totalSeconds(IntStream.range(0, 302).toArray(), matrix);
+        assertTrue(LargeRouteSolver.totalSeconds(tour, matrix) < curveSeconds);
+    }
+
+    @Test
+    void onlyTheBandIsNeeded() {
+        TiledMatrix matrix = new TiledMatrix(1002, 48);
+
+        // 21 block: diagonalen + två grannar per skarv, istället för 21 × 21
+        assertEquals(21 + 2 * 20, LargeRouteSolver.bandTiles(matrix).size());
+    }
+
+    private static List<StopResponse> randomStops(int n) {
+        Random random = new Random(3);
+        List<StopResponse> stops = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            stops.add(new StopResponse(String.valueOf(i), "Stop " + i, "Addr " + i,
+                    DEPOT.lat() + (random.nextDouble() - 0.5) * 0.3,
+                    DEPOT.lng() + (random.nextDouble() - 0.5) * 0.6, i, null));
+        }
+        return stops;
+    }
+
+    // Fågelvägen i 30 km/h istället för ORS, bara blocken längs diagonalen
+    private static TiledMatrix bandMatrix(List<StopResponse> curve, int window) {
+        List<double[]> points = new ArrayList<>();
+        points.add(new double[]{DEPOT.lat(), DEPOT.lng()});
+        curve.forEach(s -> points.add(new double[]{s.latitude(), s.longitude()}));
+        points.add(new double[]{DEPOT.lat(), DEPOT.lng()});
+
+        TiledMatrix matrix = new TiledMatrix(points.size(), window);
+        for (int[] tile : LargeRouteSolver.bandTiles(matrix)) {
+            double[][] values = new double[matrix.blockLength(tile[0])][matrix.blockLength(tile[1])];
+            for (int i = 0; i < values.length; i++) {
+                for (int j = 0; j < values[i].length; j++) {
+                    double[] a = points.get(matrix.blockStart(tile[0]) + i);
+                    double[] b = points.get(matrix.blockStart(tile[1]) + j);
+                    values[i][j] = DistanceCalculator.distanceInKm(a[0], a[1], b[0], b[1]) * 120;
+                }
+            }
+            matrix.put(tile[0], tile[1], values);
+        }
+        return matrix;
+    }
+}
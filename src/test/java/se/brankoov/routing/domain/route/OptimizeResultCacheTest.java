@@ -0,0 +1,116 @@
+package se.brankoov.routing.domain.route;
+
+import com.google.common.hash.HashCode;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import se.brankoov.routing.api.route.StopResponse;
+import se.brankoov.routing.domain.geocode.GeocodingService;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class OptimizeResultCacheTest {
+
+    private static final GeocodingService.LatLng DEPOT = new GeocodingService.LatLng(59.30, 18.05);
+    private static final SolverSettings SEEDED = new SolverSettings(50, 42L);
+
+    private final OptimizeResultCache cache = new OptimizeResultCache(100, Duration.ofMinutes(10), new SimpleMeterRegistry());
+
+    @Test
+    void keyIgnoresLabelsButNotCoordinatesOrSettings() {
+        List<StopResponse> stops = List.of(stop("a", 59.33, 18.06), stop("b", 59.34, 18.07));
+        List<StopResponse> relabelled = List.of(stop("x", 59.33, 18.06), stop("y", 59.34, 18.07));
+        List<StopResponse> moved = List.of(stop("a", 59.33, 18.06), stop("b", 59.34, 18.08));
+
+        HashCode key = OptimizeResultCache.key(DEPOT, DEPOT, stops, true, SEEDED);
+
+        assertEquals(key, OptimizeResultCache.key(DEPOT, DEPOT, relabelled, true, SEEDED));
+        assertNotEquals(key, OptimizeResultCache.key(DEPOT, DEPOT, moved, true, SEEDED));
+        assertNotEquals(key, OptimizeResultCache.key(DEPOT, DEPOT, stops, false, SEEDED));
+        assertNotEquals(key, OptimizeResultCache.key(DEPOT, DEPOT, stops, true, new SolverSettings(50, 7L)));
+        assertNotEquals(key, OptimizeResultCache.key(DEPOT, DEPOT, stops, true, new SolverSettings(50, null)));
+        assertNotEquals(key, OptimizeResultCache.key(DEPOT, DEPOT, List.of(stops.get(1), stops.get(0)), true, SEEDED));
+    }
+
+    @Test
+    void concurrentDuplicatesShareOneComputation() throws Exception {
+        HashCode key = OptimizeResultCache.key(DEPOT, DEPOT, List.of(stop("a", 59.33, 18.06)), true, SEEDED);
+        AtomicInteger computations = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<OptimizeResultCache.Result>> results = pool.invokeAll(List.of(
+                    () -> cache.get(key, () -> slowResult(computations, release)),
+                    () -> cache.get(key, () -> slowResult(computations, release)),
+                    () -> cache.get(key, () -> slowResult(computations, release)),
+                    () -> {
+                        // Släpper beräkningen först när de andra hunnit vänta på den
+                        release.await(50, TimeUnit.MILLISECONDS);
+                        release.countDown();
+                        return cache.get(key, () -> slowResult(computations, release));
+                    }));
+
+            OptimizeResultCache.Result first = results.get(0).get();
+            for (Future<OptimizeResultCache.Result> r : results) {
+                assertSame(first, r.get());
+            }
+            assertEquals(1, computations.get());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void resultWithoutGeometryIsNotKept() {
+        HashCode key = OptimizeResultCache.key(DEPOT, DEPOT, List.of(stop("a", 59.33, 18.06)), true, SEEDED);
+        AtomicInteger computations = new AtomicInteger();
+
+        cache.get(key, () -> {
+            computations.incrementAndGet();
+            return new OptimizeResultCache.Result(new int[]{0}, null, 100);
+        });
+        cache.get(key, () -> {
+            computations.incrementAndGet();
+            return new OptimizeResultCache.Result(new int[]{0}, "abc", 100);
+        });
+        cache.get(key, () -> {
+            computations.incrementAndGet();
+            return new OptimizeResultCache.Result(new int[]{0}, "abc", 100);
+        });
+
+        assertEquals(2, computations.get());
+    }
+
+    @Test
+    void failuresAreRethrownAndNotCached() {
+        HashCode key = OptimizeResultCache.key(DEPOT, DEPOT, List.of(stop("a", 59.33, 18.06)), true, SEEDED);
+
+        assertThrows(IllegalStateException.class, () -> cache.get(key, () -> {
+            throw new IllegalStateException("ORS down");
+        }));
+        assertEquals(0, cache.size());
+    }
+
+    private static OptimizeResultCache.Result slowResult(AtomicInteger computations, CountDownLatch release)
+            throws InterruptedException {
+        computations.incrementAndGet();
+        release.await(5, TimeUnit.SECONDS);
+        return new OptimizeResultCache.Result(new int[]{0}, "geometry", 600);
+    }
+
+    private static StopResponse stop(String id, double lat, double lng) {
+        return new StopResponse(id, id, id, lat, lng, 0, null);
+    }
+}
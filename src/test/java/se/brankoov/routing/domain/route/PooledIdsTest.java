@@ -0,0 +1,89 @@
+package se.brankoov.routing.domain.route;
+
+import org.hibernate.id.IdentifierGeneratorHelper;
+import org.hibernate.id.IntegralDataTypeHolder;
+import org.hibernate.id.enhanced.AccessCallback;
+import org.hibernate.id.enhanced.PooledOptimizer;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+class PooledIdsTest {
+
+    @Test
+    void blockTopsExpandDownwards() {
+        long[] ids = PooledIds.expand(new long[]{100, 150}, 60);
+
+        assertArrayEquals(LongStream.rangeClosed(51, 110).toArray(), ids);
+    }
+
+    @Test
+    void tooFewBlocksIsAnError() {
+        assertThrows(IllegalArgumentException.class, () -> PooledIds.expand(new long[]{100}, 51));
+    }
+
+    @Test
+    void takesOneNextvalPerFiftyIds() {
+        JdbcTemplate jdbc = mock(JdbcTemplate.class);
+        given(jdbc.queryForList("select nextval(?::regclass) from generate_series(1, ?)", Long.class, "routes_seq", 3))
+                .willReturn(List.of(200L, 250L, 300L));
+
+        long[] ids = PooledIds.next(jdbc, "routes_seq", 101);
+
+        assertEquals(151, ids[0]);
+        assertEquals(251, ids[100]);
+    }
+
+    @Test
+    void noIdsNoQuery() {
+        JdbcTemplate jdbc = mock(JdbcTemplate.class);
+
+        assertEquals(0, PooledIds.next(jdbc, "routes_seq", 0).length);
+        verifyNoInteractions(jdbc);
+    }
+
+    @Test
+    void neverCollidesWithHibernatesPooledOptimizer() {
+        // En sekvens med increment 50, där V1-migreringen lämnat den (nästa nextval = 100)
+        long[] sequence = {50};
+        AccessCallback callback = new AccessCallback() {
+            @Override
+            public IntegralDataTypeHolder getNextValue() {
+                sequence[0] += PooledIds.ALLOCATION_SIZE;
+                return IdentifierGeneratorHelper.getIntegralDataTypeHolder(Long.class).initialize(sequence[0]);
+            }
+
+            @Override
+            public String getTenantIdentifier() {
+                return null;
+            }
+        };
+        PooledOptimizer hibernate = new PooledOptimizer(Long.class, PooledIds.ALLOCATION_SIZE);
+
+        Set<Long> seen = new HashSet<>();
+        for (int round = 0; round < 5; round++) {
+            for (int i = 0; i < 37; i++) {
+                assertTrue(seen.add((Long) hibernate.generate(callback)), "Hibernate id reused");
+            }
+            long[] tops = new long[2];
+            tops[0] = callback.getNextValue().makeValue().longValue();
+            tops[1] = callback.getNextValue().makeValue().longValue();
+            for (long id : PooledIds.expand(tops, 73)) {
+                assertTrue(id > 0);
+                assertTrue(seen.add(id), "SQL id " + id + " collides");
+            }
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package se.brankoov.routing.domain.route;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class RouteCursorTest {
+
+    @Test
+    void roundTripKeepsMicroseconds() {
+        RouteCursor cursor = new RouteCursor(Instant.parse("2025-03-01T10:15:30.123456Z"), 42L);
+
+        RouteCursor decoded = RouteCursor.decode(cursor.encode());
+
+        assertEquals(cursor, decoded);
+    }
+
+    @Test
+    void rejectsGarbage() {
+        assertThrows(IllegalArgumentException.class, () -> RouteCursor.decode("inte-en-cursor"));
+    }
+}
@@ -0,0 +1,201 @@
+package se.brankoov.routing.domain.route;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.LockModeType;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import se.brankoov.routing.api.route.RouteDetailResponse;
+import se.brankoov.routing.api.route.RouteOptimizationRequest;
+import se.brankoov.routing.api.route.RouteStopEditRequest;
+import se.brankoov.routing.api.route.SavedStopResponse;
+import se.brankoov.routing.api.route.StopRequest;
+import se.brankoov.routing.api.route.StopResponse;
+import se.brankoov.routing.domain.auth.UserEntity;
+import se.brankoov.routing.domain.geocode.GeocodingService;
+import se.brankoov.routing.domain.route.entity.RouteEntity;
+import se.brankoov.routing.domain.route.entity.RouteRepository;
+import se.brankoov.routing.domain.route.entity.RouteStopEntity;
+import se.brankoov.routing.infra.ors.OrsDirectionsService;
+import se.brankoov.routing.infra.ors.OrsMatrixService;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+@ExtendWith(MockitoExtension.class)
+class RouteEditServiceTest {
+
+    // Allt ligger på en linje österut: depån på 18.00, stopp 1-4 på 18.02-18.08, slutet på 18.10
+    private static final GeocodingService.LatLng START = new GeocodingService.LatLng(59.0, 18.0);
+    private static final GeocodingService.LatLng END = new GeocodingService.LatLng(59.0, 18.10);
+
+    @Mock RouteRepository routeRepository;
+    @Mock RouteOptimizationService routeService;
+    @Mock OrsMatrixService orsMatrixService;
+    @Mock OrsDirectionsService orsDirectionsService;
+    @Mock GeometryStore geometryStore;
+    @Mock EntityManager entityManager;
+    @Mock PlatformTransactionManager transactionManager;
+
+    private RouteEditService service;
+    private RouteEntity route;
+    private boolean inTransaction;
+
+    @BeforeEach
+    void setUp() {
+        SecurityContextHolder.getContext().setAuthentication(new TestingAuthenticationToken("driver", null, "ROLE_USER"));
+        route = route(0L);
+
+        // Geokodning och ORS-anrop får inte ske medan en transaktion är öppen
+        lenient().when(transactionManager.getTransaction(any())).thenAnswer(inv -> {
+            inTransaction = true;
+            return new SimpleTransactionStatus();
+        });
+        lenient().doAnswer(inv -> inTransaction = false).when(transactionManager).commit(any());
+        lenient().doAnswer(inv -> inTransaction = false).when(transactionManager).rollback(any());
+        lenient().when(routeService.geocode(any())).thenAnswer(inv -> {
+            assertFalse(inTransaction, "geocoding inside a transaction");
+            List<StopResponse> added = inv.<RouteOptimizationRequest>getArgument(0).stops().stream()
+                    .map(s -> new StopResponse(s.id(), s.label(), s.address(), s.latitude(), s.longitude(), 0, s.comment()))
+                    .toList();
+            return new RouteOptimizationService.GeocodedRoute(START, added, END);
+        });
+        lenient().when(orsMatrixService.getDurations(anyList(), anyList(), anyList())).thenAnswer(inv -> {
+            assertFalse(inTransaction, "matrix call inside a transaction");
+            List<List<Double>> locations = inv.getArgument(0);
+            List<Integer> sources = inv.getArgument(1), destinations = inv.getArgument(2);
+            double[][] durations = new double[sources.size()][destinations.size()];
+            for (int i = 0; i < sources.size(); i++) {
+                for (int j = 0; j < destinations.size(); j++) {
+                    durations[i][j] = seconds(locations.get(sources.get(i)), locations.get(destinations.get(j)));
+                }
+            }
+            return durations;
+        });
+        lenient().when(orsMatrixService.getDurations(anyList())).thenAnswer(inv -> {
+            assertFalse(inTransaction, "matrix call inside a transaction");
+            List<List<Double>> locations = inv.getArgument(0);
+            double[][] durations = new double[locations.size()][locations.size()];
+            for (int i = 0; i < locations.size(); i++) {
+                for (int j = 0; j < locations.size(); j++) {
+                    durations[i][j] = seconds(locations.get(i), locations.get(j));
+                }
+            }
+            return durations;
+        });
+        lenient().when(orsDirectionsService.getRouteGeometry(anyList())).thenAnswer(inv -> {
+            assertFalse(inTransaction, "directions call inside a transaction");
+            return "geometry";
+        });
+
+        service = new RouteEditService(routeRepository, routeService, orsMatrixService, orsDirectionsService,
+                geometryStore, entityManager, transactionManager, 4);
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void removesAndInsertsBetweenTheNewNeighbours() {
+        given(routeRepository.findDetailById(7L)).willReturn(Optional.of(route));
+
+        RouteDetailResponse saved = service.editStops(7L, new RouteStopEditRequest(
+                List.of(newStop("New", 18.05)), List.of(2L), null, null)).orElseThrow();
+
+        assertEquals(List.of("A1", "New", "A3", "A4"), saved.stops().stream().map(SavedStopResponse::address).toList());
+        assertEquals(List.of(0, 1, 2, 3), saved.stops().stream().map(SavedStopResponse::orderIndex).toList());
+        // En ändring i mitten ger ett reparationsfönster, och ett anrop för det
+        verify(orsMatrixService, times(1)).getDurations(anyList());
+        verify(entityManager).lock(route, LockModeType.OPTIMISTIC_FORCE_INCREMENT);
+        verify(routeRepository).saveAndFlush(route);
+    }
+
+    @Test
+    void stopsAlreadyDrivenAreNotTouched() {
+        given(routeRepository.findDetailById(7L)).willReturn(Optional.of(route));
+
+        // Närmast depån, men de två första stoppen är redan körda
+        RouteDetailResponse saved = service.editStops(7L, new RouteStopEditRequest(
+                List.of(newStop("New", 18.01)), null, 2, false)).orElseThrow();
+
+        List<String> addresses = saved.stops().stream().map(SavedStopResponse::address).toList();
+        assertEquals(List.of("A1", "A2"), addresses.subList(0, 2));
+        assertEquals(5, addresses.size());
+        verifyNoInteractions(orsDirectionsService);
+    }
+
+    @Test
+    void aConcurrentEditIsAConflictNotALostUpdate() {
+        given(routeRepository.findDetailById(7L)).willReturn(Optional.of(route), Optional.of(route(1L)));
+
+        assertThrows(ObjectOptimisticLockingFailureException.class, () -> service.editStops(7L,
+                new RouteStopEditRequest(List.of(newStop("New", 18.05)), null, null, null)));
+
+        verify(routeRepository, never()).saveAndFlush(any());
+        verify(transactionManager).rollback(any());
+    }
+
+    @Test
+    void unknownStopIsRejectedBeforeAnyRemoteCall() {
+        given(routeRepository.findDetailById(7L)).willReturn(Optional.of(route));
+
+        assertThrows(IllegalArgumentException.class, () -> service.editStops(7L,
+                new RouteStopEditRequest(null, List.of(99L), null, null)));
+
+        verifyNoInteractions(orsMatrixService, orsDirectionsService);
+        verify(routeService, never()).geocode(any());
+    }
+
+    @Test
+    void someoneElsesRouteIsNotFound() {
+        SecurityContextHolder.getContext().setAuthentication(new TestingAuthenticationToken("other", null, "ROLE_USER"));
+        given(routeRepository.findDetailById(7L)).willReturn(Optional.of(route));
+
+        assertEquals(Optional.empty(), service.editStops(7L, new RouteStopEditRequest(null, List.of(1L), null, null)));
+    }
+
+    private static RouteEntity route(long version) {
+        RouteEntity route = new RouteEntity("Route", null, "Depot", "End", null, 1000L, null);
+        ReflectionTestUtils.setField(route, "id", 7L);
+        ReflectionTestUtils.setField(route, "version", version);
+        route.setOwner(new UserEntity("driver", "secret"));
+        for (int i = 1; i <= 4; i++) {
+            RouteStopEntity stop = new RouteStopEntity("Stop " + i, "A" + i, 59.0, 18.0 + i * 0.02, i - 1);
+            ReflectionTestUtils.setField(stop, "id", (long) i);
+            route.addStop(stop);
+        }
+        return route;
+    }
+
+    private static StopRequest newStop(String address, double lng) {
+        return new StopRequest("new", address, address, 59.0, lng, null);
+    }
+
+    // 30 km/h fågelvägen, [longitud, latitud] som i ORS-anropen
+    private static double seconds(List<Double> a, List<Double> b) {
+        return DistanceCalculator.distanceInKm(a.get(1), a.get(0), b.get(1), b.get(0)) * 120;
+    }
+}
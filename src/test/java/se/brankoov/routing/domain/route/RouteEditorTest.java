@@ -0,0 +1,64 @@
+package se.brankoov.routing.domain.route;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class RouteEditorTest {
+
+    // Platser på en linje: index i = i km från start, 10 s per km
+    private static final RouteEditor.Durations LINE = (from, to) -> Math.abs(position(from) - position(to)) * 10;
+
+    // 0 = start (0 km), 1..4 = stopp på 1..4 km, 5 = slut (5 km), 6 = nytt stopp på 2.5 km
+    private static double position(int index) {
+        return index == 6 ? 2.5 : index;
+    }
+
+    @Test
+    void insertsWhereItCostsLeast() {
+        RouteEditor.Insertion insertion = RouteEditor.cheapestInsertion(List.of(1, 2, 3, 4), 0, 5, 6, 0, LINE);
+
+        assertEquals(2, insertion.position());
+        assertEquals(0, insertion.delta(), 1e-9);
+    }
+
+    @Test
+    void neverInsertsAmongStopsAlreadyDriven() {
+        RouteEditor.Insertion insertion = RouteEditor.cheapestInsertion(List.of(1, 2, 3, 4), 0, 5, 6, 3, LINE);
+
+        // Efter de tre första stoppen: mellan 3 och 4 blir en omväg på 1 km fram och tillbaka
+        assertEquals(3, insertion.position());
+        assertEquals(10, insertion.delta(), 1e-9);
+    }
+
+    @Test
+    void repairWindowsAreMergedAndClamped() {
+        List<int[]> windows = RouteEditor.repairWindows(List.of(1, 4, 20), 22, 2, 1, 48);
+
+        assertEquals(2, windows.size());
+        assertArrayEquals(new int[]{1, 6}, windows.get(0));
+        assertArrayEquals(new int[]{18, 21}, windows.get(1));
+    }
+
+    @Test
+    void longRepairWindowsAreSplit() {
+        List<int[]> windows = RouteEditor.repairWindows(List.of(5, 10), 30, 4, 0, 10);
+
+        assertArrayEquals(new int[]{1, 9}, windows.get(0));
+        assertArrayEquals(new int[]{10, 14}, windows.get(1));
+    }
+
+    @Test
+    void speedIsTheMedianRatio() {
+        double secondsPerKm = RouteEditor.secondsPerKm(
+                new double[]{100, 300, 1000, 5},
+                new double[]{1, 2, 5, 0.01},
+                156);
+
+        assertEquals(150, secondsPerKm, 1e-9);
+        assertEquals(156, RouteEditor.secondsPerKm(new double[0], new double[0], 156), 1e-9);
+    }
+}
@@ -0,0 +1,59 @@
+package se.brankoov.routing.domain.route;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import se.brankoov.routing.domain.route.entity.LegacyGeometryRow;
+import se.brankoov.routing.domain.route.entity.RouteGeometryEntity;
+import se.brankoov.routing.domain.route.entity.RouteRepository;
+
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+class RouteGeometryBackfillJobTest {
+
+    @Test
+    void movesLegacyGeometriesInBatchesUntilNoneAreLeft() {
+        RouteRepository routeRepository = mock(RouteRepository.class);
+        GeometryStore geometryStore = mock(GeometryStore.class);
+        PlatformTransactionManager txManager = mock(PlatformTransactionManager.class);
+        given(txManager.getTransaction(any())).willReturn(new SimpleTransactionStatus());
+
+        given(routeRepository.findLegacyGeometries(eq(0L), any()))
+                .willReturn(List.of(new LegacyGeometryRow(1L, "aaa"), new LegacyGeometryRow(2L, "bbb")));
+        given(routeRepository.findLegacyGeometries(eq(2L), any()))
+                .willReturn(List.of(new LegacyGeometryRow(5L, " ")));
+        given(routeRepository.findLegacyGeometries(eq(5L), any())).willReturn(List.of());
+        given(routeRepository.moveLegacyGeometry(anyLong(), any())).willReturn(1);
+        RouteGeometryEntity a = blob("hash-a");
+        RouteGeometryEntity b = blob("hash-b");
+        given(geometryStore.intern(eq("aaa"), any())).willReturn(a);
+        given(geometryStore.intern(eq("bbb"), any())).willReturn(b);
+
+        RouteGeometryBackfillJob job = new RouteGeometryBackfillJob(routeRepository, geometryStore, txManager, 2);
+        job.backfill();
+
+        verify(routeRepository).moveLegacyGeometry(1L, "hash-a");
+        verify(routeRepository).moveLegacyGeometry(2L, "hash-b");
+        verify(routeRepository, never()).moveLegacyGeometry(eq(5L), any());
+        verify(txManager, times(2)).commit(any());
+
+        // Klart – nästa körning frågar inte ens databasen
+        job.backfill();
+        verify(routeRepository, times(3)).findLegacyGeometries(anyLong(), any());
+    }
+
+    private static RouteGeometryEntity blob(String hash) {
+        RouteGeometryEntity blob = mock(RouteGeometryEntity.class);
+        given(blob.getHash()).willReturn(hash);
+        return blob;
+    }
+}
@@ -1,5 +1,7 @@
 package se.brankoov.routing.domain.route;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -8,16 +10,23 @@ import org.mockito.junit.jupiter.MockitoExtension;
 import se.brankoov.routing.api.route.RouteOptimizationRequest;
 import se.brankoov.routing.api.route.RouteOptimizationResponse;
 import se.brankoov.routing.api.route.StopRequest;
+import se.brankoov.routing.api.route.StopResponse;
 import se.brankoov.routing.domain.auth.UserRepository;
 import se.brankoov.routing.domain.geocode.GeocodingService;
 import se.brankoov.routing.domain.route.entity.RouteRepository;
 import se.brankoov.routing.infra.ors.OrsDirectionsService;
 import se.brankoov.routing.infra.ors.OrsMatrixService;
 
+import java.time.Duration;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.IntStream;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.BDDMockito.given;
 
@@ -30,6 +39,7 @@ class RouteOptimizationServiceTest {
     @Mock UserRepository userRepository;
     @Mock OrsMatrixService orsMatrixService;
     @Mock OrsDirectionsService orsDirectionsService;
+    @Mock GeometryStore geometryStore;
 
     private RouteOptimizationService service;
 
@@ -41,7 +51,14 @@ class RouteOptimizationServiceTest {
                 routeRepository,
                 userRepository,
                 orsMatrixService,
-                orsDirectionsService
+                orsDirectionsService,
+                geometryStore,
+                ObservationRegistry.NOOP,
+                50,
+                42L,
+                48,
+                4,
+                new OptimizeResultCache(100, Duration.ofMinutes(10), new SimpleMeterRegistry())
         );
     }
 
@@ -49,7 +66,7 @@ class RouteOptimizationServiceTest {
     void addsMissingCoordinatesUsingGeocodingService() {
         // Arrange
         // 1. Vi måste skapa ett riktigt StopRequest-objekt först
-        StopRequest stopReq = new StopRequest("1", "Stop 1", "Addr 1", null, null);
+        StopRequest stopReq = new StopRequest("1", "Stop 1", "Addr 1", null, null, null);
 
         // 2. Skapa requesten med rätt ordning på argumenten: (Start, End, STOPS, Optimize)
         var request = new RouteOptimizationRequest(
@@ -84,8 +101,8 @@ class RouteOptimizationServiceTest {
     void optimizationReordersStopsBasedOnDistance() {
         // Arrange
         // Vi skapar två stopp: "Långt bort" och "Nära"
-        StopRequest farStop = new StopRequest("1", "Far", "Far", 10.0, 10.0);
-        StopRequest nearStop = new StopRequest("2", "Near", "Near", 1.0, 1.0);
+        StopRequest farStop = new StopRequest("1", "Far", "Far", 10.0, 10.0, null);
+        StopRequest nearStop = new StopRequest("2", "Near", "Near", 1.0, 1.0, null);
 
         // Vi skickar in dem i "fel" ordning (Långt bort först)
         var request = new RouteOptimizationRequest(
@@ -127,4 +144,38 @@ class RouteOptimizationServiceTest {
         assertEquals("2", result.orderedStops().get(0).id()); // Första stoppet ska vara Near
         assertEquals("1", result.orderedStops().get(1).id()); // Andra stoppet ska vara Far
     }
-}
\ No newline at end of file
+
+    @Test
+    void routesUpToTheFullMatrixLimitAreSolvedDirectly() {
+        // (57 + 2)² = 3 481 celler ryms i ett ORS-anrop, (58 + 2)² = 3 600 gör det inte
+        GeocodingService.LatLng depot = new GeocodingService.LatLng(59.0, 18.0);
+
+        assertEquals(57, RouteOptimizationService.LARGE_THRESHOLD);
+        assertFalse(service.isLarge(new RouteOptimizationService.GeocodedRoute(depot, stops(57), depot), true));
+        assertTrue(service.isLarge(new RouteOptimizationService.GeocodedRoute(depot, stops(58), depot), true));
+        assertFalse(service.isLarge(new RouteOptimizationService.GeocodedRoute(depot, stops(58), depot), false));
+    }
+
+    @Test
+    void aFailedStopLookupOnlyAffectsThatStop() {
+        var request = new RouteOptimizationRequest("Start", "End", List.of(
+                new StopRequest("1", "Ok", "Addr 1", null, null, null),
+                new StopRequest("2", "Trasig", "Addr 2", null, null, null)), false);
+        given(geocodingService.geocodeFirst("Start")).willReturn(Optional.of(new GeocodingService.LatLng(59.0, 18.0)));
+        given(geocodingService.geocodeFirst("End")).willReturn(Optional.of(new GeocodingService.LatLng(59.2, 18.2)));
+        given(geocodingService.geocodeFirst("Addr 1")).willReturn(Optional.of(new GeocodingService.LatLng(59.1, 18.1)));
+        given(geocodingService.geocodeFirst("Addr 2")).willThrow(new RuntimeException("ORS down"));
+
+        var route = service.geocodeAllowingMisses(request);
+
+        assertEquals(59.1, route.stops().get(0).latitude());
+        assertNull(route.stops().get(1).latitude());
+        assertThrows(RuntimeException.class, () -> service.geocode(request));
+    }
+
+    private static List<StopResponse> stops(int n) {
+        return IntStream.range(0, n)
+                .mapToObj(i -> new StopResponse(String.valueOf(i), "Stop " + i, "Addr " + i, 59.0, 18.0, i, null))
+                .toList();
+    }
+}
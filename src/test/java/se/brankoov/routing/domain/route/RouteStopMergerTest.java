@@ -0,0 +1,97 @@
+package se.brankoov.routing.domain.route;
+
+import org.junit.jupiter.api.Test;
+import se.brankoov.routing.api.route.StopResponse;
+import se.brankoov.routing.domain.route.entity.RouteEntity;
+import se.brankoov.routing.domain.route.entity.RouteStopEntity;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RouteStopMergerTest {
+
+    @Test
+    void unchangedStopsAreNotWritten() {
+        RouteEntity route = routeWith(stops(5));
+
+        RouteStopMerger.Result result = RouteStopMerger.merge(route, stops(5));
+
+        assertEquals(0, result.writes());
+        assertEquals(5, result.unchanged());
+    }
+
+    @Test
+    void reorderKeepsExistingRows() {
+        RouteEntity route = routeWith(stops(3));
+        RouteStopEntity first = route.getStops().get(0);
+
+        List<StopResponse> reordered = List.of(
+                stop(2, 0), stop(1, 1), stop(0, 2));
+        RouteStopMerger.Result result = RouteStopMerger.merge(route, reordered);
+
+        assertEquals(0, result.inserted());
+        assertEquals(0, result.deleted());
+        assertEquals(2, result.updated()); // mittersta ligger kvar på plats 1
+        assertSame(first, route.getStops().get(0));
+        assertEquals(2, first.getOrderIndex());
+    }
+
+    @Test
+    void addsAndRemovesOnlyTheDifference() {
+        RouteEntity route = routeWith(stops(4));
+
+        List<StopResponse> incoming = new ArrayList<>(stops(3));  // stopp 3 borttaget
+        incoming.add(stop(10, 3));                                 // nytt stopp
+
+        RouteStopMerger.Result result = RouteStopMerger.merge(route, incoming);
+
+        assertEquals(1, result.inserted());
+        assertEquals(1, result.deleted());
+        assertEquals(4, route.getStops().size());
+        assertTrue(route.getStops().stream().allMatch(s -> s.getOrderIndex() < 4));
+    }
+
+    @Test
+    void editingLargeRouteTouchesFarFewerRowsThanClearAndReinsert() {
+        int n = 200;
+        RouteEntity route = routeWith(stops(n));
+
+        // Vanlig redigering: två stopp byter plats och ett får en kommentar
+        List<StopResponse> incoming = new ArrayList<>(stops(n));
+        incoming.set(10, stop(11, 10));
+        incoming.set(11, stop(10, 11));
+        StopResponse s = incoming.get(50);
+        incoming.set(50, new StopResponse(s.id(), s.label(), s.address(), s.latitude(), s.longitude(), s.order(), "Portkod 1234"));
+
+        RouteStopMerger.Result result = RouteStopMerger.merge(route, incoming);
+
+        // Tidigare: n DELETE + n INSERT
+        assertEquals(3, result.writes());
+        assertTrue(result.writes() * 100 < 2 * n);
+    }
+
+    private static RouteEntity routeWith(List<StopResponse> stops) {
+        RouteEntity route = new RouteEntity();
+        for (StopResponse s : stops) {
+            RouteStopEntity e = new RouteStopEntity(s.label(), s.address(), s.latitude(), s.longitude(), s.order());
+            e.setComment(s.comment());
+            route.addStop(e);
+        }
+        return route;
+    }
+
+    private static List<StopResponse> stops(int n) {
+        return IntStream.range(0, n).mapToObj(i -> stop(i, i)).toList();
+    }
+
+    // Stopp nummer i, placerat på position order
+    private static StopResponse stop(int i, int order) {
+        return new StopResponse(String.valueOf(i + 1), "Stop " + (i + 1), "Gatan " + (i + 1),
+                59.30 + i * 0.001, 18.00 + i * 0.001, order, null);
+    }
+}
@@ -0,0 +1,67 @@
+package se.brankoov.routing.domain.route;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import se.brankoov.routing.domain.auth.UserEntity;
+import se.brankoov.routing.domain.auth.UserRepository;
+import se.brankoov.routing.domain.route.entity.RouteEntity;
+import se.brankoov.routing.domain.route.entity.RouteRepository;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+class RouteTransferServiceTest {
+
+    @Test
+    void importSkipsUnknownOwnersAndPersistsTheRest() throws Exception {
+        RouteRepository routeRepository = mock(RouteRepository.class);
+        UserRepository userRepository = mock(UserRepository.class);
+        EntityManager entityManager = mock(EntityManager.class);
+        PlatformTransactionManager txManager = mock(PlatformTransactionManager.class);
+        given(txManager.getTransaction(any())).willReturn(new SimpleTransactionStatus());
+
+        UserEntity anna = mock(UserEntity.class);
+        given(anna.getId()).willReturn(7L);
+        given(userRepository.findByUsername("anna")).willReturn(Optional.of(anna));
+        given(userRepository.findByUsername("okand")).willReturn(Optional.empty());
+        given(entityManager.getReference(eq(UserEntity.class), eq(7L))).willReturn(anna);
+
+        ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+        RouteTransferService service = new RouteTransferService(routeRepository, userRepository,
+                mock(GeometryStore.class), entityManager, objectMapper, txManager);
+
+        String ndjson = """
+                {"ownerUsername":"anna","name":"Måndag","createdAt":"2025-01-13T06:00:00Z","stops":[{"label":"Stop 1","address":"Drottninggatan 5","latitude":59.33,"longitude":18.06,"orderIndex":0}]}
+                {"ownerUsername":"okand","name":"Tisdag","stops":[]}
+                {"ownerUsername":"anna","name":"Onsdag","stops":[]}
+                """;
+
+        RouteTransferService.ImportResult result =
+                service.importNdjson(new ByteArrayInputStream(ndjson.getBytes(StandardCharsets.UTF_8)));
+
+        assertEquals(2, result.imported());
+        assertEquals(1, result.skipped());
+        assertEquals(1, result.errors().size());
+
+        ArgumentCaptor<RouteEntity> saved = ArgumentCaptor.forClass(RouteEntity.class);
+        verify(entityManager, times(2)).persist(saved.capture());
+        assertEquals("Måndag", saved.getAllValues().get(0).getName());
+        assertEquals(1, saved.getAllValues().get(0).getStops().size());
+        // Bara en uppslagning per användarnamn
+        verify(userRepository, times(1)).findByUsername("anna");
+    }
+}
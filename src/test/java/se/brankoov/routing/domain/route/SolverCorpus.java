@@ -0,0 +1,138 @@
+package se.brankoov.routing.domain.route;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import se.brankoov.routing.api.route.StopResponse;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Instanserna i src/test/resources/solver-corpus och de lösarkonfigurationer som mäts mot dem.
+ *
+ * Varje instans har sparade koordinater, en färdig körtidsmatris (samma form som ORS-svaret i optimize())
+ * och bästa kända kostnad. För de små instanserna är den exakt optimal (Held-Karp).
+ */
+final class SolverCorpus {
+
+    static final long SEED = 42;
+
+    record Instance(String name, boolean optimal, double bestKnownCost, List<StopResponse> stops, double[][] durations) {}
+
+    /** En lösarkonfiguration: samma steg som optimize() kör, med fast frö. */
+    enum Config {
+        NEAREST_NEIGHBOUR("nearest-neighbour", i -> TspSolver.solveTspNearestNeighbour(i.stops(), i.durations())),
+        TWO_OPT("two-opt", i -> TspSolver.optimizeTwoOpt(
+                TspSolver.solveTspNearestNeighbour(i.stops(), i.durations()), i.durations(), i.stops())),
+        ANNEALING("annealing", i -> TspSolver.anneal(
+                TspSolver.optimizeTwoOpt(TspSolver.solveTspNearestNeighbour(i.stops(), i.durations()), i.durations(), i.stops()),
+                i.durations(), i.stops(), new SolverSettings(50, SEED)));
+
+        final String key;
+        final Function<Instance, List<StopResponse>> solver;
+
+        Config(String key, Function<Instance, List<StopResponse>> solver) {
+            this.key = key;
+            this.solver = solver;
+        }
+
+        static Config fromKey(String key) {
+            for (Config c : values()) {
+                if (c.key.equals(key)) return c;
+            }
+            throw new IllegalArgumentException("Unknown solver config: " + key);
+        }
+    }
+
+    record Result(double cost, double gap, long millis) {}
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+    private SolverCorpus() {
+    }
+
+    static Instance load(String name) {
+        try (InputStream in = SolverCorpus.class.getResourceAsStream("/solver-corpus/" + name + ".json")) {
+            if (in == null) throw new IllegalArgumentException("No corpus instance " + name);
+            JsonNode root = MAPPER.readTree(in);
+
+            List<StopResponse> stops = new ArrayList<>();
+            for (JsonNode s : root.get("stops")) {
+                String id = s.get("id").asText();
+                stops.add(new StopResponse(id, id, id, s.get("lat").asDouble(), s.get("lng").asDouble(), 0, null));
+            }
+            double[][] durations = MAPPER.treeToValue(root.get("durations"), double[][].class);
+            if (durations.length != stops.size() + 2) {
+                throw new IllegalStateException(name + ": matrix must be (stops + 2) square");
+            }
+            Instance instance = new Instance(name, root.get("optimal").asBoolean(), root.get("bestKnownCost").asDouble(),
+                    List.copyOf(stops), durations);
+
+            // Den sparade bästa ordningen ska ge exakt den sparade kostnaden, annars är filen trasig
+            List<StopResponse> bestOrder = new ArrayList<>();
+            for (JsonNode id : root.get("bestKnownOrder")) {
+                bestOrder.add(stops.stream().filter(s -> s.id().equals(id.asText())).findFirst().orElseThrow());
+            }
+            if (TspSolver.calculateTotalCost(bestOrder, durations, instance.stops()) != instance.bestKnownCost()) {
+                throw new IllegalStateException(name + ": bestKnownOrder does not match bestKnownCost");
+            }
+            return instance;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Maskinens hastighet i millisekunder, oberoende av lösaren: Floyd-Warshall över instansens matris,
+     * bästa av fem körningar. Tiderna i baseline.json skalas med kvoten mot värdet när baslinjen skrevs.
+     */
+    static double calibrate(Instance instance, int rounds) {
+        int n = instance.durations().length;
+        long best = Long.MAX_VALUE;
+        double checksum = 0;
+        for (int attempt = 0; attempt < 5; attempt++) {
+            long start = cpuNanos();
+            for (int r = 0; r < rounds; r++) {
+                double[][] d = new double[n][];
+                for (int i = 0; i < n; i++) d[i] = instance.durations()[i].clone();
+                for (int k = 0; k < n; k++) {
+                    for (int i = 0; i < n; i++) {
+                        for (int j = 0; j < n; j++) {
+                            if (d[i][k] + d[k][j] < d[i][j]) d[i][j] = d[i][k] + d[k][j];
+                        }
+                    }
+                }
+                checksum += d[0][n - 1];
+            }
+            best = Math.min(best, cpuNanos() - start);
+        }
+        // Används så att JIT:en inte kan ta bort loopen
+        if (checksum < 0) throw new IllegalStateException("negative durations");
+        return best / 1e6;
+    }
+
+    static Result run(Instance instance, Config config) {
+        long start = cpuNanos();
+        List<StopResponse> route = config.solver.apply(instance);
+        long millis = (cpuNanos() - start) / 1_000_000;
+
+        if (route.size() != instance.stops().size() || !route.containsAll(instance.stops())) {
+            throw new IllegalStateException(config.key + " did not visit every stop once on " + instance.name());
+        }
+        double cost = TspSolver.calculateTotalCost(route, instance.durations(), instance.stops());
+        return new Result(cost, cost / instance.bestKnownCost() - 1, millis);
+    }
+
+    // CPU-tid för testtråden (lösarna är enkeltrådade). Andra trådar och processer på en upptagen
+    // byggmaskin räknas då inte – på en enda kärna kan de annars stjäla hela mätningen.
+    private static long cpuNanos() {
+        return THREADS.isCurrentThreadCpuTimeSupported() ? THREADS.getCurrentThreadCpuTime() : System.nanoTime();
+    }
+}
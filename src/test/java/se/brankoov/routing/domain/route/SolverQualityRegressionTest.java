@@ -0,0 +1,130 @@
+package se.brankoov.routing.domain.route;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+/**
+ * Kör varje lösarkonfiguration på korpusen med fast frö och jämför mot solver-corpus/baseline.json.
+ *
+ * Faller om avståndet till bästa kända kostnad (gap) blir större än baslinjen plus tolerans, eller om
+ * tiden blir mer än timeFactor gånger baslinjen (plus timeSlackMillis för små instanser).
+ *
+ * Tiden är testtrådens CPU-tid, bästa av tre körningar efter uppvärmning, och baslinjen skalas med
+ * maskinens hastighet (SolverCorpus.calibrate). En mätning över gränsen görs om, med ny kalibrering,
+ * upp till två gånger – en långsammare eller upptagen byggmaskin ger inte falska larm, en långsammare
+ * lösare gör det. Körs i en egen JVM av ./gradlew solverCorpusTest (ingår i check, inte i test).
+ * Efter en avsiktlig förändring av lösaren: ./gradlew solverCorpusTest -Psolver.baseline.update,
+ * och kopiera build/solver-baseline.json över baseline.json.
+ */
+class SolverQualityRegressionTest {
+
+    private static final Logger log = LoggerFactory.getLogger(SolverQualityRegressionTest.class);
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private static final int RUNS = 3;
+    private static final int RETRIES = 2;
+    private static final int CALIBRATION_ROUNDS = 200;
+
+    @Test
+    void solversDoNotRegressOnCorpus() throws Exception {
+        JsonNode baseline;
+        try (InputStream in = getClass().getResourceAsStream("/solver-corpus/baseline.json")) {
+            baseline = MAPPER.readTree(in);
+        }
+        double gapTolerance = baseline.at("/tolerance/gap").asDouble();
+        double timeFactor = baseline.at("/tolerance/timeFactor").asDouble();
+        long timeSlack = baseline.at("/tolerance/timeSlackMillis").asLong();
+
+        // Värm upp JIT:en så att första instansen inte får skulden för kompileringen
+        SolverCorpus.Instance warmUp = SolverCorpus.load("stockholm-25");
+        for (SolverCorpus.Config config : SolverCorpus.Config.values()) {
+            SolverCorpus.run(warmUp, config);
+        }
+        SolverCorpus.Instance calibrationInstance = SolverCorpus.load("stockholm-50");
+        double baselineCalibration = baseline.at("/calibrationMillis").asDouble();
+        double calibration = SolverCorpus.calibrate(calibrationInstance, CALIBRATION_ROUNDS);
+        double speed = calibration / baselineCalibration;
+
+        List<String> failures = new ArrayList<>();
+        StringBuilder report = new StringBuilder(String.format(Locale.ROOT,
+                "%-14s %-18s %10s %10s %8s %8s%n", "instance", "config", "cost", "best", "gap %", "ms"));
+        ObjectNode updated = baseline.deepCopy();
+
+        for (Map.Entry<String, JsonNode> entry : baseline.get("instances").properties()) {
+            SolverCorpus.Instance instance = SolverCorpus.load(entry.getKey());
+
+            for (Map.Entry<String, JsonNode> c : entry.getValue().properties()) {
+                SolverCorpus.Config config = SolverCorpus.Config.fromKey(c.getKey());
+                SolverCorpus.Result result = fastestOf(instance, config);
+                double expectedGap = c.getValue().get("gap").asDouble();
+                double expectedMillis = c.getValue().get("millis").asLong() * speed;
+                // Delade byggmaskiner kan tappa CPU en stund. En för långsam mätning görs om med ny
+                // kalibrering, som bara får lätta på gränsen – bara en lösare som är långsam varje gång
+                // fäller testet.
+                double scale = speed;
+                for (int retry = 0; retry < RETRIES && result.millis() > expectedMillis * timeFactor + timeSlack; retry++) {
+                    scale = Math.max(scale, SolverCorpus.calibrate(calibrationInstance, CALIBRATION_ROUNDS) / baselineCalibration);
+                    expectedMillis = c.getValue().get("millis").asLong() * scale;
+                    result = fastestOf(instance, config);
+                }
+
+                report.append(String.format(Locale.ROOT, "%-14s %-18s %10.0f %10.0f %8.2f %8d%n",
+                        instance.name(), c.getKey(), result.cost(), instance.bestKnownCost(), result.gap() * 100, result.millis()));
+
+                if (instance.optimal()) {
+                    assertTrue(result.gap() > -1e-9, instance.name() + " is optimal, " + c.getKey() + " cannot beat it");
+                }
+                if (result.gap() > expectedGap + gapTolerance) {
+                    failures.add(String.format(Locale.ROOT, "%s/%s: gap %.2f %% > baseline %.2f %%",
+                            instance.name(), c.getKey(), result.gap() * 100, expectedGap * 100));
+                }
+                if (result.millis() > expectedMillis * timeFactor + timeSlack) {
+                    failures.add(String.format(Locale.ROOT, "%s/%s: %d ms > baseline %.0f ms (scaled to this machine)",
+                            instance.name(), c.getKey(), result.millis(), expectedMillis));
+                }
+                ObjectNode node = (ObjectNode) updated.get("instances").get(instance.name()).get(c.getKey());
+                node.put("gap", Math.round(result.gap() * 10000) / 10000.0);
+                node.put("millis", result.millis());
+            }
+        }
+        updated.put("calibrationMillis", Math.round(calibration * 10) / 10.0);
+        log.info("Solver corpus (calibration {} ms, {}x baseline machine):\n{}",
+                String.format(Locale.ROOT, "%.1f", calibration), String.format(Locale.ROOT, "%.2f", speed), report);
+
+        if (Boolean.getBoolean("solver.baseline.update")) {
+            Path out = Path.of("build", "solver-baseline.json");
+            Files.createDirectories(out.getParent());
+            MAPPER.writerWithDefaultPrettyPrinter().writeValue(out.toFile(), updated);
+            log.info("New baseline written to {}", out.toAbsolutePath());
+            return;
+        }
+        if (!failures.isEmpty()) {
+            fail("Solver regressed on corpus:\n" + String.join("\n", failures));
+        }
+    }
+
+    private static SolverCorpus.Result fastestOf(SolverCorpus.Instance instance, SolverCorpus.Config config) {
+        SolverCorpus.Result fastest = SolverCorpus.run(instance, config);
+        for (int run = 1; run < RUNS; run++) {
+            SolverCorpus.Result again = SolverCorpus.run(instance, config);
+            if (again.millis() < fastest.millis()) fastest = again;
+        }
+        return fastest;
+    }
+}
@@ -0,0 +1,59 @@
+package se.brankoov.routing.domain.route;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class TiledMatrixTest {
+
+    @Test
+    void onlyTilesUsedByARouteAreNeeded() {
+        // 7 platser i block om 3: {0,1,2} {3,4,5} {6}
+        TiledMatrix matrix = new TiledMatrix(7, 3);
+
+        List<int[]> tiles = matrix.neededTiles(List.of(new int[]{0, 1, 6}, new int[]{3, 4}));
+
+        assertEquals(5, tiles.size());
+        assertArrayEquals(new int[]{0, 0}, tiles.get(0));
+        assertArrayEquals(new int[]{0, 2}, tiles.get(1));
+        assertArrayEquals(new int[]{1, 1}, tiles.get(2));
+        assertArrayEquals(new int[]{2, 0}, tiles.get(3));
+        assertArrayEquals(new int[]{2, 2}, tiles.get(4));
+    }
+
+    @Test
+    void submatrixIsCutAcrossTiles() {
+        TiledMatrix matrix = new TiledMatrix(5, 2);
+        // Värdet i cellen är 10 * från + till, så att varje cell går att känna igen
+        for (int a = 0; a < matrix.blocks(); a++) {
+            for (int b = 0; b < matrix.blocks(); b++) {
+                double[][] tile = new double[matrix.blockLength(a)][matrix.blockLength(b)];
+                for (int i = 0; i < tile.length; i++) {
+                    for (int j = 0; j < tile[i].length; j++) {
+                        tile[i][j] = 10 * (matrix.blockStart(a) + i) + matrix.blockStart(b) + j;
+                    }
+                }
+                matrix.put(a, b, tile);
+            }
+        }
+
+        double[][] sub = matrix.submatrix(new int[]{4, 1, 2});
+
+        assertArrayEquals(new double[]{44, 41, 42}, sub[0]);
+        assertArrayEquals(new double[]{14, 11, 12}, sub[1]);
+        assertArrayEquals(new double[]{24, 21, 22}, sub[2]);
+    }
+
+    @Test
+    void missingTileFailsTheRoute() {
+        TiledMatrix matrix = new TiledMatrix(4, 2);
+        matrix.put(0, 0, new double[][]{{0, 1}, {1, 0}});
+
+        assertArrayEquals(new double[]{0, 1}, matrix.submatrix(new int[]{0, 1})[0]);
+        assertThrows(IllegalStateException.class, () -> matrix.submatrix(new int[]{0, 3}));
+    }
+}
@@ -0,0 +1,50 @@
+package se.brankoov.routing.infra.jfr;
+
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FlightRecordingTest {
+
+    private final FlightRecording recording =
+            new FlightRecording(true, "default", Duration.ofMinutes(5), DataSize.ofMegabytes(20));
+
+    @AfterEach
+    void stop() {
+        recording.stop();
+    }
+
+    @Test
+    void dumpContainsSolverPhaseEvents() throws Exception {
+        recording.start();
+
+        SolverPhaseEvent event = new SolverPhaseEvent();
+        event.begin();
+        event.end();
+        assertTrue(event.shouldCommit());
+        event.record("two-opt", 12, 3, 1800.0, 1500.0);
+
+        Path file = recording.dump();
+        try {
+            List<RecordedEvent> events = RecordingFile.readAllEvents(file).stream()
+                    .filter(e -> e.getEventType().getName().equals("se.brankoov.routing.SolverPhase"))
+                    .toList();
+            assertEquals(1, events.size());
+            assertEquals("two-opt", events.get(0).getString("phase"));
+            assertEquals(12, events.get(0).getInt("stops"));
+            assertEquals(1500.0, events.get(0).getDouble("costAfter"));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package se.brankoov.routing.infra.ors;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class OrsDirectionsServiceTest {
+
+    private final Deque<String> responses = new ArrayDeque<>();
+    private int calls;
+
+    private final OrsDirectionsService service = new OrsDirectionsService(WebClient.builder()
+            .exchangeFunction(request -> {
+                calls++;
+                String geometry = responses.poll();
+                String body = geometry == null ? "{\"routes\":[]}" : "{\"routes\":[{\"geometry\":\"" + geometry + "\"}]}";
+                return Mono.just(ClientResponse.create(HttpStatus.OK)
+                        .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                        .body(body)
+                        .build());
+            })
+            .build());
+
+    @Test
+    void polylineRoundTrips() {
+        // Exemplet från Googles formatbeskrivning
+        String encoded = "_p~iF~ps|U_ulLnnqC_mqNvxq`@";
+        List<long[]> points = Polyline.decode(encoded);
+
+        assertEquals(3, points.size());
+        assertEquals(3850000, points.get(0)[0]);
+        assertEquals(-12020000, points.get(0)[1]);
+        assertEquals(encoded, Polyline.encode(points));
+    }
+
+    @Test
+    void fiftyWaypointsIsOneCall() {
+        responses.add(Polyline.encode(path(0, 10)));
+
+        assertEquals(Polyline.encode(path(0, 10)), service.getRouteGeometry(waypoints(50)));
+        assertEquals(1, calls);
+    }
+
+    @Test
+    void moreWaypointsAreFetchedInOverlappingChunksAndStitched() {
+        // 120 punkter: 0-49, 49-98, 98-119. Varje del börjar där förra slutade.
+        responses.add(Polyline.encode(path(0, 30)));
+        responses.add(Polyline.encode(path(30, 70)));
+        responses.add(Polyline.encode(path(70, 90)));
+
+        String geometry = service.getRouteGeometry(waypoints(120));
+
+        assertEquals(3, calls);
+        assertEquals(Polyline.encode(path(0, 90)), geometry);
+    }
+
+    @Test
+    void aMissingChunkGivesNoGeometry() {
+        responses.add(Polyline.encode(path(0, 30)));
+
+        assertNull(service.getRouteGeometry(waypoints(60)));
+        assertEquals(2, calls);
+    }
+
+    private static List<List<Double>> waypoints(int n) {
+        List<List<Double>> waypoints = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            waypoints.add(List.of(18.0 + i * 0.001, 59.3));
+        }
+        return waypoints;
+    }
+
+    // Punkter first..last (inklusive) längs en linje, som ORS-geometri i heltal
+    private static List<long[]> path(int first, int last) {
+        List<long[]> points = new ArrayList<>();
+        for (int i = first; i <= last; i++) {
+            points.add(new long[]{5930000 + i * 7L, 1800000 - i * 13L});
+        }
+        return points;
+    }
+}
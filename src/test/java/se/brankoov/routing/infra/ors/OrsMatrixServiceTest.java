@@ -0,0 +1,32 @@
+package se.brankoov.routing.infra.ors;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+class OrsMatrixServiceTest {
+
+    @Test
+    void unreachablePairsAreInfiniteNotFree() {
+        // ORS svarar null för par utan väg (t.ex. en ö utan färja)
+        OrsMatrixService service = new OrsMatrixService(WebClient.builder()
+                .exchangeFunction(request -> Mono.just(ClientResponse.create(HttpStatus.OK)
+                        .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                        .body("{\"durations\":[[0.0,null],[12.5,0.0]]}")
+                        .build()))
+                .build());
+
+        double[][] durations = service.getDurations(List.of(List.of(18.0, 59.3), List.of(18.1, 59.4)));
+
+        assertArrayEquals(new double[]{0.0, Double.POSITIVE_INFINITY}, durations[0]);
+        assertArrayEquals(new double[]{12.5, 0.0}, durations[1]);
+    }
+}
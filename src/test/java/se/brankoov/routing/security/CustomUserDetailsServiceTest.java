@@ -0,0 +1,65 @@
+package se.brankoov.routing.security;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import se.brankoov.routing.domain.auth.UserEntity;
+import se.brankoov.routing.domain.auth.UserRepository;
+
+import java.time.Duration;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+class CustomUserDetailsServiceTest {
+
+    private final UserRepository userRepository = mock(UserRepository.class);
+    private final CustomUserDetailsService service =
+            new CustomUserDetailsService(userRepository, 100, Duration.ofMinutes(1));
+
+    @Test
+    void cachedUserIsLoadedOnlyOnce() {
+        given(userRepository.findByUsername("anna")).willReturn(Optional.of(user("anna", true)));
+
+        service.loadCachedUser("anna");
+        service.loadCachedUser("anna");
+
+        verify(userRepository, times(1)).findByUsername("anna");
+    }
+
+    @Test
+    void evictPicksUpBanImmediately() {
+        UserEntity anna = user("anna", true);
+        given(userRepository.findByUsername("anna")).willReturn(Optional.of(anna));
+        assertTrue(service.loadCachedUser("anna").isEnabled());
+
+        anna.setEnabled(false);
+        service.evict("anna");
+        UserDetails reloaded = service.loadCachedUser("anna");
+
+        assertFalse(reloaded.isEnabled());
+    }
+
+    @Test
+    void unknownUserIsNotCached() {
+        given(userRepository.findByUsername("okand")).willReturn(Optional.empty());
+
+        assertThrows(UsernameNotFoundException.class, () -> service.loadCachedUser("okand"));
+        assertThrows(UsernameNotFoundException.class, () -> service.loadCachedUser("okand"));
+
+        verify(userRepository, times(2)).findByUsername("okand");
+    }
+
+    private static UserEntity user(String username, boolean enabled) {
+        UserEntity user = new UserEntity(username, "hash");
+        user.setRole("USER");
+        user.setEnabled(enabled);
+        return user;
+    }
+}
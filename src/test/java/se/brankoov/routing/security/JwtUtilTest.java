@@ -0,0 +1,61 @@
+package se.brankoov.routing.security;
+
+import io.jsonwebtoken.ExpiredJwtException;
+import io.jsonwebtoken.JwtException;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class JwtUtilTest {
+
+    private static final String SECRET = "mittsuperhemliga_och_valdigt_langa_losenord_for_jwt_signering_2025";
+
+    private final UserDetails anna = new User("anna", "hash", List.of(new SimpleGrantedAuthority("ROLE_USER")));
+
+    @Test
+    void verifiedTokenIsServedFromCache() {
+        JwtUtil jwtUtil = new JwtUtil(SECRET, 60_000, 100, Duration.ofMinutes(10));
+        String token = jwtUtil.generateToken(anna);
+
+        var first = jwtUtil.extractAllClaims(token);
+        var second = jwtUtil.extractAllClaims(token);
+
+        assertEquals("anna", jwtUtil.extractUsername(token));
+        assertEquals("USER", first.get("role"));
+        assertSame(first, second);
+        assertEquals(1, jwtUtil.cachedTokens());
+    }
+
+    @Test
+    void tamperedTokenIsRejectedAndNotCached() {
+        JwtUtil jwtUtil = new JwtUtil(SECRET, 60_000, 100, Duration.ofMinutes(10));
+        String token = jwtUtil.generateToken(anna);
+        String tampered = token.substring(0, token.length() - 2) + (token.endsWith("A") ? "BB" : "AA");
+
+        assertThrows(JwtException.class, () -> jwtUtil.extractUsername(tampered));
+        assertEquals(0, jwtUtil.cachedTokens());
+    }
+
+    @Test
+    void tokenSignedWithOtherSecretIsRejected() {
+        JwtUtil other = new JwtUtil(SECRET + "_annan", 60_000, 100, Duration.ofMinutes(10));
+        JwtUtil jwtUtil = new JwtUtil(SECRET, 60_000, 100, Duration.ofMinutes(10));
+
+        assertThrows(JwtException.class, () -> jwtUtil.extractUsername(other.generateToken(anna)));
+    }
+
+    @Test
+    void expiredTokenIsRejected() {
+        JwtUtil jwtUtil = new JwtUtil(SECRET, -1_000, 100, Duration.ofMinutes(10));
+
+        assertThrows(ExpiredJwtException.class, () -> jwtUtil.extractUsername(jwtUtil.generateToken(anna)));
+    }
+}
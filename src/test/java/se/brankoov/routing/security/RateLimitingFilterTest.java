@@ -0,0 +1,123 @@
+package se.brankoov.routing.security;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RateLimitingFilterTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final RateLimitingFilter filter = filter(registry);
+
+    private static RateLimitingFilter filter(MeterRegistry registry) {
+        DefaultListableBeanFactory beans = new DefaultListableBeanFactory();
+        if (registry != null) beans.registerSingleton("meterRegistry", registry);
+        return new RateLimitingFilter(new ObjectMapper(), beans.getBeanProvider(MeterRegistry.class),
+                100, 10, 1000, Duration.ofMinutes(10));
+    }
+
+    @AfterEach
+    void clear() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void optimizeCostGrowsWithStops() {
+        assertTrue(RateLimitingFilter.optimizeCost(300) > 50 * RateLimitingFilter.optimizeCost(5));
+        assertEquals(1, RateLimitingFilter.optimizeCost(0));
+    }
+
+    @Test
+    void countsStopsInSingleAndBatchBodies() {
+        String single = "{\"stops\":[{},{},{}]}";
+        String batch = "{\"routes\":[{\"stops\":[{},{}]},{\"stops\":[{}]}]}";
+
+        assertEquals(3, filter.countStops(single.getBytes(StandardCharsets.UTF_8)));
+        assertEquals(3, filter.countStops(batch.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    void largeOptimizeBlocksTheNextOneAndBodyIsStillReadable() throws Exception {
+        MockHttpServletResponse first = optimize(200);
+        MockHttpServletResponse second = optimize(5);
+
+        assertEquals(200, first.getStatus());
+        assertEquals(429, second.getStatus());
+        assertNotNull(second.getHeader("Retry-After"));
+        // Det är ORS-hinken som säger nej, inte den globala
+        assertEquals(0.0, registry.counter("ratelimit.throttled", "limit", "global").count());
+        assertEquals(1.0, registry.counter("ratelimit.throttled", "limit", "optimize").count());
+    }
+
+    @Test
+    void newKeyGetsAFullBucket() throws Exception {
+        for (int i = 0; i < 5; i++) {
+            assertEquals(200, optimize(1).getStatus());
+        }
+        assertEquals(0.0, registry.counter("ratelimit.throttled", "limit", "global").count());
+    }
+
+    @Test
+    void oversizedBodyIsRejectedEvenWithoutContentLength() throws Exception {
+        byte[] huge = new byte[2 * 1024 * 1024 + 1];
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/routes/optimize") {
+            @Override
+            public long getContentLengthLong() {
+                return -1; // chunked
+            }
+        };
+        request.setContent(huge);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        MockFilterChain chain = new MockFilterChain();
+
+        filter.doFilter(request, response, chain);
+
+        assertEquals(413, response.getStatus());
+        assertNull(chain.getRequest());
+    }
+
+    @Test
+    void worksWithoutMeterRegistry() throws Exception {
+        RateLimitingFilter withoutRegistry = filter(null);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        withoutRegistry.doFilter(new MockHttpServletRequest("GET", "/api/geocode"), response, new MockFilterChain());
+
+        assertEquals(200, response.getStatus());
+    }
+
+    private MockHttpServletResponse optimize(int stops) throws Exception {
+        StringBuilder body = new StringBuilder("{\"stops\":[");
+        for (int i = 0; i < stops; i++) body.append(i == 0 ? "{}" : ",{}");
+        body.append("]}");
+
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/routes/optimize");
+        request.setRemoteAddr("10.0.0.1");
+        request.setContent(body.toString().getBytes(StandardCharsets.UTF_8));
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        MockFilterChain chain = new MockFilterChain();
+
+        filter.doFilter(request, response, chain);
+
+        if (chain.getRequest() != null) {
+            // Controllern måste fortfarande kunna läsa hela bodyn
+            assertEquals(body.length(), chain.getRequest().getInputStream().readAllBytes().length);
+        }
+        return response;
+    }
+}